@@ -0,0 +1,28 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.api;
+
+import java.sql.SQLException;
+
+/**
+ * A user-defined aggregate function that processes the rows in batches.
+ * The arguments are converted to double values, and the values of each
+ * argument are passed as an array. Rows where one of the arguments is NULL
+ * are skipped. For such aggregate functions, the method add is not called.
+ */
+public interface BatchAggregateFunction extends AggregateFunction {
+
+    /**
+     * This method is called for each batch of rows.
+     * The arrays may be re-used for the next batch.
+     *
+     * @param values the values, one array for each parameter
+     * @param count the number of rows (only the first count elements
+     *            of each array are used)
+     */
+    void addBatch(double[][] values, int count) throws SQLException;
+}
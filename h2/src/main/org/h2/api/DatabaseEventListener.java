@@ -29,7 +29,9 @@ public interface DatabaseEventListener extends EventListener {
 
     /**
      * This state is used when re-applying the transaction log or rolling back
-     * uncommitted transactions.
+     * uncommitted transactions. When using the page store, the progress is
+     * the number of log records that were replayed, and the name contains the
+     * number of records replayed per second.
      */
     int STATE_RECOVER = 2;
 
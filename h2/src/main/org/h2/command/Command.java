@@ -42,6 +42,7 @@ public abstract class Command implements CommandInterface {
      * If this query was canceled.
      */
     private volatile boolean cancel;
+    private boolean canReuse;
 
     private final String sql;
 
@@ -196,7 +197,9 @@ public abstract class Command implements CommandInterface {
                 while (true) {
                     database.checkPowerOff();
                     try {
-                        return update();
+                        int updateCount = update();
+                        session.flushDeferredIndexes();
+                        return updateCount;
                     } catch (SQLException e) {
                         if (e.getErrorCode() == ErrorCode.CONCURRENT_UPDATE_1) {
                             long now = System.currentTimeMillis();
@@ -252,7 +255,37 @@ public abstract class Command implements CommandInterface {
     }
 
     public void close() {
-        // nothing to do
+        canReuse = true;
+    }
+
+    /**
+     * Check if this command can be returned again when the same SQL statement
+     * is prepared. This is the case if the command is cached, and was closed.
+     *
+     * @return true if it can
+     */
+    public boolean canReuse() {
+        return canReuse;
+    }
+
+    /**
+     * Prepare this command to be returned again when the same SQL statement is
+     * prepared. The parameter values are cleared.
+     */
+    public void reuse() throws SQLException {
+        canReuse = false;
+        for (ParameterInterface p : getParameters()) {
+            p.setValue(null, true);
+        }
+    }
+
+    /**
+     * Check if this command can be cached and re-used.
+     *
+     * @return true if it can
+     */
+    public boolean isCacheable() {
+        return false;
     }
 
     public void cancel() {
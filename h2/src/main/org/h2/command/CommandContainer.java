@@ -7,6 +7,7 @@
 package org.h2.command;
 
 import java.sql.SQLException;
+import org.h2.command.dml.Query;
 import org.h2.expression.Parameter;
 import org.h2.expression.ParameterInterface;
 import org.h2.result.ResultInterface;
@@ -35,6 +36,17 @@ public class CommandContainer extends Command {
         return prepared.isTransactional();
     }
 
+    public boolean isCacheable() {
+        return prepared.isCacheable();
+    }
+
+    public void reuse() throws SQLException {
+        super.reuse();
+        if (prepared instanceof Query) {
+            ((Query) prepared).clearLastResult();
+        }
+    }
+
     public boolean isQuery() {
         return prepared.isQuery();
     }
@@ -31,6 +31,7 @@ import org.h2.command.ddl.CreateRole;
 import org.h2.command.ddl.CreateSchema;
 import org.h2.command.ddl.CreateSequence;
 import org.h2.command.ddl.CreateTable;
+import org.h2.command.ddl.CreateTableClone;
 import org.h2.command.ddl.CreateTableData;
 import org.h2.command.ddl.CreateTrigger;
 import org.h2.command.ddl.CreateUser;
@@ -62,6 +63,7 @@ import org.h2.command.dml.Delete;
 import org.h2.command.dml.ExecuteProcedure;
 import org.h2.command.dml.ExplainPlan;
 import org.h2.command.dml.Insert;
+import org.h2.command.dml.LoadData;
 import org.h2.command.dml.Merge;
 import org.h2.command.dml.NoOperation;
 import org.h2.command.dml.Query;
@@ -328,6 +330,8 @@ public class Parser {
                     c = parseCheckpoint();
                 } else if (readIf("COMMENT")) {
                     c = parseComment();
+                } else if (readIf("COPY")) {
+                    c = parseCopy();
                 }
                 break;
             case 'D':
@@ -369,6 +373,11 @@ public class Parser {
                     c = parseInsert();
                 }
                 break;
+            case 'L':
+                if (readIf("LOAD")) {
+                    c = parseLoadData();
+                }
+                break;
             case 'M':
                 if (readIf("MERGE")) {
                     c = parseMerge();
@@ -403,6 +412,8 @@ public class Parser {
                     c = parseShutdown();
                 } else if (readIf("SHOW")) {
                     c = parseShow();
+                } else if (readIf("SNAPSHOT")) {
+                    c = parseSnapshot();
                 }
                 break;
             case 'T':
@@ -481,6 +492,9 @@ public class Parser {
         BackupCommand command = new BackupCommand(session);
         read("TO");
         command.setFileName(readExpression());
+        if (readIf("INCREMENTAL")) {
+            command.setIncremental(true);
+        }
         return command;
     }
 
@@ -922,6 +936,72 @@ public class Parser {
         return command;
     }
 
+    private LoadData parseLoadData() throws SQLException {
+        LoadData command = new LoadData(session);
+        currentPrepared = command;
+        read("DATA");
+        read("INFILE");
+        command.setFileNameExpr(readExpression());
+        read("INTO");
+        read("TABLE");
+        Table table = readTableOrView();
+        command.setTable(table);
+        if (readIf("(")) {
+            command.setColumns(parseColumnList(table));
+        }
+        if (readIf("FIELDS")) {
+            read("TERMINATED");
+            read("BY");
+            String separator = readString();
+            if ("\\t".equals(separator)) {
+                separator = "\t";
+            }
+            if (separator.length() != 1) {
+                throw Message.getInvalidValueException(separator, "FIELDS TERMINATED BY");
+            }
+            command.setFieldSeparator(separator.charAt(0));
+        }
+        if (readIf("CHARSET")) {
+            command.setCharset(readString());
+        }
+        if (readIf("PARALLEL")) {
+            command.setThreadCount(getPositiveInt());
+        }
+        return command;
+    }
+
+    private LoadData parseCopy() throws SQLException {
+        LoadData command = new LoadData(session);
+        currentPrepared = command;
+        Table table = readTableOrView();
+        command.setTable(table);
+        if (readIf("(")) {
+            command.setColumns(parseColumnList(table));
+        }
+        read("FROM");
+        read("STDIN");
+        command.setCopyFormat(true);
+        readIf("WITH");
+        while (true) {
+            if (readIf("DELIMITER")) {
+                readIf("AS");
+                String separator = readString();
+                if (separator.length() != 1) {
+                    throw Message.getInvalidValueException(separator, "DELIMITER");
+                }
+                command.setFieldSeparator(separator.charAt(0));
+            } else if (readIf("NULL")) {
+                readIf("AS");
+                command.setNullString(readString());
+            } else if (readIf("ENCODING")) {
+                command.setCharset(readString());
+            } else {
+                break;
+            }
+        }
+        return command;
+    }
+
     private TableFilter readTableFilter(boolean fromOuter) throws SQLException {
         Table table;
         String alias = null;
@@ -3478,7 +3558,7 @@ public class Parser {
         } else if (readIf("AGGREGATE")) {
             return parseCreateAggregate(force);
         } else {
-            boolean hash = false, primaryKey = false, unique = false;
+            boolean hash = false, primaryKey = false, unique = false, bitmap = false;
             String indexName = null;
             Schema oldSchema = null;
             boolean ifNotExists = false;
@@ -3499,6 +3579,8 @@ public class Parser {
                 }
                 if (readIf("HASH")) {
                     hash = true;
+                } else if (!unique && readIf("BITMAP")) {
+                    bitmap = true;
                 }
                 if (readIf("INDEX")) {
                     if (!isToken("ON")) {
@@ -3516,6 +3598,7 @@ public class Parser {
             CreateIndex command = new CreateIndex(session, getSchema());
             command.setIfNotExists(ifNotExists);
             command.setHash(hash);
+            command.setBitmap(bitmap);
             command.setPrimaryKey(primaryKey);
             command.setTableName(tableName);
             command.setUnique(unique);
@@ -3605,6 +3688,10 @@ public class Parser {
         } else {
             command.setAuthorization(session.getUser().getName());
         }
+        if (readIf("CLONE")) {
+            read("OF");
+            command.setSource(database.getSchema(readUniqueIdentifier()));
+        }
         return command;
     }
 
@@ -3986,6 +4073,12 @@ public class Parser {
             Set command = new Set(session, SetTypes.MVCC);
             command.setInt(value ? 1 : 0);
             return command;
+        } else if (readIf("DEFER_INDEX_MAINTENANCE")) {
+            readIfEqualOrTo();
+            boolean value = readBooleanSetting();
+            Set command = new Set(session, SetTypes.DEFER_INDEX_MAINTENANCE);
+            command.setInt(value ? 1 : 0);
+            return command;
         } else if (readIf("EXCLUSIVE")) {
             readIfEqualOrTo();
             boolean value = readBooleanSetting();
@@ -4106,6 +4199,10 @@ public class Parser {
             readIfEqualOrTo();
             read();
             return new NoOperation(session);
+        } else if (readIf("COMPRESS_TRANSFER")) {
+            readIfEqualOrTo();
+            read();
+            return new NoOperation(session);
         } else if (readIf("ASSERT")) {
             readIfEqualOrTo();
             read();
@@ -4216,6 +4313,30 @@ public class Parser {
         return command;
     }
 
+    private ScriptCommand parseSnapshot() throws SQLException {
+        ScriptCommand command = new ScriptCommand(session);
+        command.setData(true);
+        command.setPasswords(true);
+        command.setSettings(true);
+        command.setBinary(true);
+        read("TO");
+        parseScriptFile(command);
+        return command;
+    }
+
+    private void parseScriptFile(ScriptCommand command) throws SQLException {
+        command.setFileNameExpr(readExpression());
+        if (readIf("COMPRESSION")) {
+            command.setCompressionAlgorithm(readUniqueIdentifier());
+        }
+        if (readIf("CIPHER")) {
+            command.setCipher(readUniqueIdentifier());
+            if (readIf("PASSWORD")) {
+                command.setPassword(readString().toCharArray());
+            }
+        }
+    }
+
     private ScriptCommand parseScript() throws SQLException {
         ScriptCommand command = new ScriptCommand(session);
         boolean data = true, passwords = true, settings = true, dropTables = false, simple = false;
@@ -4238,22 +4359,19 @@ public class Parser {
             long blockSize = readLong();
             command.setLobBlockSize(blockSize);
         }
+        boolean binary = readIf("BINARY");
         command.setData(data);
         command.setPasswords(passwords);
         command.setSettings(settings);
         command.setDrop(dropTables);
         command.setSimple(simple);
-        if (readIf("TO")) {
-            command.setFileNameExpr(readExpression());
-            if (readIf("COMPRESSION")) {
-                command.setCompressionAlgorithm(readUniqueIdentifier());
-            }
-            if (readIf("CIPHER")) {
-                command.setCipher(readUniqueIdentifier());
-                if (readIf("PASSWORD")) {
-                    command.setPassword(readString().toCharArray());
-                }
-            }
+        command.setBinary(binary);
+        if (binary) {
+            // the binary format is only supported for files
+            read("TO");
+            parseScriptFile(command);
+        } else if (readIf("TO")) {
+            parseScriptFile(command);
         }
         return command;
     }
@@ -4621,7 +4739,7 @@ public class Parser {
         return command;
     }
 
-    private CreateTable parseCreateTable(boolean temp, boolean globalTemp, boolean persistIndexes) throws SQLException {
+    private Prepared parseCreateTable(boolean temp, boolean globalTemp, boolean persistIndexes) throws SQLException {
         boolean ifNotExists = readIfNoExists();
         String tableName = readIdentifierWithSchema();
         if (temp && globalTemp && "SESSION".equals(schemaName)) {
@@ -4631,6 +4749,14 @@ public class Parser {
             globalTemp = false;
         }
         Schema schema = getSchema();
+        if (!temp && readIf("CLONE")) {
+            read("OF");
+            CreateTableClone command = new CreateTableClone(session, schema);
+            command.setIfNotExists(ifNotExists);
+            command.setTableName(tableName);
+            command.setSource(readTableOrView());
+            return command;
+        }
         CreateTable command = new CreateTable(session, schema);
         command.setPersistIndexes(persistIndexes);
         command.setTemporary(temp);
@@ -166,6 +166,16 @@ public abstract class Prepared {
         this.command = command;
     }
 
+    /**
+     * Check if the statement can be cached and re-used when the same SQL
+     * statement is prepared again in this session.
+     *
+     * @return true if it can
+     */
+    public boolean isCacheable() {
+        return false;
+    }
+
     /**
      * Check if this object is a query.
      *
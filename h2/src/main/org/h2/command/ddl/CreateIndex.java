@@ -28,7 +28,7 @@ public class CreateIndex extends SchemaCommand {
     private String tableName;
     private String indexName;
     private IndexColumn[] indexColumns;
-    private boolean primaryKey, unique, hash;
+    private boolean primaryKey, unique, hash, bitmap;
     private boolean ifNotExists;
     private String comment;
 
@@ -84,6 +84,11 @@ public class CreateIndex extends SchemaCommand {
             indexType = IndexType.createPrimaryKey(persistent, hash);
         } else if (unique) {
             indexType = IndexType.createUnique(persistent, hash);
+        } else if (bitmap) {
+            if (indexColumns.length != 1) {
+                throw Message.getUnsupportedException("BITMAP INDEX with multiple columns");
+            }
+            indexType = IndexType.createBitmap(persistent);
         } else {
             indexType = IndexType.createNonUnique(persistent, hash);
         }
@@ -104,6 +109,10 @@ public class CreateIndex extends SchemaCommand {
         this.hash = b;
     }
 
+    public void setBitmap(boolean b) {
+        this.bitmap = b;
+    }
+
     public void setComment(String comment) {
         this.comment = comment;
     }
@@ -7,6 +7,7 @@
 package org.h2.command.ddl;
 
 import java.sql.SQLException;
+import java.util.HashMap;
 
 import org.h2.constant.ErrorCode;
 import org.h2.engine.Database;
@@ -14,6 +15,8 @@ import org.h2.engine.Session;
 import org.h2.engine.User;
 import org.h2.message.Message;
 import org.h2.schema.Schema;
+import org.h2.table.Table;
+import org.h2.table.TableData;
 
 /**
  * This class represents the statement
@@ -24,6 +27,7 @@ public class CreateSchema extends DefineCommand {
     private String schemaName;
     private String authorization;
     private boolean ifNotExists;
+    private Schema source;
 
     public CreateSchema(Session session) {
         super(session);
@@ -48,9 +52,43 @@ public class CreateSchema extends DefineCommand {
         int id = getObjectId(true, true);
         Schema schema = new Schema(db, id, schemaName, user, false);
         db.addDatabaseObject(session, schema);
+        if (source != null) {
+            try {
+                cloneTables(schema);
+            } catch (SQLException e) {
+                db.checkPowerOff();
+                db.removeDatabaseObject(session, schema);
+                throw e;
+            }
+        }
         return 0;
     }
 
+    /**
+     * Clone all tables of the source schema, including the data, indexes,
+     * constraints and triggers. Referential constraints between the cloned
+     * tables reference the new tables.
+     *
+     * @param schema the new schema
+     */
+    private void cloneTables(Schema schema) throws SQLException {
+        HashMap<Table, Table> clones = new HashMap<Table, Table>();
+        for (Table t : source.getAllTablesAndViews()) {
+            if (Table.TABLE.equals(t.getTableType()) && !t.isTemporary()) {
+                TableData table = CreateTableClone.createTable(session, schema, t.getName(), t);
+                CreateTableClone.copyData(session, t, table);
+                clones.put(t, table);
+            }
+        }
+        for (Table t : clones.keySet()) {
+            CreateTableClone.createChildren(session, t, clones.get(t), clones);
+        }
+    }
+
+    public void setSource(Schema source) {
+        this.source = source;
+    }
+
     public void setSchemaName(String name) {
         this.schemaName = name;
     }
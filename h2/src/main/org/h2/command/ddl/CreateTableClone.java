@@ -0,0 +1,284 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.ddl;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import org.h2.command.Parser;
+import org.h2.command.Prepared;
+import org.h2.constant.ErrorCode;
+import org.h2.constraint.Constraint;
+import org.h2.constraint.ConstraintReferential;
+import org.h2.engine.Database;
+import org.h2.engine.DbObject;
+import org.h2.engine.Right;
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.index.Cursor;
+import org.h2.index.Index;
+import org.h2.index.PageIndex;
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.schema.Schema;
+import org.h2.schema.Sequence;
+import org.h2.schema.TriggerObject;
+import org.h2.table.Column;
+import org.h2.table.Table;
+import org.h2.table.TableData;
+import org.h2.util.ObjectArray;
+
+/**
+ * This class represents the statement
+ * CREATE TABLE ... CLONE OF
+ */
+public class CreateTableClone extends SchemaCommand {
+
+    private String tableName;
+    private Table source;
+    private boolean ifNotExists;
+
+    public CreateTableClone(Session session, Schema schema) {
+        super(session, schema);
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public void setSource(Table source) {
+        this.source = source;
+    }
+
+    public void setIfNotExists(boolean ifNotExists) {
+        this.ifNotExists = ifNotExists;
+    }
+
+    public int update() throws SQLException {
+        session.commit(true);
+        if (getSchema().findTableOrView(session, tableName) != null) {
+            if (ifNotExists) {
+                return 0;
+            }
+            throw Message.getSQLException(ErrorCode.TABLE_OR_VIEW_ALREADY_EXISTS_1, tableName);
+        }
+        TableData table = createTable(session, getSchema(), tableName, source);
+        try {
+            copyData(session, source, table);
+            HashMap<Table, Table> clones = new HashMap<Table, Table>();
+            clones.put(source, table);
+            createChildren(session, source, table, clones);
+        } catch (SQLException e) {
+            session.getDatabase().checkPowerOff();
+            session.getDatabase().removeSchemaObject(session, table);
+            throw e;
+        }
+        return 0;
+    }
+
+    /**
+     * Create a table with the same columns and primary key as the source
+     * table. Sequences of identity columns are copied, and continue with the
+     * next value of the source sequence.
+     *
+     * @param session the session
+     * @param schema the schema of the new table
+     * @param tableName the name of the new table
+     * @param source the source table
+     * @return the new (empty) table
+     */
+    static TableData createTable(Session session, Schema schema, String tableName, Table source)
+            throws SQLException {
+        if (!Table.TABLE.equals(source.getTableType()) || source.isTemporary()) {
+            throw Message.getUnsupportedException("CLONE OF " + source.getSQL());
+        }
+        session.getUser().checkRight(source, Right.SELECT);
+        Database db = session.getDatabase();
+        Parser parser = new Parser(session);
+        CreateTableData data = new CreateTableData();
+        data.schema = schema;
+        data.tableName = tableName;
+        data.persistData = source.isPersistData();
+        data.persistIndexes = source.isPersistIndexes() && db.isPersistent();
+        data.headPos = Index.EMPTY_HEAD;
+        data.session = session;
+        ObjectArray<Sequence> sequences = ObjectArray.newInstance();
+        for (Column col : source.getColumns()) {
+            Column c = col.getClone();
+            Sequence seq = col.getSequence();
+            if (seq != null && seq.getBelongsToTable()) {
+                c.setSequence(null);
+                c.setDefaultExpression(session, null);
+                c.setAutoIncrement(true, seq.getCurrentValue() + seq.getIncrement(), seq.getIncrement());
+                int objId = db.allocateObjectId(true, true);
+                c.convertAutoIncrementToSequence(session, schema, objId, false);
+                sequences.add(c.getSequence());
+            } else {
+                // the default expression is bound to the source table
+                Expression expr = col.getDefaultExpression();
+                if (expr != null) {
+                    expr = parser.parseExpression(expr.getSQL());
+                    if (col.getComputed()) {
+                        c.setComputedExpression(expr);
+                    } else {
+                        c.setDefaultExpression(session, expr);
+                    }
+                }
+            }
+            data.columns.add(c);
+        }
+        data.id = db.allocateObjectId(true, true);
+        TableData table = schema.createTable(data);
+        table.setComment(source.getComment());
+        db.addSchemaObject(session, table);
+        try {
+            for (Column c : data.columns) {
+                c.prepareExpression(session);
+            }
+            for (Sequence sequence : sequences) {
+                table.addSequence(sequence);
+            }
+            for (DbObject child : source.getChildren()) {
+                if (child instanceof Constraint) {
+                    Constraint c = (Constraint) child;
+                    if (Constraint.PRIMARY_KEY.equals(c.getConstraintType())) {
+                        // created before the data is copied, so that the
+                        // primary key can be used as the row key
+                        addConstraint(session, table, c, table);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            db.checkPowerOff();
+            db.removeSchemaObject(session, table);
+            throw e;
+        }
+        return table;
+    }
+
+    /**
+     * Copy all rows of the source table to the new table. The rows are read
+     * in the order of the scan index and added to the new table directly; the
+     * values are immutable and therefore shared.
+     *
+     * @param session the session
+     * @param source the source table
+     * @param table the new table
+     */
+    static void copyData(Session session, Table source, TableData table) throws SQLException {
+        source.lock(session, false, false);
+        table.lock(session, true, false);
+        Index scan = table.getScanIndex(session);
+        PageIndex pageIndex = scan instanceof PageIndex ? (PageIndex) scan : null;
+        boolean old = session.isUndoLogEnabled();
+        try {
+            session.setUndoLogEnabled(false);
+            if (pageIndex != null) {
+                pageIndex.setSortedInsertMode(true);
+            }
+            int columnCount = table.getColumns().length;
+            Cursor cursor = source.getScanIndex(session).find(session, null, null);
+            while (cursor.next()) {
+                Row row = cursor.get();
+                Row newRow = table.getTemplateRow();
+                for (int i = 0; i < columnCount; i++) {
+                    newRow.setValue(i, row.getValue(i));
+                }
+                table.validateConvertUpdateSequence(session, newRow);
+                table.addRow(session, newRow);
+            }
+        } finally {
+            if (pageIndex != null) {
+                pageIndex.setSortedInsertMode(false);
+            }
+            session.setUndoLogEnabled(old);
+        }
+    }
+
+    /**
+     * Create the indexes, constraints (except the primary key) and triggers
+     * of the new table. Referential constraints that reference a cloned table
+     * reference the clone.
+     *
+     * @param session the session
+     * @param source the source table
+     * @param table the new table
+     * @param clones the map of source tables to cloned tables
+     */
+    static void createChildren(Session session, Table source, Table table, HashMap<Table, Table> clones)
+            throws SQLException {
+        Schema schema = table.getSchema();
+        ObjectArray<TriggerObject> triggers = ObjectArray.newInstance();
+        for (DbObject child : source.getChildren()) {
+            if (child instanceof Index) {
+                Index idx = (Index) child;
+                if (idx.getCreateSQL() == null || idx.getIndexType().getBelongsToConstraint()) {
+                    continue;
+                }
+                String name = schema.getUniqueIndexName(session, table, idx.getName() + "_");
+                try {
+                    execute(session, idx.getCreateSQLForCopy(table, quote(schema, name)));
+                } finally {
+                    schema.freeUniqueName(name);
+                }
+            } else if (child instanceof Constraint) {
+                Constraint c = (Constraint) child;
+                if (Constraint.PRIMARY_KEY.equals(c.getConstraintType())) {
+                    continue;
+                }
+                if (c instanceof ConstraintReferential) {
+                    ConstraintReferential r = (ConstraintReferential) c;
+                    if (r.getTable() != source) {
+                        // the clone of the referencing table (if any)
+                        // creates the constraint
+                        continue;
+                    }
+                    Table refTable = clones.get(r.getRefTable());
+                    addConstraint(session, table, c, refTable == null ? r.getRefTable() : refTable);
+                } else {
+                    addConstraint(session, table, c, null);
+                }
+            } else if (child instanceof TriggerObject) {
+                triggers.add((TriggerObject) child);
+            }
+        }
+        for (TriggerObject trigger : triggers) {
+            String name = table.getName() + "_" + trigger.getName();
+            for (int i = 1; schema.findTrigger(name) != null; i++) {
+                name = table.getName() + "_" + trigger.getName() + "_" + i;
+            }
+            execute(session, trigger.getCreateSQLForCopy(table, quote(schema, name)));
+        }
+    }
+
+    private static void addConstraint(Session session, Table table, Constraint c, Table refTable)
+            throws SQLException {
+        Schema schema = table.getSchema();
+        String name = schema.getUniqueConstraintName(session, table);
+        try {
+            String quotedName = quote(schema, name);
+            String sql;
+            if (c instanceof ConstraintReferential) {
+                sql = ((ConstraintReferential) c).getCreateSQLForCopy(table, refTable, quotedName, false);
+            } else {
+                sql = c.getCreateSQLForCopy(table, quotedName);
+            }
+            execute(session, sql);
+        } finally {
+            schema.freeUniqueName(name);
+        }
+    }
+
+    private static String quote(Schema schema, String name) {
+        return schema.getSQL() + "." + Parser.quoteIdentifier(name);
+    }
+
+    private static void execute(Session session, String sql) throws SQLException {
+        Prepared command = session.prepare(sql);
+        command.update();
+    }
+
+}
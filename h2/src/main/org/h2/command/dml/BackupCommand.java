@@ -6,6 +6,7 @@
  */
 package org.h2.command.dml;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -26,6 +27,7 @@ import org.h2.message.Message;
 import org.h2.result.ResultInterface;
 import org.h2.store.DiskFile;
 import org.h2.store.FileLister;
+import org.h2.store.PageChangeMap;
 import org.h2.store.PageStore;
 import org.h2.util.FileUtils;
 import org.h2.util.IOUtils;
@@ -38,6 +40,7 @@ import org.h2.util.ObjectArray;
 public class BackupCommand extends Prepared {
 
     private Expression fileNameExpr;
+    private boolean incremental;
 
     public BackupCommand(Session session) {
         super(session);
@@ -47,6 +50,10 @@ public class BackupCommand extends Prepared {
         this.fileNameExpr = fileName;
     }
 
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
     public int update() throws SQLException {
         String name = fileNameExpr.getValue(session).getString();
         session.getUser().checkAdmin();
@@ -59,6 +66,9 @@ public class BackupCommand extends Prepared {
         if (!db.isPersistent()) {
             throw Message.getSQLException(ErrorCode.DATABASE_IS_NOT_PERSISTENT);
         }
+        if (incremental && !db.isPageStoreEnabled()) {
+            throw Message.getUnsupportedException("BACKUP INCREMENTAL");
+        }
         try {
             String name = db.getName();
             name = FileUtils.getFileName(name);
@@ -71,7 +81,12 @@ public class BackupCommand extends Prepared {
                 String fn;
                 if (db.isPageStoreEnabled()) {
                     fn = db.getName() + Constants.SUFFIX_PAGE_FILE;
-                    backupPageStore(out, fn, db.getPageStore());
+                    if (incremental) {
+                        backupPageStoreIncremental(out, db.getName() + Constants.SUFFIX_INCREMENTAL_FILE,
+                                db.getPageStore());
+                    } else {
+                        backupPageStore(out, fn, db.getPageStore());
+                    }
                 } else {
                     fn = db.getName() + Constants.SUFFIX_DATA_FILE;
                     backupDiskFile(out, fn, db.getDataFile());
@@ -117,6 +132,7 @@ public class BackupCommand extends Prepared {
         out.putNextEntry(new ZipEntry(fileName));
         int max = store.getPageCount();
         int pos = 0;
+        store.startBackup();
         while (true) {
             pos = store.copyDirect(pos, out);
             if (pos < 0) {
@@ -124,6 +140,34 @@ public class BackupCommand extends Prepared {
             }
             db.setProgress(DatabaseEventListener.STATE_BACKUP_FILE, fileName, pos, max);
         }
+        store.endBackup();
+        out.closeEntry();
+    }
+
+    /**
+     * Write the pages that were changed since the last backup. If it is not
+     * known which pages were changed, all pages are written.
+     */
+    private void backupPageStoreIncremental(ZipOutputStream out, String fileName, PageStore store)
+            throws SQLException, IOException {
+        Database db = session.getDatabase();
+        fileName = FileUtils.getFileName(fileName);
+        out.putNextEntry(new ZipEntry(fileName));
+        DataOutputStream data = new DataOutputStream(out);
+        int max = store.getPageCount();
+        int minPageCount = store.startBackup();
+        boolean all = minPageCount < 0;
+        PageChangeMap.writeIncrementalHeader(data, store.getPageSize(), Math.max(0, minPageCount));
+        int pos = 0;
+        while (true) {
+            pos = store.copyChangedDirect(pos, data, all);
+            if (pos < 0) {
+                break;
+            }
+            db.setProgress(DatabaseEventListener.STATE_BACKUP_FILE, fileName, pos, max);
+        }
+        PageChangeMap.writeIncrementalEnd(data, store.endBackup());
+        data.flush();
         out.closeEntry();
     }
 
@@ -108,6 +108,10 @@ public class Delete extends Prepared {
         return true;
     }
 
+    public boolean isCacheable() {
+        return true;
+    }
+
     public ResultInterface queryMeta() {
         return null;
     }
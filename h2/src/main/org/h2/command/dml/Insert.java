@@ -7,22 +7,34 @@
 package org.h2.command.dml;
 
 import java.sql.SQLException;
+import java.util.HashSet;
 import org.h2.api.Trigger;
 import org.h2.command.Command;
 import org.h2.command.Prepared;
 import org.h2.constant.ErrorCode;
 import org.h2.engine.Database;
+import org.h2.engine.DbObject;
+import org.h2.engine.FunctionAlias;
 import org.h2.engine.Right;
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
+import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.Parameter;
+import org.h2.index.Index;
+import org.h2.index.PageDataIndex;
 import org.h2.index.PageIndex;
 import org.h2.log.UndoLogRecord;
 import org.h2.message.Message;
 import org.h2.result.ResultInterface;
+import org.h2.result.ResultTarget;
 import org.h2.result.Row;
+import org.h2.schema.Sequence;
 import org.h2.table.Column;
+import org.h2.table.FunctionTable;
 import org.h2.table.Table;
+import org.h2.table.TableLink;
+import org.h2.table.TableView;
+import org.h2.util.New;
 import org.h2.util.ObjectArray;
 import org.h2.util.StatementBuilder;
 import org.h2.value.Value;
@@ -31,13 +43,14 @@ import org.h2.value.Value;
  * This class represents the statement
  * INSERT
  */
-public class Insert extends Prepared {
+public class Insert extends Prepared implements ResultTarget {
 
     private Table table;
     private Column[] columns;
     private ObjectArray<Expression[]> list = ObjectArray.newInstance();
     private Query query;
     private boolean sortedInsertMode;
+    private int rowNumber;
 
     public Insert(Session session) {
         super(session);
@@ -74,26 +87,45 @@ public class Insert extends Prepared {
     public int update() throws SQLException {
         Database db = session.getDatabase();
         PageIndex index = null;
-        if (sortedInsertMode && db.isPageStoreEnabled() && db.isPersistent()) {
+        if ((sortedInsertMode || isAppend()) && db.isPageStoreEnabled() && db.isPersistent()) {
             index = (PageIndex) table.getScanIndex(session);
             index.setSortedInsertMode(true);
         }
         try {
             return insertRows();
         } finally {
+            session.releaseSequenceValues();
             if (index != null) {
                 index.setSortedInsertMode(false);
             }
         }
     }
 
+    /**
+     * Check if the rows of the query are appended to an empty table. This is
+     * the case if the row keys are generated, so that the pages can be filled
+     * completely.
+     *
+     * @return true if they are
+     */
+    private boolean isAppend() throws SQLException {
+        if (query == null) {
+            return false;
+        }
+        Index scan = table.getScanIndex(session);
+        if (!(scan instanceof PageDataIndex) || ((PageDataIndex) scan).getMainIndexColumn() != -1) {
+            return false;
+        }
+        return table.getRowCount(session) == 0;
+    }
+
     private int insertRows() throws SQLException {
-        int count;
         session.getUser().checkRight(table, Right.INSERT);
         setCurrentRowNumber(0);
         table.fire(session, Trigger.INSERT, true);
+        rowNumber = 0;
         if (list.size() > 0) {
-            count = 0;
+            reserveSequenceValues(list.size());
             for (int x = 0; x < list.size(); x++) {
                 Expression[] expr = list.get(x);
                 Row newRow = table.getTemplateRow();
@@ -119,37 +151,114 @@ public class Insert extends Prepared {
                 table.addRow(session, newRow);
                 session.log(table, UndoLogRecord.INSERT, newRow);
                 table.fireAfterRow(session, null, newRow);
-                count++;
+                rowNumber++;
             }
         } else {
-            ResultInterface rows = query.query(0);
-            count = 0;
-            table.lock(session, true, false);
-            while (rows.next()) {
-                count++;
-                Value[] r = rows.currentRow();
-                Row newRow = table.getTemplateRow();
-                setCurrentRowNumber(count);
-                for (int j = 0; j < columns.length; j++) {
-                    Column c = columns[j];
-                    int index = c.getColumnId();
-                    try {
-                        Value v = c.convert(r[j]);
-                        newRow.setValue(index, v);
-                    } catch (SQLException ex) {
-                        throw setRow(ex, count, getSQL(r));
-                    }
+            ResultInterface rows;
+            if (isStreamable()) {
+                // the rows are added while the query runs
+                table.lock(session, true, false);
+                rows = query.query(0, this);
+            } else {
+                rows = query.query(0);
+                table.lock(session, true, false);
+                reserveSequenceValues(rows.getRowCount());
+            }
+            if (rows != null) {
+                while (rows.next()) {
+                    addRow(rows.currentRow());
                 }
-                table.validateConvertUpdateSequence(session, newRow);
-                table.fireBeforeRow(session, null, newRow);
-                table.addRow(session, newRow);
-                session.log(table, UndoLogRecord.INSERT, newRow);
-                table.fireAfterRow(session, null, newRow);
+                rows.close();
             }
-            rows.close();
         }
         table.fire(session, Trigger.INSERT, false);
-        return count;
+        return rowNumber;
+    }
+
+    /**
+     * Reserve the values of the auto-increment columns for all rows, so that
+     * the sequences are only accessed once.
+     *
+     * @param rowCount the number of rows
+     */
+    private void reserveSequenceValues(int rowCount) throws SQLException {
+        for (Column c : table.getColumns()) {
+            Sequence sequence = c.getSequence();
+            if (sequence == null) {
+                continue;
+            }
+            boolean allDefault = true;
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] == c) {
+                    // explicit values may update the sequence,
+                    // so the values can only be reserved if there are none
+                    for (Expression[] expr : list) {
+                        if (expr[i] != null) {
+                            allDefault = false;
+                        }
+                    }
+                    if (list.size() == 0) {
+                        allDefault = false;
+                    }
+                }
+            }
+            if (allDefault) {
+                session.reserveSequenceValues(sequence, rowCount);
+            }
+        }
+    }
+
+    /**
+     * Check if the rows of the query can be inserted while the query runs.
+     * This is only possible if the query can not see the inserted rows: the
+     * query must not read from the target table (directly or using a view,
+     * a function, or a linked table), and the target table must not have
+     * triggers.
+     *
+     * @return true if it is
+     */
+    private boolean isStreamable() {
+        if (table.hasTriggers()) {
+            return false;
+        }
+        HashSet<DbObject> dependencies = New.hashSet();
+        ExpressionVisitor visitor = ExpressionVisitor.get(ExpressionVisitor.GET_DEPENDENCIES);
+        visitor.setDependencies(dependencies);
+        query.isEverything(visitor);
+        for (DbObject obj : dependencies) {
+            if (obj == table || obj instanceof FunctionAlias || obj instanceof TableView || obj instanceof TableLink) {
+                return false;
+            }
+            if (obj instanceof FunctionTable && ((FunctionTable) obj).isBufferResultSetToLocalTemp()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void addRow(Value[] values) throws SQLException {
+        rowNumber++;
+        Row newRow = table.getTemplateRow();
+        setCurrentRowNumber(rowNumber);
+        for (int j = 0; j < columns.length; j++) {
+            Column c = columns[j];
+            int index = c.getColumnId();
+            try {
+                Value v = c.convert(values[j]);
+                newRow.setValue(index, v);
+            } catch (SQLException ex) {
+                throw setRow(ex, rowNumber, getSQL(values));
+            }
+        }
+        table.validateConvertUpdateSequence(session, newRow);
+        table.fireBeforeRow(session, null, newRow);
+        table.addRow(session, newRow);
+        session.log(table, UndoLogRecord.INSERT, newRow);
+        table.fireAfterRow(session, null, newRow);
+    }
+
+    public int getRowCount() {
+        return rowNumber;
     }
 
     public String getPlanSQL() {
@@ -223,6 +332,10 @@ public class Insert extends Prepared {
         return true;
     }
 
+    public boolean isCacheable() {
+        return true;
+    }
+
     public ResultInterface queryMeta() {
         return null;
     }
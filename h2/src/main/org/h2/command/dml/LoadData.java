@@ -0,0 +1,605 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import org.h2.api.Trigger;
+import org.h2.command.Prepared;
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Constants;
+import org.h2.engine.Database;
+import org.h2.engine.Right;
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.index.Index;
+import org.h2.index.PageIndex;
+import org.h2.log.UndoLogRecord;
+import org.h2.message.Message;
+import org.h2.result.ResultInterface;
+import org.h2.result.Row;
+import org.h2.table.Column;
+import org.h2.table.Table;
+import org.h2.util.FileUtils;
+import org.h2.util.IOUtils;
+import org.h2.util.ObjectArray;
+import org.h2.value.Value;
+import org.h2.value.ValueDouble;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueString;
+
+/**
+ * This class represents the statements
+ * LOAD DATA and COPY ... FROM STDIN
+ */
+public class LoadData extends Prepared {
+
+    /**
+     * The number of bytes read at once. Each block is parsed by one thread.
+     */
+    private static final int BLOCK_SIZE = 256 * 1024;
+
+    private static final long NOT_A_NUMBER = Long.MIN_VALUE;
+
+    private static final double[] POWERS_OF_TEN = new double[16];
+
+    private Expression fileNameExpr;
+    private Table table;
+    private Column[] columns;
+    private char fieldSeparator = '\t';
+    private String charset = Constants.UTF8;
+    private int threadCount = 1;
+    private boolean copyFormat;
+    private String nullString = "\\N";
+    private byte[] nullBytes;
+
+    private byte[] rest = new byte[0];
+    private int lineCount;
+
+    static {
+        double x = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = x;
+            x *= 10;
+        }
+    }
+
+    public LoadData(Session session) {
+        super(session);
+    }
+
+    public void setFileNameExpr(Expression fileNameExpr) {
+        this.fileNameExpr = fileNameExpr;
+    }
+
+    public void setTable(Table table) {
+        this.table = table;
+    }
+
+    public void setColumns(Column[] columns) {
+        this.columns = columns;
+    }
+
+    public void setFieldSeparator(char fieldSeparator) {
+        this.fieldSeparator = fieldSeparator;
+    }
+
+    public void setCharset(String charset) {
+        this.charset = charset;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Read the PostgreSQL COPY text format from the copy input stream of the
+     * session, instead of reading a file. In this format, backslash escapes
+     * are decoded, empty fields are empty strings, and NULL is written as \N
+     * (see setNullString).
+     *
+     * @param copyFormat true for the COPY text format
+     */
+    public void setCopyFormat(boolean copyFormat) {
+        this.copyFormat = copyFormat;
+    }
+
+    public void setNullString(String nullString) {
+        this.nullString = nullString;
+    }
+
+    /**
+     * Get the number of columns of each line.
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public void prepare() throws SQLException {
+        if (columns == null) {
+            columns = table.getColumns();
+        }
+        if (fieldSeparator == '\n' || fieldSeparator == '\r' || fieldSeparator >= 128
+                || (copyFormat && fieldSeparator == '\\')) {
+            throw Message.getInvalidValueException("" + fieldSeparator, "FIELDS TERMINATED BY");
+        }
+        if (threadCount < 1) {
+            throw Message.getInvalidValueException("" + threadCount, "PARALLEL");
+        }
+        checkCharset();
+    }
+
+    /**
+     * Check if the character set is supported. The lines and fields are split
+     * before the bytes are converted to characters, so only character sets
+     * where each ASCII character is encoded as the same single byte (for
+     * example UTF-8 and ISO-8859-1) are supported.
+     */
+    private void checkCharset() throws SQLException {
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        byte[] encoded;
+        try {
+            encoded = new String(ascii, "ISO-8859-1").getBytes(charset);
+        } catch (UnsupportedEncodingException e) {
+            throw Message.convert(e);
+        }
+        if (!Arrays.equals(ascii, encoded)) {
+            throw Message.getInvalidValueException(charset, "CHARSET");
+        }
+    }
+
+    public int update() throws SQLException {
+        String fileName;
+        if (copyFormat) {
+            fileName = "STDIN";
+            if (session.getCopyInput() == null) {
+                throw Message.getSQLException(ErrorCode.FEATURE_NOT_SUPPORTED_1, "COPY FROM STDIN");
+            }
+        } else {
+            // only the admin may read files on the server
+            session.getUser().checkAdmin();
+            fileName = fileNameExpr.optimize(session).getValue(session).getString();
+        }
+        session.getUser().checkRight(table, Right.INSERT);
+        try {
+            nullBytes = nullString.getBytes(charset);
+        } catch (UnsupportedEncodingException e) {
+            throw Message.convert(e);
+        }
+        Database db = session.getDatabase();
+        PageIndex pageIndex = null;
+        Index scan = table.getScanIndex(session);
+        if (db.isPageStoreEnabled() && db.isPersistent() && scan instanceof PageIndex) {
+            pageIndex = (PageIndex) scan;
+        }
+        setCurrentRowNumber(0);
+        table.fire(session, Trigger.INSERT, true);
+        table.lock(session, true, false);
+        InputStream in = null;
+        int count = 0;
+        try {
+            if (copyFormat) {
+                in = session.getCopyInput();
+            } else {
+                in = FileUtils.openFileInputStream(fileName);
+            }
+            if (pageIndex != null) {
+                // rows are appended, so pages can be filled completely
+                pageIndex.setSortedInsertMode(true);
+            }
+            rest = new byte[0];
+            lineCount = 0;
+            while (true) {
+                ObjectArray<Block> blocks = readBlocks(in);
+                if (blocks.size() == 0) {
+                    break;
+                }
+                parse(blocks);
+                for (Block b : blocks) {
+                    count = insertRows(b, count);
+                }
+            }
+        } catch (IOException e) {
+            throw Message.convertIOException(e, fileName);
+        } finally {
+            if (pageIndex != null) {
+                pageIndex.setSortedInsertMode(false);
+            }
+            if (!copyFormat) {
+                // the copy input is closed by the caller
+                IOUtils.closeSilently(in);
+            }
+            rest = null;
+        }
+        table.fire(session, Trigger.INSERT, false);
+        return count;
+    }
+
+    private ObjectArray<Block> readBlocks(InputStream in) throws IOException {
+        ObjectArray<Block> blocks = ObjectArray.newInstance();
+        while (blocks.size() < threadCount) {
+            Block b = readBlock(in);
+            if (b == null) {
+                break;
+            }
+            blocks.add(b);
+        }
+        return blocks;
+    }
+
+    /**
+     * Read the next block of complete lines. The incomplete last line is kept
+     * for the next block.
+     *
+     * @param in the input stream
+     * @return the block, or null if the end of the file was reached
+     */
+    private Block readBlock(InputStream in) throws IOException {
+        byte[] data = new byte[Math.max(BLOCK_SIZE, rest.length * 2)];
+        int len = rest.length;
+        System.arraycopy(rest, 0, data, 0, len);
+        while (true) {
+            int l = IOUtils.readFully(in, data, len, data.length - len);
+            len += l;
+            if (len < data.length) {
+                // end of file
+                rest = new byte[0];
+                if (len == 0) {
+                    return null;
+                }
+                return new Block(data, len);
+            }
+            int end = len - 1;
+            while (end >= 0 && data[end] != '\n') {
+                end--;
+            }
+            if (end >= 0) {
+                end++;
+                rest = new byte[len - end];
+                System.arraycopy(data, end, rest, 0, rest.length);
+                return new Block(data, end);
+            }
+            // the line is longer than the buffer
+            byte[] d = new byte[data.length * 2];
+            System.arraycopy(data, 0, d, 0, len);
+            data = d;
+        }
+    }
+
+    private void parse(ObjectArray<Block> blocks) throws SQLException {
+        int size = blocks.size();
+        Thread[] threads = new Thread[size - 1];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(blocks.get(i), "H2 Load Data");
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        blocks.get(size - 1).run();
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                throw Message.convert(e);
+            }
+        }
+    }
+
+    private int insertRows(Block b, int count) throws SQLException {
+        if (b.exception != null) {
+            int line = lineCount + b.errorLine + 1;
+            throw setRow(b.exception, line, getString(b.data, b.errorStart, b.errorEnd));
+        }
+        for (Value[] values : b.rows) {
+            Row newRow = table.getTemplateRow();
+            for (int i = 0; i < columns.length; i++) {
+                Value v = values[i];
+                if (v != null) {
+                    newRow.setValue(columns[i].getColumnId(), v);
+                }
+            }
+            setCurrentRowNumber(++count);
+            table.validateConvertUpdateSequence(session, newRow);
+            table.fireBeforeRow(session, null, newRow);
+            table.addRow(session, newRow);
+            session.log(table, UndoLogRecord.INSERT, newRow);
+            table.fireAfterRow(session, null, newRow);
+        }
+        lineCount += b.lineCount;
+        return count;
+    }
+
+    /**
+     * Parse one line of the file.
+     *
+     * @param d the data
+     * @param start the first byte of the line
+     * @param end the end of the line (without line separator)
+     * @return the values
+     */
+    Value[] parseLine(byte[] d, int start, int end) throws SQLException {
+        Value[] values = new Value[columns.length];
+        int col = 0;
+        for (int i = start, fieldStart = start;; i++) {
+            if (copyFormat && i < end && d[i] == '\\') {
+                // an escaped separator does not end the field
+                if (++i == end) {
+                    throw Message.getSQLException(ErrorCode.DATA_CONVERSION_ERROR_1, getString(d, start, end));
+                }
+                continue;
+            }
+            if (i == end || d[i] == fieldSeparator) {
+                if (col >= columns.length) {
+                    throw Message.getSQLException(ErrorCode.COLUMN_COUNT_DOES_NOT_MATCH);
+                }
+                values[col] = readValue(columns[col], d, fieldStart, i);
+                col++;
+                if (i == end) {
+                    break;
+                }
+                fieldStart = i + 1;
+            }
+        }
+        return values;
+    }
+
+    private Value readValue(Column column, byte[] d, int start, int end) throws SQLException {
+        if (copyFormat) {
+            if (isNull(d, start, end)) {
+                return ValueNull.INSTANCE;
+            }
+            for (int i = start; i < end; i++) {
+                if (d[i] == '\\') {
+                    return column.convert(ValueString.get(unescape(getString(d, start, end))));
+                }
+            }
+            if (start == end) {
+                return column.convert(ValueString.get(""));
+            }
+        } else if (start == end) {
+            return ValueNull.INSTANCE;
+        }
+        switch (column.getType()) {
+        case Value.INT: {
+            long x = parseLong(d, start, end);
+            if (x >= Integer.MIN_VALUE && x <= Integer.MAX_VALUE) {
+                return ValueInt.get((int) x);
+            }
+            break;
+        }
+        case Value.LONG: {
+            long x = parseLong(d, start, end);
+            if (x != NOT_A_NUMBER) {
+                return ValueLong.get(x);
+            }
+            break;
+        }
+        case Value.DOUBLE: {
+            double x = parseDouble(d, start, end);
+            if (!Double.isNaN(x)) {
+                return ValueDouble.get(x);
+            }
+            break;
+        }
+        default:
+        }
+        return column.convert(ValueString.get(getString(d, start, end)));
+    }
+
+    private boolean isNull(byte[] d, int start, int end) {
+        if (end - start != nullBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < nullBytes.length; i++) {
+            if (d[start + i] != nullBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode the backslash escape sequences of the COPY text format.
+     *
+     * @param s the encoded text
+     * @return the decoded text
+     */
+    private static String unescape(String s) {
+        StringBuilder buff = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 >= s.length()) {
+                buff.append(c);
+                continue;
+            }
+            c = s.charAt(++i);
+            switch (c) {
+            case 'b':
+                buff.append('\b');
+                break;
+            case 'f':
+                buff.append('\f');
+                break;
+            case 'n':
+                buff.append('\n');
+                break;
+            case 'r':
+                buff.append('\r');
+                break;
+            case 't':
+                buff.append('\t');
+                break;
+            case 'v':
+                buff.append((char) 11);
+                break;
+            case 'x': {
+                int x = 0, j = i + 1;
+                for (; j < s.length() && j < i + 3 && Character.digit(s.charAt(j), 16) >= 0; j++) {
+                    x = x * 16 + Character.digit(s.charAt(j), 16);
+                }
+                if (j == i + 1) {
+                    buff.append(c);
+                } else {
+                    buff.append((char) x);
+                    i = j - 1;
+                }
+                break;
+            }
+            default:
+                if (c >= '0' && c <= '7') {
+                    int x = 0, j = i;
+                    for (; j < s.length() && j < i + 3 && s.charAt(j) >= '0' && s.charAt(j) <= '7'; j++) {
+                        x = x * 8 + s.charAt(j) - '0';
+                    }
+                    buff.append((char) x);
+                    i = j - 1;
+                } else {
+                    buff.append(c);
+                }
+            }
+        }
+        return buff.toString();
+    }
+
+    private String getString(byte[] d, int start, int end) throws SQLException {
+        try {
+            return new String(d, start, end - start, charset);
+        } catch (UnsupportedEncodingException e) {
+            throw Message.convert(e);
+        }
+    }
+
+    /**
+     * Parse a decimal integer with at most 18 digits.
+     *
+     * @return the value, or NOT_A_NUMBER if the text is not a simple number
+     */
+    private static long parseLong(byte[] d, int start, int end) {
+        int i = start;
+        boolean negative = d[i] == '-';
+        if (negative || d[i] == '+') {
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            return NOT_A_NUMBER;
+        }
+        long x = 0;
+        for (; i < end; i++) {
+            int digit = d[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_A_NUMBER;
+            }
+            x = x * 10 + digit;
+        }
+        return negative ? -x : x;
+    }
+
+    /**
+     * Parse a decimal number without exponent with at most 15 digits. Both
+     * the digits and the power of ten are exact in this case, so that one
+     * division gives the correctly rounded result.
+     *
+     * @return the value, or NaN if the text is not a simple number
+     */
+    private static double parseDouble(byte[] d, int start, int end) {
+        int i = start;
+        boolean negative = d[i] == '-';
+        if (negative || d[i] == '+') {
+            i++;
+        }
+        long x = 0;
+        int digits = 0, scale = -1;
+        for (; i < end; i++) {
+            int ch = d[i];
+            if (ch == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            int digit = ch - '0';
+            if (digit < 0 || digit > 9 || ++digits > 15) {
+                return Double.NaN;
+            }
+            x = x * 10 + digit;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        double v = scale > 0 ? x / POWERS_OF_TEN[scale] : x;
+        return negative ? -v : v;
+    }
+
+    public boolean isTransactional() {
+        return true;
+    }
+
+    public ResultInterface queryMeta() {
+        return null;
+    }
+
+    /**
+     * A block of complete lines. The block is parsed by one thread.
+     */
+    private class Block implements Runnable {
+
+        final byte[] data;
+        final int length;
+        final ObjectArray<Value[]> rows = ObjectArray.newInstance();
+        int lineCount;
+        SQLException exception;
+        int errorLine, errorStart, errorEnd;
+
+        Block(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+
+        public void run() {
+            int pos = 0;
+            while (pos < length) {
+                int lineEnd = pos;
+                while (lineEnd < length && data[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                int end = lineEnd;
+                if (end > pos && data[end - 1] == '\r') {
+                    end--;
+                }
+                if (copyFormat && end - pos == 2 && data[pos] == '\\' && data[pos + 1] == '.') {
+                    // the end of data marker of the COPY format
+                    end = pos;
+                }
+                if (end > pos) {
+                    try {
+                        rows.add(parseLine(data, pos, end));
+                    } catch (Exception e) {
+                        exception = Message.convert(e);
+                        errorLine = lineCount;
+                        errorStart = pos;
+                        errorEnd = end;
+                        return;
+                    }
+                }
+                lineCount++;
+                pos = lineEnd + 1;
+            }
+        }
+
+    }
+
+}
@@ -267,6 +267,10 @@ public class Merge extends Prepared {
         return true;
     }
 
+    public boolean isCacheable() {
+        return true;
+    }
+
     public ResultInterface queryMeta() {
         return null;
     }
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.sql.SQLException;
+import java.util.LinkedList;
+import org.h2.constant.ErrorCode;
+import org.h2.expression.Parameter;
+import org.h2.message.Message;
+import org.h2.result.ResultTarget;
+import org.h2.result.Row;
+import org.h2.util.ObjectArray;
+import org.h2.value.Value;
+
+/**
+ * Evaluates the condition and the column expressions of a flat query using
+ * multiple threads. The rows are read by the thread that runs the query, in
+ * blocks of rows. Each thread uses its own copy of the query, so that the
+ * current row of the table filter and the state of the expressions is not
+ * shared. The rows that match are added to the result in the order they were
+ * read. The threads are kept in a pool and re-used for the following queries.
+ */
+class ParallelSelect {
+
+    /**
+     * The number of rows in a block.
+     */
+    static final int BLOCK_SIZE = 256;
+
+    /**
+     * The minimum (approximate) number of rows of a table to evaluate the rows
+     * in parallel.
+     */
+    static final int MIN_ROW_COUNT = 4 * BLOCK_SIZE;
+
+    /**
+     * The maximum number of buffered entries per thread.
+     */
+    private static final int MAX_BUFFERED = 4;
+
+    /**
+     * The time in milliseconds an idle thread of the pool waits for a new
+     * task before it stops.
+     */
+    private static final int KEEP_ALIVE = 10000;
+
+    /**
+     * The tasks that are not yet run by a thread of the pool.
+     */
+    private static final LinkedList<Runnable> TASKS = new LinkedList<Runnable>();
+
+    private static int idleThreads;
+
+    private final Select select;
+    private final ObjectArray<Parameter> parameters;
+    private final ResultTarget result;
+    private final int columnCount;
+    private final int threadCount;
+    private Select firstCopy;
+
+    /**
+     * The entries that are not added to the result yet, in order.
+     */
+    private final LinkedList<Entry> entries = new LinkedList<Entry>();
+
+    /**
+     * The entries that are not evaluated yet, in order.
+     */
+    private final LinkedList<Entry> queue = new LinkedList<Entry>();
+
+    private int runningThreads;
+    private int startedThreads;
+    private boolean closed;
+
+    /**
+     * Create a new object.
+     *
+     * @param select the query
+     * @param parameters the parameters used in the query, or null
+     * @param copy the first copy of the query
+     * @param result the result
+     * @param columnCount the number of columns
+     * @param threadCount the maximum number of threads
+     */
+    ParallelSelect(Select select, ObjectArray<Parameter> parameters, Select copy, ResultTarget result,
+            int columnCount, int threadCount) {
+        this.select = select;
+        this.parameters = parameters;
+        this.firstCopy = copy;
+        this.result = result;
+        this.columnCount = columnCount;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Add a block of rows. If too many blocks are buffered, the rows of the
+     * oldest block are added to the result.
+     *
+     * @param rows the rows
+     * @param rowCount the number of rows
+     */
+    void add(Row[] rows, int rowCount) throws SQLException {
+        while (entries.size() >= threadCount * MAX_BUFFERED) {
+            addFirst();
+        }
+        Entry e = new Entry();
+        e.rows = rows;
+        e.rowCount = rowCount;
+        synchronized (this) {
+            entries.add(e);
+            queue.add(e);
+            notifyAll();
+            if (runningThreads >= threadCount || queue.size() <= runningThreads) {
+                return;
+            }
+            runningThreads++;
+        }
+        Select copy = firstCopy;
+        if (copy == null) {
+            // the copies are prepared by the thread that runs the query
+            copy = select.getParallelCopy(startedThreads, parameters, columnCount);
+            if (copy == null) {
+                throw Message.throwInternalError(select.getPlanSQL());
+            }
+        }
+        firstCopy = null;
+        startedThreads++;
+        execute(new Worker(copy));
+    }
+
+    /**
+     * Run the task using a thread of the pool. A new thread is started if no
+     * thread is idle.
+     *
+     * @param task the task
+     */
+    private static void execute(Runnable task) {
+        synchronized (TASKS) {
+            TASKS.add(task);
+            if (TASKS.size() <= idleThreads) {
+                TASKS.notify();
+                return;
+            }
+        }
+        Thread t = new Thread(new PoolThread(), "H2 Select");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Add the rows of all buffered blocks to the result.
+     */
+    void flush() throws SQLException {
+        while (entries.size() > 0) {
+            addFirst();
+        }
+    }
+
+    private void addFirst() throws SQLException {
+        Entry e;
+        synchronized (this) {
+            e = entries.getFirst();
+            while (!e.evaluated) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    // ignore
+                }
+            }
+            entries.removeFirst();
+        }
+        if (e.exception != null) {
+            throw e.exception;
+        }
+        for (Value[] row : e.result) {
+            result.addRow(row);
+        }
+    }
+
+    /**
+     * Stop the threads. Rows that are buffered are not added to the result.
+     */
+    synchronized void close() {
+        closed = true;
+        entries.clear();
+        queue.clear();
+        notifyAll();
+    }
+
+    /**
+     * Evaluate the blocks using the given copy of the query, until the
+     * object is closed.
+     *
+     * @param copy the copy of the query
+     */
+    void process(Select copy) {
+        while (true) {
+            Entry e;
+            synchronized (this) {
+                while (!closed && queue.size() == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        // ignore
+                    }
+                }
+                if (closed) {
+                    runningThreads--;
+                    return;
+                }
+                e = queue.removeFirst();
+            }
+            try {
+                ObjectArray<Value[]> list = ObjectArray.newInstance(e.rowCount);
+                for (int i = 0; i < e.rowCount; i++) {
+                    Value[] row = copy.evaluateRow(e.rows[i], columnCount);
+                    if (row != null) {
+                        list.add(row);
+                    }
+                }
+                e.result = list;
+            } catch (Exception ex) {
+                e.exception = Message.convert(ex);
+            } catch (Throwable ex) {
+                e.exception = Message.getSQLException(ErrorCode.GENERAL_ERROR_1, ex, ex.toString());
+            }
+            e.rows = null;
+            synchronized (this) {
+                e.evaluated = true;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * A thread that evaluates blocks of rows.
+     */
+    private class Worker implements Runnable {
+
+        private final Select copy;
+
+        Worker(Select copy) {
+            this.copy = copy;
+        }
+
+        public void run() {
+            process(copy);
+        }
+
+    }
+
+    /**
+     * A thread of the pool. It runs tasks until no new task was added for
+     * some time.
+     */
+    private static class PoolThread implements Runnable {
+
+        public void run() {
+            while (true) {
+                Runnable task;
+                synchronized (TASKS) {
+                    if (TASKS.size() == 0) {
+                        idleThreads++;
+                        try {
+                            TASKS.wait(KEEP_ALIVE);
+                        } catch (InterruptedException e) {
+                            // ignore
+                        }
+                        idleThreads--;
+                        if (TASKS.size() == 0) {
+                            return;
+                        }
+                    }
+                    task = TASKS.removeFirst();
+                }
+                task.run();
+            }
+        }
+
+    }
+
+    /**
+     * A block of rows.
+     */
+    private static class Entry {
+        Row[] rows;
+        int rowCount;
+        ObjectArray<Value[]> result;
+        SQLException exception;
+        boolean evaluated;
+    }
+
+}
@@ -22,6 +22,7 @@ import org.h2.expression.ValueExpression;
 import org.h2.message.Message;
 import org.h2.result.LocalResult;
 import org.h2.result.ResultInterface;
+import org.h2.result.ResultTarget;
 import org.h2.result.SortOrder;
 import org.h2.table.ColumnResolver;
 import org.h2.table.Table;
@@ -67,7 +68,16 @@ public abstract class Query extends Prepared {
      * @param limit the limit as specified in the JDBC method call
      * @return the result
      */
-    protected abstract LocalResult queryWithoutCache(int limit) throws SQLException;
+    /**
+     * Execute the query without checking the cache. If a target is specified,
+     * and the query can write the rows directly to it, the rows are written
+     * to the target and null is returned.
+     *
+     * @param limit the limit as specified in the JDBC method call
+     * @param target the target to write results to, or null
+     * @return the result, or null if the rows were written to the target
+     */
+    protected abstract LocalResult queryWithoutCache(int limit, ResultTarget target) throws SQLException;
 
     /**
      * Initialize the query.
@@ -177,6 +187,20 @@ public abstract class Query extends Prepared {
      */
     public abstract void updateAggregate(Session s) throws SQLException;
 
+    /**
+     * Execute the query, writing the result to the target result. The result
+     * cache is not used. The rows are written to the target while the query
+     * runs, if possible; otherwise the result is returned.
+     *
+     * @param limit the maximum number of rows to return
+     * @param target the target result
+     * @return the result, or null if the rows were written to the target
+     */
+    public LocalResult query(int limit, ResultTarget target) throws SQLException {
+        fireBeforeSelectTriggers();
+        return queryWithoutCache(limit, target);
+    }
+
     /**
      * Call the before triggers on all tables.
      */
@@ -190,6 +214,10 @@ public abstract class Query extends Prepared {
         return true;
     }
 
+    public boolean isCacheable() {
+        return true;
+    }
+
     private boolean sameResultAsLast(Session s, Value[] params, Value[] lastParams, long lastEval)
             throws SQLException {
         Database db = s.getDatabase();
@@ -223,7 +251,7 @@ public abstract class Query extends Prepared {
     public ResultInterface query(int limit) throws SQLException {
         fireBeforeSelectTriggers();
         if (!session.getDatabase().getOptimizeReuseResults()) {
-            return queryWithoutCache(limit);
+            return queryWithoutCache(limit, null);
         }
         Value[] params = getParameterValues();
         long now = session.getDatabase().getModificationDataId();
@@ -240,12 +268,20 @@ public abstract class Query extends Prepared {
         }
         lastParameters = params;
         closeLastResult();
-        lastResult = queryWithoutCache(limit);
+        lastResult = queryWithoutCache(limit, null);
         this.lastEvaluated = now;
         lastLimit = limit;
         return lastResult;
     }
 
+    /**
+     * Forget the last result without closing it. This is required before
+     * the statement is re-used, because the last result may still be read.
+     */
+    public void clearLastResult() {
+        lastResult = null;
+    }
+
     private void closeLastResult() {
         if (lastResult != null) {
             lastResult.close();
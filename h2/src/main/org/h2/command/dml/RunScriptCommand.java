@@ -6,15 +6,19 @@
  */
 package org.h2.command.dml;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.sql.SQLException;
 import org.h2.command.Prepared;
+import org.h2.constant.ErrorCode;
 import org.h2.constant.SysProperties;
 import org.h2.engine.Session;
 import org.h2.message.Message;
 import org.h2.result.ResultInterface;
+import org.h2.table.Table;
+import org.h2.util.MemoryUtils;
 import org.h2.util.ScriptReader;
 
 /**
@@ -34,6 +38,9 @@ public class RunScriptCommand extends ScriptBase {
         int count = 0;
         try {
             openInput();
+            if (binary) {
+                return runBinary();
+            }
             Reader reader = new InputStreamReader(in, charset);
             ScriptReader r = new ScriptReader(reader);
             while (true) {
@@ -53,6 +60,50 @@ public class RunScriptCommand extends ScriptBase {
         return count;
     }
 
+    /**
+     * Run a script in the binary format. The rows are added to the tables
+     * directly, without parsing INSERT statements.
+     *
+     * @return the number of statements and row blocks
+     */
+    private int runBinary() throws IOException, SQLException {
+        DataInputStream dataIn = new DataInputStream(in);
+        ScriptRowReader rowReader = new ScriptRowReader(session, this, SysProperties.SCRIPT_THREADS);
+        try {
+            int count = 0;
+            while (true) {
+                int type = dataIn.readByte();
+                switch (type) {
+                case BINARY_END:
+                    rowReader.flush();
+                    return count;
+                case BINARY_SQL: {
+                    String sql = readString(dataIn);
+                    rowReader.flush();
+                    execute(sql);
+                    break;
+                }
+                case BINARY_ROWS:
+                case BINARY_ROWS_COMPRESSED: {
+                    String schemaName = readString(dataIn);
+                    String tableName = readString(dataIn);
+                    int rowCount = dataIn.readInt();
+                    byte[] bytes = MemoryUtils.newBytes(dataIn.readInt());
+                    dataIn.readFully(bytes);
+                    Table table = session.getDatabase().getSchema(schemaName).getTableOrView(session, tableName);
+                    rowReader.add(table, rowCount, bytes, type == BINARY_ROWS_COMPRESSED);
+                    break;
+                }
+                default:
+                    throw Message.getSQLException(ErrorCode.FILE_CORRUPTED_1, "type: " + type);
+                }
+                count++;
+            }
+        } finally {
+            rowReader.close();
+        }
+    }
+
     private void execute(String sql) throws SQLException {
         try {
             Prepared command = session.prepare(sql);
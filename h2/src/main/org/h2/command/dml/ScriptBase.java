@@ -8,6 +8,8 @@ package org.h2.command.dml;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -28,9 +30,12 @@ import org.h2.store.FileStore;
 import org.h2.store.FileStoreInputStream;
 import org.h2.store.FileStoreOutputStream;
 import org.h2.tools.CompressTool;
+import org.h2.util.ByteUtils;
 import org.h2.util.FileUtils;
 import org.h2.util.IOUtils;
+import org.h2.util.MemoryUtils;
 import org.h2.util.SmallLRUCache;
+import org.h2.util.StringUtils;
 import org.h2.util.TempFileDeleter;
 import org.h2.value.Value;
 
@@ -39,6 +44,32 @@ import org.h2.value.Value;
  */
 public abstract class ScriptBase extends Prepared implements DataHandler {
 
+    /**
+     * The header of a script in the binary format. A script in the SQL format
+     * can not start with a zero byte.
+     */
+    static final byte[] BINARY_HEADER = { 0, 'H', '2', 'B', 1 };
+
+    /**
+     * The binary record type that marks the end of the script.
+     */
+    static final int BINARY_END = 0;
+
+    /**
+     * The binary record type for a SQL statement.
+     */
+    static final int BINARY_SQL = 1;
+
+    /**
+     * The binary record type for a block of rows of a table.
+     */
+    static final int BINARY_ROWS = 2;
+
+    /**
+     * The binary record type for a compressed block of rows of a table.
+     */
+    static final int BINARY_ROWS_COMPRESSED = 3;
+
     /**
      * The output stream.
      */
@@ -49,6 +80,13 @@ public abstract class ScriptBase extends Prepared implements DataHandler {
      */
     protected InputStream in;
 
+    /**
+     * Whether the script is in the binary format. In this case, the
+     * compression algorithm is used for the blocks of rows, and not for the
+     * stream.
+     */
+    protected boolean binary;
+
     /**
      * The file name (if set).
      */
@@ -123,29 +161,43 @@ public abstract class ScriptBase extends Prepared implements DataHandler {
         if (file == null) {
             return;
         }
+        String compression = binary ? null : compressionAlgorithm;
         if (isEncrypted()) {
             initStore();
-            out = new FileStoreOutputStream(store, this, compressionAlgorithm);
+            out = new FileStoreOutputStream(store, this, compression);
             // always use a big buffer, otherwise end-of-block is written a lot
             out = new BufferedOutputStream(out, Constants.IO_BUFFER_SIZE_COMPRESS);
         } else {
             OutputStream o = FileUtils.openFileOutputStream(file, false);
             out = new BufferedOutputStream(o, Constants.IO_BUFFER_SIZE);
-            out = CompressTool.wrapOutputStream(out, compressionAlgorithm, Constants.SCRIPT_SQL);
+            out = CompressTool.wrapOutputStream(out, compression, Constants.SCRIPT_SQL);
         }
     }
 
     /**
-     * Open the input stream.
+     * Open the input stream, and detect whether the script is in the binary
+     * format.
      */
     void openInput() throws SQLException {
         String file = getFileName();
         if (file == null) {
             return;
         }
+        if (compressionAlgorithm != null) {
+            // the stream of a binary script is not compressed
+            openInput(file, null);
+            if (binary) {
+                return;
+            }
+            closeIO();
+        }
+        openInput(file, compressionAlgorithm);
+    }
+
+    private void openInput(String file, String compression) throws SQLException {
         if (isEncrypted()) {
             initStore();
-            in = new FileStoreInputStream(store, this, compressionAlgorithm != null, false);
+            in = new FileStoreInputStream(store, this, compression != null, false);
         } else {
             InputStream inStream;
             try {
@@ -154,11 +206,58 @@ public abstract class ScriptBase extends Prepared implements DataHandler {
                 throw Message.convertIOException(e, file);
             }
             in = new BufferedInputStream(inStream, Constants.IO_BUFFER_SIZE);
-            in = CompressTool.wrapInputStream(in, compressionAlgorithm, Constants.SCRIPT_SQL);
+            in = CompressTool.wrapInputStream(in, compression, Constants.SCRIPT_SQL);
             if (in == null) {
                 throw Message.getSQLException(ErrorCode.FILE_NOT_FOUND_1, Constants.SCRIPT_SQL + " in " + file);
             }
         }
+        if (!in.markSupported()) {
+            in = new BufferedInputStream(in, Constants.IO_BUFFER_SIZE);
+        }
+        try {
+            byte[] header = new byte[BINARY_HEADER.length];
+            in.mark(header.length);
+            int len = IOUtils.readFully(in, header, 0, header.length);
+            binary = len == header.length && ByteUtils.compareNotNull(header, BINARY_HEADER) == 0;
+            if (!binary) {
+                in.reset();
+            }
+        } catch (IOException e) {
+            throw Message.convertIOException(e, file);
+        }
+    }
+
+    /**
+     * Write a string to a binary script.
+     *
+     * @param out the output stream
+     * @param s the string
+     */
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] buff = StringUtils.utf8Encode(s);
+        out.writeInt(buff.length);
+        out.write(buff);
+    }
+
+    /**
+     * Read a string from a binary script.
+     *
+     * @param in the input stream
+     * @return the string
+     */
+    static String readString(DataInputStream in) throws IOException {
+        byte[] buff = MemoryUtils.newBytes(in.readInt());
+        in.readFully(buff);
+        return StringUtils.utf8Decode(buff);
+    }
+
+    /**
+     * Get the compression algorithm.
+     *
+     * @return the algorithm, or null
+     */
+    protected String getCompressionAlgorithm() {
+        return compressionAlgorithm;
     }
 
     /**
@@ -7,6 +7,7 @@ package org.h2.command.dml;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -53,6 +54,7 @@ import org.h2.util.ObjectArray;
 import org.h2.util.StatementBuilder;
 import org.h2.util.StringUtils;
 import org.h2.value.Value;
+import org.h2.value.ValueBytes;
 import org.h2.value.ValueLob;
 import org.h2.value.ValueString;
 
@@ -73,6 +75,8 @@ public class ScriptCommand extends ScriptBase {
     private boolean tempLobTableCreated;
     private int nextLobId;
     private int lobBlockSize = Constants.IO_BUFFER_SIZE;
+    private DataOutputStream binaryOut;
+    private ScriptRowWriter rowWriter;
 
     public ScriptCommand(Session session) {
         super(session);
@@ -104,6 +108,18 @@ public class ScriptCommand extends ScriptBase {
         this.drop = drop;
     }
 
+    /**
+     * Write the script in the binary format. In this format, the rows are
+     * stored in the same way as in the database file, and large objects are
+     * stored inline. If compression is enabled, the blocks of rows are
+     * compressed, but not the statements.
+     *
+     * @param binary true for the binary format
+     */
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
     public ResultInterface queryMeta() throws SQLException {
         LocalResult r = createResult();
         r.done();
@@ -125,6 +141,12 @@ public class ScriptCommand extends ScriptBase {
             openOutput();
             if (out != null) {
                 buffer = new byte[Constants.IO_BUFFER_SIZE];
+                if (binary) {
+                    binaryOut = new DataOutputStream(out);
+                    binaryOut.write(BINARY_HEADER);
+                    rowWriter = new ScriptRowWriter(this, binaryOut, getCompressionAlgorithm(),
+                            SysProperties.SCRIPT_THREADS);
+                }
             }
             Database db = session.getDatabase();
             if (settings) {
@@ -220,7 +242,11 @@ public class ScriptCommand extends ScriptBase {
                                 + table.getSQL();
                         add(rowcount, false);
                     }
-                    if (data) {
+                    if (data && binaryOut != null) {
+                        PlanItem plan = table.getBestPlanItem(session, null);
+                        Cursor cursor = plan.getIndex().find(session, null, null);
+                        writeRows(table, cursor);
+                    } else if (data) {
                         PlanItem plan = table.getBestPlanItem(session, null);
                         Index index = plan.getIndex();
                         Cursor cursor = index.find(session, null, null);
@@ -313,12 +339,19 @@ public class ScriptCommand extends ScriptBase {
             for (Comment comment : db.getAllComments()) {
                 add(comment.getCreateSQL(), false);
             }
+            if (binaryOut != null) {
+                rowWriter.flush();
+                binaryOut.writeByte(BINARY_END);
+            }
             if (out != null) {
                 out.close();
             }
         } catch (IOException e) {
             throw Message.convertIOException(e, getFileName());
         } finally {
+            if (rowWriter != null) {
+                rowWriter.close();
+            }
             closeIO();
         }
         result.done();
@@ -519,8 +552,50 @@ public class ScriptCommand extends ScriptBase {
         return prep.executeQuery();
     }
 
+    /**
+     * Write the rows of a table in the binary format. The rows are read by
+     * this thread, and encoded by the row writer.
+     *
+     * @param table the table
+     * @param cursor the cursor over all rows
+     */
+    private void writeRows(Table table, Cursor cursor) throws SQLException, IOException {
+        String schemaName = table.getSchema().getName();
+        String tableName = table.getName();
+        int columnCount = table.getColumns().length;
+        ObjectArray<Value[]> rows = ObjectArray.newInstance();
+        int memory = 0;
+        while (cursor.next()) {
+            Row row = cursor.get();
+            Value[] values = new Value[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                Value v = row.getValue(i);
+                // large objects are stored inline,
+                // and converted back when reading
+                if (v.getType() == Value.BLOB) {
+                    v = ValueBytes.getNoCopy(v.getBytesNoCopy());
+                } else if (v.getType() == Value.CLOB) {
+                    v = ValueString.get(v.getString());
+                }
+                values[i] = v;
+                memory += v.getMemory();
+            }
+            rows.add(values);
+            if (memory > Constants.IO_BUFFER_SIZE_COMPRESS) {
+                rowWriter.add(schemaName, tableName, rows);
+                rows = ObjectArray.newInstance();
+                memory = 0;
+            }
+        }
+        if (rows.size() > 0) {
+            rowWriter.add(schemaName, tableName, rows);
+        }
+    }
+
     private void reset() {
         result = null;
+        binaryOut = null;
+        rowWriter = null;
         buffer = null;
         lineSeparator = StringUtils.utf8Encode(SysProperties.LINE_SEPARATOR);
     }
@@ -529,6 +604,17 @@ public class ScriptCommand extends ScriptBase {
         if (s == null) {
             return;
         }
+        if (binaryOut != null) {
+            if (s.length() > 0) {
+                rowWriter.flush();
+                binaryOut.writeByte(BINARY_SQL);
+                writeString(binaryOut, s);
+                if (!insert) {
+                    result.addRow(new Value[] { ValueString.get(s + ";") });
+                }
+            }
+            return;
+        }
         s += ";";
         if (out != null) {
             byte[] buff = StringUtils.utf8Encode(s);
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.sql.SQLException;
+import java.util.LinkedList;
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Session;
+import org.h2.log.UndoLogRecord;
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.store.Data;
+import org.h2.store.DataHandler;
+import org.h2.table.Column;
+import org.h2.table.Table;
+import org.h2.tools.CompressTool;
+import org.h2.value.Value;
+
+/**
+ * Adds the rows of a binary script to the tables. The blocks of rows are
+ * decoded (and expanded, if compressed) by multiple threads, but the rows are
+ * added to the tables by the thread that reads the script, in the order of the
+ * script. The tables and indexes are not thread safe, therefore only decoding
+ * is done in parallel.
+ */
+class ScriptRowReader implements Runnable {
+
+    /**
+     * The maximum number of buffered entries per thread.
+     */
+    private static final int MAX_BUFFERED = 4;
+
+    private final Session session;
+    private final DataHandler handler;
+    private final int threadCount;
+
+    /**
+     * The entries that are not applied yet, in order.
+     */
+    private final LinkedList<Entry> entries = new LinkedList<Entry>();
+
+    /**
+     * The entries that are not decoded yet, in order.
+     */
+    private final LinkedList<Entry> queue = new LinkedList<Entry>();
+
+    private int runningThreads;
+    private boolean closed;
+
+    ScriptRowReader(Session session, DataHandler handler, int threadCount) {
+        this.session = session;
+        this.handler = handler;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Add a block of rows. If too many blocks are buffered, the oldest block
+     * is added to its table.
+     *
+     * @param table the table
+     * @param rowCount the number of rows
+     * @param bytes the encoded rows
+     * @param compressed whether the block is compressed
+     */
+    void add(Table table, int rowCount, byte[] bytes, boolean compressed) throws SQLException {
+        Entry e = new Entry();
+        e.table = table;
+        e.columnCount = table.getColumns().length;
+        e.rowCount = rowCount;
+        e.bytes = bytes;
+        e.compressed = compressed;
+        if (threadCount <= 1) {
+            e.rows = decode(e);
+            apply(e);
+            return;
+        }
+        while (entries.size() >= threadCount * MAX_BUFFERED) {
+            applyFirst();
+        }
+        synchronized (this) {
+            entries.add(e);
+            queue.add(e);
+            if (runningThreads < threadCount && queue.size() > runningThreads) {
+                Thread t = new Thread(this, "H2 Script Reader");
+                t.setDaemon(true);
+                runningThreads++;
+                t.start();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Add all buffered rows to their tables. This needs to be done before
+     * the next statement is executed.
+     */
+    void flush() throws SQLException {
+        while (entries.size() > 0) {
+            applyFirst();
+        }
+    }
+
+    private void applyFirst() throws SQLException {
+        Entry e;
+        synchronized (this) {
+            e = entries.getFirst();
+            while (!e.decoded) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    // ignore
+                }
+            }
+            entries.removeFirst();
+        }
+        if (e.exception != null) {
+            throw e.exception;
+        }
+        apply(e);
+    }
+
+    /**
+     * Add the rows to the table. The b-tree indexes are updated after all rows
+     * of the block are added, in the order of the index.
+     *
+     * @param e the entry
+     */
+    private void apply(Entry e) throws SQLException {
+        Table table = e.table;
+        Column[] columns = table.getColumns();
+        table.lock(session, true, false);
+        boolean defer = !session.isDeferIndexMaintenance() && session.isUndoLogEnabled()
+                && !session.getDatabase().isMultiVersion();
+        if (defer) {
+            session.setDeferIndexMaintenance(true);
+        }
+        try {
+            for (Value[] values : e.rows) {
+                Row row = table.getTemplateRow();
+                for (int j = 0; j < values.length; j++) {
+                    Value v = values[j];
+                    Column c = columns[j];
+                    if (v.getType() != c.getType()) {
+                        // large objects are stored inline
+                        v = c.convert(v);
+                    }
+                    row.setValue(j, v);
+                }
+                table.validateConvertUpdateSequence(session, row);
+                table.addRow(session, row);
+                session.log(table, UndoLogRecord.INSERT, row);
+            }
+            session.flushDeferredIndexes();
+        } finally {
+            if (defer) {
+                session.setDeferIndexMaintenance(false);
+            }
+        }
+        if (session.getAutoCommit()) {
+            session.commit(false);
+        }
+    }
+
+    /**
+     * Stop the decoder threads. Rows that are buffered are not applied.
+     */
+    synchronized void close() {
+        closed = true;
+        entries.clear();
+        queue.clear();
+        notifyAll();
+    }
+
+    /**
+     * INTERNAL
+     */
+    public void run() {
+        while (true) {
+            Entry e;
+            synchronized (this) {
+                while (!closed && queue.size() == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        // ignore
+                    }
+                }
+                if (closed) {
+                    runningThreads--;
+                    return;
+                }
+                e = queue.removeFirst();
+            }
+            try {
+                e.rows = decode(e);
+            } catch (Exception ex) {
+                e.exception = Message.convert(ex);
+            } catch (Throwable ex) {
+                e.exception = Message.getSQLException(ErrorCode.GENERAL_ERROR_1, ex, ex.toString());
+            }
+            synchronized (this) {
+                e.decoded = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private Value[][] decode(Entry e) throws SQLException {
+        byte[] bytes = e.bytes;
+        if (e.compressed) {
+            bytes = CompressTool.getInstance().expand(bytes);
+        }
+        Data page = Data.create(handler, bytes);
+        Value[][] rows = new Value[e.rowCount][];
+        for (int i = 0; i < rows.length; i++) {
+            Value[] values = new Value[e.columnCount];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = page.readValue();
+            }
+            rows[i] = values;
+        }
+        e.bytes = null;
+        return rows;
+    }
+
+    /**
+     * A block of rows that was read from the script.
+     */
+    private static class Entry {
+        Table table;
+        int columnCount;
+        int rowCount;
+        byte[] bytes;
+        boolean compressed;
+        Value[][] rows;
+        SQLException exception;
+        boolean decoded;
+    }
+
+}
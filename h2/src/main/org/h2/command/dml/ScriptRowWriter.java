@@ -0,0 +1,241 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Constants;
+import org.h2.message.Message;
+import org.h2.store.Data;
+import org.h2.store.DataHandler;
+import org.h2.tools.CompressTool;
+import org.h2.util.ObjectArray;
+import org.h2.value.Value;
+
+/**
+ * Writes the rows of a binary script. The rows are encoded (and compressed,
+ * if enabled) by multiple threads, but the blocks are written by the thread
+ * that reads the rows, in the order they were added.
+ */
+class ScriptRowWriter implements Runnable {
+
+    /**
+     * The maximum number of buffered entries per thread.
+     */
+    private static final int MAX_BUFFERED = 4;
+
+    private final DataHandler handler;
+    private final DataOutputStream out;
+    private final String compression;
+    private final int threadCount;
+
+    /**
+     * The entries that are not written yet, in order.
+     */
+    private final LinkedList<Entry> entries = new LinkedList<Entry>();
+
+    /**
+     * The entries that are not encoded yet, in order.
+     */
+    private final LinkedList<Entry> queue = new LinkedList<Entry>();
+
+    private int runningThreads;
+    private boolean closed;
+
+    ScriptRowWriter(DataHandler handler, DataOutputStream out, String compression, int threadCount) {
+        this.handler = handler;
+        this.out = out;
+        this.compression = compression;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Add a list of rows of a table. If too many lists are buffered, the
+     * oldest list is written.
+     *
+     * @param schemaName the schema name of the table
+     * @param tableName the table name
+     * @param rows the rows
+     */
+    void add(String schemaName, String tableName, ObjectArray<Value[]> rows) throws IOException, SQLException {
+        Entry e = new Entry();
+        e.schemaName = schemaName;
+        e.tableName = tableName;
+        e.rows = rows;
+        if (threadCount <= 1) {
+            out.write(encode(e));
+            return;
+        }
+        while (entries.size() >= threadCount * MAX_BUFFERED) {
+            writeFirst();
+        }
+        synchronized (this) {
+            entries.add(e);
+            queue.add(e);
+            if (runningThreads < threadCount && queue.size() > runningThreads) {
+                Thread t = new Thread(this, "H2 Script Writer");
+                t.setDaemon(true);
+                runningThreads++;
+                t.start();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Write all buffered rows. This needs to be done before other records are
+     * written.
+     */
+    void flush() throws IOException, SQLException {
+        while (entries.size() > 0) {
+            writeFirst();
+        }
+    }
+
+    private void writeFirst() throws IOException, SQLException {
+        Entry e;
+        synchronized (this) {
+            e = entries.getFirst();
+            while (!e.encoded) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    // ignore
+                }
+            }
+            entries.removeFirst();
+        }
+        if (e.exception != null) {
+            throw e.exception;
+        }
+        out.write(e.bytes);
+    }
+
+    /**
+     * Stop the encoder threads. Rows that are buffered are not written.
+     */
+    synchronized void close() {
+        closed = true;
+        entries.clear();
+        queue.clear();
+        notifyAll();
+    }
+
+    /**
+     * INTERNAL
+     */
+    public void run() {
+        while (true) {
+            Entry e;
+            synchronized (this) {
+                while (!closed && queue.size() == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        // ignore
+                    }
+                }
+                if (closed) {
+                    runningThreads--;
+                    return;
+                }
+                e = queue.removeFirst();
+            }
+            try {
+                e.bytes = encode(e);
+            } catch (Exception ex) {
+                e.exception = Message.convert(ex);
+            } catch (Throwable ex) {
+                e.exception = Message.getSQLException(ErrorCode.GENERAL_ERROR_1, ex, ex.toString());
+            }
+            synchronized (this) {
+                e.encoded = true;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Encode the rows as one or more row blocks.
+     *
+     * @param e the entry
+     * @return the encoded blocks
+     */
+    private byte[] encode(Entry e) throws SQLException {
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        DataOutputStream blocks = new DataOutputStream(buff);
+        Data page = Data.create(handler, Constants.IO_BUFFER_SIZE_COMPRESS);
+        CompressTool compress = compression == null ? null : CompressTool.getInstance();
+        int rowCount = 0;
+        try {
+            for (Value[] values : e.rows) {
+                int len = 0;
+                for (Value v : values) {
+                    len += page.getValueLen(v);
+                }
+                if (rowCount > 0 && page.length() + len > Constants.IO_BUFFER_SIZE_COMPRESS) {
+                    writeBlock(blocks, e, page, rowCount, compress);
+                    rowCount = 0;
+                }
+                if (page.length() + len > page.getBytes().length) {
+                    Data p2 = Data.create(handler, page.length() + len);
+                    p2.write(page.getBytes(), 0, page.length());
+                    page = p2;
+                }
+                for (Value v : values) {
+                    page.writeValue(v);
+                }
+                rowCount++;
+            }
+            if (rowCount > 0) {
+                writeBlock(blocks, e, page, rowCount, compress);
+            }
+        } catch (IOException ex) {
+            throw Message.convertIOException(ex, null);
+        }
+        e.rows = null;
+        return buff.toByteArray();
+    }
+
+    private void writeBlock(DataOutputStream blocks, Entry e, Data page, int rowCount, CompressTool compress)
+            throws IOException, SQLException {
+        byte[] bytes = page.getBytes();
+        int len = page.length();
+        if (compress != null) {
+            byte[] data = new byte[len];
+            System.arraycopy(bytes, 0, data, 0, len);
+            bytes = compress.compress(data, compression);
+            len = bytes.length;
+            blocks.writeByte(ScriptBase.BINARY_ROWS_COMPRESSED);
+        } else {
+            blocks.writeByte(ScriptBase.BINARY_ROWS);
+        }
+        ScriptBase.writeString(blocks, e.schemaName);
+        ScriptBase.writeString(blocks, e.tableName);
+        blocks.writeInt(rowCount);
+        blocks.writeInt(len);
+        blocks.write(bytes, 0, len);
+        page.reset();
+    }
+
+    /**
+     * A list of rows to write.
+     */
+    private static class Entry {
+        String schemaName;
+        String tableName;
+        ObjectArray<Value[]> rows;
+        byte[] bytes;
+        SQLException exception;
+        boolean encoded;
+    }
+
+}
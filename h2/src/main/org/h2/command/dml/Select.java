@@ -11,11 +11,13 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import org.h2.api.Trigger;
+import org.h2.command.Prepared;
 import org.h2.constant.ErrorCode;
 import org.h2.constant.SysProperties;
 import org.h2.engine.Constants;
 import org.h2.engine.Mode;
 import org.h2.engine.Session;
+import org.h2.expression.Aggregate;
 import org.h2.expression.Alias;
 import org.h2.expression.Comparison;
 import org.h2.expression.ConditionAndOr;
@@ -24,18 +26,22 @@ import org.h2.expression.ExpressionColumn;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.Parameter;
 import org.h2.expression.Wildcard;
+import org.h2.index.BitmapCondition;
 import org.h2.index.Cursor;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
 import org.h2.message.Message;
 import org.h2.result.LocalResult;
 import org.h2.result.ResultInterface;
+import org.h2.result.ResultTarget;
+import org.h2.result.Row;
 import org.h2.result.SearchRow;
 import org.h2.result.SortOrder;
 import org.h2.table.Column;
 import org.h2.table.ColumnResolver;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
+import org.h2.table.TableData;
 import org.h2.table.TableFilter;
 import org.h2.util.New;
 import org.h2.util.ObjectArray;
@@ -45,6 +51,7 @@ import org.h2.util.StringUtils;
 import org.h2.util.ValueHashMap;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
+import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
 
 /**
@@ -78,7 +85,15 @@ public class Select extends Query {
     private boolean isGroupQuery, isGroupSortedQuery;
     private boolean isForUpdate;
     private double cost;
-    private boolean isQuickAggregateQuery, isDistinctQuery;
+
+    /**
+     * The copies of this query that are used to evaluate the rows in
+     * parallel. They are created when needed, and re-used for the following
+     * executions.
+     */
+    private ObjectArray<Select> parallelCopies;
+    private boolean parallelNotSupported;
+    private boolean isQuickAggregateQuery, isDistinctQuery, isBitmapCountQuery;
     private boolean isPrepared, checkInit;
     private boolean sortUsingIndex;
     private SortOrder sort;
@@ -240,7 +255,7 @@ public class Select extends Query {
         ObjectArray<Index> indexes = topTableFilter.getTable().getIndexes();
         for (int i = 0; indexes != null && i < indexes.size(); i++) {
             Index index = indexes.get(i);
-            if (index.getIndexType().isScan()) {
+            if (index.getIndexType().isScan() || index.getIndexType().isBitmap()) {
                 continue;
             }
             if (isGroupSortedIndex(topTableFilter, index)) {
@@ -413,7 +428,7 @@ public class Select extends Query {
                 // can't use the scan index
                 continue;
             }
-            if (index.getIndexType().isHash()) {
+            if (index.getIndexType().isHash() || index.getIndexType().isBitmap()) {
                 continue;
             }
             IndexColumn[] indexCols = index.getIndexColumns();
@@ -480,12 +495,15 @@ public class Select extends Query {
         }
     }
 
-    private void queryFlat(int columnCount, LocalResult result, long limitRows) throws SQLException {
+    private void queryFlat(int columnCount, ResultTarget result, long limitRows) throws SQLException {
         if (limitRows != 0 && offsetExpr != null) {
             // limitRows must be long, otherwise we get an int overflow
             // if limitRows is at or near Integer.MAX_VALUE
             limitRows += offsetExpr.getValue(session).getInt();
         }
+        if (queryFlatParallel(columnCount, result, limitRows)) {
+            return;
+        }
         int rowNumber = 0;
         setCurrentRowNumber(0);
         while (topTableFilter.next()) {
@@ -508,6 +526,167 @@ public class Select extends Query {
         }
     }
 
+    /**
+     * Run a flat query over a single table, evaluating the condition and the
+     * column expressions using multiple threads. This is only done if the
+     * estimated number of rows to read is large (a table scan or a wide
+     * range, but not an index lookup), if all expressions can be evaluated by
+     * other threads, and if all rows need to be read.
+     *
+     * @param columnCount the number of columns
+     * @param result the result
+     * @param limitRows the maximum number of rows, or 0
+     * @return true if the query was run
+     */
+    private boolean queryFlatParallel(int columnCount, ResultTarget result, long limitRows) throws SQLException {
+        int threadCount = SysProperties.getSelectThreads();
+        if (threadCount <= 1 || parallelNotSupported || filters.size() != 1 || sampleSize > 0) {
+            return false;
+        }
+        if (cost < ParallelSelect.MIN_ROW_COUNT) {
+            return false;
+        }
+        if (limitRows != 0 && (sort == null || sortUsingIndex)) {
+            return false;
+        }
+        Table table = topTableFilter.getTable();
+        if (!(table instanceof TableData) || table.getRowCountApproximation() < ParallelSelect.MIN_ROW_COUNT) {
+            return false;
+        }
+        for (Column c : table.getColumns()) {
+            int type = c.getType();
+            if (type == Value.BLOB || type == Value.CLOB) {
+                return false;
+            }
+        }
+        ExpressionVisitor visitor = ExpressionVisitor.get(ExpressionVisitor.PARALLEL);
+        visitor.setResolver(topTableFilter);
+        for (int i = 0; i < columnCount; i++) {
+            if (!expressions.get(i).isEverything(visitor)) {
+                return false;
+            }
+        }
+        if (condition != null && !condition.isEverything(visitor)) {
+            return false;
+        }
+        ObjectArray<Parameter> params = visitor.getParameters();
+        Select copy = getParallelCopy(0, params, columnCount);
+        if (copy == null) {
+            parallelNotSupported = true;
+            return false;
+        }
+        ParallelSelect parallel = new ParallelSelect(this, params, copy, result, columnCount, threadCount);
+        try {
+            Row[] rows = new Row[ParallelSelect.BLOCK_SIZE];
+            int rowCount = 0;
+            while (topTableFilter.next()) {
+                rows[rowCount++] = topTableFilter.get();
+                if (rowCount == rows.length) {
+                    parallel.add(rows, rowCount);
+                    rows = new Row[ParallelSelect.BLOCK_SIZE];
+                    rowCount = 0;
+                }
+            }
+            if (rowCount > 0) {
+                parallel.add(rows, rowCount);
+            }
+            parallel.flush();
+        } finally {
+            parallel.close();
+        }
+        return true;
+    }
+
+    /**
+     * Get a copy of this query that is used by another thread to evaluate
+     * the rows. The copy is created when needed, and re-used for the
+     * following executions. The values of the parameters are copied.
+     *
+     * @param index the index of the copy (one for each thread)
+     * @param params the parameters used in the query, or null
+     * @param columnCount the number of columns
+     * @return the copy, or null if the copy does not match this query
+     */
+    Select getParallelCopy(int index, ObjectArray<Parameter> params, int columnCount) throws SQLException {
+        if (parallelCopies == null) {
+            parallelCopies = ObjectArray.newInstance();
+        }
+        Select copy;
+        if (index < parallelCopies.size()) {
+            copy = parallelCopies.get(index);
+        } else {
+            Prepared p = session.prepare(getPlanSQL(), true);
+            if (!(p instanceof Select)) {
+                return null;
+            }
+            copy = (Select) p;
+            if (copy.filters.size() != 1 || copy.expressions.size() != columnCount) {
+                return null;
+            }
+            parallelCopies.add(copy);
+        }
+        if (params != null) {
+            ObjectArray<Parameter> copyParams = copy.getParameters();
+            for (Parameter param : params) {
+                int paramIndex = param.getIndex();
+                if (copyParams == null || paramIndex >= copyParams.size()) {
+                    return null;
+                }
+                copyParams.get(paramIndex).setValue(param.getValue(session));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Evaluate the condition and the column expressions for the given row.
+     * This is used for copies of the query that are evaluated by other
+     * threads.
+     *
+     * @param row the row
+     * @param columnCount the number of columns
+     * @return the values, or null if the condition does not match
+     */
+    Value[] evaluateRow(Row row, int columnCount) throws SQLException {
+        topTableFilter.set(row);
+        if (condition != null && !Boolean.TRUE.equals(condition.getBooleanValue(session))) {
+            return null;
+        }
+        Value[] values = new Value[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = expressions.get(i).getValue(session);
+        }
+        return values;
+    }
+
+    /**
+     * Check if this is a query of the form SELECT COUNT(*) FROM ... WHERE ...
+     *
+     * @return true if it is
+     */
+    private boolean isCountAllQuery() {
+        if (!isGroupQuery || groupIndex != null || havingIndex >= 0 || sampleSize > 0 || expressions.size() != 1) {
+            return false;
+        }
+        Expression expr = expressions.get(0).getNonAliasExpression();
+        return expr instanceof Aggregate && ((Aggregate) expr).isCountAll();
+    }
+
+    /**
+     * Count the rows using the bitmap indexes.
+     *
+     * @param result the result
+     * @return false if the rows can not be counted this way
+     */
+    private boolean queryBitmapCount(LocalResult result) throws SQLException {
+        long count = topTableFilter.getBitmapCondition().getCount(session, topTableFilter);
+        if (count < 0) {
+            return false;
+        }
+        result.addRow(new Value[] { ValueLong.get(count) });
+        return true;
+    }
+
     private void queryQuick(int columnCount, LocalResult result) throws SQLException {
         Value[] row = new Value[columnCount];
         for (int i = 0; i < columnCount; i++) {
@@ -517,13 +696,26 @@ public class Select extends Query {
         result.addRow(row);
     }
 
+    /**
+     * Check if the rows can be written to the target while the query runs,
+     * that is, if the rows are not grouped, made distinct, sorted, or skipped.
+     *
+     * @return true if they can
+     */
+    private boolean isStreamable() {
+        if (isQuickAggregateQuery || isGroupQuery || isDistinctQuery || distinct) {
+            return false;
+        }
+        return (sort == null || sortUsingIndex) && offsetExpr == null;
+    }
+
     public ResultInterface queryMeta() throws SQLException {
         LocalResult result = new LocalResult(session, expressions, visibleColumnCount);
         result.done();
         return result;
     }
 
-    protected LocalResult queryWithoutCache(int maxRows) throws SQLException {
+    protected LocalResult queryWithoutCache(int maxRows, ResultTarget target) throws SQLException {
         int limitRows = maxRows;
         if (limitExpr != null) {
             int l = limitExpr.getValue(session).getInt();
@@ -534,18 +726,23 @@ public class Select extends Query {
             }
         }
         int columnCount = expressions.size();
-        LocalResult result = new LocalResult(session, expressions, visibleColumnCount);
-        if (!sortUsingIndex) {
-            result.setSortOrder(sort);
-        }
-        if (distinct && !isDistinctQuery) {
-            result.setDistinct();
+        LocalResult result = null;
+        if (target == null || !isStreamable()) {
+            result = new LocalResult(session, expressions, visibleColumnCount);
+            if (!sortUsingIndex) {
+                result.setSortOrder(sort);
+            }
+            if (distinct && !isDistinctQuery) {
+                result.setDistinct();
+            }
         }
         topTableFilter.startQuery(session);
         topTableFilter.reset();
         topTableFilter.lock(session, isForUpdate, isForUpdate);
         if (isQuickAggregateQuery) {
             queryQuick(columnCount, result);
+        } else if (isBitmapCountQuery && queryBitmapCount(result)) {
+            // counted using the bitmap indexes
         } else if (isGroupQuery) {
             if (isGroupSortedQuery) {
                 queryGroupSorted(columnCount, result);
@@ -554,6 +751,9 @@ public class Select extends Query {
             }
         } else if (isDistinctQuery) {
             queryDistinct(result, limitRows);
+        } else if (result == null) {
+            queryFlat(columnCount, target, limitRows);
+            return null;
         } else {
             queryFlat(columnCount, result, limitRows);
         }
@@ -777,6 +977,16 @@ public class Select extends Query {
                 isGroupSortedQuery = true;
             }
         }
+        if (condition != null && filters.size() == 1 && !session.getDatabase().isMultiVersion()) {
+            IndexType type = topTableFilter.getIndex().getIndexType();
+            if (type.isScan() || type.isBitmap()) {
+                BitmapCondition bitmap = BitmapCondition.get(session, topTableFilter, condition);
+                if (bitmap != null) {
+                    topTableFilter.setBitmapCondition(bitmap);
+                    isBitmapCountQuery = bitmap.isExact() && isCountAllQuery();
+                }
+            }
+        }
         isPrepared = true;
     }
 
@@ -933,6 +1143,9 @@ public class Select extends Query {
         if (isQuickAggregateQuery) {
             buff.append("\n/* direct lookup */");
         }
+        if (isBitmapCountQuery) {
+            buff.append("\n/* bitmap count */");
+        }
         if (isDistinctQuery) {
             buff.append("\n/* distinct */");
         }
@@ -1064,6 +1277,9 @@ public class Select extends Query {
             }
             break;
         }
+        case ExpressionVisitor.PARALLEL:
+            // subqueries read the tables
+            return false;
         case ExpressionVisitor.EVALUATABLE: {
             if (!SysProperties.OPTIMIZE_EVALUATABLE_SUBQUERIES) {
                 return false;
@@ -20,6 +20,7 @@ import org.h2.expression.ValueExpression;
 import org.h2.message.Message;
 import org.h2.result.LocalResult;
 import org.h2.result.ResultInterface;
+import org.h2.result.ResultTarget;
 import org.h2.result.SortOrder;
 import org.h2.table.Column;
 import org.h2.table.ColumnResolver;
@@ -101,7 +102,7 @@ public class SelectUnion extends Query {
         return result;
     }
 
-    protected LocalResult queryWithoutCache(int maxrows) throws SQLException {
+    protected LocalResult queryWithoutCache(int maxrows, ResultTarget target) throws SQLException {
         if (maxrows != 0) {
             if (limitExpr != null) {
                 maxrows = Math.min(limitExpr.getValue(session).getInt(), maxrows);
@@ -333,7 +334,12 @@ public class SelectUnion extends Query {
 
     public ResultInterface query(int limit) throws SQLException {
         // union doesn't always know the parameter list of the left and right queries
-        return queryWithoutCache(limit);
+        return queryWithoutCache(limit, null);
+    }
+
+    public LocalResult query(int limit, ResultTarget target) throws SQLException {
+        // the left and right queries fire the triggers
+        return queryWithoutCache(limit, target);
     }
 
     public boolean isEverything(ExpressionVisitor visitor) {
@@ -56,6 +56,7 @@ public class Set extends Prepared {
         case SetTypes.THROTTLE:
         case SetTypes.SCHEMA:
         case SetTypes.SCHEMA_SEARCH_PATH:
+        case SetTypes.DEFER_INDEX_MAINTENANCE:
             return true;
         default:
         }
@@ -74,6 +75,8 @@ public class Set extends Prepared {
             }
             database.setAllowLiterals(value);
             addOrUpdateSetting(name, null, value);
+            // prepared statements need to be parsed again
+            database.getNextModificationMetaId();
             break;
         }
         case SetTypes.CACHE_SIZE:
@@ -151,6 +154,9 @@ public class Set extends Prepared {
             session.getUser().checkAdmin();
             addOrUpdateSetting(name, null, getIntValue());
             break;
+        case SetTypes.DEFER_INDEX_MAINTENANCE:
+            session.setDeferIndexMaintenance(getIntValue() == 1);
+            break;
         case SetTypes.EXCLUSIVE: {
             session.getUser().checkAdmin();
             int value = getIntValue();
@@ -216,6 +222,16 @@ public class Set extends Prepared {
             database.setMaxOperationMemory(value);
             break;
         }
+        case SetTypes.MAX_TEMP_MEMORY: {
+            session.getUser().checkAdmin();
+            int x = getIntValue();
+            if (x < 0) {
+                throw Message.getInvalidValueException("" + x, "MAX_TEMP_MEMORY");
+            }
+            database.setMaxTempMemory(x);
+            addOrUpdateSetting(name, null, x);
+            break;
+        }
         case SetTypes.MODE:
             session.getUser().checkAdmin();
             Mode mode = Mode.getInstance(stringValue);
@@ -223,6 +239,8 @@ public class Set extends Prepared {
                 throw Message.getSQLException(ErrorCode.UNKNOWN_MODE_1, stringValue);
             }
             database.setMode(mode);
+            // prepared statements need to be parsed again
+            database.getNextModificationMetaId();
             break;
         case SetTypes.MULTI_THREADED: {
             session.getUser().checkAdmin();
@@ -308,6 +326,16 @@ public class Set extends Prepared {
             session.setVariable(stringValue, expr.getValue(session));
             break;
         }
+        case SetTypes.COMPACT_RATE: {
+            session.getUser().checkAdmin();
+            int x = getIntValue();
+            if (x < 0) {
+                throw Message.getInvalidValueException("" + x, "COMPACT_RATE");
+            }
+            database.setCompactRate(x);
+            addOrUpdateSetting(name, null, x);
+            break;
+        }
         case SetTypes.WRITE_DELAY: {
             session.getUser().checkAdmin();
             database.setWriteDelay(getIntValue());
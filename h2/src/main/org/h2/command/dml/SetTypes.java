@@ -194,6 +194,21 @@ public class SetTypes {
      */
     public static final int QUERY_TIMEOUT = 36;
 
+    /**
+     * The type of a SET COMPACT_RATE statement.
+     */
+    public static final int COMPACT_RATE = 37;
+
+    /**
+     * The type of a SET MAX_TEMP_MEMORY statement.
+     */
+    public static final int MAX_TEMP_MEMORY = 38;
+
+    /**
+     * The type of a SET DEFER_INDEX_MAINTENANCE statement.
+     */
+    public static final int DEFER_INDEX_MAINTENANCE = 39;
+
     private static final ArrayList<String> TYPES = New.arrayList();
 
     private SetTypes() {
@@ -239,6 +254,9 @@ public class SetTypes {
         list.add(CREATE_BUILD, "CREATE_BUILD");
         list.add(VARIABLE, "@");
         list.add(QUERY_TIMEOUT, "QUERY_TIMEOUT");
+        list.add(COMPACT_RATE, "COMPACT_RATE");
+        list.add(MAX_TEMP_MEMORY, "MAX_TEMP_MEMORY");
+        list.add(DEFER_INDEX_MAINTENANCE, "DEFER_INDEX_MAINTENANCE");
     }
 
     /**
@@ -177,6 +177,10 @@ public class Update extends Prepared {
         return true;
     }
 
+    public boolean isCacheable() {
+        return true;
+    }
+
     public ResultInterface queryMeta() {
         return null;
     }
@@ -35,6 +35,16 @@ public class SysProperties {
      */
     public static final String H2_LOG_DELETE_DELAY = "h2.logDeleteDelay";
 
+    /**
+     * INTERNAL
+     */
+    public static final String H2_INDEX_REBUILD_THREADS = "h2.indexRebuildThreads";
+
+    /**
+     * INTERNAL
+     */
+    public static final String H2_SELECT_THREADS = "h2.selectThreads";
+
     /**
      * INTERNAL
      */
@@ -179,6 +189,15 @@ public class SysProperties {
      */
     public static final String CLIENT_TRACE_DIRECTORY = getStringSetting("h2.clientTraceDirectory", "trace.db/");
 
+    /**
+     * System property <code>h2.csvReadThreads</code> (default: the number of
+     * processors).<br />
+     * The number of threads used to parse large CSV files on disk. The file is
+     * memory mapped and split into chunks that are parsed in parallel. The
+     * value 1 disables this feature.
+     */
+    public static final int CSV_READ_THREADS = getIntSetting("h2.csvReadThreads", Runtime.getRuntime().availableProcessors());
+
     /**
      * System property <code>h2.defaultEscape</code> (default: \).<br />
      * The default escape character for LIKE comparisons. To select no escape
@@ -220,6 +239,14 @@ public class SysProperties {
      */
     public static final int DATASOURCE_TRACE_LEVEL = getIntSetting("h2.dataSourceTraceLevel", TraceSystem.ERROR);
 
+    /**
+     * System property <code>h2.defaultMaxTempMemory</code> (default: a quarter
+     * of the maximum heap memory).<br />
+     * The default for the setting MAX_TEMP_MEMORY, in KB.
+     */
+    public static final int DEFAULT_MAX_TEMP_MEMORY = getIntSetting("h2.defaultMaxTempMemory",
+            (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 4 / 1024));
+
     /**
      * System property <code>h2.defaultMaxMemoryUndo</code> (default: 50000).<br />
      * The default value for the MAX_MEMORY_UNDO setting.
@@ -267,6 +294,17 @@ public class SysProperties {
      */
     public static final int ESTIMATED_FUNCTION_TABLE_ROWS = getIntSetting("h2.estimatedFunctionTableRows", 1000);
 
+    /**
+     * System property <code>h2.indexRebuildThreads</code> (default: the
+     * number of processors).<br />
+     * The number of threads used to fill the in-memory indexes (for example
+     * the indexes of memory tables, and bitmap indexes) when the database is
+     * opened. Each table is read once for all its in-memory indexes. If the
+     * value is 1, the indexes are filled by the thread that opens the
+     * database.
+     */
+    public static final int INDEX_REBUILD_THREADS = getIntSetting(H2_INDEX_REBUILD_THREADS, Runtime.getRuntime().availableProcessors());
+
     /**
      * System property <code>h2.largeResultBufferSize</code> (default: 4096).<br />
      * Buffer size for large result sets. Set this value to 0 to disable the
@@ -558,6 +596,16 @@ public class SysProperties {
      */
     public static final boolean PAGE_STORE = getBooleanSetting(H2_PAGE_STORE, Constants.VERSION >= 1.2);
 
+    /**
+     * System property <code>h2.pageStoreOffHeapCacheSize</code> (default: 0).<br />
+     * The size of the second level page cache in KB. This cache keeps
+     * serialized pages outside of the Java heap, in direct byte buffers, so
+     * that the regular cache (see CACHE_SIZE) can be kept small. The maximum
+     * amount of direct memory may need to be increased using
+     * -XX:MaxDirectMemorySize. The cache is disabled if the value is 0.
+     */
+    public static final int PAGE_STORE_OFF_HEAP_CACHE_SIZE = getIntSetting("h2.pageStoreOffHeapCacheSize", 0);
+
     /**
      * System property <code>h2.pageStoreTrim</code> (default: true).<br />
      * Trim the database size when closing.
@@ -577,6 +625,23 @@ public class SysProperties {
      */
     public static final String PG_DEFAULT_CLIENT_ENCODING = getStringSetting("h2.pgClientEncoding", "UTF-8");
 
+    /**
+     * System property <code>h2.primitiveMemoryTables</code> (default: true).<br />
+     * Store the rows of in-memory tables where all columns are of type INT,
+     * BIGINT, or DOUBLE in primitive arrays instead of row objects. Not used
+     * in MVCC mode.
+     */
+    public static final boolean PRIMITIVE_MEMORY_TABLES = getBooleanSetting("h2.primitiveMemoryTables", true);
+
+    /**
+     * System property <code>h2.queryCacheSize</code> (default: 8).<br />
+     * The number of prepared statements that are cached per session. A
+     * statement is re-used when the same SQL statement is prepared again after
+     * the previous one was closed, also when the connection is returned to a
+     * connection pool and borrowed again. The value 0 disables the cache.
+     */
+    public static final int QUERY_CACHE_SIZE = getIntSetting("h2.queryCacheSize", 8);
+
     /**
      * System property <code>h2.recompileAlways</code> (default: false).<br />
      * Always recompile prepared statements.
@@ -592,6 +657,16 @@ public class SysProperties {
      */
     public static final int RECONNECT_CHECK_DELAY = getIntSetting("h2.reconnectCheckDelay", 200);
 
+    /**
+     * System property <code>h2.recoverThreads</code> (default: the number of
+     * processors).<br />
+     * The number of threads used to decode the rows of the transaction log
+     * when the database is recovered after a crash. The rows are still added
+     * to the tables in the order of the log, by one thread. The value 1
+     * disables this feature.
+     */
+    public static final int RECOVER_THREADS = getIntSetting("h2.recoverThreads", Runtime.getRuntime().availableProcessors());
+
     /**
      * System property <code>h2.redoBufferSize</code> (default: 262144).<br />
      * Size of the redo buffer (used at startup when recovering).
@@ -644,6 +719,26 @@ public class SysProperties {
      */
     public static boolean runFinalize = getBooleanSetting("h2.runFinalize", true);
 
+    /**
+     * System property <code>h2.scriptThreads</code> (default: the number of
+     * processors).<br />
+     * The number of threads used to encode and compress the rows when writing
+     * a binary script (SCRIPT BINARY or SNAPSHOT), and to decode the rows when
+     * running a binary script. The rows are still read from and added to the
+     * tables by one thread. The value 1 disables this feature.
+     */
+    public static final int SCRIPT_THREADS = getIntSetting("h2.scriptThreads", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * System property <code>h2.selectThreads</code> (default: the number of
+     * processors).<br />
+     * The number of threads used to evaluate the condition and the column
+     * expressions of a query over a single large table. The rows are still
+     * read by the thread that runs the query, and the result keeps the order
+     * of the rows. The value 1 disables this feature.
+     */
+    public static final int SELECT_THREADS = getIntSetting(H2_SELECT_THREADS, Runtime.getRuntime().availableProcessors());
+
     /**
      * System property <code>h2.serverCachedObjects</code> (default: 64).<br />
      * TCP Server: number of cached objects per session.
@@ -657,6 +752,14 @@ public class SysProperties {
      */
     public static final int SERVER_RESULT_SET_FETCH_SIZE = getIntSetting("h2.serverResultSetFetchSize", 100);
 
+    /**
+     * System property <code>h2.serverResultSetPrefetch</code>
+     * (default: true).<br />
+     * When using the server mode, request the next block of rows of a result
+     * set while the current block is read.
+     */
+    public static final boolean SERVER_RESULT_SET_PREFETCH = getBooleanSetting("h2.serverResultSetPrefetch", true);
+
     /**
      * System property <code>h2.shareLinkedConnections</code>.<br />
      * Linked connections should be shared, that means connections to the same
@@ -814,6 +917,20 @@ public class SysProperties {
         return getIntSetting(H2_LOG_DELETE_DELAY, 0);
     }
 
+    /**
+     * INTERNAL
+     */
+    public static int getIndexRebuildThreads() {
+        return getIntSetting(H2_INDEX_REBUILD_THREADS, INDEX_REBUILD_THREADS);
+    }
+
+    /**
+     * INTERNAL
+     */
+    public static int getSelectThreads() {
+        return getIntSetting(H2_SELECT_THREADS, SELECT_THREADS);
+    }
+
     /**
      * INTERNAL
      */
@@ -82,7 +82,7 @@ public class ConnectionInfo implements Cloneable {
         String[] connectionTime = new String[] { "ACCESS_MODE_LOG", "ACCESS_MODE_DATA", "AUTOCOMMIT", "CIPHER",
                 "CREATE", "CACHE_TYPE", "DB_CLOSE_ON_EXIT", "FILE_LOCK", "IGNORE_UNKNOWN_SETTINGS", "IFEXISTS",
                 "PASSWORD", "RECOVER", "USER", "DATABASE_EVENT_LISTENER_OBJECT", "AUTO_SERVER",
-                "AUTO_RECONNECT", "OPEN_NEW", "PAGE_STORE" };
+                "AUTO_RECONNECT", "OPEN_NEW", "PAGE_STORE", "COMPRESS_TRANSFER", "INIT_FROM_SNAPSHOT" };
         for (String key : connectionTime) {
             if (SysProperties.CHECK && set.contains(key)) {
                 Message.throwInternalError(key);
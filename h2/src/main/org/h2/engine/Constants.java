@@ -51,6 +51,13 @@ public class Constants {
      */
     public static final int TCP_PROTOCOL_VERSION_6 = 6;
 
+    /**
+     * The TCP protocol version number 7. This protocol is used by the TCP
+     * server and remote JDBC client if the rows of a result are sent as
+     * compressed blocks.
+     */
+    public static final int TCP_PROTOCOL_VERSION_7 = 7;
+
     /**
      * The major version of this database.
      */
@@ -139,12 +146,6 @@ public class Constants {
      */
     public static final String DBA_NAME = "DBA";
 
-    /**
-     * The number of milliseconds after which to check for a deadlock if locking
-     * is not successful.
-     */
-    public static final int DEADLOCK_CHECK = 100;
-
     /**
      * The default value of the ALLOW_LITERALS setting
      */
@@ -401,6 +402,17 @@ public class Constants {
      */
     public static final String SUFFIX_PAGE_FILE = ".h2.db";
 
+    /**
+     * The file name suffix of the file that contains the list of pages that
+     * were changed since the last backup.
+     */
+    public static final String SUFFIX_CHANGES_FILE = ".changes.db";
+
+    /**
+     * The file name suffix of the changed pages in an incremental backup.
+     */
+    public static final String SUFFIX_INCREMENTAL_FILE = ".incremental.db";
+
     /**
      * The file name suffix of all database files.
      */
@@ -48,6 +48,7 @@ import org.h2.store.WriterThread;
 import org.h2.store.fs.FileSystem;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
+import org.h2.table.IndexRebuilder;
 import org.h2.table.MetaTable;
 import org.h2.table.Table;
 import org.h2.table.TableData;
@@ -130,6 +131,7 @@ public class Database implements DataHandler {
     private boolean readOnly;
     private boolean noDiskSpace;
     private int writeDelay = Constants.DEFAULT_WRITE_DELAY;
+    private int compactRate;
     private DatabaseEventListener eventListener;
     private int maxMemoryRows = Constants.DEFAULT_MAX_MEMORY_ROWS;
     private int maxMemoryUndo = SysProperties.DEFAULT_MAX_MEMORY_UNDO;
@@ -157,6 +159,8 @@ public class Database implements DataHandler {
     private Mode mode = Mode.getInstance(Mode.REGULAR);
     private boolean multiThreaded;
     private int maxOperationMemory = SysProperties.DEFAULT_MAX_OPERATION_MEMORY;
+    private int maxTempMemory = SysProperties.DEFAULT_MAX_TEMP_MEMORY;
+    private final MemoryBroker memoryBroker = new MemoryBroker(this);
     private boolean lobFilesInDirectories = SysProperties.LOB_FILES_IN_DIRECTORIES;
     private SmallLRUCache<String, String[]> lobFileListCache = SmallLRUCache.newInstance(128);
     private boolean autoServerMode;
@@ -189,6 +193,7 @@ public class Database implements DataHandler {
         this.usePageStoreSet = ci.getProperty("PAGE_STORE") != null;
         this.usePageStore = ci.getProperty("PAGE_STORE", SysProperties.getPageStore());
         this.cacheSize = ci.getProperty("CACHE_SIZE", SysProperties.CACHE_SIZE_DEFAULT);
+        memoryBroker.setMaxMemory(maxTempMemory);
         if ("r".equals(accessModeData)) {
             readOnly = true;
             accessModeLog = "r";
@@ -704,6 +709,7 @@ public class Database implements DataHandler {
         for (MetaRecord rec : records) {
             rec.execute(this, systemSession, eventListener);
         }
+        IndexRebuilder.rebuild(this, systemSession, SysProperties.getIndexRebuildThreads());
         // try to recompile the views that are invalid
         recompileInvalidViews(systemSession);
         starting = false;
@@ -1905,6 +1911,10 @@ public class Database implements DataHandler {
         }
     }
 
+    public DatabaseEventListener getEventListener() {
+        return eventListener;
+    }
+
     public void setEventListener(DatabaseEventListener eventListener) {
         this.eventListener = eventListener;
     }
@@ -2238,6 +2248,24 @@ public class Database implements DataHandler {
         return maxOperationMemory;
     }
 
+    /**
+     * Set the maximum memory used for temporary data by all sessions.
+     *
+     * @param kb the maximum size in KB, or 0 for no limit
+     */
+    public void setMaxTempMemory(int kb) {
+        this.maxTempMemory = kb;
+        memoryBroker.setMaxMemory(kb);
+    }
+
+    public int getMaxTempMemory() {
+        return maxTempMemory;
+    }
+
+    public MemoryBroker getMemoryBroker() {
+        return memoryBroker;
+    }
+
     public Session getExclusiveSession() {
         return exclusiveSession;
     }
@@ -2421,6 +2449,46 @@ public class Database implements DataHandler {
         return fileLockMethod == FileLock.LOCK_SERIALIZED;
     }
 
+    /**
+     * Move pages from the end of the database file to free pages, and shrink
+     * the file if enough pages at the end are free. This method is called by
+     * the writer thread if online compaction is enabled. The database is only
+     * locked while a single page is moved, so that other operations are not
+     * blocked for a long time.
+     *
+     * @param maxMove the maximum number of pages to move
+     */
+    public void compactIfRequired(int maxMove) throws SQLException {
+        if (pageStore == null || readOnly || closing || multiThreaded || isFileLockSerialized()) {
+            return;
+        }
+        for (int i = 0; i < maxMove; i++) {
+            if (closing) {
+                return;
+            }
+            if (!pageStore.compactMovePage()) {
+                break;
+            }
+        }
+        if (!closing) {
+            pageStore.compactTruncate();
+        }
+    }
+
+    /**
+     * Set the maximum number of pages per second the online compaction may
+     * move.
+     *
+     * @param compactRate the number of pages, or 0 to disable online compaction
+     */
+    public void setCompactRate(int compactRate) {
+        this.compactRate = compactRate;
+    }
+
+    public int getCompactRate() {
+        return compactRate;
+    }
+
     /**
      * Flush the indexes that were last changed prior to some time.
      *
@@ -40,7 +40,7 @@ public class Engine {
         return INSTANCE;
     }
 
-    private Session openSession(ConnectionInfo ci, boolean ifExists, String cipher) throws SQLException {
+    private Session openSession(ConnectionInfo ci, boolean ifExists, String cipher, String snapshot) throws SQLException {
         String name = ci.getName();
         Database database;
         boolean openNew = ci.getProperty("OPEN_NEW", false);
@@ -95,6 +95,9 @@ public class Engine {
             }
             checkClustering(ci, database);
             Session session = database.createSession(user);
+            if (opened && snapshot != null && !database.isPersistent()) {
+                initFromSnapshot(session, snapshot);
+            }
             return session;
         }
     }
@@ -137,9 +140,10 @@ public class Engine {
         boolean ifExists = ci.removeProperty("IFEXISTS", false);
         boolean ignoreUnknownSetting = ci.removeProperty("IGNORE_UNKNOWN_SETTINGS", false);
         String cipher = ci.removeProperty("CIPHER", null);
+        String snapshot = ci.removeProperty("INIT_FROM_SNAPSHOT", null);
         Session session;
         while (true) {
-            session = openSession(ci, ifExists, cipher);
+            session = openSession(ci, ifExists, cipher, snapshot);
             if (session != null) {
                 break;
             }
@@ -171,6 +175,23 @@ public class Engine {
         return session;
     }
 
+    /**
+     * Restore a snapshot into a new in-memory database. The snapshot was
+     * created using SNAPSHOT TO.
+     *
+     * @param session the session of the user that created the database
+     * @param fileName the snapshot file name
+     */
+    private static void initFromSnapshot(Session session, String fileName) throws SQLException {
+        try {
+            session.prepare("RUNSCRIPT FROM " + StringUtils.quoteStringSQL(fileName)).update();
+            session.commit(false);
+        } catch (SQLException e) {
+            session.close();
+            throw e;
+        }
+    }
+
     private void checkClustering(ConnectionInfo ci, Database database) throws SQLException {
         String clusterSession = ci.getProperty(SetTypes.CLUSTER, null);
         if (Constants.CLUSTERING_DISABLED.equals(clusterSession)) {
@@ -259,12 +259,30 @@ public class FunctionAlias extends DbObjectBase {
         private boolean hasConnectionParam;
         private boolean varArgs;
         private Class< ? > varArgClass;
+        private int varArgType;
         private int paramCount;
 
+        /**
+         * The parameter classes and their data types. They are kept here
+         * because Method.getParameterTypes creates a new array on each call.
+         */
+        private final Class< ? >[] paramClasses;
+        private final int[] paramTypes;
+
         JavaMethod(Method method, int id) throws SQLException {
             this.method = method;
             this.id = id;
-            Class< ? >[] paramClasses = method.getParameterTypes();
+            try {
+                // avoid the access check on each call
+                method.setAccessible(true);
+            } catch (RuntimeException e) {
+                // not allowed, ignore
+            }
+            paramClasses = method.getParameterTypes();
+            paramTypes = new int[paramClasses.length];
+            for (int i = 0; i < paramClasses.length; i++) {
+                paramTypes[i] = DataType.getTypeFromClass(paramClasses[i]);
+            }
             paramCount = paramClasses.length;
             if (paramCount > 0) {
                 Class< ? > paramClass = paramClasses[0];
@@ -278,6 +296,7 @@ public class FunctionAlias extends DbObjectBase {
                 if (lastArg.isArray() && ClassUtils.isVarArgs(method)) {
                     varArgs = true;
                     varArgClass = lastArg.getComponentType();
+                    varArgType = DataType.getTypeFromClass(varArgClass);
                 }
             }
             Class< ? > returnClass = method.getReturnType();
@@ -306,7 +325,6 @@ public class FunctionAlias extends DbObjectBase {
          * @return the value
          */
         public Value getValue(Session session, Expression[] args, boolean columnList) throws SQLException {
-            Class< ? >[] paramClasses = method.getParameterTypes();
             Object[] params = new Object[paramClasses.length];
             int p = 0;
             if (hasConnectionParam && params.length > 0) {
@@ -324,12 +342,14 @@ public class FunctionAlias extends DbObjectBase {
             for (int a = 0; a < args.length; a++, p++) {
                 boolean currentIsVarArg = varArgs && p >= paramClasses.length - 1;
                 Class< ? > paramClass;
+                int type;
                 if (currentIsVarArg) {
                     paramClass = varArgClass;
+                    type = varArgType;
                 } else {
                     paramClass = paramClasses[p];
+                    type = paramTypes[p];
                 }
-                int type = DataType.getTypeFromClass(paramClass);
                 Value v = args[a].getValue(session);
                 v = v.convertTo(type);
                 Object o = v.getObject();
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.engine;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import org.h2.store.DataPage;
+import org.h2.util.New;
+import org.h2.util.ObjectArray;
+
+/**
+ * Keeps track of the memory used by the temporary data of all sessions of a
+ * database: result sets while they are built, the rows of large update and
+ * delete operations, and the undo log. Each operation gets a grant. If the
+ * memory used by all grants together is larger than the limit (setting
+ * MAX_TEMP_MEMORY), the operation that asks for more memory writes its rows
+ * to a temporary file. The per-operation limits (MAX_MEMORY_ROWS,
+ * MAX_MEMORY_UNDO, MAX_OPERATION_MEMORY) still apply.
+ * <p>
+ * Operations should close their grant, but a grant is also released when
+ * the operation is garbage collected. The broker also keeps a few buffers
+ * that are used to write temporary files.
+ */
+public class MemoryBroker {
+
+    /**
+     * The maximum number of buffers in the pool.
+     */
+    private static final int MAX_BUFFERS = 8;
+
+    /**
+     * Buffers that grew larger than this are not kept in the pool.
+     */
+    private static final int MAX_BUFFER_SIZE = 4 * Constants.IO_BUFFER_SIZE;
+
+    private final Database database;
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+    private final HashSet<Grant> grants = New.hashSet();
+    private final ObjectArray<DataPage> buffers = ObjectArray.newInstance();
+    private long maxMemory;
+    private long used;
+    private long spillCount;
+
+    /**
+     * The memory granted to one operation.
+     */
+    public static class Grant extends WeakReference<Object> {
+
+        /**
+         * The session of the operation.
+         */
+        final Session session;
+
+        /**
+         * The memory used by the operation, in bytes.
+         */
+        long memory;
+
+        Grant(Object owner, Session session, ReferenceQueue<Object> queue) {
+            super(owner, queue);
+            this.session = session;
+        }
+    }
+
+    MemoryBroker(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Set the maximum memory for temporary data.
+     *
+     * @param kb the maximum size in KB, or 0 for no limit
+     */
+    public synchronized void setMaxMemory(int kb) {
+        maxMemory = kb * 1024L;
+    }
+
+    /**
+     * Get a grant for an operation.
+     *
+     * @param owner the operation
+     * @param session the session
+     * @return the grant
+     */
+    public synchronized Grant open(Object owner, Session session) {
+        removeUnused();
+        Grant grant = new Grant(owner, session, queue);
+        grants.add(grant);
+        return grant;
+    }
+
+    /**
+     * Add memory to a grant.
+     *
+     * @param grant the grant
+     * @param memory the number of bytes
+     * @return false if the memory limit is reached, in which case the
+     *         operation should write its rows to disk
+     */
+    public synchronized boolean allocate(Grant grant, int memory) {
+        grant.memory += memory;
+        grant.session.addTempMemory(memory);
+        used += memory;
+        if (maxMemory <= 0 || used <= maxMemory || !database.isPersistent()) {
+            return true;
+        }
+        removeUnused();
+        if (used <= maxMemory) {
+            return true;
+        }
+        spillCount++;
+        return false;
+    }
+
+    /**
+     * Release all memory of a grant. This is called when the rows were
+     * written to disk.
+     *
+     * @param grant the grant
+     */
+    public synchronized void free(Grant grant) {
+        grant.session.addTempMemory(-grant.memory);
+        used -= grant.memory;
+        grant.memory = 0;
+    }
+
+    /**
+     * Release all memory of a grant. The grant can no longer be used.
+     *
+     * @param grant the grant
+     */
+    public synchronized void close(Grant grant) {
+        free(grant);
+        grants.remove(grant);
+        grant.clear();
+    }
+
+    private void removeUnused() {
+        while (true) {
+            Reference< ? > ref = queue.poll();
+            if (ref == null) {
+                break;
+            }
+            Grant grant = (Grant) ref;
+            if (grants.remove(grant)) {
+                free(grant);
+            }
+        }
+    }
+
+    /**
+     * Get a buffer to write a temporary file.
+     *
+     * @return the buffer
+     */
+    public DataPage getBuffer() {
+        synchronized (buffers) {
+            int size = buffers.size();
+            if (size > 0) {
+                return (DataPage) buffers.remove(size - 1);
+            }
+        }
+        return DataPage.create(database, Constants.DEFAULT_DATA_PAGE_SIZE);
+    }
+
+    /**
+     * Return a buffer to the pool.
+     *
+     * @param buff the buffer that is no longer used
+     */
+    public void returnBuffer(DataPage buff) {
+        if (buff == null || buff.getBytes().length > MAX_BUFFER_SIZE) {
+            return;
+        }
+        buff.reset();
+        synchronized (buffers) {
+            if (buffers.size() < MAX_BUFFERS) {
+                buffers.add(buff);
+            }
+        }
+    }
+
+    /**
+     * Get the memory currently used for temporary data.
+     *
+     * @return the memory in bytes
+     */
+    public synchronized long getUsedMemory() {
+        removeUnused();
+        return used;
+    }
+
+    /**
+     * Get the number of times an operation had to write its rows to disk
+     * because the memory limit was reached.
+     *
+     * @return the number of times
+     */
+    public synchronized long getSpillCount() {
+        return spillCount;
+    }
+
+}
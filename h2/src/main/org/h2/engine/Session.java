@@ -6,6 +6,8 @@
  */
 package org.h2.engine;
 
+import java.io.InputStream;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -20,6 +22,7 @@ import org.h2.constant.ErrorCode;
 import org.h2.constant.SysProperties;
 import org.h2.constraint.Constraint;
 import org.h2.index.Index;
+import org.h2.index.PageBtreeIndex;
 import org.h2.jdbc.JdbcConnection;
 import org.h2.log.InDoubtTransaction;
 import org.h2.log.LogSystem;
@@ -31,10 +34,12 @@ import org.h2.message.TraceSystem;
 import org.h2.result.ResultInterface;
 import org.h2.result.Row;
 import org.h2.schema.Schema;
+import org.h2.schema.Sequence;
 import org.h2.store.DataHandler;
 import org.h2.table.Table;
 import org.h2.util.New;
 import org.h2.util.ObjectArray;
+import org.h2.util.SmallLRUCache;
 import org.h2.value.Value;
 import org.h2.value.ValueLob;
 import org.h2.value.ValueLong;
@@ -86,14 +91,19 @@ public class Session extends SessionWithState {
     private int systemIdentifier;
     private HashMap<String, Procedure> procedures;
     private boolean undoLogEnabled = true;
+    private boolean deferIndexMaintenance;
+    private InputStream copyInput;
+    private HashSet<PageBtreeIndex> deferredIndexes;
     private boolean autoCommitAtTransactionEnd;
     private String currentTransactionName;
     private volatile long cancelAt;
     private boolean closed;
     private long sessionStart = System.currentTimeMillis();
     private long currentCommandStart;
+    private long tempMemory;
     private HashMap<String, Value> variables;
     private HashSet<ResultInterface> temporaryResults;
+    private final HashSet<ResultSet> temporaryResultSets = New.hashSet();
     private int queryTimeout = SysProperties.getMaxQueryTimeout();
     private int lastUncommittedDelete;
     private boolean commitOrRollbackDisabled;
@@ -101,6 +111,8 @@ public class Session extends SessionWithState {
     private int modificationId;
     private int modificationIdState;
     private int objectId;
+    private HashMap<Sequence, long[]> sequenceRanges;
+    private SmallLRUCache<String, Command> queryCache;
 
     public Session(Database database, User user, int id) {
         this.database = database;
@@ -412,8 +424,24 @@ public class Session extends SessionWithState {
         if (closed) {
             throw Message.getSQLException(ErrorCode.CONNECTION_BROKEN_1, "session closed");
         }
+        Command command;
+        if (SysProperties.QUERY_CACHE_SIZE > 0) {
+            if (queryCache == null) {
+                queryCache = SmallLRUCache.newInstance(SysProperties.QUERY_CACHE_SIZE);
+            } else {
+                command = queryCache.get(sql);
+                if (command != null && command.canReuse()) {
+                    command.reuse();
+                    return command;
+                }
+            }
+        }
         Parser parser = new Parser(this);
-        return parser.prepareCommand(sql);
+        command = parser.prepareCommand(sql);
+        if (queryCache != null && command.isCacheable()) {
+            queryCache.put(sql, command);
+        }
+        return command;
     }
 
     public Database getDatabase() {
@@ -695,6 +723,65 @@ public class Session extends SessionWithState {
         return lastIdentity;
     }
 
+    /**
+     * Remove all cached statements. This is required if the statements would
+     * be parsed differently now, for example because the current schema was
+     * changed.
+     */
+    private void clearQueryCache() {
+        if (queryCache != null) {
+            queryCache.clear();
+        }
+    }
+
+    /**
+     * Reserve a range of values of a sequence for this session. The next
+     * values of the sequence that are requested by this session are taken
+     * from the range, until it is used up or the reserved ranges are
+     * released.
+     *
+     * @param sequence the sequence
+     * @param count the number of values
+     */
+    public void reserveSequenceValues(Sequence sequence, long count) throws SQLException {
+        if (count <= 1) {
+            return;
+        }
+        if (sequenceRanges == null) {
+            sequenceRanges = New.hashMap();
+        }
+        long first = sequence.getNext(this, count);
+        sequenceRanges.put(sequence, new long[] { first, count });
+    }
+
+    /**
+     * Get the next value of a sequence. The value is taken from the range
+     * that is reserved for this session, if there is one.
+     *
+     * @param sequence the sequence
+     * @return the next value
+     */
+    public long getNextSequenceValue(Sequence sequence) throws SQLException {
+        if (sequenceRanges != null) {
+            long[] range = sequenceRanges.get(sequence);
+            if (range != null && range[1] > 0) {
+                long v = range[0];
+                range[0] += sequence.getIncrement();
+                range[1]--;
+                return v;
+            }
+        }
+        return sequence.getNext(this);
+    }
+
+    /**
+     * Release the ranges of sequence values that are reserved for this
+     * session. The values that were not used are lost.
+     */
+    public void releaseSequenceValues() {
+        sequenceRanges = null;
+    }
+
     /**
      * Called when a log entry for this session is added. The session keeps
      * track of the first entry in the log file that is not yet committed.
@@ -882,6 +969,7 @@ public class Session extends SessionWithState {
 
     public void setCurrentSchema(Schema schema) {
         modificationId++;
+        clearQueryCache();
         this.currentSchemaName = schema.getName();
     }
 
@@ -991,6 +1079,7 @@ public class Session extends SessionWithState {
 
     public void setSchemaSearchPath(String[] schemas) {
         modificationId++;
+        clearQueryCache();
         this.schemaSearchPath = schemas;
     }
 
@@ -1014,6 +1103,48 @@ public class Session extends SessionWithState {
         return undoLogEnabled;
     }
 
+    public void setDeferIndexMaintenance(boolean b) {
+        this.deferIndexMaintenance = b;
+    }
+
+    /**
+     * Check whether rows that are added should be added to the b-tree indexes
+     * at the end of the statement. This is only possible if the undo log is
+     * enabled, because a unique constraint violation is detected only when
+     * the statement is already executed.
+     *
+     * @return true if index maintenance should be deferred
+     */
+    public boolean isDeferIndexMaintenance() {
+        return deferIndexMaintenance && undoLogEnabled && !database.isMultiVersion();
+    }
+
+    /**
+     * Remember that the given index contains deferred rows.
+     *
+     * @param index the index
+     */
+    public void addDeferredIndex(PageBtreeIndex index) {
+        if (deferredIndexes == null) {
+            deferredIndexes = New.hashSet();
+        }
+        deferredIndexes.add(index);
+    }
+
+    /**
+     * Add the deferred rows to the indexes. This method is called at the end
+     * of each statement.
+     */
+    public void flushDeferredIndexes() throws SQLException {
+        if (deferredIndexes == null) {
+            return;
+        }
+        for (PageBtreeIndex index : deferredIndexes) {
+            index.flushDeferred();
+        }
+        deferredIndexes = null;
+    }
+
     /**
      * Begin a transaction.
      */
@@ -1026,6 +1157,25 @@ public class Session extends SessionWithState {
         return sessionStart;
     }
 
+    /**
+     * Update the memory used for temporary data of this session. This method
+     * is called by the memory broker.
+     *
+     * @param memory the number of bytes to add (may be negative)
+     */
+    void addTempMemory(long memory) {
+        tempMemory += memory;
+    }
+
+    /**
+     * Get the memory currently used for temporary data of this session.
+     *
+     * @return the memory in bytes
+     */
+    public long getTempMemory() {
+        return tempMemory;
+    }
+
     public Table[] getLocks() {
         synchronized (database) {
             Table[] list = new Table[locks.size()];
@@ -1072,9 +1222,36 @@ public class Session extends SessionWithState {
         }
     }
 
+    /**
+     * Remember a result set that is read by a function table, and close it at
+     * the end of the current statement if it is still open at that time (for
+     * example if not all rows were read because of a LIMIT). The result set
+     * may be added by another thread that evaluates the statement.
+     *
+     * @param rs the result set
+     */
+    public void addTemporaryResultSet(ResultSet rs) {
+        synchronized (temporaryResultSets) {
+            temporaryResultSets.add(rs);
+        }
+    }
+
+    /**
+     * Forget a result set that was added using addTemporaryResultSet,
+     * because it is already closed.
+     *
+     * @param rs the result set
+     */
+    public void removeTemporaryResultSet(ResultSet rs) {
+        synchronized (temporaryResultSets) {
+            temporaryResultSets.remove(rs);
+        }
+    }
+
     /**
      * Close all temporary result set. This also deletes all temporary files
-     * held by the result sets.
+     * held by the result sets, and closes the result sets of function tables
+     * that are still open.
      */
     public void closeTemporaryResults() {
         if (temporaryResults != null) {
@@ -1083,6 +1260,16 @@ public class Session extends SessionWithState {
             }
             temporaryResults = null;
         }
+        synchronized (temporaryResultSets) {
+            for (ResultSet rs : temporaryResultSets) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    getTrace().error("close", e);
+                }
+            }
+            temporaryResultSets.clear();
+        }
     }
 
     public void setQueryTimeout(int queryTimeout) {
@@ -1175,4 +1362,23 @@ public class Session extends SessionWithState {
         return scopeIdentity;
     }
 
+    /**
+     * Set the stream that is read by the statement COPY ... FROM STDIN. This
+     * is used by the PostgreSQL server.
+     *
+     * @param in the stream, or null
+     */
+    public void setCopyInput(InputStream in) {
+        this.copyInput = in;
+    }
+
+    /**
+     * Get the stream that is read by the statement COPY ... FROM STDIN.
+     *
+     * @return the stream, or null if not set
+     */
+    public InputStream getCopyInput() {
+        return copyInput;
+    }
+
 }
@@ -22,6 +22,7 @@ import org.h2.message.Message;
 import org.h2.message.Trace;
 import org.h2.message.TraceSystem;
 import org.h2.result.ResultInterface;
+import org.h2.result.ResultRemote;
 import org.h2.store.DataHandler;
 import org.h2.store.FileStore;
 import org.h2.util.ByteUtils;
@@ -79,6 +80,8 @@ public class SessionRemote extends SessionWithState implements SessionFactory, D
     private String sessionId;
     private int clientVersion = Constants.TCP_PROTOCOL_VERSION_5;
     private boolean autoReconnect;
+    private boolean compressTransfer;
+    private ResultRemote pendingFetch;
     private int lastReconnect;
     private SessionInterface embedded;
     private DatabaseEventListener eventListener;
@@ -97,9 +100,17 @@ public class SessionRemote extends SessionWithState implements SessionFactory, D
         trans.setSocket(socket);
         trans.setSSL(ci.isSSL());
         trans.init();
-        trans.writeInt(clientVersion);
-        if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_6) {
-            trans.writeInt(clientVersion);
+        int minVersion = clientVersion;
+        int maxVersion = clientVersion;
+        if (compressTransfer) {
+            // compressed blocks require version 7,
+            // which can only be negotiated using version 6
+            minVersion = Math.max(minVersion, Constants.TCP_PROTOCOL_VERSION_6);
+            maxVersion = Constants.TCP_PROTOCOL_VERSION_7;
+        }
+        trans.writeInt(minVersion);
+        if (minVersion >= Constants.TCP_PROTOCOL_VERSION_6) {
+            trans.writeInt(maxVersion);
         }
         trans.writeString(db);
         trans.writeString(ci.getOriginalURL());
@@ -113,13 +124,14 @@ public class SessionRemote extends SessionWithState implements SessionFactory, D
         }
         try {
             done(trans);
-            if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_6) {
+            if (minVersion >= Constants.TCP_PROTOCOL_VERSION_6) {
                 clientVersion = trans.readInt();
             }
         } catch (SQLException e) {
             trans.close();
             throw e;
         }
+        trans.setCompressBlocks(clientVersion >= Constants.TCP_PROTOCOL_VERSION_7);
         autoCommit = true;
         return trans;
     }
@@ -322,6 +334,7 @@ public class SessionRemote extends SessionWithState implements SessionFactory, D
                 }
             }
         }
+        compressTransfer = ci.removeProperty("COMPRESS_TRANSFER", compressTransfer);
         cipher = ci.getProperty("CIPHER");
         if (cipher != null) {
             fileEncryptionKey = RandomUtils.getSecureBytes(32);
@@ -329,6 +342,7 @@ public class SessionRemote extends SessionWithState implements SessionFactory, D
         String[] servers = StringUtils.arraySplit(server, ',', true);
         int len = servers.length;
         transferList.clear();
+        pendingFetch = null;
         // TODO cluster: support at most 2 connections
         boolean switchOffCluster = false;
         try {
@@ -363,7 +377,7 @@ public class SessionRemote extends SessionWithState implements SessionFactory, D
             if (result.next()) {
                 Value[] v = result.currentRow();
                 int version = v[0].getInt();
-                if (version > 71) {
+                if (version > 71 && clientVersion < Constants.TCP_PROTOCOL_VERSION_6) {
                     clientVersion = Constants.TCP_PROTOCOL_VERSION_6;
                 }
             }
@@ -511,6 +525,7 @@ public class SessionRemote extends SessionWithState implements SessionFactory, D
      *             and server
      */
     public void done(Transfer transfer) throws SQLException, IOException {
+        readPendingFetch();
         transfer.flush();
         int status = transfer.readInt();
         if (status == STATUS_ERROR) {
@@ -531,6 +546,29 @@ public class SessionRemote extends SessionWithState implements SessionFactory, D
         }
     }
 
+    /**
+     * Remember that the given result has requested rows from the server that
+     * were not read yet. Only one such request may be pending per session,
+     * because the server replies in the order of the requests.
+     *
+     * @param result the result that is waiting for rows
+     */
+    public void setPendingFetch(ResultRemote result) {
+        this.pendingFetch = result;
+    }
+
+    /**
+     * Read the rows of the pending fetch request, if there is one. This needs
+     * to be done before reading the reply of any other request.
+     */
+    public void readPendingFetch() throws SQLException, IOException {
+        if (pendingFetch != null) {
+            ResultRemote result = pendingFetch;
+            pendingFetch = null;
+            result.readPrefetchedRows();
+        }
+    }
+
     /**
      * Returns true if the connection is in cluster mode.
      *
@@ -233,7 +233,7 @@ public class Aggregate extends Expression {
 
         AggregateData data = (AggregateData) group.get(this);
         if (data == null) {
-            data = new AggregateData(type, dataType);
+            data = createData();
             group.put(this, data);
         }
         Value v = on == null ? null : on.getValue(session);
@@ -254,6 +254,11 @@ public class Aggregate extends Expression {
         data.add(session.getDatabase(), distinct, v);
     }
 
+    private AggregateData createData() {
+        int argType = on == null ? Value.UNKNOWN : on.getType();
+        return AggregateData.create(type, dataType, argType, distinct);
+    }
+
     public Value getValue(Session session) throws SQLException {
         if (select.isQuickAggregateQuery()) {
             switch (type) {
@@ -287,11 +292,11 @@ public class Aggregate extends Expression {
         }
         AggregateData data = (AggregateData) group.get(this);
         if (data == null) {
-            data = new AggregateData(type, dataType);
+            data = createData();
         }
         Value v = data.getValue(session.getDatabase(), distinct);
         if (type == GROUP_CONCAT) {
-            ObjectArray<Value> list = data.getList();
+            ObjectArray<Value> list = ((AggregateDataDefault) data).getList();
             if (list == null || list.size() == 0) {
                 return ValueNull.INSTANCE;
             }
@@ -339,6 +344,15 @@ public class Aggregate extends Expression {
         return dataType;
     }
 
+    /**
+     * Check if this is COUNT(*).
+     *
+     * @return true if it is
+     */
+    public boolean isCountAll() {
+        return type == COUNT_ALL;
+    }
+
     public void mapColumns(ColumnResolver resolver, int level) throws SQLException {
         if (on != null) {
             on.mapColumns(resolver, level);
@@ -7,147 +7,71 @@
 package org.h2.expression;
 
 import java.sql.SQLException;
-import org.h2.engine.Constants;
 import org.h2.engine.Database;
-import org.h2.message.Message;
-import org.h2.util.ObjectArray;
-import org.h2.util.ValueHashMap;
-import org.h2.value.DataType;
 import org.h2.value.Value;
-import org.h2.value.ValueBoolean;
-import org.h2.value.ValueDouble;
-import org.h2.value.ValueInt;
 import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
 
 /**
  * Data stored while calculating an aggregate.
  */
-class AggregateData {
-    private final int aggregateType;
-    private final int dataType;
-    private long count;
-    private ValueHashMap<AggregateData> distinctValues;
-    private Value value;
-    private double sum, vpn;
-    private ObjectArray<Value> list;
-
-    AggregateData(int aggregateType, int dataType) {
-        this.aggregateType = aggregateType;
-        this.dataType = dataType;
-    }
+abstract class AggregateData {
 
     /**
-     * Add a value to this aggregate.
+     * Create an AggregateData object of the correct sub-type. Aggregates on
+     * numeric arguments use implementations that work on primitive values.
      *
-     * @param database the database
-     * @param distinct if the calculation should be distinct
-     * @param v the value
+     * @param aggregateType the type of the aggregate operation
+     * @param dataType the data type of the result
+     * @param argType the data type of the argument
+     * @param distinct if the calculation is distinct
+     * @return the aggregate data object
      */
-    void add(Database database, boolean distinct, Value v) throws SQLException {
-        if (aggregateType == Aggregate.SELECTIVITY) {
-            count++;
-            if (distinctValues == null) {
-                distinctValues = ValueHashMap.newInstance(database);
-            }
-            int size = distinctValues.size();
-            if (size > Constants.SELECTIVITY_DISTINCT_COUNT) {
-                distinctValues = ValueHashMap.newInstance(database);
-                sum += size;
-            }
-            distinctValues.put(v, this);
-            return;
-        }
-        if (aggregateType == Aggregate.COUNT_ALL) {
-            count++;
-            return;
-        }
-        if (v == ValueNull.INSTANCE) {
-            return;
-        }
-        count++;
-        if (distinct) {
-            if (distinctValues == null) {
-                distinctValues = ValueHashMap.newInstance(database);
-            }
-            distinctValues.put(v, this);
-            return;
-        }
+    static AggregateData create(int aggregateType, int dataType, int argType, boolean distinct) {
         switch (aggregateType) {
-        case Aggregate.COUNT:
-            return;
         case Aggregate.SUM:
-            if (value == null) {
-                value = v.convertTo(dataType);
-            } else {
-                v = v.convertTo(value.getType());
-                value = value.add(v);
-            }
-            break;
         case Aggregate.AVG:
-            if (value == null) {
-                value = v.convertTo(DataType.getAddProofType(dataType));
-            } else {
-                v = v.convertTo(value.getType());
-                value = value.add(v);
-            }
-            break;
         case Aggregate.MIN:
-            if (value == null || database.compare(v, value) < 0) {
-                value = v;
-            }
-            break;
         case Aggregate.MAX:
-            if (value == null || database.compare(v, value) > 0) {
-                value = v;
-            }
-            break;
-        case Aggregate.GROUP_CONCAT: {
-            if (list == null) {
-                list = ObjectArray.newInstance();
+            if (distinct) {
+                break;
             }
-            list.add(v);
-            break;
-        }
-        case Aggregate.STDDEV_POP:
-        case Aggregate.STDDEV_SAMP:
-        case Aggregate.VAR_POP:
-        case Aggregate.VAR_SAMP: {
-            double x = v.getDouble();
-            if (count == 1) {
-                sum = x;
-                vpn = 0;
-            } else {
-                double xs = sum - (x * (count - 1));
-                vpn += (xs * xs) / count / (count - 1);
-                sum += x;
+            switch (argType) {
+            case Value.BYTE:
+            case Value.SHORT:
+            case Value.INT:
+            case Value.LONG:
+                return new AggregateDataLong(aggregateType, dataType, argType);
+            case Value.FLOAT:
+            case Value.DOUBLE:
+                return new AggregateDataDouble(aggregateType, dataType);
+            default:
             }
             break;
-        }
-        case Aggregate.BOOL_AND:
-            v = v.convertTo(Value.BOOLEAN);
-            if (value == null) {
-                value = v;
-            } else {
-                value = ValueBoolean.get(value.getBoolean().booleanValue() && v.getBoolean().booleanValue());
-            }
-            break;
-        case Aggregate.BOOL_OR:
-            v = v.convertTo(Value.BOOLEAN);
-            if (value == null) {
-                value = v;
-            } else {
-                value = ValueBoolean.get(value.getBoolean().booleanValue() || v.getBoolean().booleanValue());
+        case Aggregate.COUNT:
+            if (distinct) {
+                switch (argType) {
+                case Value.BYTE:
+                case Value.SHORT:
+                case Value.INT:
+                    return new AggregateDataCountDistinct();
+                default:
+                }
             }
             break;
         default:
-            Message.throwInternalError("type=" + aggregateType);
         }
+        return new AggregateDataDefault(aggregateType, dataType);
     }
 
-    ObjectArray<Value> getList() {
-        return list;
-    }
+    /**
+     * Add a value to this aggregate.
+     *
+     * @param database the database
+     * @param distinct if the calculation should be distinct
+     * @param v the value
+     */
+    abstract void add(Database database, boolean distinct, Value v) throws SQLException;
 
     /**
      * Get the aggregate result.
@@ -156,79 +80,16 @@ class AggregateData {
      * @param distinct if distinct is used
      * @return the value
      */
-    Value getValue(Database database, boolean distinct) throws SQLException {
-        if (distinct) {
-            count = 0;
-            groupDistinct(database);
-        }
-        Value v = null;
-        switch (aggregateType) {
-        case Aggregate.SELECTIVITY: {
-            int s = 0;
-            if (count == 0) {
-                s = 0;
-            } else {
-                sum += distinctValues.size();
-                sum = 100 * sum / count;
-                s = (int) sum;
-                s = s <= 0 ? 1 : s > 100 ? 100 : s;
-            }
-            v = ValueInt.get(s);
-            break;
-        }
-        case Aggregate.COUNT:
-        case Aggregate.COUNT_ALL:
-            v = ValueLong.get(count);
-            break;
-        case Aggregate.SUM:
-        case Aggregate.MIN:
-        case Aggregate.MAX:
-        case Aggregate.BOOL_OR:
-        case Aggregate.BOOL_AND:
-            v = value;
-            break;
-        case Aggregate.AVG:
-            if (value != null) {
-                v = divide(value, count);
-            }
-            break;
-        case Aggregate.GROUP_CONCAT:
-            return null;
-        case Aggregate.STDDEV_POP: {
-            if (count < 1) {
-                return ValueNull.INSTANCE;
-            }
-            v = ValueDouble.get(Math.sqrt(vpn / count));
-            break;
-        }
-        case Aggregate.STDDEV_SAMP: {
-            if (count < 2) {
-                return ValueNull.INSTANCE;
-            }
-            v = ValueDouble.get(Math.sqrt(vpn / (count - 1)));
-            break;
-        }
-        case Aggregate.VAR_POP: {
-            if (count < 1) {
-                return ValueNull.INSTANCE;
-            }
-            v = ValueDouble.get(vpn / count);
-            break;
-        }
-        case Aggregate.VAR_SAMP: {
-            if (count < 2) {
-                return ValueNull.INSTANCE;
-            }
-            v = ValueDouble.get(vpn / (count - 1));
-            break;
-        }
-        default:
-            Message.throwInternalError("type=" + aggregateType);
-        }
-        return v == null ? ValueNull.INSTANCE : v.convertTo(dataType);
-    }
+    abstract Value getValue(Database database, boolean distinct) throws SQLException;
 
-    private Value divide(Value a, long by) throws SQLException {
+    /**
+     * Divide a value by the number of rows.
+     *
+     * @param a the value
+     * @param by the number of rows
+     * @return the result, or NULL if there are no rows
+     */
+    static Value divide(Value a, long by) throws SQLException {
         if (by == 0) {
             return ValueNull.INSTANCE;
         }
@@ -238,18 +99,4 @@ class AggregateData {
         return a;
     }
 
-    private void groupDistinct(Database database) throws SQLException {
-        if (distinctValues == null) {
-            return;
-        }
-        if (aggregateType == Aggregate.COUNT) {
-            count = distinctValues.size();
-        } else {
-            count = 0;
-            for (Value v : distinctValues.keys()) {
-                add(database, false, v);
-            }
-        }
-    }
-
 }
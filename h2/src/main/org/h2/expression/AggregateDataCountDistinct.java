@@ -0,0 +1,33 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.sql.SQLException;
+import org.h2.engine.Database;
+import org.h2.util.IntIntHashMap;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * Data stored while calculating COUNT(DISTINCT ...) of an INT, SMALLINT, or
+ * TINYINT argument. The distinct values are kept in a primitive hash set.
+ */
+class AggregateDataCountDistinct extends AggregateData {
+    private final IntIntHashMap distinctValues = new IntIntHashMap();
+
+    void add(Database database, boolean distinct, Value v) throws SQLException {
+        if (v != ValueNull.INSTANCE) {
+            distinctValues.put(v.getInt(), 0);
+        }
+    }
+
+    Value getValue(Database database, boolean distinct) {
+        return ValueLong.get(distinctValues.size());
+    }
+
+}
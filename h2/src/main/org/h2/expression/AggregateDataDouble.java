@@ -0,0 +1,107 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.sql.SQLException;
+import org.h2.engine.Database;
+import org.h2.message.Message;
+import org.h2.value.Value;
+import org.h2.value.ValueDouble;
+import org.h2.value.ValueNull;
+
+/**
+ * Data stored while calculating SUM, AVG, MIN, or MAX of a floating point
+ * argument. The sum uses Kahan-Babuska summation (a variant of Kahan
+ * summation) to reduce the rounding error.
+ */
+class AggregateDataDouble extends AggregateData {
+    private final int aggregateType;
+    private final int dataType;
+    private long count;
+
+    /**
+     * The sum, or the current minimum or maximum.
+     */
+    private double value;
+
+    /**
+     * The rounding error of the sum.
+     */
+    private double compensation;
+
+    /**
+     * The row value of the current minimum or maximum.
+     */
+    private Value extreme;
+
+    AggregateDataDouble(int aggregateType, int dataType) {
+        this.aggregateType = aggregateType;
+        this.dataType = dataType;
+    }
+
+    void add(Database database, boolean distinct, Value v) throws SQLException {
+        if (v == ValueNull.INSTANCE) {
+            return;
+        }
+        count++;
+        double x = v.getDouble();
+        switch (aggregateType) {
+        case Aggregate.SUM:
+        case Aggregate.AVG: {
+            double t = value + x;
+            if (Math.abs(value) >= Math.abs(x)) {
+                compensation += (value - t) + x;
+            } else {
+                compensation += (x - t) + value;
+            }
+            value = t;
+            break;
+        }
+        case Aggregate.MIN:
+            if (extreme == null || Double.compare(x, value) < 0) {
+                value = x;
+                extreme = v;
+            }
+            break;
+        case Aggregate.MAX:
+            if (extreme == null || Double.compare(x, value) > 0) {
+                value = x;
+                extreme = v;
+            }
+            break;
+        default:
+            Message.throwInternalError("type=" + aggregateType);
+        }
+    }
+
+    Value getValue(Database database, boolean distinct) throws SQLException {
+        if (count == 0) {
+            return ValueNull.INSTANCE;
+        }
+        Value v;
+        switch (aggregateType) {
+        case Aggregate.SUM:
+            v = ValueDouble.get(getSum());
+            break;
+        case Aggregate.AVG:
+            v = divide(ValueDouble.get(getSum()), count);
+            break;
+        default:
+            v = extreme;
+        }
+        return v.convertTo(dataType);
+    }
+
+    private double getSum() {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            // the compensation is meaningless in this case
+            return value;
+        }
+        return value + compensation;
+    }
+
+}
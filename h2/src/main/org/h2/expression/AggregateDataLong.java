@@ -0,0 +1,120 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import org.h2.engine.Database;
+import org.h2.message.Message;
+import org.h2.value.Value;
+import org.h2.value.ValueDecimal;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * Data stored while calculating SUM, AVG, MIN, or MAX of an integer
+ * argument. The values are added as long values, so that no objects are
+ * created for each row.
+ */
+class AggregateDataLong extends AggregateData {
+    private final int aggregateType;
+    private final int dataType;
+
+    /**
+     * If the sum is a DECIMAL (for BIGINT arguments).
+     */
+    private final boolean decimalSum;
+    private long count;
+
+    /**
+     * The sum, or the current minimum or maximum.
+     */
+    private long value;
+
+    /**
+     * The part of a DECIMAL sum that doesn't fit in the long value.
+     */
+    private BigDecimal overflow;
+
+    /**
+     * The row value of the current minimum or maximum.
+     */
+    private Value extreme;
+
+    AggregateDataLong(int aggregateType, int dataType, int argType) {
+        this.aggregateType = aggregateType;
+        this.dataType = dataType;
+        this.decimalSum = argType == Value.LONG;
+    }
+
+    void add(Database database, boolean distinct, Value v) throws SQLException {
+        if (v == ValueNull.INSTANCE) {
+            return;
+        }
+        count++;
+        long x = v.getLong();
+        switch (aggregateType) {
+        case Aggregate.SUM:
+        case Aggregate.AVG: {
+            long r = value + x;
+            if (((value ^ r) & (x ^ r)) < 0) {
+                if (!decimalSum) {
+                    // throws an exception unless overflow is allowed
+                    r = ValueLong.get(value).add(ValueLong.get(x)).getLong();
+                } else {
+                    BigDecimal b = BigDecimal.valueOf(value);
+                    overflow = overflow == null ? b : overflow.add(b);
+                    r = x;
+                }
+            }
+            value = r;
+            break;
+        }
+        case Aggregate.MIN:
+            if (extreme == null || x < value) {
+                value = x;
+                extreme = v;
+            }
+            break;
+        case Aggregate.MAX:
+            if (extreme == null || x > value) {
+                value = x;
+                extreme = v;
+            }
+            break;
+        default:
+            Message.throwInternalError("type=" + aggregateType);
+        }
+    }
+
+    Value getValue(Database database, boolean distinct) throws SQLException {
+        if (count == 0) {
+            return ValueNull.INSTANCE;
+        }
+        Value v;
+        switch (aggregateType) {
+        case Aggregate.SUM:
+            v = getSum();
+            break;
+        case Aggregate.AVG:
+            v = divide(getSum(), count);
+            break;
+        default:
+            v = extreme;
+        }
+        return v.convertTo(dataType);
+    }
+
+    private Value getSum() {
+        if (!decimalSum) {
+            return ValueLong.get(value);
+        }
+        BigDecimal b = BigDecimal.valueOf(value);
+        return ValueDecimal.get(overflow == null ? b : overflow.add(b));
+    }
+
+}
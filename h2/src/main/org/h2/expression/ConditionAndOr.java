@@ -271,6 +271,15 @@ public class ConditionAndOr extends Condition {
         return this;
     }
 
+    /**
+     * Get the type of this condition.
+     *
+     * @return AND or OR
+     */
+    public int getAndOrType() {
+        return andOrType;
+    }
+
     /**
      * Get the left or the right sub-expression of this condition.
      *
@@ -260,6 +260,24 @@ public class ConditionIn extends Condition {
         return new ConditionAndOr(ConditionAndOr.AND, this, on);
     }
 
+    /**
+     * Get the expression before IN.
+     *
+     * @return the expression
+     */
+    public Expression getLeft() {
+        return left;
+    }
+
+    /**
+     * Get the list of values.
+     *
+     * @return the value list
+     */
+    public ObjectArray<Expression> getValueList() {
+        return valueList;
+    }
+
     /**
      * Add an additional element if possible. Example: given two conditions
      * A IN(1, 2) OR A=3, the constant 3 is added: A IN(1, 2, 3).
@@ -251,6 +251,8 @@ public class ExpressionColumn extends Expression {
             return true;
         case ExpressionVisitor.NOT_FROM_RESOLVER:
             return resolver != visitor.getResolver();
+        case ExpressionVisitor.PARALLEL:
+            return resolver == visitor.getResolver();
         case ExpressionVisitor.GET_DEPENDENCIES:
             visitor.addDependency(column.getTable());
             return true;
@@ -11,6 +11,7 @@ import java.util.HashSet;
 import org.h2.engine.DbObject;
 import org.h2.table.ColumnResolver;
 import org.h2.table.Table;
+import org.h2.util.ObjectArray;
 
 /**
  * The visitor pattern is used to iterate through all expressions of a query
@@ -63,12 +64,22 @@ public class ExpressionVisitor {
      */
     public static final int GET_DEPENDENCIES = 7;
 
+    /**
+     * Can the expression be evaluated by another thread, using a copy of the
+     * query (getParameters)? This is only the case if the expression only
+     * depends on columns of the given table filter (getResolver) and on
+     * parameters, is deterministic, and does not read tables or call user
+     * defined code.
+     */
+    public static final int PARALLEL = 8;
+
     private int queryLevel;
     private Table table;
     private int type;
     private long maxDataModificationId;
     private ColumnResolver resolver;
     private HashSet<DbObject> dependencies;
+    private ObjectArray<Parameter> parameters;
 
     private ExpressionVisitor(int type) {
         this.type = type;
@@ -114,6 +125,30 @@ public class ExpressionVisitor {
         this.dependencies = dependencies;
     }
 
+    /**
+     * Add a parameter to the list of parameters.
+     * This is used for PARALLEL visitors.
+     *
+     * @param parameter the parameter
+     */
+    public void addParameter(Parameter parameter) {
+        if (parameters == null) {
+            parameters = ObjectArray.newInstance();
+        }
+        parameters.add(parameter);
+    }
+
+    /**
+     * Get the parameters that are used in the expression, or null if there
+     * are none.
+     * This is used for PARALLEL visitors.
+     *
+     * @return the list of parameters
+     */
+    public ObjectArray<Parameter> getParameters() {
+        return parameters;
+    }
+
     /**
      * Increment or decrement the query level.
      *
@@ -305,7 +305,7 @@ public class Function extends Expression implements FunctionCall {
         addFunctionNotDeterministic("NEXTVAL", NEXTVAL, VAR_ARGS, Value.LONG);
         addFunctionNotDeterministic("CURRVAL", CURRVAL, VAR_ARGS, Value.LONG);
         addFunction("ARRAY_GET", ARRAY_GET, 2, Value.STRING);
-        addFunction("CSVREAD", CSVREAD, VAR_ARGS, Value.RESULT_SET, false, false);
+        addFunction("CSVREAD", CSVREAD, VAR_ARGS, Value.RESULT_SET, false, false, false);
         addFunction("CSVWRITE", CSVWRITE, VAR_ARGS, Value.INT, false, false);
         addFunctionNotDeterministic("MEMORY_FREE", MEMORY_FREE, 0, Value.INT);
         addFunctionNotDeterministic("MEMORY_USED", MEMORY_USED, 0, Value.INT);
@@ -324,6 +324,11 @@ public class Function extends Expression implements FunctionCall {
         // TableFunction
         addFunctionWithNull("TABLE", TABLE, VAR_ARGS, Value.RESULT_SET);
         addFunctionWithNull("TABLE_DISTINCT", TABLE_DISTINCT, VAR_ARGS, Value.RESULT_SET);
+
+        // these functions use the session or the database
+        setNotParallel("LINK_SCHEMA");
+        setNotParallel("CANCEL_SESSION");
+        setNotParallel("FILE_READ");
     }
 
     protected Function(Database database, FunctionInfo info) {
@@ -338,6 +343,11 @@ public class Function extends Expression implements FunctionCall {
 
     private static void addFunction(String name, int type, int parameterCount, int dataType,
             boolean nullIfParameterIsNull, boolean deterministic) {
+        addFunction(name, type, parameterCount, dataType, nullIfParameterIsNull, deterministic, true);
+    }
+
+    private static void addFunction(String name, int type, int parameterCount, int dataType,
+            boolean nullIfParameterIsNull, boolean deterministic, boolean bufferResultSetToLocalTemp) {
         FunctionInfo info = new FunctionInfo();
         info.name = name;
         info.type = type;
@@ -345,6 +355,7 @@ public class Function extends Expression implements FunctionCall {
         info.dataType = dataType;
         info.nullIfParameterIsNull = nullIfParameterIsNull;
         info.deterministic = deterministic;
+        info.bufferResultSetToLocalTemp = bufferResultSetToLocalTemp;
         FUNCTIONS.put(name, info);
     }
 
@@ -356,6 +367,10 @@ public class Function extends Expression implements FunctionCall {
         addFunction(name, type, parameterCount, dataType, true, true);
     }
 
+    private static void setNotParallel(String name) {
+        FUNCTIONS.get(name).parallel = false;
+    }
+
     private static void addFunctionWithNull(String name, int type, int parameterCount, int dataType) {
         addFunction(name, type, parameterCount, dataType, false, true);
     }
@@ -1925,8 +1940,18 @@ public class Function extends Expression implements FunctionCall {
     }
 
     public boolean isEverything(ExpressionVisitor visitor) {
-        if (visitor.getType() == ExpressionVisitor.DETERMINISTIC && !info.deterministic) {
-            return false;
+        switch (visitor.getType()) {
+        case ExpressionVisitor.DETERMINISTIC:
+            if (!info.deterministic) {
+                return false;
+            }
+            break;
+        case ExpressionVisitor.PARALLEL:
+            if (!info.deterministic || !info.parallel) {
+                return false;
+            }
+            break;
+        default:
         }
         for (Expression e : args) {
             if (e != null && !e.isEverything(visitor)) {
@@ -1948,4 +1973,8 @@ public class Function extends Expression implements FunctionCall {
         return info.deterministic;
     }
 
+    public boolean isBufferResultSetToLocalTemp() {
+        return info.bufferResultSetToLocalTemp;
+    }
+
 }
@@ -84,4 +84,13 @@ public interface FunctionCall {
      * @return true if it does
      */
     boolean isDeterministic();
+
+    /**
+     * Whether the result set of the function should be buffered in a local
+     * result before it is used. If not, the rows are read from the result set
+     * when they are needed.
+     *
+     * @return true if it should be buffered
+     */
+    boolean isBufferResultSetToLocalTemp();
 }
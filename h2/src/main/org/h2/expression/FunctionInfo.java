@@ -40,4 +40,17 @@ class FunctionInfo {
      * If this function always returns the same value for the same parameters.
      */
     boolean deterministic;
+
+    /**
+     * If this function may be evaluated by a thread other than the one that
+     * runs the statement. This is not the case for functions that use the
+     * session or the database, for example to run statements.
+     */
+    boolean parallel = true;
+
+    /**
+     * If the result of the function should be buffered in a local result
+     * before it is used as a table.
+     */
+    boolean bufferResultSetToLocalTemp = true;
 }
@@ -11,6 +11,7 @@ import java.sql.SQLException;
 import java.util.HashMap;
 
 import org.h2.api.AggregateFunction;
+import org.h2.api.BatchAggregateFunction;
 import org.h2.command.Parser;
 import org.h2.command.dml.Select;
 import org.h2.constant.ErrorCode;
@@ -29,12 +30,61 @@ import org.h2.value.ValueNull;
  */
 public class JavaAggregate extends Expression {
 
+    /**
+     * The number of rows passed to a batch aggregate function at once.
+     */
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    /**
+     * The rows of one group that were not yet passed to the batch aggregate
+     * function. The buffer starts small and grows up to the maximum batch size,
+     * so that queries with many small groups don't use much memory.
+     */
+    private static class Batch {
+        final BatchAggregateFunction agg;
+        double[][] values;
+        int count;
+
+        Batch(BatchAggregateFunction agg, int argCount) {
+            this.agg = agg;
+            values = new double[argCount][16];
+        }
+
+        void add(double[] row) throws SQLException {
+            int len = values[0].length;
+            if (count == len) {
+                if (len < MAX_BATCH_SIZE) {
+                    for (int i = 0; i < values.length; i++) {
+                        double[] v = new double[len * 2];
+                        System.arraycopy(values[i], 0, v, 0, len);
+                        values[i] = v;
+                    }
+                } else {
+                    flush();
+                }
+            }
+            for (int i = 0; i < row.length; i++) {
+                values[i][count] = row[i];
+            }
+            count++;
+        }
+
+        void flush() throws SQLException {
+            if (count > 0) {
+                agg.addBatch(values, count);
+                count = 0;
+            }
+        }
+    }
+
     private final UserAggregate userAggregate;
     private final Select select;
     private AggregateFunction aggregate;
     private Expression[] args;
     private int[] argTypes;
     private int dataType;
+    private boolean batch;
+    private double[] batchRow;
     private Connection userConnection;
     private int lastGroupRowId;
 
@@ -81,6 +131,7 @@ public class JavaAggregate extends Expression {
     public boolean isEverything(ExpressionVisitor visitor) {
         switch(visitor.getType()) {
         case ExpressionVisitor.DETERMINISTIC:
+        case ExpressionVisitor.PARALLEL:
             // TODO optimization: some functions are deterministic, but we don't
             // know (no setting for that)
             return false;
@@ -118,6 +169,10 @@ public class JavaAggregate extends Expression {
             argSqlTypes[i] = DataType.convertTypeToSQLType(type);
         }
         aggregate = getInstance();
+        batch = args.length > 0 && aggregate instanceof BatchAggregateFunction;
+        if (batch) {
+            batchRow = new double[args.length];
+        }
         dataType = DataType.convertSQLTypeToValueType(aggregate.getType(argSqlTypes));
         return this;
     }
@@ -139,9 +194,16 @@ public class JavaAggregate extends Expression {
         if (group == null) {
             throw Message.getSQLException(ErrorCode.INVALID_USE_OF_AGGREGATE_FUNCTION_1, getSQL());
         }
-        AggregateFunction agg = (AggregateFunction) group.get(this);
-        if (agg == null) {
+        Object data = group.get(this);
+        AggregateFunction agg;
+        if (data == null) {
             agg = getInstance();
+        } else if (batch) {
+            Batch b = (Batch) data;
+            b.flush();
+            agg = b.agg;
+        } else {
+            agg = (AggregateFunction) data;
         }
         Object obj = agg.getResult();
         if (obj == null) {
@@ -164,6 +226,22 @@ public class JavaAggregate extends Expression {
         }
         lastGroupRowId = groupRowId;
 
+        if (batch) {
+            Batch b = (Batch) group.get(this);
+            if (b == null) {
+                b = new Batch((BatchAggregateFunction) getInstance(), args.length);
+                group.put(this, b);
+            }
+            for (int i = 0; i < args.length; i++) {
+                Value v = args[i].getValue(session);
+                if (v == ValueNull.INSTANCE) {
+                    return;
+                }
+                batchRow[i] = v.getDouble();
+            }
+            b.add(batchRow);
+            return;
+        }
         AggregateFunction agg = (AggregateFunction) group.get(this);
         if (agg == null) {
             agg = getInstance();
@@ -127,6 +127,9 @@ public class JavaFunction extends Expression implements FunctionCall {
         case ExpressionVisitor.GET_DEPENDENCIES:
             visitor.addDependency(functionAlias);
             break;
+        case ExpressionVisitor.PARALLEL:
+            // user defined functions may not be thread safe
+            return false;
         default:
         }
         for (Expression e : args) {
@@ -149,4 +152,8 @@ public class JavaFunction extends Expression implements FunctionCall {
         return functionAlias.isDeterministic();
     }
 
+    public boolean isBufferResultSetToLocalTemp() {
+        return true;
+    }
+
 }
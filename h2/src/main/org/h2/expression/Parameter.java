@@ -145,6 +145,9 @@ public class Parameter extends Expression implements ParameterInterface {
             return true;
         case ExpressionVisitor.GET_DEPENDENCIES:
             return true;
+        case ExpressionVisitor.PARALLEL:
+            visitor.addParameter(this);
+            return true;
         default:
             throw Message.throwInternalError("type="+visitor.getType());
         }
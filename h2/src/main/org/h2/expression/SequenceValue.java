@@ -29,7 +29,7 @@ public class SequenceValue extends Expression {
     }
 
     public Value getValue(Session session) throws SQLException {
-        long value = sequence.getNext(session);
+        long value = session.getNextSequenceValue(sequence);
         session.setLastIdentity(ValueLong.get(value));
         return ValueLong.get(value);
     }
@@ -86,6 +86,8 @@ public class SequenceValue extends Expression {
             return true;
         case ExpressionVisitor.NOT_FROM_RESOLVER:
             return true;
+        case ExpressionVisitor.PARALLEL:
+            return false;
         case ExpressionVisitor.GET_DEPENDENCIES:
             visitor.addDependency(sequence);
             return true;
@@ -147,6 +147,8 @@ public class ValueExpression extends Expression {
             return true;
         case ExpressionVisitor.NOT_FROM_RESOLVER:
             return true;
+        case ExpressionVisitor.PARALLEL:
+            return true;
         case ExpressionVisitor.GET_DEPENDENCIES:
             return true;
         default:
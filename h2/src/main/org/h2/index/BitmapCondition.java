@@ -0,0 +1,332 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+
+import org.h2.engine.Session;
+import org.h2.expression.Comparison;
+import org.h2.expression.ConditionAndOr;
+import org.h2.expression.ConditionIn;
+import org.h2.expression.ConditionNot;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.ExpressionVisitor;
+import org.h2.result.Row;
+import org.h2.table.Column;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.util.RoaringBitmap;
+import org.h2.util.StatementBuilder;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * A condition that is evaluated using the bitmap indexes of a table. The
+ * conditions on columns with a bitmap index are evaluated once for each
+ * distinct value of the column, and the row key sets of the values are
+ * combined using AND, OR and NOT. Other conditions are not evaluated: the
+ * result then contains more rows than match, so the condition still needs to
+ * be checked for each row.
+ */
+public class BitmapCondition {
+
+    private static final int LEAF = 0, AND = 1, OR = 2, NOT = 3, UNKNOWN = 4;
+
+    private final int type;
+    private BitmapCondition left, right;
+    private Expression expression;
+    private BitmapIndex index;
+
+    /**
+     * Whether the result may contain less than all rows.
+     */
+    private boolean restrictsTrue;
+
+    /**
+     * Whether the negated result may contain less than all rows.
+     */
+    private boolean restrictsFalse;
+
+    private BitmapCondition(int type) {
+        this.type = type;
+    }
+
+    /**
+     * Create a bitmap condition for the given table filter.
+     *
+     * @param session the session
+     * @param filter the table filter
+     * @param condition the condition
+     * @return the bitmap condition, or null if the bitmap indexes of the table
+     *         can not be used to reduce the number of rows to read
+     */
+    public static BitmapCondition get(Session session, TableFilter filter, Expression condition) {
+        boolean hasBitmapIndex = false;
+        for (Index idx : filter.getTable().getIndexes()) {
+            if (idx instanceof BitmapIndex) {
+                hasBitmapIndex = true;
+                break;
+            }
+        }
+        if (!hasBitmapIndex) {
+            return null;
+        }
+        BitmapCondition c = build(session, filter, condition);
+        return c.restrictsTrue ? c : null;
+    }
+
+    private static BitmapCondition build(Session session, TableFilter filter, Expression e) {
+        BitmapCondition c;
+        if (e instanceof ConditionAndOr) {
+            ConditionAndOr andOr = (ConditionAndOr) e;
+            BitmapCondition l = build(session, filter, andOr.getExpression(true));
+            BitmapCondition r = build(session, filter, andOr.getExpression(false));
+            if (andOr.getAndOrType() == ConditionAndOr.AND) {
+                c = new BitmapCondition(AND);
+                c.restrictsTrue = l.restrictsTrue || r.restrictsTrue;
+                c.restrictsFalse = l.restrictsFalse && r.restrictsFalse;
+            } else {
+                c = new BitmapCondition(OR);
+                c.restrictsTrue = l.restrictsTrue && r.restrictsTrue;
+                c.restrictsFalse = l.restrictsFalse || r.restrictsFalse;
+            }
+            c.left = l;
+            c.right = r;
+        } else if (e instanceof ConditionNot) {
+            // the negation of NOT(X) is X
+            BitmapCondition l = build(session, filter, e.getNotIfPossible(session));
+            c = new BitmapCondition(NOT);
+            c.restrictsTrue = l.restrictsFalse;
+            c.restrictsFalse = l.restrictsTrue;
+            c.left = l;
+        } else {
+            BitmapIndex idx = getLeafIndex(filter, e);
+            if (idx == null) {
+                c = new BitmapCondition(UNKNOWN);
+            } else {
+                c = new BitmapCondition(LEAF);
+                c.expression = e;
+                c.index = idx;
+                c.restrictsTrue = true;
+                c.restrictsFalse = true;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Get the bitmap index if the expression only depends on one column of
+     * the table filter, and this column has a bitmap index.
+     *
+     * @param filter the table filter
+     * @param e the expression
+     * @return the index, or null
+     */
+    private static BitmapIndex getLeafIndex(TableFilter filter, Expression e) {
+        ExpressionColumn col;
+        Expression[] others;
+        if (e instanceof Comparison) {
+            Comparison comp = (Comparison) e;
+            Expression l = comp.getExpression(true);
+            Expression r = comp.getExpression(false);
+            if (isColumn(filter, l)) {
+                col = (ExpressionColumn) l;
+                others = r == null ? new Expression[0] : new Expression[] { r };
+            } else if (isColumn(filter, r)) {
+                col = (ExpressionColumn) r;
+                others = new Expression[] { l };
+            } else {
+                return null;
+            }
+        } else if (e instanceof ConditionIn) {
+            ConditionIn in = (ConditionIn) e;
+            if (!isColumn(filter, in.getLeft())) {
+                return null;
+            }
+            col = (ExpressionColumn) in.getLeft();
+            others = in.getValueList().toArray(new Expression[in.getValueList().size()]);
+        } else if (isColumn(filter, e)) {
+            col = (ExpressionColumn) e;
+            if (col.getType() != Value.BOOLEAN) {
+                return null;
+            }
+            others = new Expression[0];
+        } else {
+            return null;
+        }
+        ExpressionVisitor notFromFilter = ExpressionVisitor.get(ExpressionVisitor.NOT_FROM_RESOLVER);
+        notFromFilter.setResolver(filter);
+        ExpressionVisitor deterministic = ExpressionVisitor.get(ExpressionVisitor.DETERMINISTIC);
+        for (Expression o : others) {
+            if (!o.isEverything(notFromFilter) || !o.isEverything(deterministic)) {
+                return null;
+            }
+        }
+        Column column = col.getColumn();
+        for (Index idx : filter.getTable().getIndexes()) {
+            if (idx instanceof BitmapIndex && ((BitmapIndex) idx).getColumn() == column) {
+                return (BitmapIndex) idx;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isColumn(TableFilter filter, Expression e) {
+        return e instanceof ExpressionColumn && ((ExpressionColumn) e).getTableFilter() == filter;
+    }
+
+    /**
+     * Get the keys of the rows that may match the condition. The condition is
+     * evaluated using the current values of parameters and outer queries.
+     *
+     * @param session the session
+     * @param filter the table filter
+     * @return the row keys, or null if all rows may match
+     */
+    public RoaringBitmap getKeys(Session session, TableFilter filter) throws SQLException {
+        return evaluate(session, filter)[0];
+    }
+
+    /**
+     * Get the number of rows that match the condition.
+     *
+     * @param session the session
+     * @param filter the table filter
+     * @return the number of rows, or -1 if the number of rows can not be
+     *         calculated from the bitmap indexes alone
+     */
+    public long getCount(Session session, TableFilter filter) throws SQLException {
+        if (!isExact()) {
+            return -1;
+        }
+        return evaluate(session, filter)[0].getCardinality();
+    }
+
+    /**
+     * Check whether the condition only consists of conditions on columns with
+     * a bitmap index.
+     *
+     * @return true if the result is exact
+     */
+    public boolean isExact() {
+        switch (type) {
+        case LEAF:
+            return true;
+        case AND:
+        case OR:
+            return left.isExact() && right.isExact();
+        case NOT:
+            return left.isExact();
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Get the keys of the rows where the condition may be true, and the keys
+     * of the rows where it may be false. Rows where the condition is NULL are
+     * in neither set, unless the result is not exact.
+     *
+     * @param session the session
+     * @param filter the table filter
+     * @return the two sets, where null means all rows
+     */
+    private RoaringBitmap[] evaluate(Session session, TableFilter filter) throws SQLException {
+        switch (type) {
+        case LEAF:
+            return evaluateLeaf(session, filter);
+        case AND: {
+            RoaringBitmap[] l = left.evaluate(session, filter);
+            RoaringBitmap[] r = right.evaluate(session, filter);
+            return new RoaringBitmap[] { and(l[0], r[0]), or(l[1], r[1]) };
+        }
+        case OR: {
+            RoaringBitmap[] l = left.evaluate(session, filter);
+            RoaringBitmap[] r = right.evaluate(session, filter);
+            return new RoaringBitmap[] { or(l[0], r[0]), and(l[1], r[1]) };
+        }
+        case NOT: {
+            RoaringBitmap[] l = left.evaluate(session, filter);
+            return new RoaringBitmap[] { l[1], l[0] };
+        }
+        default:
+            return new RoaringBitmap[2];
+        }
+    }
+
+    private RoaringBitmap[] evaluateLeaf(Session session, TableFilter filter) throws SQLException {
+        RoaringBitmap t = new RoaringBitmap(), f = new RoaringBitmap();
+        Table table = filter.getTable();
+        int columnId = index.getColumn().getColumnId();
+        Row row = table.getTemplateRow();
+        try {
+            for (Value v : index.getDistinctValues()) {
+                // evaluate the condition as if the row had this value
+                row.setValue(columnId, v);
+                filter.set(row);
+                Value result = expression.getValue(session);
+                if (result != ValueNull.INSTANCE) {
+                    if (result.getBoolean().booleanValue()) {
+                        t = t.or(index.getKeys(v));
+                    } else {
+                        f = f.or(index.getKeys(v));
+                    }
+                }
+            }
+        } finally {
+            filter.set(null);
+        }
+        return new RoaringBitmap[] { t, f };
+    }
+
+    private static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        if (a == null) {
+            return b;
+        } else if (b == null) {
+            return a;
+        }
+        return a.and(b);
+    }
+
+    private static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        return a.or(b);
+    }
+
+    /**
+     * Get the plan SQL snippet that lists the bitmap indexes that are used.
+     *
+     * @return the SQL snippet
+     */
+    public String getPlanSQL() {
+        HashSet<BitmapIndex> indexes = new HashSet<BitmapIndex>();
+        StatementBuilder buff = new StatementBuilder("bitmap(");
+        addPlanSQL(buff, indexes);
+        return buff.append(')').toString();
+    }
+
+    private void addPlanSQL(StatementBuilder buff, HashSet<BitmapIndex> indexes) {
+        if (type == LEAF) {
+            if (indexes.add(index)) {
+                buff.appendExceptFirst(", ");
+                buff.append(index.getPlanSQL());
+            }
+        } else {
+            if (left != null) {
+                left.addPlanSQL(buff, indexes);
+            }
+            if (right != null) {
+                right.addPlanSQL(buff, indexes);
+            }
+        }
+    }
+
+}
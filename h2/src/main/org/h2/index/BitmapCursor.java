@@ -0,0 +1,59 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.sql.SQLException;
+
+import org.h2.engine.Session;
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.table.TableData;
+import org.h2.util.RoaringBitmap;
+
+/**
+ * A cursor over the rows of a set of row keys, in the order of the keys.
+ */
+public class BitmapCursor implements Cursor {
+
+    private final Session session;
+    private final TableData tableData;
+    private final RoaringBitmap.LongIterator it;
+    private Row row;
+
+    public BitmapCursor(Session session, TableData tableData, RoaringBitmap keys) {
+        this.session = session;
+        this.tableData = tableData;
+        this.it = keys.iterator();
+    }
+
+    public Row get() {
+        return row;
+    }
+
+    public long getKey() {
+        return row.getKey();
+    }
+
+    public SearchRow getSearchRow() {
+        return row;
+    }
+
+    public boolean next() throws SQLException {
+        if (!it.hasNext()) {
+            row = null;
+            return false;
+        }
+        row = tableData.getRow(session, it.next());
+        return true;
+    }
+
+    public boolean previous() {
+        throw Message.throwInternalError();
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.sql.SQLException;
+
+import org.h2.engine.Constants;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableData;
+import org.h2.util.ObjectArray;
+import org.h2.util.RoaringBitmap;
+import org.h2.util.ValueHashMap;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * An index for columns with few distinct values. For each distinct value, the
+ * keys of the rows are kept in a compressed bitmap. The index is kept in
+ * memory and re-built when the database is opened.
+ */
+public class BitmapIndex extends BaseIndex {
+
+    private final TableData tableData;
+    private final Database database;
+    private final Column column;
+    private ValueHashMap<RoaringBitmap> rows;
+    private long rowCount;
+
+    public BitmapIndex(TableData table, int id, String indexName, IndexColumn[] columns, IndexType indexType) {
+        initBaseIndex(table, id, indexName, columns, indexType);
+        this.tableData = table;
+        this.database = table.getDatabase();
+        this.column = columns[0].column;
+        reset();
+    }
+
+    private void reset() {
+        rows = ValueHashMap.newInstance(database);
+        rowCount = 0;
+    }
+
+    public void add(Session session, Row row) throws SQLException {
+        Value v = row.getValue(column.getColumnId());
+        RoaringBitmap keys = rows.get(v);
+        if (keys == null) {
+            keys = new RoaringBitmap();
+            rows.put(v, keys);
+        }
+        keys.add(row.getKey());
+        rowCount++;
+    }
+
+    public void remove(Session session, Row row) throws SQLException {
+        Value v = row.getValue(column.getColumnId());
+        RoaringBitmap keys = rows.get(v);
+        if (keys == null || !keys.remove(row.getKey())) {
+            throw Message.throwInternalError("row not found " + row.getKey());
+        }
+        if (keys.isEmpty()) {
+            rows.remove(v);
+        }
+        rowCount--;
+    }
+
+    public Cursor find(Session session, SearchRow first, SearchRow last) throws SQLException {
+        Value min = first == null ? null : first.getValue(column.getColumnId());
+        Value max = last == null ? null : last.getValue(column.getColumnId());
+        RoaringBitmap result = new RoaringBitmap();
+        for (Value v : rows.keys()) {
+            if (v == ValueNull.INSTANCE) {
+                // NULL is smaller than all other values
+                if (min != null && min != ValueNull.INSTANCE) {
+                    continue;
+                }
+            } else {
+                if (min != null && min != ValueNull.INSTANCE && database.compare(v, min) < 0) {
+                    continue;
+                }
+                if (max != null && max != ValueNull.INSTANCE && database.compare(v, max) > 0) {
+                    continue;
+                }
+            }
+            result = result.or(rows.get(v));
+        }
+        return new BitmapCursor(session, tableData, result);
+    }
+
+    /**
+     * Get the keys of the rows with the given value. The returned set must not
+     * be modified.
+     *
+     * @param v the value (may be NULL)
+     * @return the keys of the rows, or null if there are none
+     */
+    RoaringBitmap getKeys(Value v) throws SQLException {
+        return rows.get(v);
+    }
+
+    /**
+     * Get the distinct values of the column, including NULL if there are rows
+     * where the value is NULL.
+     *
+     * @return the distinct values
+     */
+    ObjectArray<Value> getDistinctValues() {
+        return rows.keys();
+    }
+
+    /**
+     * Get the indexed column.
+     *
+     * @return the column
+     */
+    Column getColumn() {
+        return column;
+    }
+
+    public double getCost(Session session, int[] masks) {
+        if (masks == null) {
+            return Long.MAX_VALUE;
+        }
+        int mask = masks[column.getColumnId()];
+        long distinct = Math.max(1, rows.size());
+        long rc = rowCount + Constants.COST_ROW_OFFSET;
+        if ((mask & IndexCondition.EQUALITY) == IndexCondition.EQUALITY) {
+            return 2 + rc / distinct;
+        } else if ((mask & IndexCondition.RANGE) == IndexCondition.RANGE) {
+            return 2 + distinct + rc / 4;
+        } else if ((mask & (IndexCondition.START | IndexCondition.END)) != 0) {
+            return 2 + distinct + rc / 3;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public void truncate(Session session) {
+        reset();
+    }
+
+    public void close(Session session) {
+        // nothing to do
+    }
+
+    public void remove(Session session) {
+        // nothing to do
+    }
+
+    public void checkRename() {
+        // ok
+    }
+
+    public boolean needRebuild() {
+        return true;
+    }
+
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    public Cursor findFirstOrLast(Session session, boolean first) throws SQLException {
+        throw Message.getUnsupportedException("BITMAP");
+    }
+
+    public long getRowCount(Session session) {
+        return rowCount;
+    }
+
+    public long getRowCountApproximation() {
+        return rowCount;
+    }
+
+}
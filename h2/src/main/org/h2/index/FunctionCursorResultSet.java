@@ -0,0 +1,86 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import org.h2.engine.Session;
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+
+/**
+ * A cursor for a function that returns a JDBC result set. The rows are read
+ * from the result set when they are needed, and the result set is closed
+ * after the last row. If not all rows are read, the result set is closed at
+ * the end of the statement.
+ */
+public class FunctionCursorResultSet implements Cursor {
+
+    private final Session session;
+    private ResultSet result;
+    private int[] types;
+    private Value[] values;
+    private Row row;
+
+    FunctionCursorResultSet(Session session, ResultSet result) throws SQLException {
+        this.session = session;
+        this.result = result;
+        if (result != null) {
+            session.addTemporaryResultSet(result);
+            ResultSetMetaData meta = result.getMetaData();
+            types = new int[meta.getColumnCount()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = DataType.convertSQLTypeToValueType(meta.getColumnType(i + 1));
+            }
+        }
+    }
+
+    public Row get() {
+        if (values == null) {
+            return null;
+        }
+        if (row == null) {
+            row = new Row(values, 0);
+        }
+        return row;
+    }
+
+    public SearchRow getSearchRow() {
+        return get();
+    }
+
+    public long getKey() {
+        throw Message.throwInternalError();
+    }
+
+    public boolean next() throws SQLException {
+        row = null;
+        values = null;
+        if (result != null) {
+            if (result.next()) {
+                values = new Value[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    values[i] = DataType.readValue(session, result, i + 1, types[i]);
+                }
+            } else {
+                result.close();
+                session.removeTemporaryResultSet(result);
+                result = null;
+            }
+        }
+        return values != null;
+    }
+
+    public boolean previous() {
+        throw Message.throwInternalError();
+    }
+
+}
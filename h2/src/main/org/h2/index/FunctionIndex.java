@@ -43,6 +43,10 @@ public class FunctionIndex extends BaseIndex {
     }
 
     public Cursor find(Session session, SearchRow first, SearchRow last) throws SQLException {
+        if (!functionTable.isBufferResultSetToLocalTemp()) {
+            // the rows are read on demand
+            return new FunctionCursorResultSet(session, functionTable.getResultSet(session));
+        }
         // TODO sometimes result.reset() would be enough (but not when
         // parameters are used)
         result = functionTable.getResult(session);
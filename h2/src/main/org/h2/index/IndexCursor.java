@@ -18,7 +18,9 @@ import org.h2.result.SortOrder;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
+import org.h2.table.TableData;
 import org.h2.util.ObjectArray;
+import org.h2.util.RoaringBitmap;
 import org.h2.value.Value;
 import org.h2.value.ValueNull;
 
@@ -129,6 +131,20 @@ public class IndexCursor implements Cursor {
         }
     }
 
+    /**
+     * Read the rows with the given keys instead of using the index.
+     *
+     * @param session the session
+     * @param keys the row keys
+     */
+    public void find(Session session, RoaringBitmap keys) {
+        this.session = session;
+        alwaysFalse = false;
+        inList = null;
+        inResult = null;
+        cursor = new BitmapCursor(session, (TableData) table, keys);
+    }
+
     private SearchRow getSearchRow(SearchRow row, int id, Value v, boolean max) throws SQLException {
         if (row == null) {
             row = table.getTemplateRow();
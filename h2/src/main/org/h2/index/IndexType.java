@@ -10,7 +10,7 @@ package org.h2.index;
  * Represents information about the properties of an index
  */
 public class IndexType {
-    private boolean primaryKey, persistent, unique, hash, scan;
+    private boolean primaryKey, persistent, unique, hash, scan, bitmap;
     private boolean belongsToConstraint;
 
     /**
@@ -68,6 +68,19 @@ public class IndexType {
         return type;
     }
 
+    /**
+     * Create a bitmap index.
+     *
+     * @param persistent if the index is persistent
+     * @return the index type
+     */
+    public static IndexType createBitmap(boolean persistent) {
+        IndexType type = new IndexType();
+        type.persistent = persistent;
+        type.bitmap = true;
+        return type;
+    }
+
     /**
      * Create a scan pseudo-index.
      *
@@ -109,6 +122,15 @@ public class IndexType {
         return hash;
     }
 
+    /**
+     * Is this a bitmap index?
+     *
+     * @return true if it is a bitmap index
+     */
+    public boolean isBitmap() {
+        return bitmap;
+    }
+
     /**
      * Is this index persistent?
      *
@@ -155,6 +177,9 @@ public class IndexType {
             if (hash) {
                 buff.append("HASH ");
             }
+            if (bitmap) {
+                buff.append("BITMAP ");
+            }
             buff.append("INDEX");
         }
         return buff.toString();
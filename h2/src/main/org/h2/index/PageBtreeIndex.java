@@ -7,6 +7,8 @@
 package org.h2.index;
 
 import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.HashMap;
 import org.h2.constant.ErrorCode;
 import org.h2.constant.SysProperties;
 import org.h2.engine.Session;
@@ -20,6 +22,8 @@ import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.TableData;
 import org.h2.util.MathUtils;
+import org.h2.util.New;
+import org.h2.util.ObjectArray;
 import org.h2.value.Value;
 import org.h2.value.ValueLob;
 import org.h2.value.ValueNull;
@@ -35,6 +39,12 @@ public class PageBtreeIndex extends PageIndex {
     private boolean needRebuild;
     private long rowCount;
 
+    /**
+     * The rows that were added but are not yet in the b-tree (the key is the
+     * row key), or null if there are none.
+     */
+    private HashMap<Long, Row> deferred;
+
     public PageBtreeIndex(TableData table, int id, String indexName, IndexColumn[] columns,
             IndexType indexType, int headPos, Session session) throws SQLException {
         initBaseIndex(table, id, indexName, columns, indexType);
@@ -83,6 +93,61 @@ public class PageBtreeIndex extends PageIndex {
         }
     }
 
+    /**
+     * Add a row to the buffer of deferred rows. The row is added to the b-tree
+     * when the buffer is flushed, at the latest at the end of the statement.
+     * Unique constraints are checked when the buffer is flushed.
+     *
+     * @param session the session
+     * @param row the row
+     */
+    public void addDeferred(Session session, Row row) {
+        if (deferred == null) {
+            deferred = New.hashMap();
+            session.addDeferredIndex(this);
+        }
+        deferred.put(row.getKey(), row);
+    }
+
+    /**
+     * Add the deferred rows to the b-tree, sorted by the index columns. If
+     * adding a row fails (for example because of a unique constraint
+     * violation), this row and the rows that were not yet added stay in the
+     * buffer.
+     */
+    public void flushDeferred() throws SQLException {
+        if (deferred == null) {
+            return;
+        }
+        if (trace.isDebugEnabled()) {
+            trace.debug(getName() + " flush " + deferred.size());
+        }
+        ObjectArray<Row> list = ObjectArray.newInstance(deferred.values());
+        try {
+            list.sort(new Comparator<Row>() {
+                public int compare(Row r1, Row r2) {
+                    try {
+                        int comp = compareRows(r1, r2);
+                        return comp != 0 ? comp : compareKeys(r1, r2);
+                    } catch (SQLException e) {
+                        throw Message.convertToInternal(e);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            throw Message.convert(e);
+        }
+        try {
+            for (Row row : list) {
+                addRow(getSearchRow(row));
+                deferred.remove(row.getKey());
+            }
+            deferred = null;
+        } finally {
+            store.incrementChangeCount();
+        }
+    }
+
     private void addRow(SearchRow newRow) throws SQLException {
         while (true) {
             PageBtree root = getPage(rootPageId);
@@ -167,6 +232,7 @@ public class PageBtreeIndex extends PageIndex {
         if (SysProperties.CHECK && store == null) {
             throw Message.getSQLException(ErrorCode.OBJECT_CLOSED);
         }
+        flushDeferred();
         PageBtree root = getPage(rootPageId);
         PageBtreeCursor cursor = new PageBtreeCursor(session, this, last);
         root.find(cursor, first, bigger);
@@ -174,6 +240,7 @@ public class PageBtreeIndex extends PageIndex {
     }
 
     public Cursor findFirstOrLast(Session session, boolean first) throws SQLException {
+        flushDeferred();
         if (first) {
             // TODO optimization: this loops through NULL elements
             Cursor cursor = find(session, null, false, null);
@@ -224,6 +291,12 @@ public class PageBtreeIndex extends PageIndex {
                 }
             }
         }
+        if (deferred != null && deferred.remove(row.getKey()) != null) {
+            if (deferred.size() == 0) {
+                deferred = null;
+            }
+            return;
+        }
         // TODO invalidate row count
         // setChanged(session);
         if (rowCount == 1) {
@@ -244,6 +317,7 @@ public class PageBtreeIndex extends PageIndex {
         if (trace.isDebugEnabled()) {
             trace.debug("remove");
         }
+        deferred = null;
         removeAllRows();
         store.free(rootPageId);
         store.removeMeta(this, session);
@@ -253,6 +327,7 @@ public class PageBtreeIndex extends PageIndex {
         if (trace.isDebugEnabled()) {
             trace.debug("truncate");
         }
+        deferred = null;
         removeAllRows();
         if (tableData.getContainsLargeObject()) {
             ValueLob.removeAllForTable(database, table.getId());
@@ -297,7 +372,7 @@ public class PageBtreeIndex extends PageIndex {
     }
 
     public long getRowCount(Session session) {
-        return rowCount;
+        return deferred == null ? rowCount : rowCount + deferred.size();
     }
 
     public void close(Session session) throws SQLException {
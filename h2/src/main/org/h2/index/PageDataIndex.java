@@ -389,18 +389,16 @@ public class PageDataIndex extends PageIndex implements RowIndex {
     }
 
     /**
-     * Read a row from the data page at the given position.
+     * Read a row from the data page at the given position. The values are
+     * decoded when they are first used.
      *
      * @param data the data page
+     * @param offset the offset of the row within the page
      * @param columnCount the number of columns
      * @return the row
      */
-    Row readRow(Data data, int columnCount) throws SQLException {
-        Value[] values = new Value[columnCount];
-        for (int i = 0; i < columnCount; i++) {
-            values[i] = data.readValue();
-        }
-        return tableData.createRow(values);
+    Row readRow(Data data, int offset, int columnCount) {
+        return new PageDataRow(columnCount, tableData.getMemoryPerRow(), database, data.getBytes(), offset);
     }
 
     public long getRowCountApproximation() {
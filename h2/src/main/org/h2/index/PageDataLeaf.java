@@ -310,8 +310,7 @@ public class PageDataLeaf extends PageData {
         Row r = rows[at];
         if (r == null) {
             if (firstOverflowPageId == 0) {
-                data.setPos(offsets[at]);
-                r = index.readRow(data, columnCount);
+                r = index.readRow(data, offsets[at], columnCount);
             } else {
                 if (rowRef != null) {
                     r = rowRef.get();
@@ -330,8 +329,7 @@ public class PageDataLeaf extends PageData {
                     next = page.readInto(buff);
                 } while (next != 0);
                 overflowRowSize = pageSize + buff.length();
-                buff.setPos(0);
-                r = index.readRow(buff, columnCount);
+                r = index.readRow(buff, 0, columnCount);
             }
             r.setKey(keys[at]);
             if (firstOverflowPageId != 0) {
@@ -445,9 +443,16 @@ public class PageDataLeaf extends PageData {
         data.truncate(index.getPageStore().getPageSize());
     }
 
+    /**
+     * Read all rows and decode all values. This is required before the page
+     * data is changed, as the rows may still reference the page data.
+     */
     private void readAllRows() throws SQLException {
         for (int i = 0; i < entryCount; i++) {
-            getRowAt(i);
+            Row r = getRowAt(i);
+            if (r instanceof PageDataRow) {
+                ((PageDataRow) r).decodeAll();
+            }
         }
     }
 
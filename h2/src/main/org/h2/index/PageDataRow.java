@@ -0,0 +1,146 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.sql.SQLException;
+
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.store.Data;
+import org.h2.store.DataHandler;
+import org.h2.store.DataPage;
+import org.h2.value.Value;
+
+/**
+ * A row that was read from a data page. The values are only decoded when
+ * they are read for the first time, so that columns that are not used by a
+ * query are not converted to value objects. The row keeps a reference to the
+ * serialized data until all values are decoded; the data page must call
+ * decodeAll before it changes the data.
+ */
+class PageDataRow extends Row {
+
+    private final int columnCount;
+    private final boolean calculateMemory;
+    private DataHandler handler;
+    private byte[] bytes;
+    private Data reader;
+    private final int start;
+    private int nextColumn, nextPos;
+    private int decodedCount;
+
+    PageDataRow(int columnCount, int memory, DataHandler handler, byte[] bytes, int start) {
+        super(new Value[columnCount], memory);
+        this.columnCount = columnCount;
+        this.calculateMemory = memory == MEMORY_CALCULATE;
+        this.handler = handler;
+        this.bytes = bytes;
+        this.start = start;
+        nextColumn = 0;
+        nextPos = start;
+    }
+
+    public Value getValue(int i) {
+        Value v = super.getValue(i);
+        if (v == null && bytes != null) {
+            try {
+                v = decode(i);
+            } catch (SQLException e) {
+                throw Message.convertToInternal(e);
+            }
+        }
+        return v;
+    }
+
+    private Value decode(int i) throws SQLException {
+        if (reader == null) {
+            reader = Data.create(handler, bytes);
+        }
+        // continue after the last decoded column if possible,
+        // otherwise start at the beginning of the row
+        int col;
+        if (i >= nextColumn) {
+            col = nextColumn;
+            reader.setPos(nextPos);
+        } else {
+            col = 0;
+            reader.setPos(start);
+        }
+        for (; col < i; col++) {
+            reader.skipValue();
+        }
+        Value v = reader.readValue();
+        if (i >= nextColumn) {
+            nextColumn = i + 1;
+            nextPos = reader.length();
+        }
+        set(i, v);
+        return v;
+    }
+
+    private void set(int i, Value v) {
+        setValue(i, v);
+        if (++decodedCount == columnCount) {
+            // the serialized data is no longer needed
+            bytes = null;
+            reader = null;
+            handler = null;
+        }
+    }
+
+    /**
+     * Decode all values that are not decoded yet. After this call, the row
+     * does no longer reference the serialized data.
+     */
+    void decodeAll() throws SQLException {
+        if (bytes == null) {
+            return;
+        }
+        if (reader == null) {
+            reader = Data.create(handler, bytes);
+        }
+        reader.setPos(start);
+        for (int i = 0; bytes != null && i < columnCount; i++) {
+            if (super.getValue(i) == null) {
+                set(i, reader.readValue());
+            } else {
+                reader.skipValue();
+            }
+        }
+    }
+
+    public void write(DataPage buff) throws SQLException {
+        decodeAll();
+        super.write(buff);
+    }
+
+    public int getByteCount(DataPage dummy) throws SQLException {
+        decodeAll();
+        return super.getByteCount(dummy);
+    }
+
+    public int getMemorySize() {
+        if (calculateMemory) {
+            decodeAllUnchecked();
+        }
+        return super.getMemorySize();
+    }
+
+    public String toString() {
+        decodeAllUnchecked();
+        return super.toString();
+    }
+
+    private void decodeAllUnchecked() {
+        try {
+            decodeAll();
+        } catch (SQLException e) {
+            throw Message.convertToInternal(e);
+        }
+    }
+
+}
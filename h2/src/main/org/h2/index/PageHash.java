@@ -0,0 +1,123 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.sql.SQLException;
+import org.h2.store.Data;
+import org.h2.store.DataPage;
+import org.h2.store.Page;
+
+/**
+ * A page of a hash index.
+ */
+public abstract class PageHash extends Page {
+
+    /**
+     * This is a root page.
+     */
+    static final int ROOT = 0;
+
+    /**
+     * The index.
+     */
+    protected final PageHashIndex index;
+
+    /**
+     * The page number of the parent.
+     */
+    protected int parentPageId;
+
+    /**
+     * The data page.
+     */
+    protected final Data data;
+
+    /**
+     * Whether the data page is up-to-date.
+     */
+    protected boolean written;
+
+    PageHash(PageHashIndex index, int pageId, Data data) {
+        this.index = index;
+        this.data = data;
+        setPos(pageId);
+    }
+
+    /**
+     * Change the parent page id.
+     *
+     * @param id the new parent page id
+     */
+    void setParentPageId(int id) throws SQLException {
+        changed();
+        parentPageId = id;
+        index.getPageStore().update(this);
+    }
+
+    /**
+     * Log the old content of the page. This method must be called before the
+     * page is changed.
+     */
+    protected void changed() throws SQLException {
+        index.getPageStore().logUndo(this, data);
+        changeCount = index.getPageStore().getChangeCount();
+        written = false;
+    }
+
+    /**
+     * Free this page.
+     */
+    void free() throws SQLException {
+        index.getPageStore().logUndo(this, data);
+        index.getPageStore().free(getPos());
+    }
+
+    /**
+     * Write the page header.
+     *
+     * @param type the page type
+     */
+    protected void writeHead(int type) {
+        data.reset();
+        data.writeByte((byte) type);
+        data.writeShortInt(0);
+        data.writeInt(parentPageId);
+        data.writeVarInt(index.getId());
+    }
+
+    /**
+     * Write the page content to the data page, if required.
+     */
+    protected abstract void write() throws SQLException;
+
+    public void write(DataPage buff) throws SQLException {
+        write();
+        index.getPageStore().writePage(getPos(), data);
+    }
+
+    public int getByteCount(DataPage dummy) {
+        return index.getPageStore().getPageSize();
+    }
+
+    /**
+     * Get the estimated memory size.
+     *
+     * @return number of double words (4 bytes)
+     */
+    public int getMemorySize() {
+        // double the byte array size
+        return index.getPageStore().getPageSize() >> 1;
+    }
+
+    public boolean canRemove() {
+        if (changeCount >= index.getPageStore().getChangeCount()) {
+            return false;
+        }
+        return super.canRemove();
+    }
+
+}
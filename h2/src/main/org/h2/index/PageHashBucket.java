@@ -0,0 +1,249 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.sql.SQLException;
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Session;
+import org.h2.message.Message;
+import org.h2.store.Data;
+import org.h2.store.Page;
+import org.h2.store.PageStore;
+
+/**
+ * A bucket page of a hash index. It contains the hash code and the row key
+ * of each entry. If a bucket is full, more entries are stored in overflow
+ * pages. The parent of the first page of a bucket is a directory page, the
+ * parent of an overflow page is the previous page of the bucket. Format:
+ * <ul>
+ * <li>page type: byte</li>
+ * <li>checksum: short</li>
+ * <li>parent page id: int</li>
+ * <li>index id: varInt</li>
+ * <li>next overflow page id (0 if none): int</li>
+ * <li>entry count: short</li>
+ * <li>entries (hash: int, key: varLong)</li>
+ * </ul>
+ */
+public class PageHashBucket extends PageHash {
+
+    private int nextPageId;
+    private int entryCount;
+    private int[] hashes;
+    private long[] keys;
+
+    /**
+     * The number of bytes used.
+     */
+    private int length;
+
+    private PageHashBucket(PageHashIndex index, int pageId, Data data) {
+        super(index, pageId, data);
+    }
+
+    /**
+     * Read a hash bucket page.
+     *
+     * @param index the index
+     * @param data the data
+     * @param pageId the page id
+     * @return the page
+     */
+    public static Page read(PageHashIndex index, Data data, int pageId) throws SQLException {
+        PageHashBucket p = new PageHashBucket(index, pageId, data);
+        p.read();
+        return p;
+    }
+
+    /**
+     * Create a new bucket page.
+     *
+     * @param index the index
+     * @param pageId the page id
+     * @param parentPageId the parent page id
+     * @return the page
+     */
+    static PageHashBucket create(PageHashIndex index, int pageId, int parentPageId) throws SQLException {
+        PageHashBucket p = new PageHashBucket(index, pageId, index.getPageStore().createData());
+        index.getPageStore().logUndo(p, null);
+        p.parentPageId = parentPageId;
+        p.init();
+        return p;
+    }
+
+    private void init() {
+        entryCount = 0;
+        hashes = new int[4];
+        keys = new long[4];
+        writeHead(Page.TYPE_HASH_BUCKET);
+        data.writeInt(nextPageId);
+        data.writeShortInt(0);
+        length = data.length();
+    }
+
+    private void read() throws SQLException {
+        data.reset();
+        data.readByte();
+        data.readShortInt();
+        parentPageId = data.readInt();
+        int indexId = data.readVarInt();
+        if (indexId != index.getId()) {
+            throw Message.getSQLException(ErrorCode.FILE_CORRUPTED_1,
+                    "page:" + getPos() + " expected index:" + index.getId() +
+                    "got:" + indexId);
+        }
+        nextPageId = data.readInt();
+        entryCount = data.readShortInt();
+        hashes = new int[Math.max(4, entryCount)];
+        keys = new long[hashes.length];
+        for (int i = 0; i < entryCount; i++) {
+            hashes[i] = data.readInt();
+            keys[i] = data.readVarLong();
+        }
+        length = data.length();
+        written = true;
+    }
+
+    protected void write() {
+        if (written) {
+            return;
+        }
+        writeHead(Page.TYPE_HASH_BUCKET);
+        data.writeInt(nextPageId);
+        data.writeShortInt(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            data.writeInt(hashes[i]);
+            data.writeVarLong(keys[i]);
+        }
+        written = true;
+    }
+
+    int getNextPageId() {
+        return nextPageId;
+    }
+
+    /**
+     * Set the next overflow page.
+     *
+     * @param nextPageId the page id, or 0 if there is none
+     */
+    void setNextPageId(int nextPageId) throws SQLException {
+        changed();
+        this.nextPageId = nextPageId;
+        index.getPageStore().update(this);
+    }
+
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    int getHash(int i) {
+        return hashes[i];
+    }
+
+    long getKey(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Add an entry if there is enough space.
+     *
+     * @param hash the hash code
+     * @param key the row key
+     * @return true if the entry was added, false if the page is full
+     */
+    boolean addEntry(int hash, long key) throws SQLException {
+        int len = 4 + data.getVarLongLen(key);
+        if (length + len > index.getPageStore().getPageSize()) {
+            return false;
+        }
+        changed();
+        if (entryCount == hashes.length) {
+            int[] newHashes = new int[entryCount * 2];
+            long[] newKeys = new long[entryCount * 2];
+            System.arraycopy(hashes, 0, newHashes, 0, entryCount);
+            System.arraycopy(keys, 0, newKeys, 0, entryCount);
+            hashes = newHashes;
+            keys = newKeys;
+        }
+        hashes[entryCount] = hash;
+        keys[entryCount] = key;
+        entryCount++;
+        length += len;
+        index.getPageStore().update(this);
+        return true;
+    }
+
+    /**
+     * Find the entry with the given hash code and key.
+     *
+     * @param hash the hash code
+     * @param key the row key
+     * @return the index of the entry, or -1 if not found
+     */
+    int find(int hash, long key) {
+        for (int i = 0; i < entryCount; i++) {
+            if (keys[i] == key && hashes[i] == hash) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove an entry. The last entry is moved to the free slot.
+     *
+     * @param i the index of the entry
+     */
+    void removeEntry(int i) throws SQLException {
+        changed();
+        length -= 4 + data.getVarLongLen(keys[i]);
+        entryCount--;
+        hashes[i] = hashes[entryCount];
+        keys[i] = keys[entryCount];
+        index.getPageStore().update(this);
+    }
+
+    /**
+     * Remove all entries, and unlink the overflow pages.
+     */
+    void clear() throws SQLException {
+        changed();
+        nextPageId = 0;
+        init();
+        written = false;
+        index.getPageStore().update(this);
+    }
+
+    public void moveTo(Session session, int newPos) throws SQLException {
+        PageStore store = index.getPageStore();
+        PageHashBucket p2 = PageHashBucket.create(index, newPos, parentPageId);
+        store.logUndo(this, data);
+        p2.nextPageId = nextPageId;
+        p2.entryCount = entryCount;
+        p2.hashes = hashes;
+        p2.keys = keys;
+        p2.length = length;
+        p2.written = false;
+        store.update(p2);
+        PageHash parent = index.getHashPage(parentPageId);
+        if (parent instanceof PageHashDirectory) {
+            ((PageHashDirectory) parent).moveChild(getPos(), newPos);
+        } else {
+            ((PageHashBucket) parent).setNextPageId(newPos);
+        }
+        if (nextPageId != 0) {
+            index.getHashPage(nextPageId).setParentPageId(newPos);
+        }
+        store.free(getPos());
+    }
+
+    public String toString() {
+        return "page[" + getPos() + "] hash bucket index:" + index.getId() + " entries:" + entryCount;
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.util.ObjectArray;
+
+/**
+ * The cursor implementation for the page hash index.
+ */
+class PageHashCursor implements Cursor {
+
+    private final ObjectArray<Row> rows;
+    private int index = -1;
+
+    PageHashCursor(ObjectArray<Row> rows) {
+        this.rows = rows;
+    }
+
+    public Row get() {
+        if (rows == null || index < 0 || index >= rows.size()) {
+            return null;
+        }
+        return rows.get(index);
+    }
+
+    public long getKey() {
+        return index;
+    }
+
+    public SearchRow getSearchRow() {
+        return get();
+    }
+
+    public boolean next() {
+        return rows != null && ++index < rows.size();
+    }
+
+    public boolean previous() {
+        return rows != null && --index >= 0;
+    }
+
+}
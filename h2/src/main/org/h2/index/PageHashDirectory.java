@@ -0,0 +1,255 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.sql.SQLException;
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Session;
+import org.h2.message.Message;
+import org.h2.store.Data;
+import org.h2.store.Page;
+import org.h2.store.PageStore;
+
+/**
+ * A directory page of a hash index. The root page contains the state of the
+ * hash table and the list of the other directory pages. The other directory
+ * pages contain the list of the bucket pages. Format:
+ * <ul>
+ * <li>page type: byte</li>
+ * <li>checksum: short</li>
+ * <li>parent page id (0 for root): int</li>
+ * <li>index id: varInt</li>
+ * <li>root page only: level: varInt, split position: varInt,
+ * row count: varLong</li>
+ * <li>entry count: short</li>
+ * <li>child page ids: int</li>
+ * </ul>
+ */
+public class PageHashDirectory extends PageHash {
+
+    /**
+     * The space that is reserved for the header.
+     */
+    private static final int HEADER_LENGTH = 40;
+
+    private int level;
+    private int splitPos;
+    private long rowCount;
+    private int entryCount;
+    private int[] childPageIds;
+
+    private PageHashDirectory(PageHashIndex index, int pageId, Data data) {
+        super(index, pageId, data);
+    }
+
+    /**
+     * Read a hash directory page.
+     *
+     * @param index the index
+     * @param data the data
+     * @param pageId the page id
+     * @return the page
+     */
+    public static Page read(PageHashIndex index, Data data, int pageId) throws SQLException {
+        PageHashDirectory p = new PageHashDirectory(index, pageId, data);
+        p.read();
+        return p;
+    }
+
+    /**
+     * Create a new directory page.
+     *
+     * @param index the index
+     * @param pageId the page id
+     * @param parentPageId the parent page id (0 for the root page)
+     * @return the page
+     */
+    static PageHashDirectory create(PageHashIndex index, int pageId, int parentPageId) throws SQLException {
+        PageHashDirectory p = new PageHashDirectory(index, pageId, index.getPageStore().createData());
+        index.getPageStore().logUndo(p, null);
+        p.parentPageId = parentPageId;
+        p.childPageIds = new int[getCapacity(index.getPageStore())];
+        return p;
+    }
+
+    /**
+     * Get the maximum number of children of a directory page.
+     *
+     * @param store the page store
+     * @return the number of children
+     */
+    static int getCapacity(PageStore store) {
+        return (store.getPageSize() - HEADER_LENGTH) / 4;
+    }
+
+    private void read() throws SQLException {
+        data.reset();
+        data.readByte();
+        data.readShortInt();
+        parentPageId = data.readInt();
+        int indexId = data.readVarInt();
+        if (indexId != index.getId()) {
+            throw Message.getSQLException(ErrorCode.FILE_CORRUPTED_1,
+                    "page:" + getPos() + " expected index:" + index.getId() +
+                    "got:" + indexId);
+        }
+        if (parentPageId == ROOT) {
+            level = data.readVarInt();
+            splitPos = data.readVarInt();
+            rowCount = data.readVarLong();
+        }
+        entryCount = data.readShortInt();
+        childPageIds = new int[getCapacity(index.getPageStore())];
+        for (int i = 0; i < entryCount; i++) {
+            childPageIds[i] = data.readInt();
+        }
+        written = true;
+    }
+
+    protected void write() {
+        if (written) {
+            return;
+        }
+        writeHead(Page.TYPE_HASH_DIRECTORY);
+        if (parentPageId == ROOT) {
+            data.writeVarInt(level);
+            data.writeVarInt(splitPos);
+            data.writeVarLong(rowCount);
+        }
+        data.writeShortInt(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            data.writeInt(childPageIds[i]);
+        }
+        written = true;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    int getSplitPos() {
+        return splitPos;
+    }
+
+    /**
+     * Get the number of buckets of the hash table (root page only).
+     *
+     * @return the number of buckets
+     */
+    int getBucketCount() {
+        return (1 << level) + splitPos;
+    }
+
+    /**
+     * Change the state of the hash table (root page only).
+     *
+     * @param level the level
+     * @param splitPos the next bucket to split
+     */
+    void setLevel(int level, int splitPos) throws SQLException {
+        changed();
+        this.level = level;
+        this.splitPos = splitPos;
+        index.getPageStore().update(this);
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Change the stored row count (root page only).
+     *
+     * @param rowCount the new row count
+     */
+    void setRowCount(long rowCount) throws SQLException {
+        changed();
+        this.rowCount = rowCount;
+        index.getPageStore().update(this);
+    }
+
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Get the page id of a child page.
+     *
+     * @param i the index
+     * @return the page id
+     */
+    int getChildPageId(int i) {
+        return childPageIds[i];
+    }
+
+    /**
+     * Add a child page.
+     *
+     * @param pageId the page id of the child
+     */
+    void addChild(int pageId) throws SQLException {
+        changed();
+        childPageIds[entryCount++] = pageId;
+        index.getPageStore().update(this);
+    }
+
+    /**
+     * Remove all children, and reset the state of the hash table.
+     */
+    void clear() throws SQLException {
+        changed();
+        entryCount = 0;
+        level = 0;
+        splitPos = 0;
+        rowCount = 0;
+        index.getPageStore().update(this);
+    }
+
+    /**
+     * One of the children has moved to a new page.
+     *
+     * @param oldPos the old position
+     * @param newPos the new position
+     */
+    void moveChild(int oldPos, int newPos) throws SQLException {
+        for (int i = 0; i < entryCount; i++) {
+            if (childPageIds[i] == oldPos) {
+                changed();
+                childPageIds[i] = newPos;
+                index.getPageStore().update(this);
+                return;
+            }
+        }
+        throw Message.throwInternalError("child not found: " + oldPos + " " + this);
+    }
+
+    public void moveTo(Session session, int newPos) throws SQLException {
+        PageStore store = index.getPageStore();
+        PageHashDirectory p2 = PageHashDirectory.create(index, newPos, parentPageId);
+        store.logUndo(this, data);
+        p2.level = level;
+        p2.splitPos = splitPos;
+        p2.rowCount = rowCount;
+        p2.entryCount = entryCount;
+        p2.childPageIds = childPageIds;
+        store.update(p2);
+        if (parentPageId == ROOT) {
+            index.setRootPageId(session, newPos);
+        } else {
+            index.getDirectory(parentPageId).moveChild(getPos(), newPos);
+        }
+        for (int i = 0; i < entryCount; i++) {
+            index.getHashPage(childPageIds[i]).setParentPageId(newPos);
+        }
+        store.free(getPos());
+    }
+
+    public String toString() {
+        return "page[" + getPos() + "] hash directory index:" + index.getId() + " entries:" + entryCount;
+    }
+
+}
@@ -0,0 +1,511 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import org.h2.constant.ErrorCode;
+import org.h2.constant.SysProperties;
+import org.h2.engine.Session;
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.store.Page;
+import org.h2.store.PageStore;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableData;
+import org.h2.util.ObjectArray;
+import org.h2.value.Value;
+import org.h2.value.ValueDecimal;
+import org.h2.value.ValueLob;
+
+/**
+ * A persistent hash index. It uses linear hashing: the number of buckets
+ * grows by one (splitting one bucket) whenever the buckets are, on average,
+ * more than three quarters full, so that the index never needs to be
+ * re-organized or rebuilt at once. The index only stores the hash code and
+ * the row key of each row. A lookup reads the root page, one directory page,
+ * and the pages of one bucket (usually just one page). Rows with the same hash
+ * code are read from the table to compare the values.
+ * <p>
+ * Like the b-tree index, the pages are changed only after the undo log entry
+ * was written, so that the index is consistent after recovery.
+ */
+public class PageHashIndex extends PageIndex {
+
+    /**
+     * The estimated number of bytes per entry in a bucket page.
+     */
+    private static final int ENTRY_LENGTH = 8;
+
+    /**
+     * Buckets are split if they are on average fuller than this (in percent).
+     */
+    private static final int MAX_FILL = 75;
+
+    private PageStore store;
+    private TableData tableData;
+    private boolean needRebuild;
+    private int bucketCapacity;
+
+    public PageHashIndex(TableData table, int id, String indexName, IndexColumn[] columns,
+            IndexType indexType, int headPos, Session session) throws SQLException {
+        initBaseIndex(table, id, indexName, columns, indexType);
+        tableData = table;
+        if (!database.isPersistent() || id < 0) {
+            throw Message.throwInternalError("" + indexName);
+        }
+        this.store = database.getPageStore();
+        bucketCapacity = store.getPageSize() / ENTRY_LENGTH;
+        store.addIndex(this);
+        if (headPos == Index.EMPTY_HEAD) {
+            // new index
+            rootPageId = store.allocatePage();
+            needRebuild = true;
+            store.addMeta(this, session);
+            createRoot();
+        } else {
+            rootPageId = store.getRootPageId(id);
+            Page p = store.getPage(rootPageId);
+            if (p == null) {
+                // could have been created before, but never committed
+                createRoot();
+                if (store.isRecoveryRunning()) {
+                    needRebuild = true;
+                }
+            } else if (getRoot().getRowCount() == 0 && store.isRecoveryRunning()) {
+                needRebuild = true;
+            }
+        }
+        if (trace.isDebugEnabled()) {
+            trace.debug("opened " + getName() +" rows:"+ getRoot().getRowCount());
+        }
+    }
+
+    private void createRoot() throws SQLException {
+        PageHashDirectory root = PageHashDirectory.create(this, rootPageId, PageHash.ROOT);
+        store.update(root);
+        addBucket(root);
+    }
+
+    /**
+     * Add a new (empty) bucket, and if required a new directory page.
+     *
+     * @param root the root page
+     * @return the new bucket
+     */
+    private PageHashBucket addBucket(PageHashDirectory root) throws SQLException {
+        int bucketId = root.getEntryCount() == 0 ? 0 : root.getBucketCount();
+        int capacity = PageHashDirectory.getCapacity(store);
+        PageHashDirectory dir;
+        if (bucketId / capacity == root.getEntryCount()) {
+            dir = PageHashDirectory.create(this, store.allocatePage(), rootPageId);
+            store.update(dir);
+            root.addChild(dir.getPos());
+        } else {
+            dir = getDirectory(root.getChildPageId(bucketId / capacity));
+        }
+        PageHashBucket bucket = PageHashBucket.create(this, store.allocatePage(), dir.getPos());
+        store.update(bucket);
+        dir.addChild(bucket.getPos());
+        return bucket;
+    }
+
+    public void add(Session session, Row row) throws SQLException {
+        if (trace.isDebugEnabled()) {
+            trace.debug(getName() + " add " + row);
+        }
+        try {
+            int hash = getHash(row);
+            PageHashDirectory root = getRoot();
+            PageHashBucket bucket = getBucket(root, hash);
+            if (indexType.isUnique() && !containsNullAndAllowMultipleNull(row)) {
+                if (find(session, bucket, hash, row, false) != null) {
+                    throw getDuplicateKeyException();
+                }
+            }
+            addEntry(bucket, hash, row.getKey());
+            long rowCount = root.getRowCount() + 1;
+            root.setRowCount(rowCount);
+            if (rowCount * 100 > (long) root.getBucketCount() * bucketCapacity * MAX_FILL) {
+                split(root);
+            }
+        } finally {
+            store.incrementChangeCount();
+        }
+    }
+
+    /**
+     * Add an entry to the first page of the bucket that has enough space,
+     * adding an overflow page if required.
+     *
+     * @param bucket the first page of the bucket
+     * @param hash the hash code
+     * @param key the row key
+     */
+    private void addEntry(PageHashBucket bucket, int hash, long key) throws SQLException {
+        while (!bucket.addEntry(hash, key)) {
+            int next = bucket.getNextPageId();
+            if (next == 0) {
+                PageHashBucket overflow = PageHashBucket.create(this, store.allocatePage(), bucket.getPos());
+                store.update(overflow);
+                bucket.setNextPageId(overflow.getPos());
+                bucket = overflow;
+            } else {
+                bucket = getBucketPage(next);
+            }
+        }
+    }
+
+    /**
+     * Split the next bucket. The entries of the bucket are distributed between
+     * the bucket and the new bucket, according to the next bit of the hash
+     * code.
+     *
+     * @param root the root page
+     */
+    private void split(PageHashDirectory root) throws SQLException {
+        int level = root.getLevel();
+        int splitPos = root.getSplitPos();
+        int capacity = PageHashDirectory.getCapacity(store);
+        if (level >= 30 || root.getBucketCount() >= capacity * capacity) {
+            // the directory is full; buckets will use overflow pages
+            return;
+        }
+        if (trace.isDebugEnabled()) {
+            trace.debug("split " + splitPos);
+        }
+        PageHashBucket newBucket = addBucket(root);
+        PageHashBucket bucket = getBucketPage(getBucketPageId(root, splitPos));
+        int count = 0;
+        for (PageHashBucket b = bucket; b != null; b = getNext(b)) {
+            count += b.getEntryCount();
+        }
+        int[] hashes = new int[count];
+        long[] keys = new long[count];
+        count = 0;
+        for (PageHashBucket b = bucket; b != null; b = getNext(b)) {
+            for (int i = 0; i < b.getEntryCount(); i++, count++) {
+                hashes[count] = b.getHash(i);
+                keys[count] = b.getKey(i);
+            }
+        }
+        freeOverflow(bucket);
+        bucket.clear();
+        int mask = (2 << level) - 1;
+        for (int i = 0; i < count; i++) {
+            addEntry((hashes[i] & mask) == splitPos ? bucket : newBucket, hashes[i], keys[i]);
+        }
+        if (++splitPos == 1 << level) {
+            level++;
+            splitPos = 0;
+        }
+        root.setLevel(level, splitPos);
+    }
+
+    public void remove(Session session, Row row) throws SQLException {
+        if (trace.isDebugEnabled()) {
+            trace.debug(getName() + " remove " + row);
+        }
+        if (tableData.getContainsLargeObject()) {
+            for (int i = 0; i < row.getColumnCount(); i++) {
+                Value v = row.getValue(i);
+                if (v.isLinked()) {
+                    session.unlinkAtCommit((ValueLob) v);
+                }
+            }
+        }
+        try {
+            int hash = getHash(row);
+            long key = row.getKey();
+            PageHashDirectory root = getRoot();
+            PageHashBucket prev = null;
+            for (PageHashBucket b = getBucket(root, hash); b != null; b = getNext(b)) {
+                int i = b.find(hash, key);
+                if (i >= 0) {
+                    b.removeEntry(i);
+                    if (b.getEntryCount() == 0 && prev != null) {
+                        // remove the empty overflow page
+                        int next = b.getNextPageId();
+                        prev.setNextPageId(next);
+                        if (next != 0) {
+                            getBucketPage(next).setParentPageId(prev.getPos());
+                        }
+                        b.free();
+                    }
+                    root.setRowCount(root.getRowCount() - 1);
+                    return;
+                }
+                prev = b;
+            }
+            throw Message.getSQLException(ErrorCode.ROW_NOT_FOUND_WHEN_DELETING_1, getSQL() + ": " + row);
+        } finally {
+            store.incrementChangeCount();
+        }
+    }
+
+    public Cursor find(Session session, SearchRow first, SearchRow last) throws SQLException {
+        if (SysProperties.CHECK && store == null) {
+            throw Message.getSQLException(ErrorCode.OBJECT_CLOSED);
+        }
+        if (first == null || last == null) {
+            throw Message.throwInternalError();
+        }
+        int hash = getHash(first);
+        ObjectArray<Row> rows = find(session, getBucket(getRoot(), hash), hash, first, true);
+        return new PageHashCursor(rows);
+    }
+
+    /**
+     * Find the rows with the given values.
+     *
+     * @param session the session
+     * @param bucket the first page of the bucket
+     * @param hash the hash code
+     * @param compare the values to search for
+     * @param all whether all rows are required (otherwise only the first)
+     * @return the list of rows, or null if no row was found
+     */
+    private ObjectArray<Row> find(Session session, PageHashBucket bucket, int hash, SearchRow compare,
+            boolean all) throws SQLException {
+        ObjectArray<Row> rows = null;
+        for (PageHashBucket b = bucket; b != null; b = getNext(b)) {
+            for (int i = 0; i < b.getEntryCount(); i++) {
+                if (b.getHash(i) == hash) {
+                    Row row = tableData.getRow(session, b.getKey(i));
+                    if (compareRows(row, compare) == 0) {
+                        if (rows == null) {
+                            rows = ObjectArray.newInstance();
+                        }
+                        rows.add(row);
+                        if (!all) {
+                            return rows;
+                        }
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Calculate the hash code of the indexed columns of a row. The hash code
+     * is stored in the index, so it must not change when the database is
+     * re-opened.
+     *
+     * @param row the row
+     * @return the hash code
+     */
+    private int getHash(SearchRow row) throws SQLException {
+        int h = 0;
+        for (int i = 0; i < columnIds.length; i++) {
+            Value v = row.getValue(columnIds[i]);
+            int x;
+            if (v instanceof ValueDecimal) {
+                // 1.0 and 1.00 are equal
+                BigDecimal d = v.getBigDecimal();
+                x = d.signum() == 0 ? 0 : d.stripTrailingZeros().hashCode();
+            } else {
+                x = v.hashCode();
+            }
+            h = h * 31 + x;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private PageHashBucket getBucket(PageHashDirectory root, int hash) throws SQLException {
+        int level = root.getLevel();
+        int bucketId = hash & ((1 << level) - 1);
+        if (bucketId < root.getSplitPos()) {
+            bucketId = hash & ((2 << level) - 1);
+        }
+        return getBucketPage(getBucketPageId(root, bucketId));
+    }
+
+    private int getBucketPageId(PageHashDirectory root, int bucketId) throws SQLException {
+        int capacity = PageHashDirectory.getCapacity(store);
+        PageHashDirectory dir = getDirectory(root.getChildPageId(bucketId / capacity));
+        return dir.getChildPageId(bucketId % capacity);
+    }
+
+    private PageHashBucket getNext(PageHashBucket bucket) throws SQLException {
+        int next = bucket.getNextPageId();
+        return next == 0 ? null : getBucketPage(next);
+    }
+
+    /**
+     * Free the overflow pages of a bucket.
+     *
+     * @param bucket the first page of the bucket
+     */
+    private void freeOverflow(PageHashBucket bucket) throws SQLException {
+        for (PageHashBucket b = getNext(bucket); b != null;) {
+            PageHashBucket next = getNext(b);
+            b.free();
+            b = next;
+        }
+    }
+
+    /**
+     * Read the given page.
+     *
+     * @param id the page id
+     * @return the page
+     */
+    PageHash getHashPage(int id) throws SQLException {
+        Page p = store.getPage(id);
+        if (!(p instanceof PageHash)) {
+            throw Message.throwInternalError("" + p);
+        }
+        return (PageHash) p;
+    }
+
+    /**
+     * Read the given directory page.
+     *
+     * @param id the page id
+     * @return the page
+     */
+    PageHashDirectory getDirectory(int id) throws SQLException {
+        PageHash p = getHashPage(id);
+        if (!(p instanceof PageHashDirectory)) {
+            throw Message.throwInternalError("" + p);
+        }
+        return (PageHashDirectory) p;
+    }
+
+    private PageHashBucket getBucketPage(int id) throws SQLException {
+        PageHash p = getHashPage(id);
+        if (!(p instanceof PageHashBucket)) {
+            throw Message.throwInternalError("" + p);
+        }
+        return (PageHashBucket) p;
+    }
+
+    private PageHashDirectory getRoot() throws SQLException {
+        return getDirectory(rootPageId);
+    }
+
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    public Cursor findFirstOrLast(Session session, boolean first) throws SQLException {
+        throw Message.getUnsupportedException("HASH");
+    }
+
+    public double getCost(Session session, int[] masks) {
+        for (Column column : columns) {
+            int index = column.getColumnId();
+            int mask = masks[index];
+            if ((mask & IndexCondition.EQUALITY) != IndexCondition.EQUALITY) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return 10 * getCostRangeIndex(masks, tableData.getRowCount(session));
+    }
+
+    public int getLookupCost(long rowCount) {
+        // a constant number of pages, independent of the row count
+        return 1;
+    }
+
+    public boolean needRebuild() {
+        return needRebuild;
+    }
+
+    public void remove(Session session) throws SQLException {
+        if (trace.isDebugEnabled()) {
+            trace.debug("remove");
+        }
+        removeAllRows();
+        PageHashDirectory root = getRoot();
+        root.free();
+        store.removeMeta(this, session);
+    }
+
+    public void truncate(Session session) throws SQLException {
+        if (trace.isDebugEnabled()) {
+            trace.debug("truncate");
+        }
+        removeAllRows();
+        addBucket(getRoot());
+        if (tableData.getContainsLargeObject()) {
+            ValueLob.removeAllForTable(database, table.getId());
+        }
+        tableData.setRowCount(0);
+    }
+
+    /**
+     * Free all pages except the root page, and clear the root page.
+     */
+    private void removeAllRows() throws SQLException {
+        try {
+            PageHashDirectory root = getRoot();
+            for (int i = 0; i < root.getEntryCount(); i++) {
+                PageHashDirectory dir = getDirectory(root.getChildPageId(i));
+                for (int j = 0; j < dir.getEntryCount(); j++) {
+                    PageHashBucket bucket = getBucketPage(dir.getChildPageId(j));
+                    freeOverflow(bucket);
+                    bucket.free();
+                }
+                dir.free();
+            }
+            root.clear();
+        } finally {
+            store.incrementChangeCount();
+        }
+    }
+
+    public void checkRename() {
+        // ok
+    }
+
+    PageStore getPageStore() {
+        return store;
+    }
+
+    public long getRowCountApproximation() {
+        return tableData.getRowCountApproximation();
+    }
+
+    public long getRowCount(Session session) {
+        try {
+            return getRoot().getRowCount();
+        } catch (SQLException e) {
+            throw Message.convertToInternal(e);
+        }
+    }
+
+    public void close(Session session) {
+        if (trace.isDebugEnabled()) {
+            trace.debug("close");
+        }
+        // can not close the index because it might get used afterwards,
+        // for example after running recovery
+        store.incrementChangeCount();
+    }
+
+    /**
+     * The root page has changed.
+     *
+     * @param session the session
+     * @param newPos the new position
+     */
+    void setRootPageId(Session session, int newPos) throws SQLException {
+        store.removeMeta(this, session);
+        this.rootPageId = newPos;
+        store.addMeta(this, session);
+        store.addIndex(this);
+    }
+
+    public void writeRowCount() {
+        // the row count is always stored in the root page
+    }
+
+}
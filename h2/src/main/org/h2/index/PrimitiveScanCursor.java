@@ -0,0 +1,62 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import org.h2.engine.Session;
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+
+/**
+ * The cursor implementation for the primitive scan index. The row object is
+ * only created if the row is read.
+ */
+public class PrimitiveScanCursor implements Cursor {
+
+    private final Session session;
+    private final PrimitiveScanIndex scan;
+    private int key = -1;
+    private Row row;
+
+    PrimitiveScanCursor(Session session, PrimitiveScanIndex scan) {
+        this.session = session;
+        this.scan = scan;
+    }
+
+    public Row get() {
+        if (row == null && key >= 0) {
+            row = scan.getRow(session, key);
+        }
+        return row;
+    }
+
+    public SearchRow getSearchRow() {
+        return get();
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    public boolean next() {
+        row = null;
+        if (key == -2) {
+            return false;
+        }
+        key = scan.getNextKey(key);
+        if (key < 0) {
+            key = -2;
+            return false;
+        }
+        return true;
+    }
+
+    public boolean previous() {
+        throw Message.throwInternalError();
+    }
+
+}
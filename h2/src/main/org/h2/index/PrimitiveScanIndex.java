@@ -0,0 +1,307 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.sql.SQLException;
+
+import org.h2.engine.Constants;
+import org.h2.engine.Session;
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableData;
+import org.h2.util.BitField;
+import org.h2.util.MathUtils;
+import org.h2.value.Value;
+import org.h2.value.ValueDouble;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * The scan index of an in-memory table where all columns are of type INT,
+ * BIGINT, or DOUBLE. The values are not kept in row objects, instead each
+ * column is stored in a primitive array. The key of a row is the position
+ * in the arrays. Row objects are created when the rows are read, so a row
+ * that is deleted and then added again when rolling back gets its old key
+ * back: the undo log may still refer to the row by its key.
+ */
+public class PrimitiveScanIndex extends BaseIndex implements RowIndex {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final TableData tableData;
+    private final int[] types;
+    private int[][] intData;
+    private long[][] longData;
+    private BitField[] nulls;
+    private BitField used;
+    private int capacity;
+    private int firstFree;
+    private long rowCount;
+
+    public PrimitiveScanIndex(TableData table, int id, IndexColumn[] columns, IndexType indexType) {
+        initBaseIndex(table, id, table.getName() + "_DATA", columns, indexType);
+        tableData = table;
+        Column[] cols = table.getColumns();
+        types = new int[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            types[i] = cols[i].getType();
+        }
+        clear();
+    }
+
+    /**
+     * Check if the data of a table with the given columns can be stored in
+     * primitive arrays.
+     *
+     * @param columns the columns
+     * @return true if all columns are of type INT, BIGINT, or DOUBLE
+     */
+    public static boolean isSupported(Column[] columns) {
+        if (columns.length == 0) {
+            return false;
+        }
+        for (Column col : columns) {
+            switch (col.getType()) {
+            case Value.INT:
+            case Value.LONG:
+            case Value.DOUBLE:
+                break;
+            default:
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void clear() {
+        intData = new int[types.length][];
+        longData = new long[types.length][];
+        nulls = new BitField[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == Value.INT) {
+                intData[i] = new int[0];
+            } else {
+                longData[i] = new long[0];
+            }
+            nulls[i] = new BitField();
+        }
+        used = new BitField();
+        capacity = 0;
+        firstFree = 0;
+        rowCount = 0;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(size, Math.max(MIN_CAPACITY, capacity * 2));
+        for (int i = 0; i < types.length; i++) {
+            if (intData[i] != null) {
+                int[] d = new int[newCapacity];
+                System.arraycopy(intData[i], 0, d, 0, capacity);
+                intData[i] = d;
+            } else {
+                long[] d = new long[newCapacity];
+                System.arraycopy(longData[i], 0, d, 0, capacity);
+                longData[i] = d;
+            }
+        }
+        capacity = newCapacity;
+    }
+
+    public void add(Session session, Row row) throws SQLException {
+        int key = (int) row.getKey();
+        if (key == 0) {
+            // the undo log resets the key if the page store is not used,
+            // but not the position
+            key = row.getPos();
+        }
+        if (!row.isDeleted() || used.get(key)) {
+            // a new row; a row that was removed and is added again
+            // (rollback) gets its old key back
+            key = used.nextClearBit(firstFree);
+            firstFree = key + 1;
+        }
+        ensureCapacity(key + 1);
+        for (int i = 0; i < types.length; i++) {
+            Value v = row.getValue(i);
+            if (v == null || v == ValueNull.INSTANCE) {
+                nulls[i].set(key);
+                continue;
+            }
+            nulls[i].clear(key);
+            switch (types[i]) {
+            case Value.INT:
+                intData[i][key] = v.getInt();
+                break;
+            case Value.LONG:
+                longData[i][key] = v.getLong();
+                break;
+            default:
+                longData[i][key] = Double.doubleToLongBits(v.getDouble());
+            }
+        }
+        used.set(key);
+        row.setKey(key);
+        row.setPos(key);
+        row.setDeleted(false);
+        rowCount++;
+    }
+
+    public void remove(Session session, Row row) throws SQLException {
+        int key = (int) row.getKey();
+        if (!used.get(key)) {
+            throw Message.throwInternalError("not found: " + key);
+        }
+        row.setPos(key);
+        row.setDeleted(true);
+        rowCount--;
+        if (rowCount == 0) {
+            clear();
+            return;
+        }
+        used.clear(key);
+        if (key < firstFree) {
+            firstFree = key;
+        }
+    }
+
+    public Row getRow(Session session, long key) {
+        int k = (int) key;
+        Row row = tableData.getTemplateRow();
+        for (int i = 0; i < types.length; i++) {
+            row.setValue(i, getValue(k, i));
+        }
+        row.setKey(key);
+        row.setPos(k);
+        return row;
+    }
+
+    /**
+     * Get the value of the given row and column.
+     *
+     * @param key the row key
+     * @param column the column index
+     * @return the value
+     */
+    Value getValue(int key, int column) {
+        if (nulls[column].get(key)) {
+            return ValueNull.INSTANCE;
+        }
+        switch (types[column]) {
+        case Value.INT:
+            return ValueInt.get(intData[column][key]);
+        case Value.LONG:
+            return ValueLong.get(longData[column][key]);
+        default:
+            return ValueDouble.get(Double.longBitsToDouble(longData[column][key]));
+        }
+    }
+
+    /**
+     * Compare the stored value of the given row and column with a value. NULL
+     * is smaller than all other values. If the value has the type of the
+     * column, no value object is created.
+     *
+     * @param key the row key
+     * @param column the column index
+     * @param v the value to compare with
+     * @return 0 if both values are equal, -1 if the stored value is smaller,
+     *         and 1 if it is bigger
+     */
+    int compareValue(int key, int column, Value v) throws SQLException {
+        boolean isNull = nulls[column].get(key);
+        if (v == ValueNull.INSTANCE) {
+            return isNull ? 0 : 1;
+        } else if (isNull) {
+            return -1;
+        }
+        int type = types[column];
+        if (v.getType() != type) {
+            return table.compareTypeSave(getValue(key, column), v);
+        }
+        switch (type) {
+        case Value.INT:
+            return MathUtils.compare(intData[column][key], v.getInt());
+        case Value.LONG:
+            return MathUtils.compare(longData[column][key], v.getLong());
+        default:
+            return Double.compare(Double.longBitsToDouble(longData[column][key]), v.getDouble());
+        }
+    }
+
+    /**
+     * Get the key of the next row.
+     *
+     * @param key the key of the current row, or -1 to start the scan
+     * @return the key of the next row, or -1 if there are no more rows
+     */
+    int getNextKey(int key) {
+        int next = used.nextSetBit(key + 1);
+        return next >= capacity ? -1 : next;
+    }
+
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        return new PrimitiveScanCursor(session, this);
+    }
+
+    public double getCost(Session session, int[] masks) {
+        return tableData.getRowCountApproximation() + Constants.COST_ROW_OFFSET;
+    }
+
+    public long getRowCount(Session session) {
+        return rowCount;
+    }
+
+    public long getRowCountApproximation() {
+        return rowCount;
+    }
+
+    public void remove(Session session) {
+        truncate(session);
+    }
+
+    public void truncate(Session session) {
+        clear();
+        tableData.setRowCount(0);
+    }
+
+    public String getCreateSQL() {
+        return null;
+    }
+
+    public void close(Session session) {
+        // nothing to do
+    }
+
+    public int getColumnIndex(Column col) {
+        // the scan index cannot use any columns
+        return -1;
+    }
+
+    public void checkRename() throws SQLException {
+        throw Message.getUnsupportedException("SCAN");
+    }
+
+    public boolean needRebuild() {
+        return false;
+    }
+
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    public Cursor findFirstOrLast(Session session, boolean first) throws SQLException {
+        throw Message.getUnsupportedException("SCAN");
+    }
+
+}
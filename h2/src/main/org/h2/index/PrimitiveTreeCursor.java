@@ -0,0 +1,80 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.sql.SQLException;
+
+import org.h2.engine.Session;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+
+/**
+ * The cursor implementation for the primitive tree index.
+ */
+public class PrimitiveTreeCursor implements Cursor {
+    private final Session session;
+    private final PrimitiveTreeIndex tree;
+    private int node;
+    private Row row;
+    private boolean beforeFirst;
+    private SearchRow first, last;
+
+    PrimitiveTreeCursor(Session session, PrimitiveTreeIndex tree, int node, SearchRow first, SearchRow last) {
+        this.session = session;
+        this.tree = tree;
+        this.node = node;
+        this.first = first;
+        this.last = last;
+        beforeFirst = true;
+    }
+
+    public Row get() {
+        if (node < 0) {
+            return null;
+        }
+        if (row == null) {
+            row = tree.getRow(session, node);
+        }
+        return row;
+    }
+
+    public SearchRow getSearchRow() {
+        return get();
+    }
+
+    public long getKey() {
+        return node;
+    }
+
+    public boolean next() throws SQLException {
+        row = null;
+        if (beforeFirst) {
+            beforeFirst = false;
+            if (node < 0) {
+                return false;
+            }
+            if (first != null && tree.compareRow(first, node) > 0) {
+                node = tree.next(node);
+            }
+        } else {
+            node = tree.next(node);
+        }
+        if (node >= 0 && last != null) {
+            if (tree.compareRow(last, node) < 0) {
+                node = -1;
+            }
+        }
+        return node >= 0;
+    }
+
+    public boolean previous() {
+        row = null;
+        node = tree.previous(node);
+        return node >= 0;
+    }
+
+}
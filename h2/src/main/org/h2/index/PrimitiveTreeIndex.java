@@ -0,0 +1,499 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.sql.SQLException;
+
+import org.h2.constant.SysProperties;
+import org.h2.engine.Session;
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableData;
+import org.h2.util.MathUtils;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * An in-memory AVL tree index for tables with a primitive scan index. The
+ * nodes of the tree are the row keys, and the links between the nodes are
+ * kept in arrays. The values are compared using the data of the scan index,
+ * so that no objects are kept per row.
+ */
+public class PrimitiveTreeIndex extends BaseIndex {
+
+    private final PrimitiveScanIndex scan;
+    private final TableData tableData;
+    private int[] left, right, parent;
+    private byte[] balance;
+    private int root;
+    private long rowCount;
+
+    public PrimitiveTreeIndex(TableData table, PrimitiveScanIndex scan, int id, String indexName,
+            IndexColumn[] columns, IndexType indexType) {
+        initBaseIndex(table, id, indexName, columns, indexType);
+        this.scan = scan;
+        tableData = table;
+        clear();
+    }
+
+    private void clear() {
+        left = new int[0];
+        right = new int[0];
+        parent = new int[0];
+        balance = new byte[0];
+        root = -1;
+        rowCount = 0;
+    }
+
+    private void ensureCapacity(int size) {
+        int len = left.length;
+        if (size <= len) {
+            return;
+        }
+        int newLen = Math.max(size, len * 2);
+        int[] l = new int[newLen], r = new int[newLen], p = new int[newLen];
+        byte[] b = new byte[newLen];
+        System.arraycopy(left, 0, l, 0, len);
+        System.arraycopy(right, 0, r, 0, len);
+        System.arraycopy(parent, 0, p, 0, len);
+        System.arraycopy(balance, 0, b, 0, len);
+        left = l;
+        right = r;
+        parent = p;
+        balance = b;
+    }
+
+    public void close(Session session) {
+        clear();
+    }
+
+    public void add(Session session, Row row) throws SQLException {
+        int i = (int) row.getKey();
+        ensureCapacity(i + 1);
+        left[i] = right[i] = parent[i] = -1;
+        balance[i] = 0;
+        int n = root, x = n;
+        boolean isLeft = true;
+        while (true) {
+            if (n < 0) {
+                if (x < 0) {
+                    root = i;
+                    rowCount++;
+                    return;
+                }
+                set(x, isLeft, i);
+                break;
+            }
+            int compare = compareRow(row, n);
+            if (compare == 0) {
+                if (indexType.isUnique()) {
+                    if (!containsNullAndAllowMultipleNull(row)) {
+                        throw getDuplicateKeyException();
+                    }
+                }
+                compare = MathUtils.compare(i, n);
+            }
+            isLeft = compare < 0;
+            x = n;
+            n = child(x, isLeft);
+        }
+        balance(x, isLeft);
+        rowCount++;
+    }
+
+    private void balance(int x, boolean isLeft) {
+        while (true) {
+            int sign = isLeft ? 1 : -1;
+            switch (balance[x] * sign) {
+            case 1:
+                balance[x] = 0;
+                return;
+            case 0:
+                balance[x] = (byte) -sign;
+                break;
+            case -1:
+                int l = child(x, isLeft);
+                if (balance[l] == -sign) {
+                    replace(x, l);
+                    set(x, isLeft, child(l, !isLeft));
+                    set(l, !isLeft, x);
+                    balance[x] = 0;
+                    balance[l] = 0;
+                } else {
+                    int r = child(l, !isLeft);
+                    replace(x, r);
+                    set(l, !isLeft, child(r, isLeft));
+                    set(r, isLeft, l);
+                    set(x, isLeft, child(r, !isLeft));
+                    set(r, !isLeft, x);
+                    int rb = balance[r];
+                    balance[x] = (byte) ((rb == -sign) ? sign : 0);
+                    balance[l] = (byte) ((rb == sign) ? -sign : 0);
+                    balance[r] = 0;
+                }
+                return;
+            default:
+                Message.throwInternalError("b:" + balance[x] * sign);
+            }
+            if (x == root) {
+                return;
+            }
+            isLeft = isFromLeft(x);
+            x = parent[x];
+        }
+    }
+
+    private boolean isFromLeft(int x) {
+        int p = parent[x];
+        return p < 0 || left[p] == x;
+    }
+
+    private int child(int x, boolean isLeft) {
+        return isLeft ? left[x] : right[x];
+    }
+
+    private void replace(int x, int n) {
+        if (x == root) {
+            root = n;
+            if (n >= 0) {
+                parent[n] = -1;
+            }
+        } else {
+            set(parent[x], isFromLeft(x), n);
+        }
+    }
+
+    private void set(int p, boolean isLeft, int n) {
+        if (isLeft) {
+            left[p] = n;
+        } else {
+            right[p] = n;
+        }
+        if (n >= 0) {
+            parent[n] = p;
+        }
+    }
+
+    public void remove(Session session, Row row) throws SQLException {
+        int x = (int) row.getKey();
+        if (x >= left.length || (x != root && parent[x] < 0)) {
+            throw Message.throwInternalError("not found!");
+        }
+        int n;
+        if (left[x] < 0) {
+            n = right[x];
+        } else if (right[x] < 0) {
+            n = left[x];
+        } else {
+            int d = x;
+            x = left[x];
+            for (int temp = x; (temp = right[temp]) >= 0;) {
+                x = temp;
+            }
+            // x will be replaced with n later
+            n = left[x];
+            // swap d and x
+            byte b = balance[x];
+            balance[x] = balance[d];
+            balance[d] = b;
+
+            // set x.parent
+            int xp = parent[x];
+            int dp = parent[d];
+            if (d == root) {
+                root = x;
+            }
+            parent[x] = dp;
+            if (dp >= 0) {
+                if (right[dp] == d) {
+                    right[dp] = x;
+                } else {
+                    left[dp] = x;
+                }
+            }
+            if (xp == d) {
+                parent[d] = x;
+                if (left[d] == x) {
+                    left[x] = d;
+                    right[x] = right[d];
+                } else {
+                    right[x] = d;
+                    left[x] = left[d];
+                }
+            } else {
+                parent[d] = xp;
+                right[xp] = d;
+                right[x] = right[d];
+                left[x] = left[d];
+            }
+
+            if (SysProperties.CHECK && right[x] < 0) {
+                Message.throwInternalError("tree corrupted");
+            }
+            parent[right[x]] = x;
+            parent[left[x]] = x;
+            // set d.left, d.right
+            left[d] = n;
+            if (n >= 0) {
+                parent[n] = d;
+            }
+            right[d] = -1;
+            x = d;
+        }
+        rowCount--;
+
+        boolean isLeft = isFromLeft(x);
+        replace(x, n);
+        n = parent[x];
+        // the removed node is no longer linked
+        parent[x] = -1;
+        while (n >= 0) {
+            x = n;
+            int sign = isLeft ? 1 : -1;
+            switch (balance[x] * sign) {
+            case -1:
+                balance[x] = 0;
+                break;
+            case 0:
+                balance[x] = (byte) sign;
+                return;
+            case 1:
+                int r = child(x, !isLeft);
+                int b = balance[r];
+                if (b * sign >= 0) {
+                    replace(x, r);
+                    set(x, !isLeft, child(r, isLeft));
+                    set(r, isLeft, x);
+                    if (b == 0) {
+                        balance[x] = (byte) sign;
+                        balance[r] = (byte) -sign;
+                        return;
+                    }
+                    balance[x] = 0;
+                    balance[r] = 0;
+                    x = r;
+                } else {
+                    int l = child(r, isLeft);
+                    replace(x, l);
+                    b = balance[l];
+                    set(r, isLeft, child(l, !isLeft));
+                    set(l, !isLeft, r);
+                    set(x, !isLeft, child(l, isLeft));
+                    set(l, isLeft, x);
+                    balance[x] = (byte) ((b == sign) ? -sign : 0);
+                    balance[r] = (byte) ((b == -sign) ? sign : 0);
+                    balance[l] = 0;
+                    x = l;
+                }
+                break;
+            default:
+                Message.throwInternalError("b: " + balance[x] * sign);
+            }
+            isLeft = isFromLeft(x);
+            n = parent[x];
+        }
+    }
+
+    /**
+     * Compare the given row with the row of a node, using the index columns.
+     *
+     * @param row the row (the comparison stops at the first column that is
+     *            not set)
+     * @param node the node
+     * @return 0 if both rows are equal, -1 if the given row is smaller, and 1
+     *         if it is bigger
+     */
+    int compareRow(SearchRow row, int node) throws SQLException {
+        for (int i = 0; i < indexColumns.length; i++) {
+            int index = columnIds[i];
+            Value v = row.getValue(index);
+            if (v == null) {
+                // can't compare further
+                return 0;
+            }
+            int c = -scan.compareValue(node, index, v);
+            if (c != 0) {
+                if ((indexColumns[i].sortType & SortOrder.DESCENDING) != 0) {
+                    c = -c;
+                }
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private int findFirstNode(SearchRow row) throws SQLException {
+        int x = root, result = x;
+        while (x >= 0) {
+            result = x;
+            if (compareRow(row, x) <= 0) {
+                x = left[x];
+            } else {
+                x = right[x];
+            }
+        }
+        return result;
+    }
+
+    public Cursor find(Session session, SearchRow first, SearchRow last) throws SQLException {
+        if (first == null) {
+            int x = root, n;
+            while (x >= 0) {
+                n = left[x];
+                if (n < 0) {
+                    break;
+                }
+                x = n;
+            }
+            return new PrimitiveTreeCursor(session, this, x, null, last);
+        }
+        int x = findFirstNode(first);
+        return new PrimitiveTreeCursor(session, this, x, first, last);
+    }
+
+    /**
+     * Get the row of the given node.
+     *
+     * @param session the session
+     * @param node the node
+     * @return the row
+     */
+    Row getRow(Session session, int node) {
+        return scan.getRow(session, node);
+    }
+
+    public double getCost(Session session, int[] masks) {
+        return getCostRangeIndex(masks, tableData.getRowCountApproximation());
+    }
+
+    public void remove(Session session) {
+        truncate(session);
+    }
+
+    public void truncate(Session session) {
+        clear();
+    }
+
+    /**
+     * Get the next node if there is one.
+     *
+     * @param x the node
+     * @return the next node or -1
+     */
+    int next(int x) {
+        if (x < 0) {
+            return -1;
+        }
+        int r = right[x];
+        if (r >= 0) {
+            x = r;
+            int l = left[x];
+            while (l >= 0) {
+                x = l;
+                l = left[x];
+            }
+            return x;
+        }
+        int ch = x;
+        x = parent[x];
+        while (x >= 0 && ch == right[x]) {
+            ch = x;
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Get the previous node if there is one.
+     *
+     * @param x the node
+     * @return the previous node or -1
+     */
+    int previous(int x) {
+        if (x < 0) {
+            return -1;
+        }
+        int l = left[x];
+        if (l >= 0) {
+            x = l;
+            int r = right[x];
+            while (r >= 0) {
+                x = r;
+                r = right[x];
+            }
+            return x;
+        }
+        int ch = x;
+        x = parent[x];
+        while (x >= 0 && ch == left[x]) {
+            ch = x;
+            x = parent[x];
+        }
+        return x;
+    }
+
+    public void checkRename() {
+        // nothing to do
+    }
+
+    public boolean needRebuild() {
+        return true;
+    }
+
+    public boolean canGetFirstOrLast() {
+        return true;
+    }
+
+    public Cursor findFirstOrLast(Session session, boolean first) throws SQLException {
+        if (first) {
+            Cursor cursor = find(session, null, null);
+            while (cursor.next()) {
+                SearchRow row = cursor.getSearchRow();
+                Value v = row.getValue(columnIds[0]);
+                if (v != ValueNull.INSTANCE) {
+                    return cursor;
+                }
+            }
+            return cursor;
+        }
+        int x = root, n;
+        while (x >= 0) {
+            n = right[x];
+            if (n < 0) {
+                break;
+            }
+            x = n;
+        }
+        PrimitiveTreeCursor cursor = new PrimitiveTreeCursor(session, this, x, null, null);
+        if (x < 0) {
+            return cursor;
+        }
+        do {
+            SearchRow row = cursor.getSearchRow();
+            if (row == null) {
+                break;
+            }
+            Value v = row.getValue(columnIds[0]);
+            if (v != ValueNull.INSTANCE) {
+                return cursor;
+            }
+        } while (cursor.previous());
+        return cursor;
+    }
+
+    public long getRowCount(Session session) {
+        return rowCount;
+    }
+
+    public long getRowCountApproximation() {
+        return rowCount;
+    }
+
+}
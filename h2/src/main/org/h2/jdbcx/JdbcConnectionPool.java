@@ -23,7 +23,11 @@ package org.h2.jdbcx;
 import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.Stack;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.ConnectionEvent;
 import javax.sql.ConnectionEventListener;
@@ -57,6 +61,11 @@ import org.h2.message.Message;
  *     }
  * }
  * </pre>
+ * The pool does not lock when a connection is borrowed or returned: the number
+ * of connections is limited by a semaphore, and the unused connections are
+ * kept in a concurrent queue. Prepared statements are cached by the database
+ * session (see the system property h2.queryCacheSize), so that they survive
+ * when a connection is returned to the pool.
  *
  * @author Christian d'Heureuse
  *      (<a href="http://www.source-code.biz">www.source-code.biz</a>)
@@ -67,16 +76,24 @@ public class JdbcConnectionPool implements DataSource {
     private static final int DEFAULT_TIMEOUT = 5 * 60;
 
     private final ConnectionPoolDataSource dataSource;
-    private final Stack<PooledConnection> recycledConnections = new Stack<PooledConnection>();
+    private final ConcurrentLinkedQueue<PooledConnection> recycledConnections =
+        new ConcurrentLinkedQueue<PooledConnection>();
     private final PoolConnectionEventListener poolConnectionEventListener = new PoolConnectionEventListener();
+    private final PoolSemaphore semaphore;
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger peakActiveConnections = new AtomicInteger();
+    private final AtomicLong connectionRequests = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
     private PrintWriter logWriter;
     private int maxConnections = 10;
-    private int timeout = DEFAULT_TIMEOUT;
-    private int activeConnections;
-    private boolean isDisposed;
+    private volatile int timeout = DEFAULT_TIMEOUT;
+    private volatile boolean validateOnBorrow = true;
+    private volatile boolean isDisposed;
 
     private JdbcConnectionPool(ConnectionPoolDataSource dataSource) {
         this.dataSource = dataSource;
+        semaphore = new PoolSemaphore(maxConnections);
         try {
             logWriter = dataSource.getLogWriter();
         } catch (SQLException e) {
@@ -120,9 +137,13 @@ public class JdbcConnectionPool implements DataSource {
         if (max < 1) {
             throw new IllegalArgumentException("Invalid maxConnections value: " + max);
         }
+        if (max > maxConnections) {
+            // this also wakes up waiting threads
+            semaphore.release(max - maxConnections);
+        } else {
+            semaphore.reducePermits(maxConnections - max);
+        }
         this.maxConnections = max;
-        // notify waiting threads if the value was increased
-        notifyAll();
     }
 
     /**
@@ -139,7 +160,7 @@ public class JdbcConnectionPool implements DataSource {
      *
      * @return the timeout in seconds
      */
-    public synchronized int getLoginTimeout() {
+    public int getLoginTimeout() {
         return timeout;
     }
 
@@ -150,24 +171,47 @@ public class JdbcConnectionPool implements DataSource {
      *
      * @param seconds the timeout, 0 meaning the default
      */
-    public synchronized void setLoginTimeout(int seconds) {
+    public void setLoginTimeout(int seconds) {
         if (seconds == 0) {
             seconds = DEFAULT_TIMEOUT;
         }
         this.timeout = seconds;
     }
 
+    /**
+     * Sets whether an unused connection is checked before it is returned by
+     * getConnection. Broken connections are closed and replaced by a new
+     * connection. This is enabled by default.
+     *
+     * @param validate true if connections should be checked
+     */
+    public void setValidateOnBorrow(boolean validate) {
+        this.validateOnBorrow = validate;
+    }
+
+    /**
+     * Checks whether unused connections are checked before they are returned.
+     *
+     * @return true if they are
+     */
+    public boolean getValidateOnBorrow() {
+        return validateOnBorrow;
+    }
+
     /**
      * Closes all unused pooled connections.
      */
-    public synchronized void dispose() throws SQLException {
+    public void dispose() throws SQLException {
         if (isDisposed) {
             return;
         }
         isDisposed = true;
         SQLException e = null;
-        while (!recycledConnections.isEmpty()) {
-            PooledConnection pc = recycledConnections.pop();
+        while (true) {
+            PooledConnection pc = recycledConnections.poll();
+            if (pc == null) {
+                break;
+            }
             try {
                 pc.close();
             } catch (SQLException e2) {
@@ -195,19 +239,39 @@ public class JdbcConnectionPool implements DataSource {
      *      or a timeout occurred
      */
     public Connection getConnection() throws SQLException {
-        for (int i = 0;; i++) {
-            synchronized (this) {
-                if (activeConnections < maxConnections) {
-                    return getConnectionNow();
-                }
-                if (i >= timeout) {
-                    throw new SQLException("Login timeout", "08001", 8001);
-                }
-                try {
-                    wait(1000);
-                } catch (InterruptedException e) {
-                    // ignore
+        connectionRequests.incrementAndGet();
+        if (!semaphore.tryAcquire()) {
+            long start = System.currentTimeMillis();
+            waitCount.incrementAndGet();
+            try {
+                acquire(start + timeout * 1000L);
+            } finally {
+                waitTime.addAndGet(System.currentTimeMillis() - start);
+            }
+        }
+        try {
+            return getConnectionNow();
+        } catch (RuntimeException e) {
+            semaphore.release();
+            throw e;
+        } catch (SQLException e) {
+            semaphore.release();
+            throw e;
+        }
+    }
+
+    private void acquire(long max) throws SQLException {
+        while (true) {
+            long wait = max - System.currentTimeMillis();
+            if (wait <= 0) {
+                throw new SQLException("Login timeout", "08001", 8001);
+            }
+            try {
+                if (semaphore.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+                    return;
                 }
+            } catch (InterruptedException e) {
+                // ignore
             }
         }
     }
@@ -216,18 +280,45 @@ public class JdbcConnectionPool implements DataSource {
         if (isDisposed) {
             throw new IllegalStateException("Connection pool has been disposed.");
         }
+        Connection conn = null;
         PooledConnection pc;
-        if (!recycledConnections.empty()) {
-            pc = recycledConnections.pop();
-        } else {
-            pc = dataSource.getPooledConnection();
+        while (true) {
+            pc = recycledConnections.poll();
+            if (pc == null) {
+                pc = dataSource.getPooledConnection();
+                conn = pc.getConnection();
+                break;
+            }
+            conn = pc.getConnection();
+            if (!validateOnBorrow || isValid(conn)) {
+                break;
+            }
+            log("Closing broken database connection");
+            closeConnection(pc);
+        }
+        int active = activeConnections.incrementAndGet();
+        while (true) {
+            int peak = peakActiveConnections.get();
+            if (active <= peak || peakActiveConnections.compareAndSet(peak, active)) {
+                break;
+            }
         }
-        Connection conn = pc.getConnection();
-        activeConnections++;
         pc.addConnectionEventListener(poolConnectionEventListener);
         return conn;
     }
 
+    private static boolean isValid(Connection conn) {
+        try {
+            boolean valid = !conn.isClosed();
+//## Java 1.6 begin ##
+            valid = valid && conn.isValid(0);
+//## Java 1.6 end ##
+            return valid;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
     /**
      * This method usually puts the connection back into the pool. There are
      * some exceptions: if the pool is disposed, the connection is disposed as
@@ -235,21 +326,20 @@ public class JdbcConnectionPool implements DataSource {
      *
      * @param pc the pooled connection
      */
-    synchronized void recycleConnection(PooledConnection pc) {
+    void recycleConnection(PooledConnection pc) {
         if (isDisposed) {
             disposeConnection(pc);
             return;
         }
-        if (activeConnections <= 0) {
+        if (activeConnections.decrementAndGet() < 0) {
             throw new AssertionError();
         }
-        activeConnections--;
-        if (activeConnections < maxConnections) {
-            recycledConnections.push(pc);
+        if (recycledConnections.size() < maxConnections) {
+            recycledConnections.add(pc);
         } else {
             closeConnection(pc);
         }
-        notifyAll();
+        semaphore.release();
     }
 
     private void closeConnection(PooledConnection pc) {
@@ -265,12 +355,11 @@ public class JdbcConnectionPool implements DataSource {
      *
      * @param pc the pooled connection
      */
-    synchronized void disposeConnection(PooledConnection pc) {
-        if (activeConnections <= 0) {
+    void disposeConnection(PooledConnection pc) {
+        if (activeConnections.decrementAndGet() < 0) {
             throw new AssertionError();
         }
-        activeConnections--;
-        notifyAll();
+        semaphore.release();
         closeConnection(pc);
     }
 
@@ -313,8 +402,72 @@ public class JdbcConnectionPool implements DataSource {
      *
      * @return the number of active connections.
      */
-    public synchronized int getActiveConnections() {
-        return activeConnections;
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    /**
+     * Returns the highest number of active connections since the pool was
+     * created. Together with the maximum number of connections, this shows
+     * how much the pool is utilized.
+     *
+     * @return the highest number of active connections
+     */
+    public int getPeakActiveConnections() {
+        return peakActiveConnections.get();
+    }
+
+    /**
+     * Returns the number of unused connections that are kept open.
+     *
+     * @return the number of idle connections
+     */
+    public int getIdleConnections() {
+        return recycledConnections.size();
+    }
+
+    /**
+     * Returns the number of times getConnection() was called.
+     *
+     * @return the number of requests
+     */
+    public long getConnectionRequests() {
+        return connectionRequests.get();
+    }
+
+    /**
+     * Returns the number of times getConnection() had to wait for a free
+     * connection.
+     *
+     * @return the number of waits
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    /**
+     * Returns the total time getConnection() waited for a free connection.
+     *
+     * @return the time in milliseconds
+     */
+    public long getWaitTime() {
+        return waitTime.get();
+    }
+
+    /**
+     * A semaphore where the number of permits can be reduced.
+     */
+    private static class PoolSemaphore extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        PoolSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
     }
 
     /**
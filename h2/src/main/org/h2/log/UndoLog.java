@@ -9,8 +9,8 @@ package org.h2.log;
 import java.sql.SQLException;
 
 import org.h2.constant.SysProperties;
-import org.h2.engine.Constants;
 import org.h2.engine.Database;
+import org.h2.engine.MemoryBroker;
 import org.h2.engine.Session;
 import org.h2.message.Message;
 import org.h2.store.DataPage;
@@ -22,6 +22,8 @@ import org.h2.util.ObjectArray;
  */
 public class UndoLog {
     private Database database;
+    private Session session;
+    private MemoryBroker.Grant grant;
     // TODO undo log entry: a chain would probably be faster
     //  and use less memory than an array
     private ObjectArray<UndoLogRecord> records = ObjectArray.newInstance();
@@ -36,6 +38,7 @@ public class UndoLog {
      */
     public UndoLog(Session session) {
         this.database = session.getDatabase();
+        this.session = session;
     }
 
     /**
@@ -57,9 +60,13 @@ public class UndoLog {
     public void clear() {
         records.clear();
         memoryUndo = 0;
+        if (grant != null) {
+            database.getMemoryBroker().free(grant);
+        }
         if (file != null) {
             file.closeAndDeleteSilently();
             file = null;
+            database.getMemoryBroker().returnBuffer(rowBuff);
             rowBuff = null;
         }
     }
@@ -105,6 +112,9 @@ public class UndoLog {
         if (!r.isStored()) {
             memoryUndo--;
         }
+        if (i == 0 && grant != null) {
+            database.getMemoryBroker().free(grant);
+        }
         if (trimToSize && i > 1024 && (i & 1023) == 0) {
             records.trimToSize();
         }
@@ -117,15 +127,21 @@ public class UndoLog {
      */
     public void add(UndoLogRecord entry) throws SQLException {
         records.add(entry);
+        boolean spill = false;
         if (!entry.isStored()) {
             memoryUndo++;
+            spill = !allocate(entry);
         }
-        if (memoryUndo > database.getMaxMemoryUndo() && database.isPersistent() && !database.isMultiVersion()) {
+        if ((spill || memoryUndo > database.getMaxMemoryUndo()) && database.isPersistent() && !database.isMultiVersion()) {
+            if (grant != null) {
+                // the records that can not be stored are not counted
+                database.getMemoryBroker().free(grant);
+            }
             if (file == null) {
                 String fileName = database.createTempFile();
                 file = database.openFile(fileName, "rw", false);
                 file.seek(FileStore.HEADER_LENGTH);
-                rowBuff = DataPage.create(database, Constants.DEFAULT_DATA_PAGE_SIZE);
+                rowBuff = database.getMemoryBroker().getBuffer();
                 DataPage buff = rowBuff;
                 for (int i = 0; i < records.size(); i++) {
                     UndoLogRecord r = records.get(i);
@@ -138,6 +154,14 @@ public class UndoLog {
         }
     }
 
+    private boolean allocate(UndoLogRecord entry) {
+        MemoryBroker broker = database.getMemoryBroker();
+        if (grant == null) {
+            grant = broker.open(this, session);
+        }
+        return broker.allocate(grant, entry.getRow().getMemorySize());
+    }
+
     private void saveIfPossible(UndoLogRecord r, DataPage buff) throws SQLException {
         if (!r.isStored() && r.canStore()) {
             r.save(buff, file);
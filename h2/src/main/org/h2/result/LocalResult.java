@@ -12,6 +12,7 @@ import java.sql.SQLException;
 
 import org.h2.constant.SysProperties;
 import org.h2.engine.Database;
+import org.h2.engine.MemoryBroker;
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
@@ -29,7 +30,13 @@ import org.h2.value.ValueArray;
  * and it is also used directly by the ResultSet class in the embedded mode.
  * If the result does not fit in memory, it is written to a temporary file.
  */
-public class LocalResult implements ResultInterface {
+public class LocalResult implements ResultInterface, ResultTarget {
+
+    /**
+     * The memory of the rows is registered with the memory broker in blocks
+     * of this size (in bytes).
+     */
+    private static final int ALLOCATE_BLOCK = 64 * 1024;
 
     private int maxMemoryRows;
     private Session session;
@@ -45,6 +52,14 @@ public class LocalResult implements ResultInterface {
     private int diskOffset;
     private boolean distinct;
     private boolean closed;
+    private MemoryBroker.Grant grant;
+    private int pendingMemory;
+
+    /**
+     * The number of rows that are kept in memory before they are written to
+     * disk, after the memory broker refused to allocate memory; 0 before.
+     */
+    private int diskBufferRows;
 
     /**
      * Construct a local result object.
@@ -261,10 +276,12 @@ public class LocalResult implements ResultInterface {
                 ValueArray array = ValueArray.get(values);
                 distinctRows.put(array, values);
                 rowCount = distinctRows.size();
-                if (rowCount > SysProperties.MAX_MEMORY_ROWS_DISTINCT && session.getDatabase().isPersistent()) {
+                boolean spill = !allocate(values);
+                if ((spill || rowCount > SysProperties.MAX_MEMORY_ROWS_DISTINCT) && session.getDatabase().isPersistent()) {
                     disk = new ResultTempTable(session, sort);
                     disk.addRows(distinctRows.values());
                     distinctRows = null;
+                    freeMemory();
                 }
             } else {
                 rowCount = disk.addRow(values);
@@ -273,7 +290,18 @@ public class LocalResult implements ResultInterface {
         }
         rows.add(values);
         rowCount++;
-        if (rows.size() > maxMemoryRows && session.getDatabase().isPersistent()) {
+        boolean spill;
+        if (diskBufferRows > 0) {
+            // the broker is not asked again: the rows are written
+            // in blocks of the size that was possible the first time
+            spill = rows.size() >= diskBufferRows;
+        } else {
+            spill = !allocate(values);
+            if (spill) {
+                diskBufferRows = rows.size();
+            }
+        }
+        if ((spill || rows.size() > maxMemoryRows) && session.getDatabase().isPersistent()) {
             if (disk == null) {
                 disk = new ResultDiskBuffer(session, sort, values.length);
             }
@@ -284,6 +312,43 @@ public class LocalResult implements ResultInterface {
     private void addRowsToDisk() throws SQLException {
         disk.addRows(rows);
         rows.clear();
+        freeMemory();
+    }
+
+    /**
+     * Register the memory of a row with the memory broker. To avoid
+     * synchronizing for each row, the memory is registered in blocks.
+     *
+     * @param values the row
+     * @return false if the rows should be written to disk
+     */
+    private boolean allocate(Value[] values) {
+        if (session == null) {
+            return true;
+        }
+        int m = 24 + 4 * values.length;
+        for (Value v : values) {
+            m += v.getMemory();
+        }
+        pendingMemory += m;
+        if (pendingMemory < ALLOCATE_BLOCK) {
+            return true;
+        }
+        MemoryBroker broker = session.getDatabase().getMemoryBroker();
+        if (grant == null) {
+            grant = broker.open(this, session);
+        }
+        m = pendingMemory;
+        pendingMemory = 0;
+        return broker.allocate(grant, m);
+    }
+
+    private void freeMemory() {
+        pendingMemory = 0;
+        if (grant != null) {
+            session.getDatabase().getMemoryBroker().close(grant);
+            grant = null;
+        }
     }
 
     public int getVisibleColumnCount() {
@@ -333,6 +398,8 @@ public class LocalResult implements ResultInterface {
                 sort.sort(rows);
             }
         }
+        // the rows are complete, so they are no longer counted
+        freeMemory();
         applyOffset();
         applyLimit();
         reset();
@@ -372,6 +439,7 @@ public class LocalResult implements ResultInterface {
     }
 
     public void close() {
+        freeMemory();
         if (disk != null) {
             disk.close();
             disk = null;
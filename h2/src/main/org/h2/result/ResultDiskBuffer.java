@@ -12,6 +12,7 @@ import java.sql.SQLException;
 import org.h2.constant.SysProperties;
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
+import org.h2.engine.MemoryBroker;
 import org.h2.engine.Session;
 import org.h2.message.Message;
 import org.h2.store.DataPage;
@@ -27,6 +28,7 @@ class ResultDiskBuffer implements ResultExternal {
     private static final int READ_AHEAD = 128;
 
     private DataPage rowBuff;
+    private MemoryBroker broker;
     private FileStore file;
     private ObjectArray<ResultDiskTape> tapes;
     private ResultDiskTape mainTape;
@@ -64,7 +66,8 @@ class ResultDiskBuffer implements ResultExternal {
         this.sort = sort;
         this.columnCount = columnCount;
         Database db = session.getDatabase();
-        rowBuff = DataPage.create(db, Constants.DEFAULT_DATA_PAGE_SIZE);
+        broker = db.getMemoryBroker();
+        rowBuff = broker.getBuffer();
         String fileName = session.getDatabase().createTempFile();
         file = session.getDatabase().openFile(fileName, "rw", false);
         file.setCheckedWriting(false);
@@ -216,6 +219,8 @@ class ResultDiskBuffer implements ResultExternal {
         if (file != null) {
             file.closeAndDeleteSilently();
             file = null;
+            broker.returnBuffer(rowBuff);
+            rowBuff = null;
         }
     }
 
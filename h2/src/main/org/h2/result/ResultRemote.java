@@ -32,6 +32,8 @@ public class ResultRemote implements ResultInterface {
     private Value[] currentRow;
     private int rowId, rowCount, rowOffset;
     private ObjectArray<Value[]> result;
+    private ObjectArray<Value[]> nextBlock;
+    private int prefetchCount;
     private ObjectArray<Value> lobValues;
     private final Trace trace;
 
@@ -101,6 +103,9 @@ public class ResultRemote implements ResultInterface {
         synchronized (session) {
             session.checkClosed();
             try {
+                if (prefetchCount > 0) {
+                    session.readPendingFetch();
+                }
                 session.traceOperation("RESULT_RESET", id);
                 transfer.writeInt(SessionRemote.RESULT_RESET).writeInt(id).flush();
             } catch (IOException e) {
@@ -122,6 +127,7 @@ public class ResultRemote implements ResultInterface {
                     fetchRows(true);
                 }
                 currentRow = result.get(rowId - rowOffset);
+                prefetchRows();
                 return true;
             }
             currentRow = null;
@@ -160,6 +166,16 @@ public class ResultRemote implements ResultInterface {
     }
 
     public void close() {
+        if (prefetchCount > 0 && session != null) {
+            synchronized (session) {
+                try {
+                    session.readPendingFetch();
+                } catch (Exception e) {
+                    trace.error("close", e);
+                }
+            }
+        }
+        nextBlock = null;
         if (lobValues != null) {
             for (Value v : lobValues) {
                 try {
@@ -200,30 +216,17 @@ public class ResultRemote implements ResultInterface {
             try {
                 rowOffset += result.size();
                 result.clear();
-                int fetch = Math.min(fetchSize, rowCount - rowOffset);
                 if (sendFetch) {
-                    session.traceOperation("RESULT_FETCH_ROWS", id);
-                    transfer.writeInt(SessionRemote.RESULT_FETCH_ROWS).writeInt(id).writeInt(fetch);
-                    session.done(transfer);
-                }
-                for (int r = 0; r < fetch; r++) {
-                    boolean row = transfer.readBoolean();
-                    if (!row) {
-                        break;
+                    if (prefetchCount == 0 && nextBlock == null) {
+                        sendFetch(Math.min(fetchSize, rowCount - rowOffset));
                     }
-                    int len = columns.length;
-                    Value[] values = new Value[len];
-                    for (int i = 0; i < len; i++) {
-                        Value v = transfer.readValue();
-                        values[i] = v;
-                        if (v.isFileBased()) {
-                            if (lobValues == null) {
-                                lobValues = ObjectArray.newInstance();
-                            }
-                            lobValues.add(v);
-                        }
+                    if (prefetchCount > 0) {
+                        session.readPendingFetch();
                     }
-                    result.add(values);
+                    result = nextBlock;
+                    nextBlock = null;
+                } else {
+                    readRows(result, Math.min(fetchSize, rowCount - rowOffset));
                 }
                 if (rowOffset + result.size() >= rowCount) {
                     sendClose();
@@ -234,6 +237,82 @@ public class ResultRemote implements ResultInterface {
         }
     }
 
+    /**
+     * Request the next block of rows from the server if all rows of the
+     * current block are already on the client side. The rows are read when
+     * they are needed, or before the session reads the reply of another
+     * request.
+     */
+    private void prefetchRows() throws SQLException {
+        if (!SysProperties.SERVER_RESULT_SET_PREFETCH || session == null) {
+            return;
+        }
+        if (prefetchCount > 0 || nextBlock != null) {
+            return;
+        }
+        int offset = rowOffset + result.size();
+        if (offset >= rowCount) {
+            return;
+        }
+        synchronized (session) {
+            session.checkClosed();
+            try {
+                sendFetch(Math.min(fetchSize, rowCount - offset));
+            } catch (IOException e) {
+                throw Message.convertIOException(e, null);
+            }
+        }
+    }
+
+    private void sendFetch(int fetch) throws SQLException, IOException {
+        // there can only be one pending request per session
+        session.readPendingFetch();
+        session.traceOperation("RESULT_FETCH_ROWS", id);
+        transfer.writeInt(SessionRemote.RESULT_FETCH_ROWS).writeInt(id).writeInt(fetch);
+        transfer.flush();
+        prefetchCount = fetch;
+        session.setPendingFetch(this);
+    }
+
+    /**
+     * INTERNAL.
+     * Read the rows that were requested before.
+     */
+    public void readPrefetchedRows() throws SQLException, IOException {
+        int fetch = prefetchCount;
+        prefetchCount = 0;
+        session.done(transfer);
+        nextBlock = ObjectArray.newInstance();
+        readRows(nextBlock, fetch);
+    }
+
+    private void readRows(ObjectArray<Value[]> rows, int fetch) throws SQLException, IOException {
+        transfer.startReadBlock();
+        try {
+            for (int r = 0; r < fetch; r++) {
+                boolean row = transfer.readBoolean();
+                if (!row) {
+                    break;
+                }
+                int len = columns.length;
+                Value[] values = new Value[len];
+                for (int i = 0; i < len; i++) {
+                    Value v = transfer.readValue();
+                    values[i] = v;
+                    if (v.isFileBased()) {
+                        if (lobValues == null) {
+                            lobValues = ObjectArray.newInstance();
+                        }
+                        lobValues.add(v);
+                    }
+                }
+                rows.add(values);
+            }
+        } finally {
+            transfer.endReadBlock();
+        }
+    }
+
     public String toString() {
         return "columns: " + columns.length + " rows: " + rowCount + " pos: " + rowId;
     }
@@ -11,6 +11,7 @@ import java.sql.SQLException;
 import org.h2.constant.SysProperties;
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
+import org.h2.engine.MemoryBroker;
 import org.h2.engine.Session;
 import org.h2.store.DataPage;
 import org.h2.store.FileStore;
@@ -35,6 +36,7 @@ public class RowList {
     private Cache cache;
     private ObjectArray<ValueLob> lobs;
     private int memory, maxMemory;
+    private MemoryBroker.Grant grant;
     private boolean written;
     private boolean readUncached;
 
@@ -98,7 +100,7 @@ public class RowList {
             String fileName = db.createTempFile();
             file = db.openFile(fileName, "rw", false);
             file.seek(FileStore.HEADER_LENGTH);
-            rowBuff = DataPage.create(db, Constants.DEFAULT_DATA_PAGE_SIZE);
+            rowBuff = db.getMemoryBroker().getBuffer();
             file.seek(FileStore.HEADER_LENGTH);
         }
         DataPage buff = rowBuff;
@@ -115,6 +117,9 @@ public class RowList {
         file.autoDelete();
         list.clear();
         memory = 0;
+        if (grant != null) {
+            session.getDatabase().getMemoryBroker().free(grant);
+        }
     }
 
     private void initBuffer(DataPage buff) {
@@ -138,9 +143,16 @@ public class RowList {
      */
     public void add(Row r) throws SQLException {
         list.add(r);
-        memory += r.getMemorySize();
-        if (maxMemory > 0 && memory > maxMemory) {
-            writeAllRows();
+        int m = r.getMemorySize();
+        memory += m;
+        if (maxMemory > 0) {
+            MemoryBroker broker = session.getDatabase().getMemoryBroker();
+            if (grant == null) {
+                grant = broker.open(this, session);
+            }
+            if (!broker.allocate(grant, m) || memory > maxMemory) {
+                writeAllRows();
+            }
         }
         size++;
     }
@@ -274,10 +286,16 @@ public class RowList {
      * Close the result list and delete the temporary file.
      */
     public void close() {
+        MemoryBroker broker = session.getDatabase().getMemoryBroker();
+        if (grant != null) {
+            broker.close(grant);
+            grant = null;
+        }
         if (file != null) {
             file.autoDelete();
             file.closeAndDeleteSilently();
             file = null;
+            broker.returnBuffer(rowBuff);
             rowBuff = null;
         }
     }
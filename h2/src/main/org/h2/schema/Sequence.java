@@ -7,6 +7,7 @@
 package org.h2.schema;
 
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.h2.constant.ErrorCode;
 import org.h2.engine.DbObject;
@@ -18,6 +19,11 @@ import org.h2.table.Table;
 /**
  *A sequence is created using the statement
  * CREATE SEQUENCE
+ * <p>
+ * Values are allocated from an atomic counter without locking, as long as
+ * they are below the margin that is stored in the database. Only when the
+ * margin is reached, the sequence is locked and the new margin is stored.
+ * A higher margin is only used for allocating values after it was stored.
  */
 public class Sequence extends SchemaObjectBase {
 
@@ -26,8 +32,10 @@ public class Sequence extends SchemaObjectBase {
      */
     public static final int DEFAULT_CACHE_SIZE = 32;
 
-    private long value = 1;
-    private long valueWithMargin;
+    private final AtomicLong value = new AtomicLong(1);
+    private volatile long valueWithMargin;
+    private boolean flushing;
+    private long flushValue;
     private long increment = 1;
     private long cacheSize = DEFAULT_CACHE_SIZE;
     private boolean belongsToTable;
@@ -38,7 +46,7 @@ public class Sequence extends SchemaObjectBase {
     }
 
     public synchronized void setStartValue(long value) {
-        this.value = value;
+        this.value.set(value);
         this.valueWithMargin = value;
     }
 
@@ -70,7 +78,9 @@ public class Sequence extends SchemaObjectBase {
 
     public synchronized String getCreateSQL() {
         StringBuilder buff = new StringBuilder("CREATE SEQUENCE ");
-        buff.append(getSQL()).append(" START WITH ").append(value);
+        // when flushing, the value with the margin is stored
+        long v = flushing ? flushValue : value.get();
+        buff.append(getSQL()).append(" START WITH ").append(v);
         if (increment != 1) {
             buff.append(" INCREMENT BY ").append(increment);
         }
@@ -89,14 +99,44 @@ public class Sequence extends SchemaObjectBase {
      * @param session the session
      * @return the next value
      */
-    public synchronized long getNext(Session session) throws SQLException {
-        if ((increment > 0 && value >= valueWithMargin) || (increment < 0 && value <= valueWithMargin)) {
-            valueWithMargin += increment * cacheSize;
-            flush(session);
+    public long getNext(Session session) throws SQLException {
+        return getNext(session, 1);
+    }
+
+    /**
+     * Reserve a range of values of this sequence. The values of the range are
+     * the returned value, plus the increment for each further value.
+     *
+     * @param session the session
+     * @param count the number of values
+     * @return the first value of the range
+     */
+    public long getNext(Session session, long count) throws SQLException {
+        long step = increment * count;
+        while (true) {
+            long v = value.get();
+            long last = v + step - increment;
+            if (isBelowMargin(last)) {
+                if (value.compareAndSet(v, v + step)) {
+                    return v;
+                }
+            } else {
+                synchronized (this) {
+                    // another thread may have moved the margin already
+                    if (!isBelowMargin(value.get() + step - increment)) {
+                        // store the new margin first: until then, the values
+                        // below the old margin can still be allocated
+                        long margin = value.get() + step + increment * (cacheSize - 1);
+                        flush(session, margin);
+                        valueWithMargin = margin;
+                    }
+                }
+            }
         }
-        long v = value;
-        value += increment;
-        return v;
+    }
+
+    private boolean isBelowMargin(long v) {
+        return increment > 0 ? v < valueWithMargin : v > valueWithMargin;
     }
 
     /**
@@ -105,6 +145,10 @@ public class Sequence extends SchemaObjectBase {
      * @param session the session
      */
     public synchronized void flush(Session session) throws SQLException {
+        flush(session, valueWithMargin);
+    }
+
+    private void flush(Session session, long margin) throws SQLException {
         Session sysSession = database.getSystemSession();
         if (session == null || !database.isSysTableLocked()) {
             // this session may not lock the sys table (except if it already has locked it)
@@ -114,12 +158,12 @@ public class Sequence extends SchemaObjectBase {
         }
         synchronized (session) {
             // just for this case, use the value with the margin for the script
-            long realValue = value;
             try {
-                value = valueWithMargin;
+                flushing = true;
+                flushValue = margin;
                 database.update(session, this);
             } finally {
-                value = realValue;
+                flushing = false;
             }
             if (session == sysSession) {
                 // if the system session is used,
@@ -132,8 +176,8 @@ public class Sequence extends SchemaObjectBase {
     /**
      * Flush the current value to disk and close this object.
      */
-    public void close() throws SQLException {
-        valueWithMargin = value;
+    public synchronized void close() throws SQLException {
+        valueWithMargin = value.get();
         flush(null);
     }
 
@@ -151,7 +195,7 @@ public class Sequence extends SchemaObjectBase {
     }
 
     public synchronized long getCurrentValue() {
-        return value - increment;
+        return value.get() - increment;
     }
 
     public void setBelongsToTable(boolean b) {
@@ -69,9 +69,10 @@ public class TcpServerThread implements Runnable {
                 if (!server.allow(transfer.getSocket())) {
                     throw Message.getSQLException(ErrorCode.REMOTE_CONNECTION_NOT_ALLOWED);
                 }
+                int maxClientVersion = clientVersion;
                 if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_6) {
-                    // version 6 and newer: read max version (currently not used)
-                    transfer.readInt();
+                    // version 6 and newer: read max version
+                    maxClientVersion = transfer.readInt();
                 } else if (clientVersion != Constants.TCP_PROTOCOL_VERSION_5) {
                     throw Message.getSQLException(ErrorCode.DRIVER_VERSION_ERROR_2,
                             "" + clientVersion,
@@ -122,10 +123,14 @@ public class TcpServerThread implements Runnable {
                 transfer.setSession(session);
                 transfer.writeInt(SessionRemote.STATUS_OK);
                 if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_6) {
-                    // version 6: reply what version to use
-                    transfer.writeInt(Constants.TCP_PROTOCOL_VERSION_6);
+                    // version 6 and newer: reply what version to use
+                    clientVersion = Math.min(maxClientVersion, Constants.TCP_PROTOCOL_VERSION_7);
+                    transfer.writeInt(clientVersion);
                 }
                 transfer.flush();
+                if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_7) {
+                    transfer.setCompressBlocks(true);
+                }
                 server.addConnection(id, originalURL, ci.getUserName());
                 trace("Connected");
             } catch (Throwable e) {
@@ -291,9 +296,7 @@ public class TcpServerThread implements Runnable {
                 ResultColumn.writeColumn(transfer, result, i);
             }
             int fetch = Math.min(rowCount, fetchSize);
-            for (int i = 0; i < fetch; i++) {
-                sendRow(result);
-            }
+            sendRows(result, fetch);
             transfer.flush();
             break;
         }
@@ -327,9 +330,7 @@ public class TcpServerThread implements Runnable {
             int count = transfer.readInt();
             ResultInterface result = (ResultInterface) cache.getObject(id, false);
             transfer.writeInt(SessionRemote.STATUS_OK);
-            for (int i = 0; i < count; i++) {
-                sendRow(result);
-            }
+            sendRows(result, count);
             transfer.flush();
             break;
         }
@@ -375,6 +376,17 @@ public class TcpServerThread implements Runnable {
         return SessionRemote.STATUS_OK_STATE_CHANGED;
     }
 
+    private void sendRows(ResultInterface result, int count) throws IOException, SQLException {
+        transfer.startWriteBlock();
+        try {
+            for (int i = 0; i < count; i++) {
+                sendRow(result);
+            }
+        } finally {
+            transfer.endWriteBlock();
+        }
+    }
+
     private void sendRow(ResultInterface result) throws IOException, SQLException {
         if (result.next()) {
             transfer.writeBoolean(true);
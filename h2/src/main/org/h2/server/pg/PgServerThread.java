@@ -6,6 +6,8 @@
  */
 package org.h2.server.pg;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
@@ -18,6 +20,7 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
@@ -28,8 +31,11 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.util.HashMap;
 import java.util.HashSet;
+import org.h2.command.dml.LoadData;
+import org.h2.constant.ErrorCode;
 import org.h2.constant.SysProperties;
 import org.h2.engine.ConnectionInfo;
+import org.h2.engine.Session;
 import org.h2.jdbc.JdbcConnection;
 import org.h2.message.Message;
 import org.h2.util.IOUtils;
@@ -64,6 +70,7 @@ public class PgServerThread implements Runnable {
     private HashMap<String, Prepared> prepared = New.hashMap();
     private HashMap<String, Portal> portals = New.hashMap();
     private HashSet<Integer> types = New.hashSet();
+    private boolean ignoreUntilSync;
 
     PgServerThread(Socket socket, PgServer server) {
         this.server = server;
@@ -74,11 +81,14 @@ public class PgServerThread implements Runnable {
         try {
             server.trace("Connect");
             InputStream ins = socket.getInputStream();
-            out = socket.getOutputStream();
-            dataInRaw = new DataInputStream(ins);
+            out = new BufferedOutputStream(socket.getOutputStream());
+            dataInRaw = new DataInputStream(new BufferedInputStream(ins));
             while (!stop) {
                 process();
-                out.flush();
+                if (!stop && dataInRaw.available() == 0) {
+                    // the responses to pipelined messages are sent together
+                    out.flush();
+                }
             }
         } catch (EOFException e) {
             // more or less normal disconnect
@@ -134,6 +144,13 @@ public class PgServerThread implements Runnable {
         byte[] data = MemoryUtils.newBytes(len);
         dataInRaw.readFully(data, 0, len);
         dataIn = new DataInputStream(new ByteArrayInputStream(data, 0, len));
+        if (ignoreUntilSync) {
+            if (x != 'S' && x != 'X') {
+                server.trace("Ignored until Sync: " + (char) x);
+                return;
+            }
+            ignoreUntilSync = false;
+        }
         switch (x) {
         case 0:
             server.trace("Init");
@@ -203,22 +220,34 @@ public class PgServerThread implements Runnable {
         }
         case 'P': {
             server.trace("Parse");
-            Prepared p = new Prepared();
-            p.name = readString();
-            p.sql = getSQL(readString());
+            String name = readString();
+            String sql = getSQL(readString());
             int count = readShort();
-            p.paramType = new int[count];
+            int[] paramType = new int[count];
             for (int i = 0; i < count; i++) {
                 int type = readInt();
                 checkType(type);
-                p.paramType[i] = type;
+                paramType[i] = type;
             }
+            Prepared p = prepared.get(name);
+            if (p != null && p.sql.equals(sql)) {
+                // the statement is parsed again (for example the unnamed
+                // statement), so the prepared statement is re-used
+                p.paramType = paramType;
+                sendParseComplete();
+                break;
+            }
+            closePrepared(name);
+            p = new Prepared();
+            p.name = name;
+            p.sql = sql;
+            p.paramType = paramType;
             try {
                 p.prep = conn.prepareStatement(p.sql);
                 prepared.put(p.name, p);
                 sendParseComplete();
             } catch (SQLException e) {
-                sendErrorResponse(e);
+                sendExtendedQueryError(e);
             }
             break;
         }
@@ -229,7 +258,7 @@ public class PgServerThread implements Runnable {
             String prepName = readString();
             Prepared prep = prepared.get(prepName);
             if (prep == null) {
-                sendErrorResponse("Portal not found");
+                sendExtendedQueryError("Prepared not found: " + prepName);
                 break;
             }
             portal.sql = prep.sql;
@@ -241,15 +270,20 @@ public class PgServerThread implements Runnable {
                 formatCodes[i] = readShort();
             }
             int paramCount = readShort();
-            for (int i = 0; i < paramCount; i++) {
-                int paramLen = readInt();
-                byte[] d2 = MemoryUtils.newBytes(paramLen);
-                readFully(d2);
-                try {
-                    setParameter(portal.prep, i, d2, formatCodes);
-                } catch (SQLException e) {
-                    sendErrorResponse(e);
+            try {
+                for (int i = 0; i < paramCount; i++) {
+                    int paramLen = readInt();
+                    byte[] d2 = null;
+                    if (paramLen >= 0) {
+                        d2 = MemoryUtils.newBytes(paramLen);
+                        readFully(d2);
+                    }
+                    int type = i < prep.paramType.length ? prep.paramType[i] : 0;
+                    setParameter(portal.prep, type, i, d2, formatCodes);
                 }
+            } catch (SQLException e) {
+                sendExtendedQueryError(e);
+                break;
             }
             int resultCodeCount = readShort();
             portal.resultColumnFormat = new int[resultCodeCount];
@@ -266,26 +300,26 @@ public class PgServerThread implements Runnable {
             if (type == 'S') {
                 Prepared p = prepared.get(name);
                 if (p == null) {
-                    sendErrorResponse("Prepared not found: " + name);
+                    sendExtendedQueryError("Prepared not found: " + name);
                 } else {
                     sendParameterDescription(p);
                 }
             } else if (type == 'P') {
                 Portal p = portals.get(name);
                 if (p == null) {
-                    sendErrorResponse("Portal not found: " + name);
+                    sendExtendedQueryError("Portal not found: " + name);
                 } else {
                     PreparedStatement prep = p.prep;
                     try {
                         ResultSetMetaData meta = prep.getMetaData();
-                        sendRowDescription(meta);
+                        sendRowDescription(meta, p.resultColumnFormat);
                     } catch (SQLException e) {
-                        sendErrorResponse(e);
+                        sendExtendedQueryError(e);
                     }
                 }
             } else {
                 server.trace("expected S or P, got " + type);
-                sendErrorResponse("expected S or P");
+                sendExtendedQueryError("expected S or P");
             }
             break;
         }
@@ -294,35 +328,53 @@ public class PgServerThread implements Runnable {
             server.trace("Execute");
             Portal p = portals.get(name);
             if (p == null) {
-                sendErrorResponse("Portal not found: " + name);
+                sendExtendedQueryError("Portal not found: " + name);
                 break;
             }
-            int maxRows = readShort();
+            int maxRows = readInt();
             PreparedStatement prep = p.prep;
             server.trace(p.sql);
             try {
                 prep.setMaxRows(maxRows);
                 boolean result = prep.execute();
                 if (result) {
-                    try {
-                        ResultSet rs = prep.getResultSet();
-                        ResultSetMetaData meta = rs.getMetaData();
-                        sendRowDescription(meta);
-                        while (rs.next()) {
-                            sendDataRow(rs);
-                        }
-                        sendCommandComplete(p.sql, 0);
-                    } catch (SQLException e) {
-                        sendErrorResponse(e);
+                    ResultSet rs = prep.getResultSet();
+                    ResultSetMetaData meta = rs.getMetaData();
+                    sendRowDescription(meta, p.resultColumnFormat);
+                    int[] columnTypes = getColumnTypes(meta);
+                    while (rs.next()) {
+                        sendDataRow(rs, columnTypes, p.resultColumnFormat);
                     }
+                    sendCommandComplete(p.sql, 0);
                 } else {
                     sendCommandComplete(p.sql, prep.getUpdateCount());
                 }
             } catch (SQLException e) {
-                sendErrorResponse(e);
+                sendExtendedQueryError(e);
             }
             break;
         }
+        case 'C': {
+            char type = (char) readByte();
+            String name = readString();
+            server.trace("Close");
+            if (type == 'S') {
+                closePrepared(name);
+            } else if (type == 'P') {
+                portals.remove(name);
+            } else {
+                server.trace("expected S or P, got " + type);
+                sendExtendedQueryError("expected S or P");
+                break;
+            }
+            sendCloseComplete();
+            break;
+        }
+        case 'H': {
+            server.trace("Flush");
+            out.flush();
+            break;
+        }
         case 'S': {
             server.trace("Sync");
             sendReadyForQuery();
@@ -340,14 +392,19 @@ public class PgServerThread implements Runnable {
                         break;
                     }
                     s = getSQL(s);
+                    if (isCopyFromStdin(s)) {
+                        copyFromStdin(s);
+                        continue;
+                    }
                     stat = conn.createStatement();
                     boolean result = stat.execute(s);
                     if (result) {
                         ResultSet rs = stat.getResultSet();
                         ResultSetMetaData meta = rs.getMetaData();
-                        sendRowDescription(meta);
+                        sendRowDescription(meta, null);
+                        int[] columnTypes = getColumnTypes(meta);
                         while (rs.next()) {
-                            sendDataRow(rs);
+                            sendDataRow(rs, columnTypes, null);
                         }
                         sendCommandComplete(s, 0);
                     } else {
@@ -379,6 +436,68 @@ public class PgServerThread implements Runnable {
         }
     }
 
+    /**
+     * Close the prepared statement with the given name, and remove the portals
+     * that use it.
+     *
+     * @param name the name of the prepared statement
+     */
+    private void closePrepared(String name) {
+        Prepared p = prepared.remove(name);
+        if (p != null) {
+            for (String portal : New.arrayList(portals.keySet())) {
+                if (portals.get(portal).prep == p.prep) {
+                    portals.remove(portal);
+                }
+            }
+            // the parsed statement is kept in the query cache of the session
+            JdbcUtils.closeSilently(p.prep);
+        }
+    }
+
+    private static boolean isCopyFromStdin(String sql) {
+        String upper = sql.trim().toUpperCase();
+        return upper.startsWith("COPY") && upper.matches("(?s)COPY\\s.*\\sFROM\\s+STDIN\\b.*");
+    }
+
+    /**
+     * Run the statement COPY ... FROM STDIN. The statement is executed while
+     * the rows are received from the client, in the same way as LOAD DATA.
+     *
+     * @param sql the statement
+     */
+    private void copyFromStdin(String sql) throws IOException, SQLException {
+        Session session = (Session) ((JdbcConnection) conn).getSession();
+        // parse the statement first, so that an error is reported
+        // before the client starts sending the data
+        LoadData load = (LoadData) session.prepare(sql);
+        int columnCount = load.getColumnCount();
+        startMessage('G');
+        // text format
+        write(0);
+        writeShort(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            writeShort(0);
+        }
+        sendMessage();
+        out.flush();
+        CopyInput in = new CopyInput();
+        Statement stat = null;
+        session.setCopyInput(in);
+        try {
+            stat = conn.createStatement();
+            int count = stat.executeUpdate(sql);
+            sendCommandComplete(sql, count);
+        } catch (SQLException e) {
+            // the client still sends the rest of the data
+            in.close();
+            sendErrorResponse(e);
+        } finally {
+            session.setCopyInput(null);
+            JdbcUtils.closeSilently(stat);
+        }
+    }
+
     private String getSQL(String s) {
         String lower = s.toLowerCase();
         if (lower.startsWith("show max_identifier_length")) {
@@ -408,6 +527,8 @@ public class PgServerThread implements Runnable {
             tag = "SELECT";
         } else if (sql.startsWith("BEGIN")) {
             tag = "BEGIN";
+        } else if (sql.startsWith("COPY")) {
+            tag = "COPY " + updateCount;
         } else {
             server.trace("Check command tag: " + sql);
             tag = "UPDATE " + updateCount;
@@ -416,29 +537,133 @@ public class PgServerThread implements Runnable {
         sendMessage();
     }
 
-    private void sendDataRow(ResultSet rs) throws IOException {
-        try {
-            int columns = rs.getMetaData().getColumnCount();
-            String[] values = new String[columns];
-            for (int i = 0; i < columns; i++) {
-                values[i] = rs.getString(i + 1);
-            }
-            startMessage('D');
-            writeShort(columns);
-            for (String s : values) {
-                if (s == null) {
-                    writeInt(-1);
-                } else {
-                    // TODO write Binary data
-                    byte[] d2 = s.getBytes(getEncoding());
-                    writeInt(d2.length);
-                    write(d2);
-                }
+    private static int[] getColumnTypes(ResultSetMetaData meta) throws SQLException {
+        int[] columnTypes = new int[meta.getColumnCount()];
+        for (int i = 0; i < columnTypes.length; i++) {
+            columnTypes[i] = meta.getColumnType(i + 1);
+        }
+        return columnTypes;
+    }
+
+    /**
+     * Check if the binary format is used for the given column or parameter.
+     * If there is only one format code, it is used for all columns.
+     *
+     * @param formatCodes the format codes, or null
+     * @param i the column or parameter index (0-based)
+     * @return true for the binary format
+     */
+    private static boolean isBinary(int[] formatCodes, int i) {
+        if (formatCodes == null || formatCodes.length == 0) {
+            return false;
+        } else if (formatCodes.length == 1) {
+            return formatCodes[0] == 1;
+        }
+        return i < formatCodes.length && formatCodes[i] == 1;
+    }
+
+    private void sendDataRow(ResultSet rs, int[] columnTypes, int[] formatCodes) throws IOException, SQLException {
+        int columns = columnTypes.length;
+        startMessage('D');
+        writeShort(columns);
+        for (int i = 0; i < columns; i++) {
+            if (isBinary(formatCodes, i)) {
+                writeBinaryValue(rs, i + 1, columnTypes[i]);
+                continue;
             }
-            sendMessage();
-        } catch (SQLException e) {
-            sendErrorResponse(e);
+            String s = rs.getString(i + 1);
+            if (s == null) {
+                writeInt(-1);
+            } else {
+                byte[] d2 = s.getBytes(getEncoding());
+                writeInt(d2.length);
+                write(d2);
+            }
+        }
+        sendMessage();
+    }
+
+    /**
+     * Write the length and the value of a column in the binary format. The
+     * binary format is supported for integer, floating point, boolean, and
+     * binary (bytea) columns.
+     *
+     * @param rs the result set
+     * @param column the column index (1-based)
+     * @param type the SQL type
+     */
+    private void writeBinaryValue(ResultSet rs, int column, int type) throws IOException, SQLException {
+        switch (type) {
+        case Types.BOOLEAN: {
+            boolean x = rs.getBoolean(column);
+            if (!rs.wasNull()) {
+                writeInt(1);
+                write(x ? 1 : 0);
+                return;
+            }
+            break;
+        }
+        case Types.SMALLINT: {
+            short x = rs.getShort(column);
+            if (!rs.wasNull()) {
+                writeInt(2);
+                writeShort(x);
+                return;
+            }
+            break;
+        }
+        case Types.INTEGER: {
+            int x = rs.getInt(column);
+            if (!rs.wasNull()) {
+                writeInt(4);
+                writeInt(x);
+                return;
+            }
+            break;
+        }
+        case Types.BIGINT: {
+            long x = rs.getLong(column);
+            if (!rs.wasNull()) {
+                writeInt(8);
+                dataOut.writeLong(x);
+                return;
+            }
+            break;
+        }
+        case Types.REAL: {
+            float x = rs.getFloat(column);
+            if (!rs.wasNull()) {
+                writeInt(4);
+                dataOut.writeFloat(x);
+                return;
+            }
+            break;
+        }
+        case Types.DOUBLE: {
+            double x = rs.getDouble(column);
+            if (!rs.wasNull()) {
+                writeInt(8);
+                dataOut.writeDouble(x);
+                return;
+            }
+            break;
+        }
+        case Types.BINARY:
+        case Types.VARBINARY:
+        case Types.LONGVARBINARY: {
+            byte[] x = rs.getBytes(column);
+            if (x != null) {
+                writeInt(x.length);
+                write(x);
+                return;
+            }
+            break;
         }
+        default:
+            throw Message.getSQLException(ErrorCode.FEATURE_NOT_SUPPORTED_1, "binary format for type " + type);
+        }
+        // NULL
+        writeInt(-1);
     }
 
     private String getEncoding() {
@@ -448,8 +673,35 @@ public class PgServerThread implements Runnable {
         return clientEncoding;
     }
 
-    private void setParameter(PreparedStatement prep, int i, byte[] d2, int[] formatCodes) throws SQLException {
-        boolean text = (i >= formatCodes.length) || (formatCodes[i] == 0);
+    private void setParameter(PreparedStatement prep, int pgType, int i, byte[] d2, int[] formatCodes)
+            throws SQLException {
+        boolean text = !isBinary(formatCodes, i);
+        if (d2 == null) {
+            prep.setString(i + 1, null);
+            return;
+        } else if (!text) {
+            switch (pgType) {
+            case PgServer.PG_TYPE_INT2:
+                prep.setShort(i + 1, getBinary(d2, 2).getShort());
+                return;
+            case PgServer.PG_TYPE_INT4:
+                prep.setInt(i + 1, getBinary(d2, 4).getInt());
+                return;
+            case PgServer.PG_TYPE_INT8:
+                prep.setLong(i + 1, getBinary(d2, 8).getLong());
+                return;
+            case PgServer.PG_TYPE_FLOAT4:
+                prep.setFloat(i + 1, getBinary(d2, 4).getFloat());
+                return;
+            case PgServer.PG_TYPE_FLOAT8:
+                prep.setDouble(i + 1, getBinary(d2, 8).getDouble());
+                return;
+            case PgServer.PG_TYPE_BYTEA:
+                prep.setBytes(i + 1, d2);
+                return;
+            default:
+            }
+        }
         String s;
         try {
             if (text) {
@@ -468,6 +720,13 @@ public class PgServerThread implements Runnable {
         prep.setString(i + 1, s);
     }
 
+    private static ByteBuffer getBinary(byte[] d2, int length) throws SQLException {
+        if (d2.length != length) {
+            throw Message.getSQLException(ErrorCode.DATA_CONVERSION_ERROR_1, "binary value of length " + d2.length);
+        }
+        return ByteBuffer.wrap(d2);
+    }
+
     private void sendErrorResponse(SQLException e) throws IOException {
         server.traceError(e);
         startMessage('E');
@@ -483,6 +742,22 @@ public class PgServerThread implements Runnable {
         sendMessage();
     }
 
+    /**
+     * Send an error response for a message of the extended query protocol.
+     * The following messages are ignored until the next Sync message.
+     *
+     * @param e the exception
+     */
+    private void sendExtendedQueryError(SQLException e) throws IOException {
+        sendErrorResponse(e);
+        ignoreUntilSync = true;
+    }
+
+    private void sendExtendedQueryError(String message) throws IOException {
+        sendErrorResponse(message);
+        ignoreUntilSync = true;
+    }
+
     private void sendParameterDescription(Prepared p) throws IOException {
         try {
             PreparedStatement prep = p.prep;
@@ -511,7 +786,7 @@ public class PgServerThread implements Runnable {
         sendMessage();
     }
 
-    private void sendRowDescription(ResultSetMetaData meta) throws IOException {
+    private void sendRowDescription(ResultSetMetaData meta, int[] formatCodes) throws IOException {
         try {
             if (meta == null) {
                 sendNoData();
@@ -536,13 +811,13 @@ public class PgServerThread implements Runnable {
                     // attribute number of the column
                     writeShort(0);
                     // data type
-                    writeInt(types[i]);
+                    writeInt(PgServer.convertType(types[i]));
                     // pg_type.typlen
                     writeShort(getTypeSize(types[i], precision[i]));
                     // pg_attribute.atttypmod
                     writeInt(-1);
-                    // text
-                    writeShort(0);
+                    // text or binary
+                    writeShort(isBinary(formatCodes, i) ? 1 : 0);
                 }
                 sendMessage();
             }
@@ -583,6 +858,11 @@ public class PgServerThread implements Runnable {
         sendMessage();
     }
 
+    private void sendCloseComplete() throws IOException {
+        startMessage('3');
+        sendMessage();
+    }
+
     private void initDb() throws SQLException {
         Statement stat = null;
         ResultSet rs = null;
@@ -731,7 +1011,7 @@ public class PgServerThread implements Runnable {
         dataOut.write(messageType);
         dataOut.writeInt(len + 4);
         dataOut.write(buff);
-        dataOut.flush();
+        // the output is flushed when all messages are processed
     }
 
     private void sendParameterStatus(String param, String value) throws IOException {
@@ -753,6 +1033,78 @@ public class PgServerThread implements Runnable {
         this.processId = id;
     }
 
+    /**
+     * The data of a COPY ... FROM STDIN statement. The CopyData messages are
+     * read from the client when the data is needed.
+     */
+    private class CopyInput extends InputStream {
+
+        private byte[] data;
+        private int pos;
+        private boolean done;
+
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int len = read(b, 0, 1);
+            return len < 0 ? -1 : b[0] & 255;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (data == null || pos >= data.length) {
+                if (done) {
+                    return -1;
+                }
+                readMessage();
+            }
+            len = Math.min(len, data.length - pos);
+            System.arraycopy(data, pos, b, off, len);
+            pos += len;
+            return len;
+        }
+
+        private void readMessage() throws IOException {
+            int x = dataInRaw.read();
+            if (x < 0) {
+                throw new EOFException();
+            }
+            int len = dataInRaw.readInt() - 4;
+            byte[] d = MemoryUtils.newBytes(len);
+            dataInRaw.readFully(d, 0, len);
+            switch (x) {
+            case 'd':
+                data = d;
+                pos = 0;
+                break;
+            case 'c':
+                server.trace("CopyDone");
+                done = true;
+                break;
+            case 'f':
+                server.trace("CopyFail");
+                done = true;
+                throw new IOException("COPY failed: " + new String(d, 0, Math.max(0, len - 1), getEncoding()));
+            case 'H':
+            case 'S':
+                // Flush and Sync are ignored while copying
+                break;
+            default:
+                done = true;
+                throw new IOException("Unexpected message during COPY: " + (char) x);
+            }
+        }
+
+        /**
+         * Skip the remaining data.
+         */
+        public void close() throws IOException {
+            data = null;
+            while (!done) {
+                readMessage();
+            }
+        }
+
+    }
+
     /**
      * Represents a PostgreSQL Prepared object.
      */
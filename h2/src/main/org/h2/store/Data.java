@@ -680,6 +680,123 @@ public class Data extends DataPage {
         }
     }
 
+    /**
+     * Skip over a value without creating a value object.
+     * The current position is incremented.
+     */
+    public void skipValue() throws SQLException {
+        if (TEST_OFFSET > 0) {
+            pos += TEST_OFFSET;
+        }
+        int type = data[pos] & 255;
+        switch (type) {
+        case Value.NULL:
+        case BOOLEAN_TRUE:
+        case BOOLEAN_FALSE:
+        case DECIMAL_0_1:
+        case DECIMAL_0_1 + 1:
+        case FLOAT_0_1:
+        case FLOAT_0_1 + 1:
+        case DOUBLE_0_1:
+        case DOUBLE_0_1 + 1:
+            pos++;
+            break;
+        case INT_NEG:
+        case Value.INT:
+        case Value.FLOAT:
+            pos++;
+            readVarInt();
+            break;
+        case LONG_NEG:
+        case Value.LONG:
+        case DECIMAL_SMALL_0:
+        case Value.DATE:
+        case Value.TIME:
+        case Value.DOUBLE:
+            pos++;
+            readVarLong();
+            break;
+        case Value.BYTE:
+            pos += 2;
+            break;
+        case Value.SHORT:
+            pos += 3;
+            break;
+        case DECIMAL_SMALL:
+            pos++;
+            readVarInt();
+            readVarLong();
+            break;
+        case Value.DECIMAL: {
+            pos++;
+            readVarInt();
+            int len = readVarInt();
+            pos += len;
+            break;
+        }
+        case Value.TIMESTAMP:
+            pos++;
+            readVarLong();
+            readVarInt();
+            break;
+        case Value.BYTES:
+        case Value.JAVA_OBJECT: {
+            pos++;
+            int len = readVarInt();
+            pos += len;
+            break;
+        }
+        case Value.UUID:
+            pos += 17;
+            break;
+        case Value.STRING:
+        case Value.STRING_IGNORECASE:
+        case Value.STRING_FIXED:
+            pos++;
+            skipString(readVarInt());
+            break;
+        case Value.ARRAY: {
+            pos++;
+            int len = readVarInt();
+            for (int i = 0; i < len; i++) {
+                skipValue();
+            }
+            break;
+        }
+        default:
+            if (type >= INT_0_15 && type < INT_0_15 + 16) {
+                pos++;
+            } else if (type >= LONG_0_7 && type < LONG_0_7 + 8) {
+                pos++;
+            } else if (type >= BYTES_0_31 && type < BYTES_0_31 + 32) {
+                pos += 1 + type - BYTES_0_31;
+            } else if (type >= STRING_0_31 && type < STRING_0_31 + 32) {
+                pos++;
+                skipString(type - STRING_0_31);
+            } else {
+                // BLOB, CLOB, and corrupted data
+                if (TEST_OFFSET > 0) {
+                    pos -= TEST_OFFSET;
+                }
+                readValue();
+            }
+        }
+    }
+
+    private void skipString(int len) {
+        byte[] buff = data;
+        int p = pos;
+        for (int i = 0; i < len; i++) {
+            int x = buff[p++] & 0xff;
+            if (x >= 0xe0) {
+                p += 2;
+            } else if (x >= 0x80) {
+                p++;
+            }
+        }
+        pos = p;
+    }
+
     /**
      * Calculate the number of bytes required to encode the given value.
      *
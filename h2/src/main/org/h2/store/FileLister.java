@@ -34,6 +34,8 @@ public class FileLister {
     public static String getDatabaseNameFromFileName(String fileName) {
         if (fileName.endsWith(Constants.SUFFIX_PAGE_FILE)) {
             return fileName.substring(0, fileName.length() - Constants.SUFFIX_PAGE_FILE.length());
+        } else if (fileName.endsWith(Constants.SUFFIX_INCREMENTAL_FILE)) {
+            return fileName.substring(0, fileName.length() - Constants.SUFFIX_INCREMENTAL_FILE.length());
         } else if (fileName.endsWith(Constants.SUFFIX_DATA_FILE)) {
             return fileName.substring(0, fileName.length() - Constants.SUFFIX_DATA_FILE.length());
         }
@@ -106,6 +108,8 @@ public class FileLister {
                     ok = true;
                 } else if (f.endsWith(Constants.SUFFIX_TRACE_FILE)) {
                     ok = true;
+                } else if (f.endsWith(Constants.SUFFIX_CHANGES_FILE)) {
+                    ok = true;
                 }
             }
             if (ok) {
@@ -69,6 +69,16 @@ public abstract class Page extends Record {
      */
     public static final int TYPE_STREAM_DATA = 8;
 
+    /**
+     * A hash index directory page.
+     */
+    public static final int TYPE_HASH_DIRECTORY = 9;
+
+    /**
+     * A hash index bucket page.
+     */
+    public static final int TYPE_HASH_BUCKET = 10;
+
     /**
      * When this page was changed the last time.
      */
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.store;
+
+import java.nio.ByteBuffer;
+import org.h2.util.BitField;
+import org.h2.util.IntArray;
+import org.h2.util.IntIntHashMap;
+
+/**
+ * A second level cache for the page store. It keeps the serialized pages
+ * (the same bytes as in the file) in direct byte buffers, that is, outside
+ * the Java heap. This cache is used when reading a page that is not in the
+ * (first level) cache of page objects. Pages are added when they are read
+ * from the file, and updated when they are written. Old pages are evicted
+ * using the clock algorithm.
+ */
+public class PageCacheOffHeap {
+
+    /**
+     * The size of one direct buffer. The buffers are allocated when needed.
+     */
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private final int pageSize;
+    private final int maxPages;
+    private final int pagesPerSegment;
+    private final ByteBuffer[] segments;
+    private final IntIntHashMap slots = new IntIntHashMap();
+    private final int[] slotPages;
+    private final BitField referenced = new BitField();
+    private final IntArray freeSlots = new IntArray();
+    private int usedSlots;
+    private int size;
+    private int clockHand;
+    private long hitCount, missCount;
+
+    /**
+     * Create a new cache.
+     *
+     * @param pageSize the page size
+     * @param maxSizeKB the maximum size of the cache in KB
+     */
+    public PageCacheOffHeap(int pageSize, int maxSizeKB) {
+        this.pageSize = pageSize;
+        maxPages = (int) Math.max(1, Math.min(Integer.MAX_VALUE / 2, (long) maxSizeKB * 1024 / pageSize));
+        pagesPerSegment = Math.max(1, Math.min(maxPages, SEGMENT_SIZE / pageSize));
+        segments = new ByteBuffer[(maxPages + pagesPerSegment - 1) / pagesPerSegment];
+        slotPages = new int[maxPages];
+    }
+
+    /**
+     * Read a page from the cache.
+     *
+     * @param pageId the page id
+     * @param buff the target buffer
+     * @return true if the page was found
+     */
+    public synchronized boolean read(int pageId, byte[] buff) {
+        int slot = slots.get(pageId);
+        if (slot == IntIntHashMap.NOT_FOUND) {
+            missCount++;
+            return false;
+        }
+        hitCount++;
+        referenced.set(slot);
+        ByteBuffer segment = segments[slot / pagesPerSegment];
+        segment.position((slot % pagesPerSegment) * pageSize);
+        segment.get(buff, 0, pageSize);
+        return true;
+    }
+
+    /**
+     * Add a page that was read from the file.
+     *
+     * @param pageId the page id
+     * @param buff the page data
+     */
+    public synchronized void put(int pageId, byte[] buff) {
+        int slot = slots.get(pageId);
+        if (slot == IntIntHashMap.NOT_FOUND) {
+            slot = allocateSlot();
+            slots.put(pageId, slot);
+            slotPages[slot] = pageId;
+            size++;
+        }
+        write(slot, buff);
+    }
+
+    /**
+     * Update a page that was written to the file. Pages that are not in the
+     * cache are not added.
+     *
+     * @param pageId the page id
+     * @param buff the page data
+     */
+    public synchronized void update(int pageId, byte[] buff) {
+        int slot = slots.get(pageId);
+        if (slot != IntIntHashMap.NOT_FOUND) {
+            write(slot, buff);
+        }
+    }
+
+    private void write(int slot, byte[] buff) {
+        int segmentId = slot / pagesPerSegment;
+        ByteBuffer segment = segments[segmentId];
+        if (segment == null) {
+            segment = ByteBuffer.allocateDirect(pagesPerSegment * pageSize);
+            segments[segmentId] = segment;
+        }
+        segment.position((slot % pagesPerSegment) * pageSize);
+        segment.put(buff, 0, pageSize);
+        referenced.set(slot);
+    }
+
+    private int allocateSlot() {
+        int free = freeSlots.size();
+        if (free > 0) {
+            int slot = freeSlots.get(free - 1);
+            freeSlots.remove(free - 1);
+            return slot;
+        }
+        if (usedSlots < maxPages) {
+            return usedSlots++;
+        }
+        // clock: evict the next page that was not used recently
+        while (true) {
+            int slot = clockHand;
+            clockHand = (clockHand + 1) % maxPages;
+            if (referenced.get(slot)) {
+                referenced.clear(slot);
+            } else {
+                slots.remove(slotPages[slot]);
+                size--;
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Remove a page from the cache.
+     *
+     * @param pageId the page id
+     */
+    public synchronized void remove(int pageId) {
+        int slot = slots.get(pageId);
+        if (slot != IntIntHashMap.NOT_FOUND) {
+            slots.remove(pageId);
+            referenced.clear(slot);
+            freeSlots.add(slot);
+            size--;
+        }
+    }
+
+    /**
+     * Remove all pages at or after the given page id. This is required when
+     * the file is truncated.
+     *
+     * @param pageCount the new page count
+     */
+    public synchronized void truncate(int pageCount) {
+        for (int slot = 0; slot < usedSlots; slot++) {
+            int pageId = slotPages[slot];
+            if (pageId >= pageCount && slots.get(pageId) == slot) {
+                remove(pageId);
+            }
+        }
+    }
+
+    /**
+     * Get the number of pages in the cache.
+     *
+     * @return the number of pages
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the maximum number of pages in the cache.
+     *
+     * @return the maximum number of pages
+     */
+    public int getMaxSize() {
+        return maxPages;
+    }
+
+    /**
+     * Get the number of reads that were served by the cache.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Get the number of reads that were not served by the cache.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+}
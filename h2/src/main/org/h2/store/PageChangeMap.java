@@ -0,0 +1,237 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import org.h2.message.Message;
+import org.h2.store.fs.FileObject;
+import org.h2.store.fs.FileSystem;
+import org.h2.util.BitField;
+import org.h2.util.FileUtils;
+import org.h2.util.IOUtils;
+import org.h2.util.MathUtils;
+
+/**
+ * The set of pages of a page store that were written since the last backup.
+ * It is used for incremental backups. The map is stored in a separate file
+ * when the database is closed, and the file is deleted when the database is
+ * opened. If the file does not exist (for example because the process was
+ * killed), it is not known which pages were changed, and the next
+ * incremental backup contains all pages.
+ */
+public class PageChangeMap {
+
+    /**
+     * The format version of the change map file and of incremental backups.
+     */
+    private static final int VERSION = 1;
+
+    private final BitField changed = new BitField();
+    private boolean unknown = true;
+    private boolean persistent;
+    private int minPageCount;
+
+    /**
+     * Read the change map file, if it exists, and delete it.
+     *
+     * @param fileName the file name
+     * @param pageCount the current page count of the database file
+     * @param readOnly if the database is read-only
+     * @return the change map
+     */
+    static PageChangeMap open(String fileName, int pageCount, boolean readOnly) throws SQLException {
+        PageChangeMap map = new PageChangeMap();
+        if (!FileUtils.exists(fileName)) {
+            return map;
+        }
+        // a backup was made before, so the map is stored again when closing
+        map.persistent = true;
+        InputStream in = null;
+        try {
+            in = FileUtils.openFileInputStream(fileName);
+            DataInputStream data = new DataInputStream(in);
+            if (data.readInt() == VERSION && data.readInt() == pageCount) {
+                map.minPageCount = data.readInt();
+                int len = data.readInt();
+                for (int i = 0; i < len; i++) {
+                    map.changed.setByte(i * 8, data.readUnsignedByte());
+                }
+                map.unknown = false;
+            }
+        } catch (IOException e) {
+            // ignore, all pages are considered to be changed
+            map.unknown = true;
+        } finally {
+            IOUtils.closeSilently(in);
+        }
+        if (!readOnly) {
+            FileUtils.delete(fileName);
+        }
+        return map;
+    }
+
+    /**
+     * Store the change map. This is only done if a backup was made.
+     *
+     * @param fileName the file name
+     * @param pageCount the page count of the database file
+     */
+    void save(String fileName, int pageCount) throws SQLException {
+        if (!persistent) {
+            return;
+        }
+        OutputStream out = FileUtils.openFileOutputStream(fileName, false);
+        try {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(VERSION);
+            if (unknown) {
+                // the page count does not match, so the map is not used
+                data.writeInt(-1);
+            } else {
+                data.writeInt(pageCount);
+            }
+            data.writeInt(minPageCount);
+            int len = MathUtils.roundUp(pageCount, 8) / 8;
+            data.writeInt(len);
+            for (int i = 0; i < len; i++) {
+                data.writeByte(changed.getByte(i * 8));
+            }
+            data.flush();
+        } catch (IOException e) {
+            throw Message.convertIOException(e, fileName);
+        } finally {
+            IOUtils.closeSilently(out);
+        }
+    }
+
+    /**
+     * Mark a page as changed.
+     *
+     * @param pageId the page id
+     */
+    void setChanged(int pageId) {
+        changed.set(pageId);
+    }
+
+    /**
+     * The file was truncated.
+     *
+     * @param pageCount the new page count
+     */
+    void truncate(int pageCount) {
+        minPageCount = Math.min(minPageCount, pageCount);
+    }
+
+    /**
+     * Start a new backup. All pages that are changed from now on are
+     * included in the next incremental backup.
+     *
+     * @param pageCount the current page count
+     * @return the smallest page count since the last backup, or -1 if it is
+     *         not known which pages were changed
+     */
+    int startBackup(int pageCount) {
+        int min = unknown ? -1 : minPageCount;
+        minPageCount = pageCount;
+        persistent = true;
+        return min;
+    }
+
+    /**
+     * Get the next page that needs to be included in an incremental backup,
+     * and mark it as unchanged.
+     *
+     * @param pageId the first page id to check
+     * @param all whether all pages are included
+     * @return the page id, or -1 if there are no more changed pages
+     */
+    int nextBackupPage(int pageId, boolean all) {
+        if (!all) {
+            pageId = changed.nextSetBit(pageId);
+            if (pageId < 0) {
+                return -1;
+            }
+        }
+        changed.clear(pageId);
+        return pageId;
+    }
+
+    /**
+     * The backup is complete. From now on, it is known which pages are
+     * changed.
+     */
+    void endBackup() {
+        unknown = false;
+    }
+
+    /**
+     * Write the header of an incremental backup.
+     *
+     * @param out the output stream
+     * @param pageSize the page size
+     * @param minPageCount the smallest page count since the last backup
+     */
+    public static void writeIncrementalHeader(DataOutputStream out, int pageSize, int minPageCount) throws IOException {
+        out.writeInt(VERSION);
+        out.writeInt(pageSize);
+        out.writeInt(minPageCount);
+    }
+
+    /**
+     * Write the end of an incremental backup.
+     *
+     * @param out the output stream
+     * @param pageCount the page count of the database file
+     */
+    public static void writeIncrementalEnd(DataOutputStream out, int pageCount) throws IOException {
+        out.writeInt(-1);
+        out.writeInt(pageCount);
+    }
+
+    /**
+     * Apply an incremental backup to a restored database file.
+     *
+     * @param in the incremental backup (the pages)
+     * @param fileName the name of the database file
+     */
+    public static void applyIncremental(InputStream in, String fileName) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != VERSION) {
+            throw new IOException("Unsupported incremental backup format");
+        }
+        if (!FileUtils.exists(fileName)) {
+            throw new IOException("The full backup must be restored first: " + fileName);
+        }
+        int pageSize = data.readInt();
+        long minLength = (long) data.readInt() * pageSize;
+        FileObject file = FileSystem.getInstance(fileName).openFileObject(fileName, "rw");
+        try {
+            if (file.length() > minLength) {
+                file.setFileLength(minLength);
+            }
+            byte[] buff = new byte[pageSize];
+            while (true) {
+                int pageId = data.readInt();
+                if (pageId < 0) {
+                    break;
+                }
+                data.readFully(buff);
+                file.seek((long) pageId * pageSize);
+                file.write(buff, 0, pageSize);
+            }
+            file.setFileLength((long) data.readInt() * pageSize);
+        } finally {
+            file.close();
+        }
+    }
+
+}
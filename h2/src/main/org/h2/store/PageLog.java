@@ -10,6 +10,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.HashMap;
+import org.h2.api.DatabaseEventListener;
 import org.h2.compress.CompressLZF;
 import org.h2.constant.ErrorCode;
 import org.h2.constant.SysProperties;
@@ -113,6 +114,12 @@ public class PageLog {
      */
     static final int RECOVERY_STAGE_REDO = 2;
 
+    /**
+     * The progress is reported each time this number of log records is
+     * replayed (must be a power of two).
+     */
+    private static final int PROGRESS_RECORDS = 4096;
+
     private static final boolean COMPRESS_UNDO = true;
 
     private final PageStore store;
@@ -162,6 +169,11 @@ public class PageLog {
      */
     private BitField usedLogPages;
 
+    /**
+     * The number of log records, as counted in the undo stage of the recovery.
+     */
+    private int recordCount;
+
     PageLog(PageStore store) {
         this.store = store;
         data = store.createData();
@@ -244,6 +256,11 @@ public class PageLog {
         in = new DataReader(pageIn);
         int logId = 0;
         Data data = store.createData();
+        PageLogReplay replay = null;
+        if (stage == RECOVERY_STAGE_REDO && SysProperties.RECOVER_THREADS > 1 && !trace.isDebugEnabled()) {
+            replay = new PageLogReplay(store, SysProperties.RECOVER_THREADS);
+        }
+        long start = System.currentTimeMillis();
         try {
             pos = 0;
             while (true) {
@@ -252,6 +269,9 @@ public class PageLog {
                     break;
                 }
                 pos++;
+                if (stage == RECOVERY_STAGE_REDO && (pos & (PROGRESS_RECORDS - 1)) == 0) {
+                    setProgress(start, pos);
+                }
                 if (x == UNDO) {
                     int pageId = in.readVarInt();
                     int size = in.readVarInt();
@@ -274,20 +294,29 @@ public class PageLog {
                 } else if (x == ADD) {
                     int sessionId = in.readVarInt();
                     int tableId = in.readVarInt();
-                    Row row = readRow(in, data);
                     if (stage == RECOVERY_STAGE_UNDO) {
-                        store.allocateIfIndexRoot(pos, tableId, row);
-                    } else if (stage == RECOVERY_STAGE_REDO) {
-                        if (isSessionCommitted(sessionId, logId, pos)) {
+                        if (store.isMetaTable(tableId)) {
+                            Row row = readRow(in, data);
+                            store.allocateIfIndexRoot(pos, tableId, row);
+                        } else {
+                            // only the meta data is required in this stage
+                            skipRow(in, data);
+                        }
+                    } else if (isSessionCommitted(sessionId, logId, pos)) {
+                        if (replay != null) {
+                            replay.add(in, pos, tableId);
+                        } else {
+                            Row row = readRow(in, data);
                             if (trace.isDebugEnabled()) {
                                 trace.debug("log redo + table:" + tableId + " s:" + sessionId + " " + row);
                             }
                             store.redo(pos, tableId, row, true);
-                        } else {
-                            if (trace.isDebugEnabled()) {
-                                trace.debug("log ignore s:" + sessionId + " + table:" + tableId + " " + row);
-                            }
                         }
+                    } else if (trace.isDebugEnabled()) {
+                        Row row = readRow(in, data);
+                        trace.debug("log ignore s:" + sessionId + " + table:" + tableId + " " + row);
+                    } else {
+                        skipRow(in, data);
                     }
                 } else if (x == REMOVE) {
                     int sessionId = in.readVarInt();
@@ -298,6 +327,9 @@ public class PageLog {
                             if (trace.isDebugEnabled()) {
                                 trace.debug("log redo - table:" + tableId + " key:" + key);
                             }
+                            if (replay != null) {
+                                replay.flush();
+                            }
                             store.redoDelete(pos, tableId, key);
                         } else {
                             if (trace.isDebugEnabled()) {
@@ -313,6 +345,9 @@ public class PageLog {
                             if (trace.isDebugEnabled()) {
                                 trace.debug("log redo truncate table:" + tableId);
                             }
+                            if (replay != null) {
+                                replay.flush();
+                            }
                             store.redoTruncate(tableId);
                         } else {
                             if (trace.isDebugEnabled()) {
@@ -354,6 +389,9 @@ public class PageLog {
                         int pageId = in.readVarInt();
                         if (stage == RECOVERY_STAGE_REDO) {
                             if (!usedLogPages.get(pageId)) {
+                                if (replay != null) {
+                                    replay.flush();
+                                }
                                 store.free(pageId, false);
                             }
                         }
@@ -365,16 +403,28 @@ public class PageLog {
                     }
                 }
             }
+            flushReplay(replay);
         } catch (SQLException e) {
             if (e.getErrorCode() == ErrorCode.FILE_CORRUPTED_1) {
                 trace.debug("log recovery stopped: " + e.toString());
+                flushReplay(replay);
             } else {
                 throw e;
             }
         } catch (EOFException e) {
             trace.debug("log recovery stopped: " + e.toString());
+            flushReplay(replay);
         } catch (IOException e) {
             throw Message.convertIOException(e, "recover");
+        } finally {
+            if (replay != null) {
+                replay.close();
+            }
+        }
+        if (stage == RECOVERY_STAGE_UNDO) {
+            recordCount = pos;
+        } else if (stage == RECOVERY_STAGE_REDO && recordCount > 0) {
+            setProgress(start, recordCount);
         }
         undo = new BitField();
         if (stage == RECOVERY_STAGE_REDO) {
@@ -382,6 +432,36 @@ public class PageLog {
         }
     }
 
+    /**
+     * Add the rows that were read from the log, but not added to the tables
+     * yet. If a row can not be added because the log is corrupt, the
+     * remaining rows are ignored.
+     *
+     * @param replay the replay object, or null
+     */
+    private void flushReplay(PageLogReplay replay) throws SQLException {
+        if (replay == null) {
+            return;
+        }
+        try {
+            replay.flush();
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ErrorCode.FILE_CORRUPTED_1) {
+                trace.debug("log recovery stopped: " + e.toString());
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private void setProgress(long start, int count) {
+        long time = System.currentTimeMillis() - start;
+        long perSecond = count * 1000L / Math.max(1, time);
+        String name = store.getFileName() + " (" + perSecond + " records/s)";
+        store.getDatabase().setProgress(DatabaseEventListener.STATE_RECOVER, name, count,
+                Math.max(count, recordCount));
+    }
+
     /**
      * This method is called when a 'prepare commit' log entry is read when
      * opening the database.
@@ -401,6 +481,20 @@ public class PageLog {
         state.inDoubtTransaction = doubt;
     }
 
+    /**
+     * Skip a row in an input stream, without converting the data.
+     *
+     * @param in the input stream
+     * @param data a temporary buffer
+     */
+    private static void skipRow(DataReader in, Data data) throws IOException {
+        in.readVarLong();
+        int len = in.readVarInt();
+        data.reset();
+        data.checkCapacity(len);
+        in.readFully(data.getBytes(), 0, len);
+    }
+
     /**
      * Read a row from an input stream.
      *
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.store;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.util.MemoryUtils;
+import org.h2.value.Value;
+
+/**
+ * Replays the rows that were added according to the transaction log. The rows
+ * are decoded by multiple threads, but they are added to the tables by the
+ * thread that reads the log, in the order of the log, so that changes to the
+ * same page are applied in the right order. The tables and indexes are
+ * not thread safe, therefore only decoding is done in parallel.
+ */
+class PageLogReplay implements Runnable {
+
+    /**
+     * The maximum number of buffered entries per thread.
+     */
+    private static final int MAX_BUFFERED = 256;
+
+    private final PageStore store;
+    private final int threadCount;
+
+    /**
+     * The entries that are not applied yet, in log order.
+     */
+    private final LinkedList<Entry> entries = new LinkedList<Entry>();
+
+    /**
+     * The entries that are not decoded yet, in log order.
+     */
+    private final LinkedList<Entry> queue = new LinkedList<Entry>();
+
+    private int runningThreads;
+    private boolean closed;
+
+    PageLogReplay(PageStore store, int threadCount) {
+        this.store = store;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Read a row from the log and add it to the list of rows to replay. If
+     * too many rows are buffered, the oldest row is added to its table.
+     *
+     * @param in the log reader
+     * @param logPos the redo log position
+     * @param tableId the table id
+     */
+    void add(DataReader in, int logPos, int tableId) throws IOException, SQLException {
+        Entry e = new Entry();
+        e.logPos = logPos;
+        e.tableId = tableId;
+        e.key = in.readVarLong();
+        int len = in.readVarInt();
+        e.bytes = MemoryUtils.newBytes(len);
+        in.readFully(e.bytes, 0, len);
+        while (entries.size() >= threadCount * MAX_BUFFERED) {
+            applyFirst();
+        }
+        synchronized (this) {
+            entries.add(e);
+            queue.add(e);
+            if (runningThreads < threadCount && queue.size() > runningThreads) {
+                Thread t = new Thread(this, "H2 Log Replay");
+                t.setDaemon(true);
+                runningThreads++;
+                t.start();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Add all buffered rows to their tables. This needs to be done before
+     * other changes are replayed.
+     */
+    void flush() throws SQLException {
+        while (entries.size() > 0) {
+            applyFirst();
+        }
+    }
+
+    private void applyFirst() throws SQLException {
+        Entry e;
+        synchronized (this) {
+            e = entries.getFirst();
+            while (!e.decoded) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    // ignore
+                }
+            }
+            entries.removeFirst();
+        }
+        try {
+            if (e.exception != null) {
+                throw e.exception;
+            }
+            store.redo(e.logPos, e.tableId, e.row, true);
+        } catch (SQLException ex) {
+            // the remaining entries are not applied
+            clear();
+            throw ex;
+        }
+    }
+
+    private synchronized void clear() {
+        entries.clear();
+        queue.clear();
+    }
+
+    /**
+     * Stop the decoder threads. Rows that are buffered are not applied.
+     */
+    synchronized void close() {
+        closed = true;
+        clear();
+        notifyAll();
+    }
+
+    /**
+     * INTERNAL
+     */
+    public void run() {
+        while (true) {
+            Entry e;
+            synchronized (this) {
+                while (!closed && queue.size() == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        // ignore
+                    }
+                }
+                if (closed) {
+                    runningThreads--;
+                    return;
+                }
+                e = queue.removeFirst();
+            }
+            try {
+                e.row = decode(e);
+            } catch (SQLException ex) {
+                e.exception = ex;
+            } catch (Throwable ex) {
+                e.exception = Message.convertThrowable(ex);
+            }
+            synchronized (this) {
+                e.decoded = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private Row decode(Entry e) throws SQLException {
+        Data data = Data.create(store.getDatabase(), e.bytes);
+        int columnCount = data.readVarInt();
+        Value[] values = new Value[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = data.readValue();
+        }
+        e.bytes = null;
+        Row row = new Row(values, 0);
+        row.setKey(e.key);
+        return row;
+    }
+
+    /**
+     * A row that was read from the log.
+     */
+    private static class Entry {
+        int logPos;
+        int tableId;
+        long key;
+        byte[] bytes;
+        Row row;
+        SQLException exception;
+        boolean decoded;
+    }
+
+}
@@ -6,6 +6,7 @@
  */
 package org.h2.store;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.sql.SQLException;
@@ -29,6 +30,9 @@ import org.h2.index.PageDataLeaf;
 import org.h2.index.PageDataNode;
 import org.h2.index.PageDataOverflow;
 import org.h2.index.PageDelegateIndex;
+import org.h2.index.PageHashBucket;
+import org.h2.index.PageHashDirectory;
+import org.h2.index.PageHashIndex;
 import org.h2.index.PageIndex;
 import org.h2.log.InDoubtTransaction;
 import org.h2.log.LogSystem;
@@ -142,6 +146,7 @@ public class PageStore implements CacheWriter {
 
     private static final int META_TYPE_SCAN_INDEX = 0;
     private static final int META_TYPE_BTREE_INDEX = 1;
+    private static final int META_TYPE_HASH_INDEX = 2;
     private static final int META_TABLE_ID = -1;
 
     private static final SearchRow[] EMPTY_SEARCH_ROW = new SearchRow[0];
@@ -157,6 +162,7 @@ public class PageStore implements CacheWriter {
     private int logKey, logFirstTrunkPage, logFirstDataPage;
 
     private Cache cache;
+    private PageCacheOffHeap offHeapCache;
 
     private int freeListPagesPerList;
 
@@ -178,6 +184,7 @@ public class PageStore implements CacheWriter {
     private TableData metaTable;
     private PageDataIndex metaIndex;
     private IntIntHashMap metaRootPageId = new IntIntHashMap();
+    private IntIntHashMap metaType = new IntIntHashMap();
     private HashMap<Integer, PageIndex> metaObjects = New.hashMap();
 
     /**
@@ -191,6 +198,8 @@ public class PageStore implements CacheWriter {
     private long maxLogSize = Constants.DEFAULT_MAX_LOG_SIZE / 10;
     private Session systemSession;
     private BitField freed = new BitField();
+    private long compactMoveCount, compactTruncateCount;
+    private PageChangeMap changes = new PageChangeMap();
 
     private ObjectArray<PageFreeList> freeLists = ObjectArray.newInstance();
 
@@ -237,6 +246,7 @@ public class PageStore implements CacheWriter {
                 if (pageId >= pageCount) {
                     return -1;
                 }
+                changes.nextBackupPage(pageId, true);
                 file.seek((long) pageId << pageSizeShift);
                 file.readFullyDirect(buffer, 0, pageSize);
                 readCount++;
@@ -248,6 +258,68 @@ public class PageStore implements CacheWriter {
         }
     }
 
+    /**
+     * Copy the next page that was changed since the last backup to the output
+     * stream. The page id and the page data are written.
+     *
+     * @param pageId the first page id to check
+     * @param out the output stream
+     * @param all whether all pages should be copied
+     * @return the next page id to check, or -1 if there are no more pages
+     */
+    public int copyChangedDirect(int pageId, DataOutputStream out, boolean all) throws SQLException {
+        synchronized (database) {
+            byte[] buffer = new byte[pageSize];
+            try {
+                if (pageId >= pageCount) {
+                    return -1;
+                }
+                pageId = changes.nextBackupPage(pageId, all);
+                if (pageId < 0 || pageId >= pageCount) {
+                    return -1;
+                }
+                file.seek((long) pageId << pageSizeShift);
+                file.readFullyDirect(buffer, 0, pageSize);
+                readCount++;
+                out.writeInt(pageId);
+                out.write(buffer, 0, pageSize);
+                return pageId + 1;
+            } catch (IOException e) {
+                throw Message.convertIOException(e, fileName);
+            }
+        }
+    }
+
+    /**
+     * Start a backup. From now on, the pages that are changed are included
+     * in the next incremental backup.
+     *
+     * @return the smallest page count since the last backup, or -1 if it is
+     *         not known which pages were changed since the last backup
+     */
+    public int startBackup() {
+        synchronized (database) {
+            return changes.startBackup(pageCount);
+        }
+    }
+
+    /**
+     * The backup is complete.
+     *
+     * @return the page count
+     */
+    public int endBackup() {
+        synchronized (database) {
+            changes.endBackup();
+            return pageCount;
+        }
+    }
+
+    private String getChangesFileName() {
+        return fileName.substring(0, fileName.length() - Constants.SUFFIX_PAGE_FILE.length())
+                + Constants.SUFFIX_CHANGES_FILE;
+    }
+
     /**
      * Open the file and read the header.
      */
@@ -298,6 +370,7 @@ public class PageStore implements CacheWriter {
             openNew();
             return;
         }
+        changes = PageChangeMap.open(getChangesFileName(), pageCount, database.isReadOnly());
         readVariableHeader();
         log = new PageLog(this);
         log.openForReading(logKey, logFirstTrunkPage, logFirstDataPage);
@@ -355,6 +428,10 @@ public class PageStore implements CacheWriter {
                     file.seek((long) i << pageSizeShift);
                     file.write(empty, 0, pageSize);
                     writeCount++;
+                    changes.setChanged(i);
+                    if (offHeapCache != null) {
+                        offHeapCache.remove(i);
+                    }
                 }
             }
         }
@@ -370,13 +447,7 @@ public class PageStore implements CacheWriter {
             return;
         }
         // find the last used page
-        int lastUsed = -1;
-        for (int i = getFreeListId(pageCount); i >= 0; i--) {
-            lastUsed = getFreeList(i).getLastUsed();
-            if (lastUsed != -1) {
-                break;
-            }
-        }
+        int lastUsed = getLastUsed();
         // open a new log at the very end
         // (to be truncated later)
         writeBack();
@@ -414,20 +485,98 @@ public class PageStore implements CacheWriter {
             recoveryRunning = false;
         }
         writeBack();
-        for (int i = getFreeListId(pageCount); i >= 0; i--) {
-            lastUsed = getFreeList(i).getLastUsed();
+        truncateFile(getLastUsed() + 1);
+    }
+
+    /**
+     * Move the last used page of the file to the first free page, if
+     * possible. This is used to compact the database while it is in use. The
+     * move is logged, so that it is recovered after a crash. Pages of the
+     * transaction log, free list pages, and pages that are allocated but not
+     * written yet are not moved; if such a page is the last used page, no
+     * page is moved until the log was switched.
+     *
+     * @return true if a page was moved
+     */
+    public boolean compactMovePage() throws SQLException {
+        synchronized (database) {
+            checkOpen();
+            int lastUsed = getLastUsed();
+            if (lastUsed <= MIN_PAGE_COUNT) {
+                return false;
+            }
+            int free = getFirstFree();
+            if (free == -1 || free >= lastUsed) {
+                return false;
+            }
+            Page p = getPage(lastUsed);
+            if (p == null) {
+                // allocated, but not written yet (for example reserved for
+                // the transaction log)
+                return false;
+            }
+            if (p instanceof PageStreamTrunk || p instanceof PageStreamData || p instanceof PageFreeList) {
+                return false;
+            }
+            compact(lastUsed);
+            compactMoveCount++;
+            return true;
+        }
+    }
+
+    /**
+     * Shrink the file if there are enough free pages at the end. This
+     * requires a checkpoint, so that the pages at the end are not needed for
+     * recovery. This is used to compact the database while it is in use.
+     *
+     * @return true if the file was shrunk
+     */
+    public boolean compactTruncate() throws SQLException {
+        synchronized (database) {
+            checkOpen();
+            if (pageCount - getLastUsed() - 1 <= INCREMENT_PAGES) {
+                return false;
+            }
+            checkpoint();
+            int old = pageCount;
+            truncateFile(getLastUsed() + 1);
+            compactTruncateCount += old - pageCount;
+            return pageCount < old;
+        }
+    }
+
+    private int getLastUsed() throws SQLException {
+        for (int i = getFreeListId(pageCount - 1); i >= 0; i--) {
+            int lastUsed = getFreeList(i).getLastUsed();
             if (lastUsed != -1) {
-                break;
+                return lastUsed;
             }
         }
-        int newPageCount = lastUsed + 1;
+        return -1;
+    }
+
+    private int getFirstFree() throws SQLException {
+        for (int i = 0, last = getFreeListId(pageCount - 1); i <= last; i++) {
+            int free = getFreeList(i).getFirstFree();
+            if (free != -1) {
+                return free;
+            }
+        }
+        return -1;
+    }
+
+    private void truncateFile(int newPageCount) throws SQLException {
         if (newPageCount < pageCount) {
             freed.setRange(newPageCount, pageCount - newPageCount, false);
         }
         pageCount = newPageCount;
+        changes.truncate(pageCount);
         // the easiest way to remove superfluous entries
         freeLists.clear();
         trace.debug("pageCount:" + pageCount);
+        if (offHeapCache != null) {
+            offHeapCache.truncate(pageCount);
+        }
         long newLength = (long) pageCount << pageSizeShift;
         if (file.length() != newLength) {
             file.setLength(newLength);
@@ -436,13 +585,7 @@ public class PageStore implements CacheWriter {
     }
 
     private void compact(int full) throws SQLException {
-        int free = -1;
-        for (int i = 0; i < pageCount; i++) {
-            free = getFreeList(i).getFirstFree();
-            if (free != -1) {
-                break;
-            }
-        }
+        int free = getFirstFree();
         if (free == -1 || free >= full) {
             return;
         }
@@ -536,6 +679,24 @@ public class PageStore implements CacheWriter {
             p = PageBtreeNode.read(index, data, pageId);
             break;
         }
+        case Page.TYPE_HASH_DIRECTORY: {
+            int indexId = data.readVarInt();
+            PageHashIndex index = (PageHashIndex) metaObjects.get(indexId);
+            if (index == null) {
+                throw Message.getSQLException(ErrorCode.FILE_CORRUPTED_1, "index not found " + indexId);
+            }
+            p = PageHashDirectory.read(index, data, pageId);
+            break;
+        }
+        case Page.TYPE_HASH_BUCKET: {
+            int indexId = data.readVarInt();
+            PageHashIndex index = (PageHashIndex) metaObjects.get(indexId);
+            if (index == null) {
+                throw Message.getSQLException(ErrorCode.FILE_CORRUPTED_1, "index not found " + indexId);
+            }
+            p = PageHashBucket.read(index, data, pageId);
+            break;
+        }
         case Page.TYPE_STREAM_TRUNK:
             p = PageStreamTrunk.read(this, data, pageId);
             break;
@@ -633,6 +794,9 @@ public class PageStore implements CacheWriter {
         }
         pageSize = size;
         pageSizeShift = shift;
+        if (SysProperties.PAGE_STORE_OFF_HEAP_CACHE_SIZE > 0) {
+            offHeapCache = new PageCacheOffHeap(pageSize, SysProperties.PAGE_STORE_OFF_HEAP_CACHE_SIZE);
+        }
     }
 
     private void writeStaticHeader() throws SQLException {
@@ -643,6 +807,7 @@ public class PageStore implements CacheWriter {
         file.seek(FileStore.HEADER_LENGTH);
         file.write(page.getBytes(), 0, pageSize - FileStore.HEADER_LENGTH);
         writeCount++;
+        changes.setChanged(0);
     }
 
     /**
@@ -676,6 +841,12 @@ public class PageStore implements CacheWriter {
         file.write(page.getBytes(), 0, pageSize);
         file.seek(pageSize + pageSize);
         file.write(page.getBytes(), 0, pageSize);
+        changes.setChanged(1);
+        changes.setChanged(2);
+        if (offHeapCache != null) {
+            offHeapCache.remove(1);
+            offHeapCache.remove(2);
+        }
         // don't increment the write counter, because it was just written
     }
 
@@ -688,8 +859,12 @@ public class PageStore implements CacheWriter {
             log.close();
             log = null;
         }
+        offHeapCache = null;
         if (file != null) {
             try {
+                if (!database.isReadOnly()) {
+                    changes.save(getChangesFileName(), pageCount);
+                }
                 file.close();
             } catch (IOException e) {
                 throw Message.convert(e);
@@ -959,9 +1134,15 @@ public class PageStore implements CacheWriter {
             if (pos < 0 || pos >= pageCount) {
                 throw Message.getSQLException(ErrorCode.FILE_CORRUPTED_1, pos + " of " + pageCount);
             }
+            if (offHeapCache != null && offHeapCache.read(pos, page.getBytes())) {
+                return;
+            }
             file.seek((long) pos << pageSizeShift);
             file.readFully(page.getBytes(), 0, pageSize);
             readCount++;
+            if (offHeapCache != null) {
+                offHeapCache.put(pos, page.getBytes());
+            }
         }
     }
 
@@ -1006,6 +1187,10 @@ public class PageStore implements CacheWriter {
             file.seek((long) pageId << pageSizeShift);
             file.write(bytes, 0, pageSize);
             writeCount++;
+            changes.setChanged(pageId);
+            if (offHeapCache != null) {
+                offHeapCache.update(pageId, bytes);
+            }
         }
     }
 
@@ -1151,6 +1336,25 @@ public class PageStore implements CacheWriter {
         }
     }
 
+    /**
+     * Check whether the given table id is the id of the meta table.
+     *
+     * @param tableId the table id
+     * @return true if it is
+     */
+    boolean isMetaTable(int tableId) {
+        return tableId == META_TABLE_ID;
+    }
+
+    /**
+     * Get the file name of the database file.
+     *
+     * @return the file name
+     */
+    String getFileName() {
+        return fileName;
+    }
+
     /**
      * Redo a delete in a table.
      *
@@ -1242,7 +1446,7 @@ public class PageStore implements CacheWriter {
         PageIndex index = metaObjects.get(id);
         int rootPageId = index.getRootPageId();
         index.getTable().removeIndex(index);
-        if (index instanceof PageBtreeIndex) {
+        if (index instanceof PageBtreeIndex || index instanceof PageHashIndex) {
             if (index.isTemporary()) {
                 systemSession.removeLocalTempTableIndex(index);
             } else {
@@ -1281,6 +1485,7 @@ public class PageStore implements CacheWriter {
             allocatePage(rootPageId);
         }
         metaRootPageId.put(id, rootPageId);
+        metaType.put(id, type);
         if (type == META_TYPE_SCAN_INDEX) {
             CreateTableData data = new CreateTableData();
             for (int i = 0; i < columns.length; i++) {
@@ -1328,7 +1533,7 @@ public class PageStore implements CacheWriter {
                     tableColumns[cols[i].column.getColumnId()].setNullable(false);
                 }
             } else {
-                indexType = IndexType.createNonUnique(true);
+                indexType = IndexType.createNonUnique(true, type == META_TYPE_HASH_INDEX);
             }
             meta = table.addIndex(session, "I" + id, id, cols, indexType, id, null);
         }
@@ -1357,7 +1562,14 @@ public class PageStore implements CacheWriter {
      * @param session the session
      */
     public void addMeta(PageIndex index, Session session) throws SQLException {
-        int type = index instanceof PageDataIndex ? META_TYPE_SCAN_INDEX : META_TYPE_BTREE_INDEX;
+        int type;
+        if (index instanceof PageDataIndex) {
+            type = META_TYPE_SCAN_INDEX;
+        } else if (index instanceof PageHashIndex) {
+            type = META_TYPE_HASH_INDEX;
+        } else {
+            type = META_TYPE_BTREE_INDEX;
+        }
         IndexColumn[] columns = index.getIndexColumns();
         StatementBuilder buff = new StatementBuilder();
         for (IndexColumn col : columns) {
@@ -1537,10 +1749,48 @@ public class PageStore implements CacheWriter {
         return metaRootPageId.get(indexId);
     }
 
+    /**
+     * Check whether an index is stored as a hash index.
+     *
+     * @param indexId the index id
+     * @return true if it is a hash index
+     */
+    public boolean isHashIndex(int indexId) {
+        return metaType.get(indexId) == META_TYPE_HASH_INDEX;
+    }
+
     public Cache getCache() {
         return cache;
     }
 
+    /**
+     * Get the off-heap page cache.
+     *
+     * @return the cache, or null if not used
+     */
+    public PageCacheOffHeap getOffHeapCache() {
+        return offHeapCache;
+    }
+
+    /**
+     * Get the number of pages that were moved by the online compaction.
+     *
+     * @return the number of pages
+     */
+    public long getCompactMoveCount() {
+        return compactMoveCount;
+    }
+
+    /**
+     * Get the number of pages that were removed from the end of the file by
+     * the online compaction.
+     *
+     * @return the number of pages
+     */
+    public long getCompactTruncateCount() {
+        return compactTruncateCount;
+    }
+
     private void checksumSet(byte[] d, int pageId) {
         int ps = pageSize;
         int type = d[0];
@@ -9,6 +9,7 @@ package org.h2.store;
 import java.lang.ref.WeakReference;
 import java.security.AccessControlException;
 import java.sql.SQLException;
+import org.h2.constant.ErrorCode;
 import org.h2.constant.SysProperties;
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
@@ -19,7 +20,8 @@ import org.h2.util.FileUtils;
 
 /**
  * The writer thread is responsible to flush the transaction log file from time
- * to time.
+ * to time. If online compaction is enabled, it also moves pages from the end
+ * of the database file to free pages.
  */
 public class WriterThread implements Runnable {
 
@@ -37,6 +39,7 @@ public class WriterThread implements Runnable {
 
     private int writeDelay;
     private long lastIndexFlush;
+    private long lastCompact;
     private volatile boolean stop;
     private long oldLogFileDelete;
     private String oldLogFile;
@@ -102,6 +105,37 @@ public class WriterThread implements Runnable {
         lastIndexFlush = time;
     }
 
+    private void compactIfRequired(Database database) {
+        int rate = database.getCompactRate();
+        long time = System.currentTimeMillis();
+        if (rate <= 0) {
+            lastCompact = time;
+            return;
+        }
+        // the number of pages that may be moved since the last call,
+        // but at most the pages of one second
+        long maxMove = Math.min(rate, rate * (time - lastCompact) / 1000);
+        if (maxMove < 1) {
+            return;
+        }
+        lastCompact = time;
+        try {
+            database.compactIfRequired((int) maxMove);
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ErrorCode.DATABASE_IS_CLOSED) {
+                TraceSystem traceSystem = database.getTraceSystem();
+                if (traceSystem != null) {
+                    traceSystem.getTrace(Trace.PAGE_STORE).error("compact", e);
+                }
+            }
+        } catch (RuntimeException e) {
+            TraceSystem traceSystem = database.getTraceSystem();
+            if (traceSystem != null) {
+                traceSystem.getTrace(Trace.PAGE_STORE).error("compact", e);
+            }
+        }
+    }
+
     public void run() {
         while (!stop) {
             synchronized (this) {
@@ -148,6 +182,8 @@ public class WriterThread implements Runnable {
                 }
             }
 
+            compactIfRequired(database);
+
             // TODO log writer: could also flush the dirty cache when there is
             // low activity
             if (wait < SysProperties.MIN_WRITE_DELAY) {
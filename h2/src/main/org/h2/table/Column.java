@@ -154,7 +154,12 @@ public class Column {
         }
     }
 
-    boolean getComputed() {
+    /**
+     * Check if this is a computed column.
+     *
+     * @return true if it is
+     */
+    public boolean getComputed() {
         return isComputed;
     }
 
@@ -262,9 +267,7 @@ public class Column {
             if (defaultExpression == null) {
                 value = ValueNull.INSTANCE;
             } else {
-                synchronized (this) {
-                    value = defaultExpression.getValue(session).convertTo(type);
-                }
+                value = getDefaultValue(session);
                 if (primaryKey) {
                     session.setLastIdentity(value);
                 }
@@ -273,9 +276,7 @@ public class Column {
         Mode mode = session.getDatabase().getMode();
         if (value == ValueNull.INSTANCE) {
             if (convertNullToDefault) {
-                synchronized (this) {
-                    value = defaultExpression.getValue(session).convertTo(type);
-                }
+                value = getDefaultValue(session);
             }
             if (value == ValueNull.INSTANCE && !nullable) {
                 if (mode.convertInsertNullToZero) {
@@ -323,6 +324,16 @@ public class Column {
         return value;
     }
 
+    private Value getDefaultValue(Session session) throws SQLException {
+        if (defaultExpression instanceof SequenceValue) {
+            // sequences are thread safe
+            return defaultExpression.getValue(session).convertTo(type);
+        }
+        synchronized (this) {
+            return defaultExpression.getValue(session).convertTo(type);
+        }
+    }
+
     private void updateSequenceIfRequired(Session session, Value value) throws SQLException {
         if (sequence != null) {
             long current = sequence.getCurrentValue();
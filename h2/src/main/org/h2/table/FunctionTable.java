@@ -174,6 +174,31 @@ public class FunctionTable extends Table {
         return result;
     }
 
+    /**
+     * Read the result set from the function. This method doesn't cache.
+     *
+     * @param session the session
+     * @return the result set, or null if the function returned NULL
+     */
+    public ResultSet getResultSet(Session session) throws SQLException {
+        functionExpr = functionExpr.optimize(session);
+        Value v = functionExpr.getValue(session);
+        if (v == ValueNull.INSTANCE) {
+            return null;
+        }
+        return ((ValueResultSet) v).getResultSet();
+    }
+
+    /**
+     * Check whether the result of the function should be buffered in a local
+     * result, or whether the rows can be read from the result set directly.
+     *
+     * @return true if the result should be buffered
+     */
+    public boolean isBufferResultSetToLocalTemp() {
+        return function.isBufferResultSetToLocalTemp();
+    }
+
     public long getMaxDataModificationId() {
         // TODO optimization: table-as-a-function currently doesn't know the
         // last modified date
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.table;
+
+import java.sql.SQLException;
+import java.util.LinkedList;
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.index.Index;
+import org.h2.message.Message;
+import org.h2.result.Row;
+import org.h2.util.ObjectArray;
+
+/**
+ * Fills the in-memory indexes that were created while opening the database.
+ * The rows are read by the thread that opens the database, because it holds
+ * the lock on the database that reading from the storage requires. The blocks
+ * of rows are then added to the indexes by other threads, which must not
+ * synchronize on the database. The blocks of one table are processed in
+ * order, and only by one thread at a time, so that multiple tables are
+ * processed in parallel.
+ */
+public class IndexRebuilder implements Runnable {
+
+    /**
+     * The maximum number of buffered blocks per thread.
+     */
+    private static final int MAX_BUFFERED = 2;
+
+    private final Session session;
+    private final int threadCount;
+
+    /**
+     * The tables that have blocks to process, in the order the blocks were
+     * added.
+     */
+    private final LinkedList<Job> queue = new LinkedList<Job>();
+
+    /**
+     * The tables and indexes that could not be filled, and the exceptions.
+     */
+    private final ObjectArray<TableData> failedTables = ObjectArray.newInstance();
+    private final ObjectArray<Index> failedIndexes = ObjectArray.newInstance();
+    private final ObjectArray<SQLException> failedExceptions = ObjectArray.newInstance();
+
+    private int bufferedBlocks;
+    private int runningThreads;
+    private boolean closed;
+    private SQLException exception;
+
+    private IndexRebuilder(Session session, int threadCount) {
+        this.session = session;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Fill the in-memory indexes of all tables that were created while
+     * opening the database. This method returns when all indexes are filled.
+     *
+     * @param database the database
+     * @param session the system session
+     * @param threadCount the maximum number of threads
+     */
+    public static void rebuild(Database database, Session session, int threadCount) throws SQLException {
+        ObjectArray<TableData> tables = ObjectArray.newInstance();
+        for (Table t : database.getAllTablesAndViews()) {
+            if (t instanceof TableData && ((TableData) t).needRebuildIndexes()) {
+                tables.add((TableData) t);
+            }
+        }
+        IndexRebuilder rebuilder = new IndexRebuilder(session, Math.min(threadCount, tables.size()));
+        try {
+            for (TableData table : tables) {
+                table.rebuildIndexes(session, rebuilder);
+            }
+            rebuilder.finish();
+        } finally {
+            rebuilder.close();
+        }
+        for (int i = 0; i < rebuilder.failedIndexes.size(); i++) {
+            TableData table = rebuilder.failedTables.get(i);
+            table.removeRebuildIndex(rebuilder.failedIndexes.get(i), rebuilder.failedExceptions.get(i));
+        }
+    }
+
+    /**
+     * Add a block of rows to the given indexes of a table. If only one thread
+     * is used, the rows are added immediately; otherwise this method waits
+     * if too many blocks are buffered.
+     *
+     * @param table the table
+     * @param indexes the indexes (the same list for all blocks of the table)
+     * @param rows the rows (the list is not modified by the caller afterwards)
+     */
+    void add(TableData table, ObjectArray<Index> indexes, ObjectArray<Row> rows) throws SQLException {
+        if (threadCount <= 1) {
+            table.addRowsToIndexes(session, rows, indexes, this);
+            return;
+        }
+        synchronized (this) {
+            while (exception == null && bufferedBlocks >= threadCount * MAX_BUFFERED) {
+                waitForChange();
+            }
+            if (exception != null) {
+                throw exception;
+            }
+            Job job = queue.size() == 0 ? null : queue.getLast();
+            if (job == null || job.table != table) {
+                job = new Job();
+                job.table = table;
+                job.indexes = indexes;
+                queue.add(job);
+            }
+            job.blocks.add(rows);
+            bufferedBlocks++;
+            notifyAll();
+            if (runningThreads >= threadCount) {
+                return;
+            }
+            runningThreads++;
+        }
+        Thread t = new Thread(this, "H2 Index Rebuild");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Wait until all blocks are added to the indexes.
+     */
+    private synchronized void finish() throws SQLException {
+        while (exception == null && bufferedBlocks > 0) {
+            waitForChange();
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Stop the threads.
+     */
+    private synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    private void waitForChange() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * INTERNAL
+     */
+    public void run() {
+        try {
+            while (true) {
+                Job job = null;
+                ObjectArray<Row> rows;
+                synchronized (this) {
+                    while (true) {
+                        if (closed || exception != null) {
+                            return;
+                        }
+                        for (Job j : queue) {
+                            if (!j.busy) {
+                                job = j;
+                                break;
+                            }
+                        }
+                        if (job != null) {
+                            break;
+                        }
+                        waitForChange();
+                    }
+                    rows = job.blocks.removeFirst();
+                    job.busy = true;
+                }
+                job.table.addRowsToIndexes(session, rows, job.indexes, this);
+                synchronized (this) {
+                    job.busy = false;
+                    if (job.blocks.size() == 0) {
+                        queue.remove(job);
+                    }
+                    bufferedBlocks--;
+                    notifyAll();
+                }
+            }
+        } catch (Exception e) {
+            setException(Message.convert(e));
+        } catch (Throwable e) {
+            setException(Message.getSQLException(ErrorCode.GENERAL_ERROR_1, e, e.toString()));
+        } finally {
+            synchronized (this) {
+                runningThreads--;
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized void setException(SQLException e) {
+        if (exception == null) {
+            exception = e;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Remember that an index could not be filled. The index is removed by the
+     * thread that opens the database, after all indexes are filled.
+     *
+     * @param table the table
+     * @param index the index
+     * @param e the exception
+     */
+    synchronized void indexFailed(TableData table, Index index, SQLException e) {
+        failedTables.add(table);
+        failedIndexes.add(index);
+        failedExceptions.add(e);
+    }
+
+    /**
+     * The blocks of rows of a table that are not processed yet.
+     */
+    private static class Job {
+        TableData table;
+        ObjectArray<Index> indexes;
+        LinkedList<ObjectArray<Row>> blocks = new LinkedList<ObjectArray<Row>>();
+        boolean busy;
+    }
+
+}
@@ -27,6 +27,7 @@ import org.h2.engine.Constants;
 import org.h2.engine.Database;
 import org.h2.engine.DbObject;
 import org.h2.engine.FunctionAlias;
+import org.h2.engine.MemoryBroker;
 import org.h2.engine.Right;
 import org.h2.engine.Role;
 import org.h2.engine.Session;
@@ -49,6 +50,7 @@ import org.h2.schema.SchemaObject;
 import org.h2.schema.Sequence;
 import org.h2.schema.TriggerObject;
 import org.h2.store.DiskFile;
+import org.h2.store.PageCacheOffHeap;
 import org.h2.store.PageStore;
 import org.h2.tools.Csv;
 import org.h2.util.MathUtils;
@@ -133,7 +135,9 @@ public class MetaTable extends Table {
                     "REMARKS",
                     "LAST_MODIFICATION BIGINT",
                     "ID INT",
-                    "TYPE_NAME"
+                    "TYPE_NAME",
+                    "LOCK_WAIT_COUNT BIGINT",
+                    "LOCK_WAIT_TIME BIGINT"
             );
             indexColumnName = "TABLE_NAME";
             break;
@@ -481,7 +485,8 @@ public class MetaTable extends Table {
                     "USER_NAME",
                     "SESSION_START",
                     "STATEMENT",
-                    "STATEMENT_START"
+                    "STATEMENT_START",
+                    "TEMP_MEMORY INT"
             );
             break;
         }
@@ -630,6 +635,12 @@ public class MetaTable extends Table {
                 } else {
                     storageType = table.isPersistIndexes() ? "CACHED" : "MEMORY";
                 }
+                String lockWaitCount = null, lockWaitTime = null;
+                if (table instanceof TableData) {
+                    TableData t = (TableData) table;
+                    lockWaitCount = "" + t.getLockWaitCount();
+                    lockWaitTime = "" + t.getLockWaitTime();
+                }
                 add(rows,
                         // TABLE_CATALOG
                         catalog,
@@ -650,7 +661,11 @@ public class MetaTable extends Table {
                         // ID
                         "" + table.getId(),
                         // TYPE_NAME
-                        null
+                        null,
+                        // LOCK_WAIT_COUNT
+                        lockWaitCount,
+                        // LOCK_WAIT_TIME
+                        lockWaitTime
                 );
             }
             break;
@@ -871,13 +886,27 @@ public class MetaTable extends Table {
             add(rows, "h2.serverCachedObjects", "" + SysProperties.SERVER_CACHED_OBJECTS);
             add(rows, "h2.serverResultSetFetchSize", "" + SysProperties.SERVER_RESULT_SET_FETCH_SIZE);
             add(rows, "h2.sortNullsHigh", "" + SysProperties.SORT_NULLS_HIGH);
+            MemoryBroker broker = database.getMemoryBroker();
+            add(rows, "info.TEMP_MEMORY_MAX", "" + database.getMaxTempMemory());
+            add(rows, "info.TEMP_MEMORY_USED", "" + broker.getUsedMemory() / 1024);
+            add(rows, "info.TEMP_MEMORY_SPILLS", "" + broker.getSpillCount());
             if (database.isPageStoreEnabled() && database.isPersistent()) {
                 PageStore store = database.getPageStore();
                 add(rows, "info.FILE_WRITE_TOTAL", "" + store.getWriteCountTotal());
+                add(rows, "info.PAGE_COUNT", "" + store.getPageCount());
+                add(rows, "info.COMPACT_PAGES_MOVED", "" + store.getCompactMoveCount());
+                add(rows, "info.COMPACT_PAGES_TRUNCATED", "" + store.getCompactTruncateCount());
                 add(rows, "info.FILE_WRITE", "" + store.getWriteCount());
                 add(rows, "info.FILE_READ", "" + store.getReadCount());
                 add(rows, "info.CACHE_MAX_SIZE", "" + store.getCache().getMaxSize());
                 add(rows, "info.CACHE_SIZE", "" + store.getCache().getSize());
+                PageCacheOffHeap offHeap = store.getOffHeapCache();
+                if (offHeap != null) {
+                    add(rows, "info.CACHE_OFF_HEAP_MAX_SIZE", "" + offHeap.getMaxSize());
+                    add(rows, "info.CACHE_OFF_HEAP_SIZE", "" + offHeap.getSize());
+                    add(rows, "info.CACHE_OFF_HEAP_HITS", "" + offHeap.getHitCount());
+                    add(rows, "info.CACHE_OFF_HEAP_MISSES", "" + offHeap.getMissCount());
+                }
             }
             DiskFile dataFile = database.getDataFile();
             if (dataFile != null) {
@@ -1509,7 +1538,9 @@ public class MetaTable extends Table {
                             // STATEMENT
                             command == null ? null : command.toString(),
                             // STATEMENT_START
-                            new Timestamp(s.getCurrentCommandStart()).toString()
+                            new Timestamp(s.getCurrentCommandStart()).toString(),
+                            // TEMP_MEMORY
+                            "" + s.getTempMemory() / 1024
                     );
                 }
             }
@@ -9,7 +9,6 @@ package org.h2.table;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Set;
 
 import org.h2.command.Prepared;
 import org.h2.constant.ErrorCode;
@@ -473,6 +472,16 @@ public abstract class Table extends SchemaObjectBase {
         return new Row(new Value[columns.length], memoryPerRow);
     }
 
+    /**
+     * Get the estimated memory used by a row, or Row.MEMORY_CALCULATE if the
+     * memory needs to be calculated using the values.
+     *
+     * @return the memory per row
+     */
+    public int getMemoryPerRow() {
+        return memoryPerRow;
+    }
+
     /**
      * Get a new simple row object.
      *
@@ -732,6 +741,15 @@ public abstract class Table extends SchemaObjectBase {
         }
     }
 
+    /**
+     * Check if triggers are defined for this table.
+     *
+     * @return true if there are triggers
+     */
+    public boolean hasTriggers() {
+        return triggers != null && triggers.size() > 0;
+    }
+
     /**
      * Check if row based triggers or constraints are defined.
      * In this case the fire after and before row methods need to be called.
@@ -879,26 +897,6 @@ public abstract class Table extends SchemaObjectBase {
         }
     }
 
-    /**
-     * Check if a deadlock occurred. This method is called recursively. There is
-     * a circle if the session to be tested has already being visited. If this
-     * session is part of the circle (if it is the clash session), the method
-     * must return an empty object array. Once a deadlock has been detected, the
-     * methods must add the session to the list. If this session is not part of
-     * the circle, or if no deadlock is detected, this method returns null.
-     *
-     * @param session the session to be tested for
-     * @param clash set with sessions already visited, and null when starting
-     *            verification
-     * @param visited set with sessions already visited, and null when starting
-     *            verification
-     * @return an object array with the sessions involved in the deadlock, or
-     *         null
-     */
-    public ObjectArray<Session> checkDeadlock(Session session, Session clash, Set<Session> visited) {
-        return null;
-    }
-
     public boolean isPersistIndexes() {
         return persistIndexes;
     }
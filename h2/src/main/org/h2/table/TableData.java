@@ -8,8 +8,6 @@ package org.h2.table;
 
 import java.sql.SQLException;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Set;
 import org.h2.api.DatabaseEventListener;
 import org.h2.command.ddl.CreateTableData;
 import org.h2.constant.ErrorCode;
@@ -19,6 +17,7 @@ import org.h2.constraint.ConstraintReferential;
 import org.h2.engine.Constants;
 import org.h2.engine.DbObject;
 import org.h2.engine.Session;
+import org.h2.index.BitmapIndex;
 import org.h2.index.BtreeIndex;
 import org.h2.index.Cursor;
 import org.h2.index.HashIndex;
@@ -29,11 +28,13 @@ import org.h2.index.NonUniqueHashIndex;
 import org.h2.index.PageBtreeIndex;
 import org.h2.index.PageDataIndex;
 import org.h2.index.PageDelegateIndex;
+import org.h2.index.PageHashIndex;
+import org.h2.index.PrimitiveScanIndex;
+import org.h2.index.PrimitiveTreeIndex;
 import org.h2.index.RowIndex;
 import org.h2.index.ScanIndex;
 import org.h2.index.TreeIndex;
 import org.h2.message.Message;
-import org.h2.message.Trace;
 import org.h2.result.Row;
 import org.h2.result.SortOrder;
 import org.h2.schema.SchemaObject;
@@ -57,9 +58,7 @@ import org.h2.value.Value;
 public class TableData extends Table implements RecordReader {
     private RowIndex scanIndex;
     private long rowCount;
-    private Session lockExclusive;
-    private HashSet<Session> lockShared = New.hashSet();
-    private Trace traceLock;
+    private final TableLock lock;
     private boolean globalTemporary;
     private final ObjectArray<Index> indexes = ObjectArray.newInstance();
     private long lastModificationId;
@@ -67,11 +66,10 @@ public class TableData extends Table implements RecordReader {
     private PageDataIndex mainIndex;
 
     /**
-     * True if one thread ever was waiting to lock this table. This is to avoid
-     * calling notifyAll if no session was ever waiting to lock this table. If
-     * set, the flag stays. In theory, it could be reset, however not sure when.
+     * The in-memory indexes that were created while opening the database and
+     * still need to be filled.
      */
-    private boolean waitForLock;
+    private ObjectArray<Index> indexesToRebuild;
 
     public TableData(CreateTableData data) throws SQLException {
         super(data.schema, data.id, data.tableName, data.persistIndexes, data.persistData);
@@ -82,6 +80,9 @@ public class TableData extends Table implements RecordReader {
         if (database.isPageStoreEnabled() && data.persistData && database.isPersistent()) {
             mainIndex = new PageDataIndex(this, data.id, IndexColumn.wrap(cols), IndexType.createScan(data.persistData), data.headPos, data.session);
             scanIndex = mainIndex;
+        } else if (SysProperties.PRIMITIVE_MEMORY_TABLES && (!data.persistData || !database.isPersistent())
+                && !database.isMultiVersion() && PrimitiveScanIndex.isSupported(cols)) {
+            scanIndex = new PrimitiveScanIndex(this, data.id, IndexColumn.wrap(cols), IndexType.createScan(data.persistData));
         } else {
             scanIndex = new ScanIndex(this, data.id, IndexColumn.wrap(cols), IndexType.createScan(data.persistData));
         }
@@ -92,7 +93,7 @@ public class TableData extends Table implements RecordReader {
                 memoryPerRow = Row.MEMORY_CALCULATE;
             }
         }
-        traceLock = database.getTrace(Trace.LOCK);
+        lock = new TableLock(this);
     }
 
     public int getHeadPos() {
@@ -124,10 +125,16 @@ public class TableData extends Table implements RecordReader {
         // until the transaction is committed or rolled back
         // otherwise the row is not found when doing insert-delete-rollback
         row.setSessionId(session.getId());
+        boolean defer = session.isDeferIndexMaintenance();
         try {
             for (; i < indexes.size(); i++) {
                 Index index = indexes.get(i);
-                index.add(session, row);
+                if (defer && index instanceof PageBtreeIndex) {
+                    // added to the b-tree at the end of the statement
+                    ((PageBtreeIndex) index).addDeferred(session, row);
+                } else {
+                    index.add(session, row);
+                }
                 checkRowCount(session, index, 1);
             }
             rowCount++;
@@ -192,7 +199,11 @@ public class TableData extends Table implements RecordReader {
             }
         }
         Index index;
-        if (isPersistIndexes() && indexType.isPersistent()) {
+        boolean memoryIndex = true;
+        if (indexType.isBitmap()) {
+            index = new BitmapIndex(this, indexId, indexName, cols, indexType);
+        } else if (isPersistIndexes() && indexType.isPersistent()) {
+            memoryIndex = false;
             if (database.isPageStoreEnabled()) {
                 int mainIndexColumn;
                 if (database.isStarting() && database.getPageStore().getRootPageId(indexId) != 0) {
@@ -202,9 +213,16 @@ public class TableData extends Table implements RecordReader {
                 } else {
                     mainIndexColumn = getMainIndexColumn(indexType, cols);
                 }
+                boolean hash = indexType.isHash();
+                if (hash && database.isStarting() && database.getPageStore().getRootPageId(indexId) != 0) {
+                    // hash indexes of older databases are stored as b-trees
+                    hash = database.getPageStore().isHashIndex(indexId);
+                }
                 if (mainIndexColumn != -1) {
                     mainIndex.setMainIndexColumn(mainIndexColumn);
                     index = new PageDelegateIndex(this, indexId, indexName, indexType, mainIndex, headPos, session);
+                } else if (hash) {
+                    index = new PageHashIndex(this, indexId, indexName, cols, indexType, headPos, session);
                 } else {
                     index = new PageBtreeIndex(this, indexId, indexName, cols, indexType, headPos, session);
                 }
@@ -218,6 +236,8 @@ public class TableData extends Table implements RecordReader {
                 } else {
                     index = new NonUniqueHashIndex(this, indexId, indexName, cols, indexType);
                 }
+            } else if (scanIndex instanceof PrimitiveScanIndex) {
+                index = new PrimitiveTreeIndex(this, (PrimitiveScanIndex) scanIndex, indexId, indexName, cols, indexType);
             } else {
                 index = new TreeIndex(this, indexId, indexName, cols, indexType);
             }
@@ -225,7 +245,14 @@ public class TableData extends Table implements RecordReader {
         if (database.isMultiVersion()) {
             index = new MultiVersionIndex(index, this);
         }
-        if (index.needRebuild() && rowCount > 0) {
+        if (index.needRebuild() && rowCount > 0 && memoryIndex && database.isStarting() && !database.isMultiVersion()) {
+            // filled later, together with the other
+            // in-memory indexes of this table
+            if (indexesToRebuild == null) {
+                indexesToRebuild = ObjectArray.newInstance();
+            }
+            indexesToRebuild.add(index);
+        } else if (index.needRebuild() && rowCount > 0) {
             try {
                 Index scan = getScanIndex(session);
                 long remaining = scan.getRowCount(session);
@@ -243,6 +270,7 @@ public class TableData extends Table implements RecordReader {
                     buffer.add(row);
                     if (buffer.size() >= bufferSize) {
                         addRowsToIndex(session, buffer, index);
+                        buffer.clear();
                     }
                     remaining--;
                 }
@@ -336,7 +364,109 @@ public class TableData extends Table implements RecordReader {
         for (Row row : list) {
             index.add(session, row);
         }
-        list.clear();
+    }
+
+    /**
+     * Check whether there are in-memory indexes that were created while
+     * opening the database and still need to be filled.
+     *
+     * @return true if there are such indexes
+     */
+    public boolean needRebuildIndexes() {
+        return indexesToRebuild != null;
+    }
+
+    /**
+     * Fill the in-memory indexes that were created while opening the
+     * database. The table is read only once for all those indexes. The rows
+     * are read by the current thread (which holds the lock on the database),
+     * and the blocks of rows are passed to the rebuilder, which may add them
+     * to the indexes using other threads.
+     *
+     * @param session the session
+     * @param rebuilder the rebuilder
+     */
+    void rebuildIndexes(Session session, IndexRebuilder rebuilder) throws SQLException {
+        ObjectArray<Index> list = indexesToRebuild;
+        indexesToRebuild = null;
+        if (list == null) {
+            return;
+        }
+        int bufferSize = Constants.DEFAULT_MAX_MEMORY_ROWS;
+        Index scan = getScanIndex(session);
+        long remaining = scan.getRowCount(session), i = 0;
+        int total = MathUtils.convertLongToInt(remaining);
+        Cursor cursor = scan.find(session, null, null);
+        boolean more = true;
+        while (more) {
+            ObjectArray<Row> buffer = ObjectArray.newInstance(bufferSize);
+            while (buffer.size() < bufferSize) {
+                more = cursor.next();
+                if (!more) {
+                    break;
+                }
+                buffer.add(cursor.get());
+                remaining--;
+            }
+            i += buffer.size();
+            database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX, getName(),
+                    MathUtils.convertLongToInt(i), total);
+            if (buffer.size() > 0) {
+                rebuilder.add(this, list, buffer);
+            }
+        }
+        if (SysProperties.CHECK && remaining != 0) {
+            Message.throwInternalError("rowcount remaining=" + remaining + " " + getName());
+        }
+    }
+
+    /**
+     * Add a block of rows to the given in-memory indexes. This method does
+     * not synchronize on the database. If adding the rows to an index fails,
+     * the index is removed from the list, and the failure is reported to the
+     * rebuilder.
+     *
+     * @param session the session
+     * @param rows the rows
+     * @param list the indexes
+     * @param rebuilder the rebuilder
+     */
+    void addRowsToIndexes(Session session, ObjectArray<Row> rows, ObjectArray<Index> list,
+            IndexRebuilder rebuilder) throws SQLException {
+        for (int j = 0; j < list.size(); j++) {
+            Index index = list.get(j);
+            try {
+                addRowsToIndex(session, rows, index);
+            } catch (SQLException e) {
+                list.remove(j--);
+                rebuilder.indexFailed(this, index, e);
+            }
+        }
+    }
+
+    /**
+     * Remove an in-memory index that could not be filled when opening the
+     * database. If no database event listener is set, the exception is thrown
+     * instead.
+     *
+     * @param index the index
+     * @param e the exception that occurred while filling the index
+     */
+    void removeRebuildIndex(Index index, SQLException e) throws SQLException {
+        String sql = index.getCreateSQL();
+        e = Message.addSQL(e, sql);
+        synchronized (database) {
+            if (database.getEventListener() == null) {
+                throw e;
+            }
+            trace.error(sql, e);
+            // the same as if creating the index failed
+            removeIndex(index);
+            if (sql != null) {
+                index.getSchema().remove(index);
+            }
+            database.exceptionThrown(e, sql);
+        }
     }
 
     public boolean canDrop() {
@@ -411,7 +541,7 @@ public class TableData extends Table implements RecordReader {
     }
 
     boolean isLockedExclusivelyBy(Session session) {
-        return lockExclusive == session;
+        return lock.isLockedExclusivelyBy(session);
     }
 
     public void lock(Session session, boolean exclusive, boolean force) throws SQLException {
@@ -430,172 +560,38 @@ public class TableData extends Table implements RecordReader {
         }
         synchronized (database) {
             try {
-                doLock(session, lockMode, exclusive);
+                lock.lock(session, exclusive, lockMode);
             } finally {
                 session.setWaitForLock(null);
             }
         }
     }
 
-    private void doLock(Session session, int lockMode, boolean exclusive) throws SQLException {
-        traceLock(session, exclusive, "requesting for");
-        long max = System.currentTimeMillis() + session.getLockTimeout();
-        boolean checkDeadlock = false;
-        while (true) {
-            if (lockExclusive == session) {
-                return;
-            }
-            if (exclusive) {
-                if (lockExclusive == null) {
-                    if (lockShared.isEmpty()) {
-                        traceLock(session, exclusive, "added for");
-                        session.addLock(this);
-                        lockExclusive = session;
-                        return;
-                    } else if (lockShared.size() == 1 && lockShared.contains(session)) {
-                        traceLock(session, exclusive, "add (upgraded) for ");
-                        lockExclusive = session;
-                        return;
-                    }
-                }
-            } else {
-                if (lockExclusive == null) {
-                    if (lockMode == Constants.LOCK_MODE_READ_COMMITTED) {
-                        if (!database.isMultiThreaded() && !database.isMultiVersion()) {
-                            // READ_COMMITTED: a read lock is acquired,
-                            // but released immediately after the operation
-                            // is complete.
-                            // When allowing only one thread, no lock is
-                            // required.
-                            // Row level locks work like read committed.
-                            return;
-                        }
-                    }
-                    if (!lockShared.contains(session)) {
-                        traceLock(session, exclusive, "ok");
-                        session.addLock(this);
-                        lockShared.add(session);
-                    }
-                    return;
-                }
-            }
-            session.setWaitForLock(this);
-            if (checkDeadlock) {
-                ObjectArray<Session> sessions = checkDeadlock(session, null, null);
-                if (sessions != null) {
-                    throw Message.getSQLException(ErrorCode.DEADLOCK_1, getDeadlockDetails(sessions));
-                }
-            } else {
-                // check for deadlocks from now on
-                checkDeadlock = true;
-            }
-            long now = System.currentTimeMillis();
-            if (now >= max) {
-                traceLock(session, exclusive, "timeout after " + session.getLockTimeout());
-                throw Message.getSQLException(ErrorCode.LOCK_TIMEOUT_1, getName());
-            }
-            try {
-                traceLock(session, exclusive, "waiting for");
-                if (database.getLockMode() == Constants.LOCK_MODE_TABLE_GC) {
-                    for (int i = 0; i < 20; i++) {
-                        long free = Runtime.getRuntime().freeMemory();
-                        System.gc();
-                        long free2 = Runtime.getRuntime().freeMemory();
-                        if (free == free2) {
-                            break;
-                        }
-                    }
-                }
-                // don't wait too long so that deadlocks are detected early
-                long sleep = Math.min(Constants.DEADLOCK_CHECK, max - now);
-                if (sleep == 0) {
-                    sleep = 1;
-                }
-                waitForLock = true;
-                database.wait(sleep);
-            } catch (InterruptedException e) {
-                // ignore
-            }
-        }
-    }
-
-    private String getDeadlockDetails(ObjectArray<Session> sessions) {
-        StringBuilder buff = new StringBuilder();
-        for (Session s : sessions) {
-            Table lock = s.getWaitForLock();
-            buff.append("\nSession ").
-                append(s.toString()).
-                append(" is waiting to lock ").
-                append(lock.toString()).
-                append(" while locking ");
-            int i = 0;
-            for (Table t : s.getLocks()) {
-                if (i++ > 0) {
-                    buff.append(", ");
-                }
-                buff.append(t.toString());
-                if (t instanceof TableData) {
-                    if (((TableData) t).lockExclusive == s) {
-                        buff.append(" (exclusive)");
-                    } else {
-                        buff.append(" (shared)");
-                    }
-                }
-            }
-            buff.append('.');
-        }
-        return buff.toString();
+    /**
+     * Get the lock of this table.
+     *
+     * @return the lock
+     */
+    TableLock getLock() {
+        return lock;
     }
 
-    public ObjectArray<Session> checkDeadlock(Session session, Session clash, Set<Session> visited) {
-        // only one deadlock check at any given time
-        synchronized (TableData.class) {
-            if (clash == null) {
-                // verification is started
-                clash = session;
-                visited = New.hashSet();
-            } else if (clash == session) {
-                // we found a circle where this session is involved
-                return ObjectArray.newInstance();
-            } else if (visited.contains(session)) {
-                // we have already checked this session.
-                // there is a circle, but the sessions in the circle need to
-                // find it out themselves
-                return null;
-            }
-            visited.add(session);
-            ObjectArray<Session> error = null;
-            for (Session s : lockShared) {
-                if (s == session) {
-                    // it doesn't matter if we have locked the object already
-                    continue;
-                }
-                Table t = s.getWaitForLock();
-                if (t != null) {
-                    error = t.checkDeadlock(s, clash, visited);
-                    if (error != null) {
-                        error.add(session);
-                        break;
-                    }
-                }
-            }
-            if (error == null && lockExclusive != null) {
-                Table t = lockExclusive.getWaitForLock();
-                if (t != null) {
-                    error = t.checkDeadlock(lockExclusive, clash, visited);
-                    if (error != null) {
-                        error.add(session);
-                    }
-                }
-            }
-            return error;
-        }
+    /**
+     * Get the number of times a session had to wait for a lock on this table.
+     *
+     * @return the number of waits
+     */
+    public long getLockWaitCount() {
+        return lock.getWaitCount();
     }
 
-    private void traceLock(Session session, boolean exclusive, String s) {
-        if (traceLock.isDebugEnabled()) {
-            traceLock.debug(session.getId() + " " + (exclusive ? "exclusive write lock" : "shared read lock") + " " + s + " " + getName());
-        }
+    /**
+     * Get the total time sessions waited for a lock on this table.
+     *
+     * @return the time in milliseconds
+     */
+    public long getLockWaitTime() {
+        return lock.getWaitTime();
     }
 
     public String getDropSQL() {
@@ -633,26 +629,11 @@ public class TableData extends Table implements RecordReader {
     }
 
     public boolean isLockedExclusively() {
-        return lockExclusive != null;
+        return lock.isLockedExclusively();
     }
 
     public void unlock(Session s) {
-        if (database != null) {
-            traceLock(s, lockExclusive == s, "unlock");
-            if (lockExclusive == s) {
-                lockExclusive = null;
-            }
-            if (lockShared.size() > 0) {
-                lockShared.remove(s);
-            }
-            // TODO lock: maybe we need we fifo-queue to make sure nobody
-            // starves. check what other databases do
-            synchronized (database) {
-                if (database.getSessionCount() > 1 && waitForLock) {
-                    database.notifyAll();
-                }
-            }
-        }
+        lock.unlock(s);
     }
 
     public Record read(Session session, DataPage s) throws SQLException {
@@ -713,8 +694,6 @@ public class TableData extends Table implements RecordReader {
         scanIndex.remove(session);
         database.removeMeta(session, getId());
         scanIndex = null;
-        lockExclusive = null;
-        lockShared = null;
         invalidate();
     }
 
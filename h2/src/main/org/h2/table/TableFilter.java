@@ -17,6 +17,7 @@ import org.h2.expression.Comparison;
 import org.h2.expression.ConditionAndOr;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
+import org.h2.index.BitmapCondition;
 import org.h2.index.Index;
 import org.h2.index.IndexCondition;
 import org.h2.index.IndexCursor;
@@ -24,6 +25,7 @@ import org.h2.message.Message;
 import org.h2.result.Row;
 import org.h2.result.SearchRow;
 import org.h2.util.ObjectArray;
+import org.h2.util.RoaringBitmap;
 import org.h2.util.StatementBuilder;
 import org.h2.util.StringUtils;
 import org.h2.value.Value;
@@ -57,6 +59,11 @@ public class TableFilter implements ColumnResolver {
      */
     private final ObjectArray<IndexCondition> indexConditions = ObjectArray.newInstance();
 
+    /**
+     * The condition that is evaluated using the bitmap indexes, or null.
+     */
+    private BitmapCondition bitmapCondition;
+
     /**
      * Additional conditions that can't be used for index lookup,
      * but for row filter for this table (ID=ID, NAME LIKE '%X%')
@@ -252,7 +259,15 @@ public class TableFilter implements ColumnResolver {
         if (state == AFTER_LAST) {
             return false;
         } else if (state == BEFORE_FIRST) {
-            cursor.find(session, indexConditions);
+            RoaringBitmap keys = null;
+            if (bitmapCondition != null) {
+                keys = bitmapCondition.getKeys(session, this);
+            }
+            if (keys != null) {
+                cursor.find(session, keys);
+            } else {
+                cursor.find(session, indexConditions);
+            }
             if (!cursor.isAlwaysFalse()) {
                 if (join != null) {
                     join.reset();
@@ -378,6 +393,20 @@ public class TableFilter implements ColumnResolver {
         indexConditions.add(condition);
     }
 
+    /**
+     * Read the rows using the bitmap indexes of the table.
+     *
+     * @param bitmapCondition the condition to evaluate using the bitmap
+     *            indexes
+     */
+    public void setBitmapCondition(BitmapCondition bitmapCondition) {
+        this.bitmapCondition = bitmapCondition;
+    }
+
+    public BitmapCondition getBitmapCondition() {
+        return bitmapCondition;
+    }
+
     /**
      * Add a filter condition.
      *
@@ -480,7 +509,9 @@ public class TableFilter implements ColumnResolver {
             buff.append(" /* ");
             StatementBuilder planBuff = new StatementBuilder();
             planBuff.append(index.getPlanSQL());
-            if (indexConditions.size() > 0) {
+            if (bitmapCondition != null) {
+                planBuff.append(": ").append(bitmapCondition.getPlanSQL());
+            } else if (indexConditions.size() > 0) {
                 planBuff.append(": ");
                 for (IndexCondition condition : indexConditions) {
                     planBuff.appendExceptFirst(" AND ");
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.table;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedList;
+
+import org.h2.constant.ErrorCode;
+import org.h2.engine.Constants;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.message.Message;
+import org.h2.message.Trace;
+import org.h2.util.New;
+import org.h2.util.ObjectArray;
+
+/**
+ * The lock of a table. A table can be locked exclusively by one session, or
+ * shared by any number of sessions. Sessions that can not get the lock
+ * immediately are added to a queue, and the lock is handed over to them in
+ * the order of the queue when it is released. The wait-for graph is only
+ * checked for deadlocks when a session starts waiting, because this is the
+ * only time a new cycle can be created.
+ * <p>
+ * Except for unlock, the methods must be called while synchronized on the
+ * database.
+ */
+class TableLock {
+
+    /**
+     * A session that waits for the lock.
+     */
+    private static class Waiter {
+        final Session session;
+        final boolean exclusive;
+        boolean granted;
+
+        Waiter(Session session, boolean exclusive) {
+            this.session = session;
+            this.exclusive = exclusive;
+        }
+    }
+
+    private final TableData table;
+    private final Database database;
+    private final Trace trace;
+    private Session lockExclusive;
+    private final HashSet<Session> lockShared = New.hashSet();
+    private final LinkedList<Waiter> queue = new LinkedList<Waiter>();
+    private long waitCount;
+    private long waitTime;
+
+    TableLock(TableData table) {
+        this.table = table;
+        this.database = table.getDatabase();
+        this.trace = database.getTrace(Trace.LOCK);
+    }
+
+    /**
+     * Lock the table for the given session. If the lock can not be acquired
+     * immediately, the session waits until it is handed over, the lock timeout
+     * is reached, or a deadlock is detected.
+     *
+     * @param session the session
+     * @param exclusive true for a write lock
+     * @param lockMode the lock mode of the database
+     * @throws SQLException if the lock timeout is reached or a deadlock was
+     *             detected
+     */
+    void lock(Session session, boolean exclusive, int lockMode) throws SQLException {
+        traceLock(session, exclusive, "requesting for");
+        if (lockExclusive == session) {
+            return;
+        }
+        boolean upgrade = exclusive && lockShared.contains(session);
+        if (!exclusive && lockExclusive == null && lockShared.contains(session)) {
+            return;
+        }
+        if (upgrade || queue.isEmpty() || (!exclusive && isReadWithoutLock(lockMode))) {
+            if (tryLock(session, exclusive, lockMode)) {
+                return;
+            }
+        }
+        Waiter w = new Waiter(session, exclusive);
+        if (upgrade) {
+            // the session already holds a shared lock,
+            // so all sessions in the queue wait for it anyway
+            queue.addFirst(w);
+        } else {
+            queue.addLast(w);
+        }
+        session.setWaitForLock(table);
+        long start = System.currentTimeMillis();
+        try {
+            ObjectArray<Session> sessions = findDeadlock(session);
+            if (sessions != null) {
+                throw Message.getSQLException(ErrorCode.DEADLOCK_1, getDeadlockDetails(sessions));
+            }
+            waitCount++;
+            long max = start + session.getLockTimeout();
+            while (!w.granted) {
+                long now = System.currentTimeMillis();
+                if (now >= max) {
+                    traceLock(session, exclusive, "timeout after " + session.getLockTimeout());
+                    throw Message.getSQLException(ErrorCode.LOCK_TIMEOUT_1, table.getName());
+                }
+                traceLock(session, exclusive, "waiting for");
+                if (lockMode == Constants.LOCK_MODE_TABLE_GC) {
+                    for (int i = 0; i < 20; i++) {
+                        long free = Runtime.getRuntime().freeMemory();
+                        System.gc();
+                        long free2 = Runtime.getRuntime().freeMemory();
+                        if (free == free2) {
+                            break;
+                        }
+                    }
+                }
+                try {
+                    database.wait(max - now);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        } finally {
+            waitTime += System.currentTimeMillis() - start;
+            if (!w.granted) {
+                queue.remove(w);
+                // the sessions behind this one may now get the lock
+                grantWaiting(lockMode);
+            }
+        }
+    }
+
+    /**
+     * Try to lock the table without waiting.
+     *
+     * @param session the session
+     * @param exclusive true for a write lock
+     * @param lockMode the lock mode of the database
+     * @return true if the lock was acquired
+     */
+    private boolean tryLock(Session session, boolean exclusive, int lockMode) {
+        if (lockExclusive != null) {
+            return false;
+        }
+        if (exclusive) {
+            if (lockShared.isEmpty()) {
+                traceLock(session, exclusive, "added for");
+                session.addLock(table);
+                lockExclusive = session;
+                return true;
+            } else if (lockShared.size() == 1 && lockShared.contains(session)) {
+                traceLock(session, exclusive, "add (upgraded) for ");
+                lockExclusive = session;
+                return true;
+            }
+            return false;
+        }
+        if (isReadWithoutLock(lockMode)) {
+            return true;
+        }
+        if (!lockShared.contains(session)) {
+            traceLock(session, exclusive, "ok");
+            session.addLock(table);
+            lockShared.add(session);
+        }
+        return true;
+    }
+
+    private boolean isReadWithoutLock(int lockMode) {
+        // READ_COMMITTED: a read lock is acquired,
+        // but released immediately after the operation
+        // is complete.
+        // When allowing only one thread, no lock is
+        // required.
+        // Row level locks work like read committed.
+        return lockMode == Constants.LOCK_MODE_READ_COMMITTED &&
+                !database.isMultiThreaded() && !database.isMultiVersion();
+    }
+
+    /**
+     * Hand over the lock to the sessions at the head of the queue, as long as
+     * their requests are compatible with the current locks.
+     *
+     * @param lockMode the lock mode of the database
+     */
+    private void grantWaiting(int lockMode) {
+        boolean granted = false;
+        while (!queue.isEmpty()) {
+            Waiter w = queue.getFirst();
+            if (!tryLock(w.session, w.exclusive, lockMode)) {
+                break;
+            }
+            queue.removeFirst();
+            w.granted = true;
+            // the session is no longer waiting,
+            // even if its thread did not wake up yet
+            w.session.setWaitForLock(null);
+            granted = true;
+        }
+        if (granted) {
+            database.notifyAll();
+        }
+    }
+
+    /**
+     * Release the locks of the given session and hand over the lock to the
+     * waiting sessions.
+     *
+     * @param session the session
+     */
+    void unlock(Session session) {
+        synchronized (database) {
+            traceLock(session, lockExclusive == session, "unlock");
+            if (lockExclusive == session) {
+                lockExclusive = null;
+            }
+            lockShared.remove(session);
+            grantWaiting(database.getLockMode());
+        }
+    }
+
+    /**
+     * Get the sessions the given waiting session waits for: the sessions that
+     * hold the lock, and the sessions ahead in the queue.
+     *
+     * @param session the waiting session
+     * @return the sessions
+     */
+    private ObjectArray<Session> getBlockers(Session session) {
+        ObjectArray<Session> list = ObjectArray.newInstance();
+        boolean waiting = false;
+        for (Waiter w : queue) {
+            if (w.session == session) {
+                waiting = true;
+                break;
+            }
+            list.add(w.session);
+        }
+        if (!waiting) {
+            // the lock was already handed over
+            list.clear();
+            return list;
+        }
+        if (lockExclusive != null && lockExclusive != session) {
+            list.add(lockExclusive);
+        }
+        for (Session s : lockShared) {
+            if (s != session) {
+                list.add(s);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Search the wait-for graph for a cycle that contains the given session.
+     *
+     * @param session the session that just started to wait
+     * @return the sessions in the cycle, or null if there is no deadlock
+     */
+    private static ObjectArray<Session> findDeadlock(Session session) {
+        ObjectArray<Session> cycle = ObjectArray.newInstance();
+        HashSet<Session> visited = New.hashSet();
+        visited.add(session);
+        if (findCycle(session, session, visited, cycle)) {
+            return cycle;
+        }
+        return null;
+    }
+
+    private static boolean findCycle(Session s, Session start, HashSet<Session> visited, ObjectArray<Session> cycle) {
+        Table t = s.getWaitForLock();
+        if (!(t instanceof TableData)) {
+            return false;
+        }
+        for (Session b : ((TableData) t).getLock().getBlockers(s)) {
+            if (b == start || (visited.add(b) && findCycle(b, start, visited, cycle))) {
+                cycle.add(s);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getDeadlockDetails(ObjectArray<Session> sessions) {
+        StringBuilder buff = new StringBuilder();
+        for (Session s : sessions) {
+            Table lock = s.getWaitForLock();
+            buff.append("\nSession ").
+                append(s.toString()).
+                append(" is waiting to lock ").
+                append(lock.toString()).
+                append(" while locking ");
+            int i = 0;
+            for (Table t : s.getLocks()) {
+                if (i++ > 0) {
+                    buff.append(", ");
+                }
+                buff.append(t.toString());
+                if (t instanceof TableData) {
+                    if (((TableData) t).isLockedExclusivelyBy(s)) {
+                        buff.append(" (exclusive)");
+                    } else {
+                        buff.append(" (shared)");
+                    }
+                }
+            }
+            buff.append('.');
+        }
+        return buff.toString();
+    }
+
+    boolean isLockedExclusively() {
+        return lockExclusive != null;
+    }
+
+    boolean isLockedExclusivelyBy(Session session) {
+        return lockExclusive == session;
+    }
+
+    /**
+     * Get the number of times a session had to wait for this lock.
+     *
+     * @return the number of waits
+     */
+    long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * Get the total time sessions waited for this lock.
+     *
+     * @return the time in milliseconds
+     */
+    long getWaitTime() {
+        return waitTime;
+    }
+
+    private void traceLock(Session session, boolean exclusive, String s) {
+        if (trace.isDebugEnabled()) {
+            trace.debug(session.getId() + " " + (exclusive ? "exclusive write lock" : "shared read lock") + " " + s + " " + table.getName());
+        }
+    }
+
+}
@@ -16,6 +16,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -26,6 +27,8 @@ import java.util.ArrayList;
 import org.h2.constant.SysProperties;
 import org.h2.engine.Constants;
 import org.h2.message.Message;
+import org.h2.store.fs.FileSystem;
+import org.h2.store.fs.FileSystemDisk;
 import org.h2.util.FileUtils;
 import org.h2.util.IOUtils;
 import org.h2.util.JdbcUtils;
@@ -176,6 +179,9 @@ public class Csv implements SimpleRowSource {
     public ResultSet read(String inputFileName, String[] colNames, String charset) throws SQLException {
         init(inputFileName, charset);
         try {
+            if (canReadMapped()) {
+                return readResultSetMapped(colNames);
+            }
             return readResultSet(colNames);
         } catch (IOException e) {
             throw convertException("IOException reading " + inputFileName, e);
@@ -209,6 +215,56 @@ public class Csv implements SimpleRowSource {
         return result;
     }
 
+    private ResultSet readResultSetMapped(String[] colNames) throws SQLException, IOException {
+        CsvMappedReader reader = new CsvMappedReader(this, fileName, FileUtils.getAbsolutePath(fileName),
+                streamCharset, fieldSeparatorRead, fieldDelimiter, escapeCharacter, commentLineStart, nullString,
+                SysProperties.CSV_READ_THREADS);
+        try {
+            columnNames = colNames == null ? reader.readHeader() : colNames;
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+        SimpleResultSet result = new SimpleResultSet(reader);
+        makeColumnNamesUnique();
+        for (String columnName : columnNames) {
+            result.addColumn(columnName, Types.VARCHAR, Integer.MAX_VALUE, 0);
+        }
+        reader.setColumnCount(columnNames.length);
+        return result;
+    }
+
+    /**
+     * Check if the file can be read using memory mapped chunks that are
+     * parsed in parallel. This is only the case for large files on disk, if
+     * the special characters are ASCII characters and the character set
+     * encodes them as one byte.
+     *
+     * @return true if the file can be read in parallel
+     */
+    private boolean canReadMapped() {
+        if (SysProperties.CSV_READ_THREADS <= 1 || fileName == null) {
+            return false;
+        }
+        if (FileSystem.getInstance(fileName) != FileSystemDisk.getInstance()) {
+            return false;
+        }
+        if (fieldSeparatorRead >= 128 || fieldDelimiter >= 128 || escapeCharacter >= 128 || commentLineStart >= 128) {
+            return false;
+        }
+        if (!FileUtils.exists(fileName) || FileUtils.length(fileName) < CsvMappedReader.MIN_LENGTH) {
+            return false;
+        }
+        String cs;
+        try {
+            cs = Charset.forName(streamCharset).name();
+        } catch (Exception e) {
+            // the reader reports the problem
+            return false;
+        }
+        return cs.equals("UTF-8") || cs.equals("ISO-8859-1") || cs.equals("US-ASCII") || cs.equals("windows-1252");
+    }
+
     private void makeColumnNamesUnique() {
         for (int i = 0; i < columnNames.length; i++) {
             String x = columnNames[i];
@@ -339,7 +395,13 @@ public class Csv implements SimpleRowSource {
         list.toArray(columnNames);
     }
 
-    private boolean isSimpleColumnName(String columnName) {
+    /**
+     * Check if the column name only consists of letters, digits and underscores.
+     *
+     * @param columnName the column name
+     * @return true if it is a simple column name
+     */
+    boolean isSimpleColumnName(String columnName) {
         for (int i = 0; i < columnName.length(); i++) {
             char ch = columnName.charAt(i);
             if (i == 0) {
@@ -497,7 +559,13 @@ public class Csv implements SimpleRowSource {
         return s.equals(nullString) ? null : s;
     }
 
-    private String unEscape(String s) {
+    /**
+     * Remove the escape characters from a delimited value.
+     *
+     * @param s the value
+     * @return the value without escape characters
+     */
+    String unEscape(String s) {
         StringBuilder buff = new StringBuilder(s.length());
         int start = 0;
         char[] chars = null;
@@ -561,7 +629,14 @@ public class Csv implements SimpleRowSource {
         return row;
     }
 
-    private SQLException convertException(String message, Exception e) {
+    /**
+     * Create a SQL exception with the given cause.
+     *
+     * @param message the message
+     * @param e the cause
+     * @return the exception
+     */
+    SQLException convertException(String message, Exception e) {
         SQLException s = new SQLException(message, "CSV");
         //## Java 1.4 begin ##
         s.initCause(e);
@@ -0,0 +1,540 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.tools;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import org.h2.util.New;
+import org.h2.util.ObjectArray;
+
+/**
+ * Reads a CSV file that is stored on disk. The file is memory mapped chunk by
+ * chunk. Each chunk ends at a row boundary and is parsed by one of the reader
+ * threads, so that multiple chunks are parsed at the same time. The rows are
+ * returned in file order.
+ * <p>
+ * The parser accepts the same format as {@link Csv}, but only works for
+ * character sets where the special characters are encoded as one byte, and
+ * where such bytes are never part of other characters (for example UTF-8 and
+ * ISO-8859-1).
+ */
+class CsvMappedReader implements SimpleRowSource, Runnable {
+
+    /**
+     * Files smaller than this are read using a reader.
+     */
+    static final int MIN_LENGTH = 256 * 1024;
+
+    /**
+     * The approximate number of bytes parsed by one thread at a time.
+     */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final int FIELD_START = 0, UNQUOTED = 1, QUOTED = 2, AFTER_QUOTE = 3, COMMENT = 4;
+
+    private final Csv csv;
+    private final String fileName;
+    private final String charset;
+    private final int fieldSeparatorRead, fieldDelimiter, escapeCharacter, commentLineStart;
+    private final String nullString;
+    private final int threadCount;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long length;
+
+    /**
+     * The position of the next chunk within the file.
+     */
+    private long pos;
+
+    /**
+     * The chunks that are being parsed or are ready to be read, in file order.
+     */
+    private final LinkedList<Chunk> chunks = new LinkedList<Chunk>();
+    private int runningThreads;
+    private boolean closed;
+    private int columnCount;
+    private Chunk current;
+    private int currentRow;
+
+    CsvMappedReader(Csv csv, String fileName, String absoluteFileName, String charset, char fieldSeparatorRead,
+            char fieldDelimiter, char escapeCharacter, char commentLineStart, String nullString, int threadCount)
+            throws IOException {
+        this.csv = csv;
+        this.fileName = fileName;
+        this.charset = charset;
+        this.fieldSeparatorRead = fieldSeparatorRead;
+        this.fieldDelimiter = fieldDelimiter;
+        this.escapeCharacter = escapeCharacter;
+        this.commentLineStart = commentLineStart;
+        this.nullString = nullString;
+        this.threadCount = threadCount;
+        file = new RandomAccessFile(absoluteFileName, "r");
+        channel = file.getChannel();
+        length = channel.size();
+    }
+
+    /**
+     * Set the number of columns of each row.
+     *
+     * @param columnCount the column count
+     */
+    void setColumnCount(int columnCount) {
+        this.columnCount = columnCount;
+    }
+
+    /**
+     * Read the column names from the first (non-empty) row.
+     *
+     * @return the column names
+     */
+    String[] readHeader() throws IOException {
+        ArrayList<String> list = New.arrayList();
+        while (pos < length) {
+            Chunk c = readChunk(pos, 0);
+            pos += c.length;
+            Parser p = new Parser(c.data, c.length);
+            p.readRow(list);
+            if (list.size() > 0) {
+                break;
+            }
+        }
+        String[] columnNames = new String[list.size()];
+        for (int i = 0; i < columnNames.length; i++) {
+            String v = list.get(i);
+            if (v == null || v.length() == 0) {
+                v = "COLUMN" + i;
+            } else if (csv.isSimpleColumnName(v)) {
+                v = v.toUpperCase();
+            }
+            columnNames[i] = v;
+        }
+        closeFileIfDone();
+        return columnNames;
+    }
+
+    public Object[] readRow() throws SQLException {
+        while (true) {
+            if (current != null && currentRow < current.rows.size()) {
+                return current.rows.get(currentRow++);
+            }
+            current = nextParsedChunk();
+            currentRow = 0;
+            if (current == null) {
+                return null;
+            }
+        }
+    }
+
+    private synchronized Chunk nextParsedChunk() throws SQLException {
+        while (true) {
+            if (closed) {
+                return null;
+            }
+            startThreads();
+            if (chunks.size() == 0) {
+                if (pos >= length) {
+                    return null;
+                }
+            } else {
+                Chunk c = chunks.getFirst();
+                if (c.parsed) {
+                    chunks.removeFirst();
+                    if (c.exception != null) {
+                        throw csv.convertException("IOException reading " + fileName, c.exception);
+                    }
+                    return c;
+                }
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw csv.convertException("Interrupted reading " + fileName, e);
+            }
+        }
+    }
+
+    /**
+     * Start reader threads if there is more data to read and not enough
+     * chunks are buffered. A thread stops as soon as enough chunks are
+     * buffered, so that no thread is left waiting if not all rows are read.
+     */
+    private void startThreads() {
+        while (runningThreads < threadCount && pos < length && chunks.size() < threadCount * 2) {
+            Thread t = new Thread(this, "H2 CSV Reader");
+            t.setDaemon(true);
+            runningThreads++;
+            t.start();
+        }
+    }
+
+    /**
+     * INTERNAL
+     */
+    public void run() {
+        while (true) {
+            Chunk c;
+            synchronized (this) {
+                if (closed || pos >= length || chunks.size() >= threadCount * 2) {
+                    runningThreads--;
+                    notifyAll();
+                    return;
+                }
+                try {
+                    c = readChunk(pos, CHUNK_SIZE);
+                    pos += c.length;
+                } catch (IOException e) {
+                    c = new Chunk(null, 0);
+                    c.exception = e;
+                    pos = length;
+                }
+                chunks.add(c);
+                closeFileIfDone();
+            }
+            if (c.exception == null) {
+                try {
+                    c.parse();
+                } catch (Exception e) {
+                    c.exception = e;
+                }
+            }
+            synchronized (this) {
+                c.parsed = true;
+                notifyAll();
+            }
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+        chunks.clear();
+        current = null;
+        closeFile();
+        notifyAll();
+    }
+
+    /**
+     * INTERNAL
+     */
+    public void reset() throws SQLException {
+        throw new SQLException("Method is not supported", "CSV");
+    }
+
+    private void closeFileIfDone() {
+        if (pos >= length) {
+            closeFile();
+        }
+    }
+
+    private void closeFile() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            file = null;
+            channel = null;
+        }
+    }
+
+    /**
+     * Read the data starting at the given position up to and including the
+     * first line end that is at least minLength bytes after the start, and
+     * not within a quoted value.
+     *
+     * @param start the position in the file (at the start of a row)
+     * @param minLength the minimum number of bytes to read, if available
+     * @return the chunk
+     */
+    private Chunk readChunk(long start, int minLength) throws IOException {
+        long remaining = length - start;
+        int size = (int) Math.min(remaining, minLength + 64 * 1024);
+        while (true) {
+            ByteBuffer buff = channel.map(MapMode.READ_ONLY, start, size);
+            int end = findRowEnd(buff, size, minLength);
+            if (end >= 0) {
+                return new Chunk(buff, end);
+            } else if (size == remaining) {
+                return new Chunk(buff, size);
+            }
+            size = (int) Math.min(remaining, size * 2L);
+        }
+    }
+
+    /**
+     * Find the first row end after the given minimum length. This is a
+     * simplified version of the parser that only tracks whether the current
+     * position is within a delimited value or comment.
+     *
+     * @param d the data (starting at the beginning of a row)
+     * @param len the number of bytes
+     * @param minEnd the minimum end position
+     * @return the position after the line end character, or -1 if not found
+     */
+    private int findRowEnd(ByteBuffer d, int len, int minEnd) {
+        int state = FIELD_START;
+        for (int i = 0; i < len; i++) {
+            int ch = d.get(i) & 255;
+            boolean lineEnd = false;
+            switch (state) {
+            case FIELD_START:
+                if (ch == fieldDelimiter) {
+                    state = QUOTED;
+                } else if (ch == '\n' || ch == '\r') {
+                    lineEnd = true;
+                } else if (ch == fieldSeparatorRead || ch <= ' ') {
+                    // stay at the start of the field
+                } else if (ch == commentLineStart) {
+                    state = COMMENT;
+                } else {
+                    state = UNQUOTED;
+                }
+                break;
+            case UNQUOTED:
+                if (ch == fieldSeparatorRead) {
+                    state = FIELD_START;
+                } else if (ch == '\n' || ch == '\r') {
+                    lineEnd = true;
+                }
+                break;
+            case QUOTED:
+                if (ch == fieldDelimiter) {
+                    if (i + 1 < len && (d.get(i + 1) & 255) == fieldDelimiter) {
+                        i++;
+                    } else {
+                        state = AFTER_QUOTE;
+                    }
+                } else if (ch == escapeCharacter) {
+                    i++;
+                }
+                break;
+            case AFTER_QUOTE:
+                if (ch == fieldSeparatorRead) {
+                    state = FIELD_START;
+                } else if (ch == '\n' || ch == '\r') {
+                    lineEnd = true;
+                } else if (ch != ' ' && ch != '\t') {
+                    // the character is the start of the next value
+                    state = FIELD_START;
+                    i--;
+                }
+                break;
+            case COMMENT:
+                if (ch == '\n' || ch == '\r') {
+                    lineEnd = true;
+                }
+                break;
+            default:
+            }
+            if (lineEnd) {
+                if (i + 1 >= minEnd) {
+                    return i + 1;
+                }
+                state = FIELD_START;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A part of the file that ends at a row boundary. The data is the mapped
+     * part of the file; it is only referenced until the chunk is parsed.
+     */
+    private class Chunk {
+
+        ByteBuffer data;
+        final int length;
+        final ObjectArray<String[]> rows = ObjectArray.newInstance();
+        boolean parsed;
+        Exception exception;
+
+        Chunk(ByteBuffer data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+
+        /**
+         * Parse all rows of this chunk.
+         */
+        void parse() throws IOException {
+            Parser p = new Parser(data, length);
+            ArrayList<String> list = New.arrayList();
+            while (!p.isEnd()) {
+                list.clear();
+                p.readRow(list);
+                if (list.size() > 0) {
+                    String[] row = new String[columnCount];
+                    for (int i = 0; i < row.length && i < list.size(); i++) {
+                        row[i] = list.get(i);
+                    }
+                    rows.add(row);
+                }
+            }
+            data = null;
+        }
+
+    }
+
+    /**
+     * Parses the rows of a chunk. The rules are the same as in the reader
+     * based parser in {@link Csv}, and the end of the chunk is treated like
+     * the end of the file. The bytes are read from the mapped buffer; only the
+     * bytes of a value are copied, to convert them to a string.
+     */
+    private class Parser {
+
+        private final ByteBuffer data;
+        private final int len;
+        private int pos;
+        private boolean endOfLine;
+        private byte[] buff = new byte[64];
+
+        Parser(ByteBuffer data, int len) {
+            this.data = data;
+            this.len = len;
+        }
+
+        boolean isEnd() {
+            return pos >= len;
+        }
+
+        /**
+         * Read the values of the next row. Empty lines and comments result in
+         * an empty list.
+         *
+         * @param list the list to add the values to
+         */
+        void readRow(ArrayList<String> list) throws IOException {
+            while (true) {
+                String v = readValue();
+                if (v == null && endOfLine) {
+                    return;
+                }
+                list.add(v);
+                if (endOfLine) {
+                    return;
+                }
+            }
+        }
+
+        private int readChar() {
+            if (pos >= len) {
+                // ensure the right number of characters are read
+                pos++;
+                return -1;
+            }
+            return data.get(pos++) & 255;
+        }
+
+        private String readValue() throws IOException {
+            endOfLine = false;
+            int start = pos;
+            while (true) {
+                int ch = readChar();
+                if (ch == fieldDelimiter) {
+                    // delimited value
+                    boolean containsEscape = false;
+                    start = pos;
+                    int sep;
+                    while (true) {
+                        ch = readChar();
+                        if (ch == fieldDelimiter) {
+                            ch = readChar();
+                            if (ch != fieldDelimiter) {
+                                sep = 2;
+                                break;
+                            }
+                            containsEscape = true;
+                        } else if (ch == escapeCharacter) {
+                            ch = readChar();
+                            if (ch < 0) {
+                                sep = 1;
+                                break;
+                            }
+                            containsEscape = true;
+                        } else if (ch < 0) {
+                            sep = 1;
+                            break;
+                        }
+                    }
+                    String s = getString(start, pos - start - sep);
+                    if (containsEscape) {
+                        s = csv.unEscape(s);
+                    }
+                    while (true) {
+                        if (ch == fieldSeparatorRead) {
+                            break;
+                        } else if (ch == '\n' || ch < 0 || ch == '\r') {
+                            endOfLine = true;
+                            break;
+                        } else if (ch == ' ' || ch == '\t') {
+                            // ignore
+                        } else {
+                            pos--;
+                            break;
+                        }
+                        ch = readChar();
+                    }
+                    return s;
+                } else if (ch == '\n' || ch < 0 || ch == '\r') {
+                    endOfLine = true;
+                    return null;
+                } else if (ch == fieldSeparatorRead) {
+                    // null
+                    return null;
+                } else if (ch <= ' ') {
+                    // ignore spaces
+                    start = pos;
+                    continue;
+                } else if (ch == commentLineStart) {
+                    // comment until end of line
+                    while (true) {
+                        ch = readChar();
+                        if (ch == '\n' || ch < 0 || ch == '\r') {
+                            break;
+                        }
+                    }
+                    endOfLine = true;
+                    return null;
+                } else {
+                    // un-delimited value
+                    while (true) {
+                        ch = readChar();
+                        if (ch == fieldSeparatorRead) {
+                            break;
+                        } else if (ch == '\n' || ch < 0 || ch == '\r') {
+                            endOfLine = true;
+                            break;
+                        }
+                    }
+                    String s = getString(start, pos - start - 1).trim();
+                    // check un-delimited value for nullString
+                    return s.equals(nullString) ? null : s;
+                }
+            }
+        }
+
+        private String getString(int start, int count) throws IOException {
+            if (count > buff.length) {
+                buff = new byte[Math.max(count, buff.length * 2)];
+            }
+            data.position(start);
+            data.get(buff, 0, count);
+            return new String(buff, 0, count, charset);
+        }
+
+    }
+
+}
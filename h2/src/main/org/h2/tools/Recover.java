@@ -806,7 +806,7 @@ public class Recover extends Tool implements DataHandler {
     private void dumpPageStore(String fileName) {
         setDatabaseName(fileName.substring(0, fileName.length() - Constants.SUFFIX_PAGE_FILE.length()));
         PrintWriter writer = null;
-        int[] pageTypeCount = new int[Page.TYPE_STREAM_DATA + 2];
+        int[] pageTypeCount = new int[Page.TYPE_HASH_BUCKET + 2];
         int emptyPages = 0;
         pageDataEmpty = 0;
         pageDataRows = 0;
@@ -966,6 +966,18 @@ public class Recover extends Tool implements DataHandler {
                     pageTypeCount[type]++;
                     writer.println("-- page " + page + ": log data");
                     break;
+                // type 9
+                case Page.TYPE_HASH_DIRECTORY:
+                    pageTypeCount[type]++;
+                    writer.println("-- page " + page + ": hash directory parent: " + s.readInt() +
+                            " index: " + s.readVarInt());
+                    break;
+                // type 10
+                case Page.TYPE_HASH_BUCKET:
+                    pageTypeCount[type]++;
+                    writer.println("-- page " + page + ": hash bucket parent: " + s.readInt() +
+                            " index: " + s.readVarInt());
+                    break;
                 default:
                     writer.println("-- ERROR page " + page + " unknown type " + type);
                     break;
@@ -1052,6 +1064,12 @@ public class Recover extends Tool implements DataHandler {
                 case Page.TYPE_STREAM_DATA:
                     typeName = "log data";
                     break;
+                case Page.TYPE_HASH_DIRECTORY:
+                    typeName = "hash directory";
+                    break;
+                case Page.TYPE_HASH_BUCKET:
+                    typeName = "hash bucket";
+                    break;
                 default:
                     typeName = "ERROR: unknown type " + type;
                     break;
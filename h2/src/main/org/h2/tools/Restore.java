@@ -14,8 +14,10 @@ import java.sql.SQLException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import org.h2.engine.Constants;
 import org.h2.message.Message;
 import org.h2.store.FileLister;
+import org.h2.store.PageChangeMap;
 import org.h2.util.FileUtils;
 import org.h2.util.IOUtils;
 import org.h2.util.Tool;
@@ -173,7 +175,12 @@ public class Restore extends Tool {
                     fileName = db + fileName.substring(originalDbLen);
                     copy = true;
                 }
-                if (copy) {
+                if (copy && fileName.endsWith(Constants.SUFFIX_INCREMENTAL_FILE)) {
+                    // apply the changed pages to the restored database file
+                    String pageFileName = fileName.substring(0, fileName.length()
+                            - Constants.SUFFIX_INCREMENTAL_FILE.length()) + Constants.SUFFIX_PAGE_FILE;
+                    PageChangeMap.applyIncremental(zipIn, directory + File.separator + pageFileName);
+                } else if (copy) {
                     OutputStream out = null;
                     try {
                         out = FileUtils.openFileOutputStream(directory + File.separator + fileName, false);
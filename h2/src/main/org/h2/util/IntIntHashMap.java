@@ -44,6 +44,7 @@ public class IntIntHashMap extends HashBase {
         if (key == 0) {
             zeroKey = true;
             zeroValue = value;
+            return;
         }
         try {
             checkSizePut();
@@ -0,0 +1,570 @@
+/*
+ * Copyright 2004-2009 H2 Group. Multiple-Licensed under the H2 License,
+ * Version 1.0, and under the Eclipse Public License, Version 1.0
+ * (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.util;
+
+/**
+ * A compressed set of long values, for example row keys. The values are
+ * grouped by their upper 48 bits. Each group (container) stores the lower 16
+ * bits either as a sorted array (if there are at most 4096 values), or as a
+ * bit set of 65536 bits. This is the format of 'roaring' bitmaps: it needs
+ * little memory for both sparse and dense sets, and the set operations work on
+ * whole containers.
+ */
+public class RoaringBitmap {
+
+    /**
+     * The maximum number of values of an array container.
+     */
+    private static final int ARRAY_MAX = 4096;
+
+    /**
+     * The number of long words of a bit set container.
+     */
+    private static final int WORDS = 1024;
+
+    private long[] highs = new long[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    /**
+     * A container for the values with the same upper 48 bits.
+     */
+    private static final class Container {
+
+        /**
+         * The sorted values, or null if this is a bit set container.
+         */
+        char[] array;
+
+        /**
+         * The bit set, or null if this is an array container.
+         */
+        long[] bits;
+
+        /**
+         * The number of values.
+         */
+        int count;
+
+        static Container newArray(char[] array, int count) {
+            Container c = new Container();
+            c.array = array;
+            c.count = count;
+            return c;
+        }
+
+        /**
+         * Create a container from a bit set. If there are only few values,
+         * an array container is created.
+         *
+         * @param bits the bit set
+         * @return the container, or null if it would be empty
+         */
+        static Container newBits(long[] bits) {
+            int count = 0;
+            for (long w : bits) {
+                count += Long.bitCount(w);
+            }
+            if (count == 0) {
+                return null;
+            }
+            Container c = new Container();
+            c.count = count;
+            if (count > ARRAY_MAX) {
+                c.bits = bits;
+            } else {
+                c.array = toArray(bits, count);
+            }
+            return c;
+        }
+
+        boolean contains(int low) {
+            if (bits != null) {
+                return (bits[low >>> 6] & (1L << low)) != 0;
+            }
+            return binarySearch(array, count, low) >= 0;
+        }
+
+        long[] toBits() {
+            if (bits != null) {
+                long[] b = new long[WORDS];
+                System.arraycopy(bits, 0, b, 0, WORDS);
+                return b;
+            }
+            long[] b = new long[WORDS];
+            for (int i = 0; i < count; i++) {
+                int low = array[i];
+                b[low >>> 6] |= 1L << low;
+            }
+            return b;
+        }
+
+        Container copy() {
+            Container c = new Container();
+            c.count = count;
+            if (bits != null) {
+                c.bits = toBits();
+            } else {
+                c.array = new char[count];
+                System.arraycopy(array, 0, c.array, 0, count);
+            }
+            return c;
+        }
+
+        /**
+         * Get the first value that is larger or equal than the given value.
+         *
+         * @param low the lower 16 bits of the value
+         * @return the lower 16 bits, or -1 if there is no such value
+         */
+        int next(int low) {
+            if (bits == null) {
+                int i = binarySearch(array, count, low);
+                if (i < 0) {
+                    i = -i - 1;
+                }
+                return i < count ? array[i] : -1;
+            }
+            int w = low >>> 6;
+            if (w >= WORDS) {
+                return -1;
+            }
+            long word = bits[w] & (-1L << low);
+            while (true) {
+                if (word != 0) {
+                    return (w << 6) + Long.numberOfTrailingZeros(word);
+                }
+                if (++w == WORDS) {
+                    return -1;
+                }
+                word = bits[w];
+            }
+        }
+    }
+
+    /**
+     * An iterator over the values, in ascending order.
+     */
+    public class LongIterator {
+
+        private int index;
+        private int low;
+        private long high;
+        private int next = -1;
+
+        LongIterator() {
+            fetch();
+        }
+
+        private void fetch() {
+            while (index < size) {
+                next = containers[index].next(low);
+                if (next >= 0) {
+                    high = highs[index];
+                    return;
+                }
+                index++;
+                low = 0;
+            }
+            next = -1;
+        }
+
+        /**
+         * Check if there are more values.
+         *
+         * @return true if there are
+         */
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        /**
+         * Get the next value.
+         *
+         * @return the value
+         */
+        public long next() {
+            long x = (high << 16) | next;
+            low = next + 1;
+            fetch();
+            return x;
+        }
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param x the value
+     * @return true if it was added, false if it was already in the set
+     */
+    public boolean add(long x) {
+        long high = x >> 16;
+        int low = (int) x & 0xffff;
+        int i = find(high);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, high, Container.newArray(new char[4], 0));
+        }
+        Container c = containers[i];
+        if (c.bits != null) {
+            long mask = 1L << low;
+            int w = low >>> 6;
+            if ((c.bits[w] & mask) != 0) {
+                return false;
+            }
+            c.bits[w] |= mask;
+            c.count++;
+            return true;
+        }
+        int j = binarySearch(c.array, c.count, low);
+        if (j >= 0) {
+            return false;
+        }
+        j = -j - 1;
+        if (c.count == ARRAY_MAX) {
+            c.bits = c.toBits();
+            c.array = null;
+            c.bits[low >>> 6] |= 1L << low;
+            c.count++;
+            return true;
+        }
+        if (c.count == c.array.length) {
+            char[] a = new char[Math.min(ARRAY_MAX, c.count * 2)];
+            System.arraycopy(c.array, 0, a, 0, c.count);
+            c.array = a;
+        }
+        System.arraycopy(c.array, j, c.array, j + 1, c.count - j);
+        c.array[j] = (char) low;
+        c.count++;
+        return true;
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param x the value
+     * @return true if it was removed, false if it was not in the set
+     */
+    public boolean remove(long x) {
+        int i = find(x >> 16);
+        if (i < 0) {
+            return false;
+        }
+        int low = (int) x & 0xffff;
+        Container c = containers[i];
+        if (c.bits != null) {
+            long mask = 1L << low;
+            int w = low >>> 6;
+            if ((c.bits[w] & mask) == 0) {
+                return false;
+            }
+            c.bits[w] &= ~mask;
+            c.count--;
+            if (c.count < ARRAY_MAX / 2) {
+                // not converted at ARRAY_MAX, so that adding and removing
+                // the same value doesn't convert the container each time
+                c.array = toArray(c.bits, c.count);
+                c.bits = null;
+            }
+        } else {
+            int j = binarySearch(c.array, c.count, low);
+            if (j < 0) {
+                return false;
+            }
+            System.arraycopy(c.array, j + 1, c.array, j, c.count - j - 1);
+            c.count--;
+        }
+        if (c.count == 0) {
+            System.arraycopy(highs, i + 1, highs, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Check if the set contains a value.
+     *
+     * @param x the value
+     * @return true if it does
+     */
+    public boolean contains(long x) {
+        int i = find(x >> 16);
+        return i >= 0 && containers[i].contains((int) x & 0xffff);
+    }
+
+    /**
+     * Get the number of values.
+     *
+     * @return the number of values
+     */
+    public long getCardinality() {
+        long count = 0;
+        for (int i = 0; i < size; i++) {
+            count += containers[i].count;
+        }
+        return count;
+    }
+
+    /**
+     * Check if the set is empty.
+     *
+     * @return true if it is
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Create a copy of this set.
+     *
+     * @return the copy
+     */
+    public RoaringBitmap copy() {
+        RoaringBitmap r = new RoaringBitmap();
+        for (int i = 0; i < size; i++) {
+            r.insert(i, highs[i], containers[i].copy());
+        }
+        return r;
+    }
+
+    /**
+     * Get an iterator over the values. The set must not be changed while
+     * iterating.
+     *
+     * @return the iterator
+     */
+    public LongIterator iterator() {
+        return new LongIterator();
+    }
+
+    /**
+     * Calculate the intersection of this and another set.
+     *
+     * @param other the other set
+     * @return a new set with the values that are in both sets
+     */
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap r = new RoaringBitmap();
+        for (int i = 0, j = 0; i < size && j < other.size;) {
+            long a = highs[i], b = other.highs[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                r.append(a, and(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Calculate the union of this and another set.
+     *
+     * @param other the other set
+     * @return a new set with the values that are in one of the sets
+     */
+    public RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap r = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            long a = i < size ? highs[i] : Long.MAX_VALUE;
+            long b = j < other.size ? other.highs[j] : Long.MAX_VALUE;
+            if (j >= other.size || (i < size && a < b)) {
+                r.append(a, containers[i++].copy());
+            } else if (i >= size || b < a) {
+                r.append(b, other.containers[j++].copy());
+            } else {
+                r.append(a, or(containers[i++], other.containers[j++]));
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Calculate the difference of this and another set.
+     *
+     * @param other the other set
+     * @return a new set with the values of this set that are not in the other
+     *         set
+     */
+    public RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap r = new RoaringBitmap();
+        for (int i = 0, j = 0; i < size; i++) {
+            long a = highs[i];
+            while (j < other.size && other.highs[j] < a) {
+                j++;
+            }
+            if (j < other.size && other.highs[j] == a) {
+                r.append(a, andNot(containers[i], other.containers[j]));
+            } else {
+                r.append(a, containers[i].copy());
+            }
+        }
+        return r;
+    }
+
+    private static Container and(Container a, Container b) {
+        if (a.bits != null && b.bits != null) {
+            long[] bits = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                bits[i] = a.bits[i] & b.bits[i];
+            }
+            return Container.newBits(bits);
+        }
+        if (a.bits != null || (b.bits == null && b.count < a.count)) {
+            Container t = a;
+            a = b;
+            b = t;
+        }
+        // a is an array container
+        char[] array = new char[a.count];
+        int count = 0;
+        for (int i = 0; i < a.count; i++) {
+            if (b.contains(a.array[i])) {
+                array[count++] = a.array[i];
+            }
+        }
+        return count == 0 ? null : Container.newArray(array, count);
+    }
+
+    private static Container or(Container a, Container b) {
+        if (a.bits == null && b.bits == null && a.count + b.count <= ARRAY_MAX) {
+            char[] array = new char[a.count + b.count];
+            int i = 0, j = 0, count = 0;
+            while (i < a.count || j < b.count) {
+                int x = i < a.count ? a.array[i] : Integer.MAX_VALUE;
+                int y = j < b.count ? b.array[j] : Integer.MAX_VALUE;
+                if (x <= y) {
+                    i++;
+                    if (x == y) {
+                        j++;
+                    }
+                    array[count++] = (char) x;
+                } else {
+                    j++;
+                    array[count++] = (char) y;
+                }
+            }
+            return Container.newArray(array, count);
+        }
+        long[] bits = a.toBits();
+        if (b.bits != null) {
+            for (int i = 0; i < WORDS; i++) {
+                bits[i] |= b.bits[i];
+            }
+        } else {
+            for (int i = 0; i < b.count; i++) {
+                int low = b.array[i];
+                bits[low >>> 6] |= 1L << low;
+            }
+        }
+        return Container.newBits(bits);
+    }
+
+    private static Container andNot(Container a, Container b) {
+        if (a.bits == null) {
+            char[] array = new char[a.count];
+            int count = 0;
+            for (int i = 0; i < a.count; i++) {
+                if (!b.contains(a.array[i])) {
+                    array[count++] = a.array[i];
+                }
+            }
+            return count == 0 ? null : Container.newArray(array, count);
+        }
+        long[] bits = a.toBits();
+        if (b.bits != null) {
+            for (int i = 0; i < WORDS; i++) {
+                bits[i] &= ~b.bits[i];
+            }
+        } else {
+            for (int i = 0; i < b.count; i++) {
+                int low = b.array[i];
+                bits[low >>> 6] &= ~(1L << low);
+            }
+        }
+        return Container.newBits(bits);
+    }
+
+    /**
+     * Add a container after the last container.
+     *
+     * @param high the upper 48 bits
+     * @param c the container, or null if it is empty
+     */
+    private void append(long high, Container c) {
+        if (c != null) {
+            insert(size, high, c);
+        }
+    }
+
+    private void insert(int i, long high, Container c) {
+        if (size == highs.length) {
+            long[] h = new long[size * 2];
+            Container[] cs = new Container[size * 2];
+            System.arraycopy(highs, 0, h, 0, size);
+            System.arraycopy(containers, 0, cs, 0, size);
+            highs = h;
+            containers = cs;
+        }
+        System.arraycopy(highs, i, highs, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        highs[i] = high;
+        containers[i] = c;
+        size++;
+    }
+
+    private int find(long high) {
+        int l = 0, r = size - 1;
+        while (l <= r) {
+            int m = (l + r) >>> 1;
+            long x = highs[m];
+            if (x < high) {
+                l = m + 1;
+            } else if (x > high) {
+                r = m - 1;
+            } else {
+                return m;
+            }
+        }
+        return -(l + 1);
+    }
+
+    private static int binarySearch(char[] array, int count, int low) {
+        int l = 0, r = count - 1;
+        while (l <= r) {
+            int m = (l + r) >>> 1;
+            int x = array[m];
+            if (x < low) {
+                l = m + 1;
+            } else if (x > low) {
+                r = m - 1;
+            } else {
+                return m;
+            }
+        }
+        return -(l + 1);
+    }
+
+    private static char[] toArray(long[] bits, int count) {
+        char[] array = new char[count];
+        int j = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                array[j++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+}
@@ -9,6 +9,8 @@ package org.h2.value;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -31,6 +33,7 @@ import org.h2.engine.Constants;
 import org.h2.engine.SessionInterface;
 import org.h2.message.Message;
 import org.h2.message.TraceSystem;
+import org.h2.tools.CompressTool;
 import org.h2.tools.SimpleResultSet;
 import org.h2.util.ExactUTF8InputStreamReader;
 import org.h2.util.IOUtils;
@@ -52,6 +55,11 @@ public class Transfer {
     private DataOutputStream out;
     private SessionInterface session;
     private boolean ssl;
+    private boolean compressBlocks;
+    private CompressTool compressTool;
+    private DataInputStream socketIn;
+    private DataOutputStream socketOut;
+    private ByteArrayOutputStream blockBuffer;
 
     /**
      * Create a new transfer object for the specified session.
@@ -80,6 +88,77 @@ public class Transfer {
         out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Transfer.BUFFER_SIZE));
     }
 
+    /**
+     * Enable or disable LZF compression of blocks. Both sides of the
+     * connection need to use the same setting.
+     *
+     * @param compressBlocks the new value
+     */
+    public void setCompressBlocks(boolean compressBlocks) {
+        this.compressBlocks = compressBlocks;
+        if (compressBlocks && compressTool == null) {
+            compressTool = CompressTool.getInstance();
+        }
+    }
+
+    /**
+     * Check if blocks are compressed.
+     *
+     * @return true if they are
+     */
+    public boolean getCompressBlocks() {
+        return compressBlocks;
+    }
+
+    /**
+     * Start writing a block. If block compression is enabled, all data is
+     * buffered until the block is ended.
+     */
+    public void startWriteBlock() {
+        if (compressBlocks) {
+            socketOut = out;
+            blockBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
+            out = new DataOutputStream(blockBuffer);
+        }
+    }
+
+    /**
+     * End writing a block. If block compression is enabled, the buffered data
+     * is compressed and written.
+     */
+    public void endWriteBlock() throws IOException, SQLException {
+        if (compressBlocks) {
+            out.flush();
+            byte[] data = blockBuffer.toByteArray();
+            blockBuffer = null;
+            out = socketOut;
+            socketOut = null;
+            writeBytes(compressTool.compress(data, "LZF"));
+        }
+    }
+
+    /**
+     * Start reading a block. If block compression is enabled, the complete
+     * block is read and expanded.
+     */
+    public void startReadBlock() throws IOException, SQLException {
+        if (compressBlocks) {
+            byte[] data = compressTool.expand(readBytes());
+            socketIn = in;
+            in = new DataInputStream(new ByteArrayInputStream(data));
+        }
+    }
+
+    /**
+     * End reading a block. Data of the block that was not read is skipped.
+     */
+    public void endReadBlock() {
+        if (compressBlocks) {
+            in = socketIn;
+            socketIn = null;
+        }
+    }
+
     /**
      * Write pending changes.
      */
@@ -7,6 +7,7 @@
 package org.h2.test.db;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -36,6 +37,7 @@ public class TestBackup extends TestBase {
         testBackupRestoreLobStatement();
         testBackupRestoreLob();
         testBackup();
+        testIncrementalBackup();
         deleteDb("backup");
     }
 
@@ -93,4 +95,58 @@ public class TestBackup extends TestBase {
         FileUtils.delete(baseDir + "/backup.zip");
     }
 
+    private void testIncrementalBackup() throws SQLException {
+        if (!config.pageStore) {
+            return;
+        }
+        deleteDb("backup");
+        deleteDb("restored");
+        String full = baseDir + "/backupFull.zip";
+        String inc1 = baseDir + "/backupInc1.zip";
+        String inc2 = baseDir + "/backupInc2.zip";
+        Connection conn = getConnection("backup");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar(255))");
+        stat.execute("insert into test select x, space(100) from system_range(1, 10000)");
+        stat.execute("backup to '" + full + "'");
+        stat.execute("update test set name = 'changed' where id = 5000");
+        stat.execute("insert into test values(10001, 'new')");
+        stat.execute("backup to '" + inc1 + "' incremental");
+        assertSmaller(FileUtils.length(inc1), FileUtils.length(full));
+        conn.close();
+
+        // the change map is kept while the database is closed
+        conn = getConnection("backup");
+        stat = conn.createStatement();
+        stat.execute("delete from test where id > 9000");
+        stat.execute("create table test2(id int) as select 1");
+        stat.execute("backup to '" + inc2 + "' incremental");
+        assertSmaller(FileUtils.length(inc2), FileUtils.length(full));
+
+        Restore.execute(full, baseDir, "restored", true);
+        Restore.execute(inc1, baseDir, "restored", true);
+        Restore.execute(inc2, baseDir, "restored", true);
+        Connection conn2 = getConnection("restored");
+        Statement stat2 = conn2.createStatement();
+        assertEqualDatabases(stat, stat2);
+        ResultSet rs = stat2.executeQuery("select name from test where id = 5000");
+        rs.next();
+        assertEquals("changed", rs.getString(1));
+        conn2.close();
+        conn.close();
+
+        // after a restore, the first incremental backup contains all pages
+        deleteDb("restored");
+        Restore.execute(full, baseDir, "restored", true);
+        conn = getConnection("restored");
+        conn.createStatement().execute("backup to '" + inc1 + "' incremental");
+        conn.close();
+        assertTrue(FileUtils.length(inc1) > FileUtils.length(full) / 2);
+
+        deleteDb("restored");
+        FileUtils.delete(full);
+        FileUtils.delete(inc1);
+        FileUtils.delete(inc2);
+    }
+
 }
@@ -7,6 +7,7 @@
 package org.h2.test.db;
 
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -15,6 +16,7 @@ import java.util.ArrayList;
 
 import org.h2.store.FileLister;
 import org.h2.test.TestBase;
+import org.h2.tools.Server;
 
 /**
  * Test for big result sets.
@@ -34,14 +36,123 @@ public class TestBigResult extends TestBase {
         if (config.memory) {
             return;
         }
+        testMaxTempMemory();
         testLargeSubquery();
         testLargeUpdateDelete();
         testCloseConnectionDelete();
         testOrderGroup();
         testLimitBufferedResult();
+        testRemoteResult(false);
+        testRemoteResult(true);
         deleteDb("bigResult");
     }
 
+    private void testMaxTempMemory() throws SQLException {
+        deleteDb("bigResult");
+        Connection conn = getConnection("bigResult");
+        Statement stat = conn.createStatement();
+        stat.execute("set max_memory_rows 1000000");
+        stat.execute("set max_memory_undo 1000000");
+        stat.execute("create table test(id int primary key, name varchar)");
+        stat.execute("insert into test select x, space(100) from system_range(1, 20000)");
+        assertEquals(0, getTempMemorySpills(stat));
+
+        // the limit is shared by all sessions and operations
+        stat.execute("set max_temp_memory 256");
+        ResultSet rs = stat.executeQuery("select id from test order by id desc");
+        for (int i = 20000; i > 0; i--) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        // after the first spill, the rows are written to disk in blocks
+        // without asking again
+        assertEquals(1, getTempMemorySpills(stat));
+        rs = stat.executeQuery("select distinct name || id from test");
+        int count = 0;
+        while (rs.next()) {
+            count++;
+        }
+        assertEquals(20000, count);
+        int spills = getTempMemorySpills(stat);
+        assertTrue(spills > 0);
+
+        // the undo log
+        conn.setAutoCommit(false);
+        stat.execute("delete from test");
+        assertTrue(getTempMemorySpills(stat) > spills);
+        conn.rollback();
+        conn.setAutoCommit(true);
+        rs = stat.executeQuery("select count(*) from test");
+        rs.next();
+        assertEquals(20000, rs.getInt(1));
+
+        // nothing is used while no operation is running
+        rs = stat.executeQuery("select temp_memory from information_schema.sessions");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+
+        stat.execute("set max_temp_memory 0");
+        spills = getTempMemorySpills(stat);
+        stat.execute("update test set name = 'x' || name");
+        rs = stat.executeQuery("select id from test order by id desc");
+        while (rs.next()) {
+            // ignore
+        }
+        assertEquals(spills, getTempMemorySpills(stat));
+        conn.close();
+    }
+
+    private int getTempMemorySpills(Statement stat) throws SQLException {
+        ResultSet rs = stat.executeQuery("select value from information_schema.settings " +
+                "where name = 'info.TEMP_MEMORY_SPILLS'");
+        rs.next();
+        return rs.getInt(1);
+    }
+
+    private void testRemoteResult(boolean compress) throws SQLException {
+        deleteDb("bigResult");
+        Server server = Server.createTcpServer("-tcpPort", "9193").start();
+        try {
+            String url = "jdbc:h2:tcp://localhost:9193/" + baseDir + "/bigResult";
+            if (compress) {
+                url += ";COMPRESS_TRANSFER=TRUE";
+            }
+            Connection conn = DriverManager.getConnection(url, "sa", "sa");
+            Statement stat = conn.createStatement();
+            int len = getSize(1000, 10000);
+            stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, NAME VARCHAR)");
+            stat.execute("INSERT INTO TEST SELECT X, SPACE(X / 100) || 'Hello' FROM SYSTEM_RANGE(1, " + len + ")");
+            Statement stat2 = conn.createStatement();
+            stat.setFetchSize(7);
+            stat2.setFetchSize(11);
+            ResultSet rs = stat.executeQuery("SELECT * FROM TEST ORDER BY ID");
+            ResultSet rs2 = stat2.executeQuery("SELECT ID FROM TEST ORDER BY ID DESC");
+            for (int i = 1; i <= len; i++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+                assertEquals("Hello", rs.getString(2).trim());
+                assertTrue(rs2.next());
+                assertEquals(len + 1 - i, rs2.getInt(1));
+                if (i % 100 == 0) {
+                    ResultSet rs3 = conn.createStatement().executeQuery("SELECT COUNT(*) FROM TEST");
+                    rs3.next();
+                    assertEquals(len, rs3.getInt(1));
+                }
+            }
+            assertFalse(rs.next());
+            assertFalse(rs2.next());
+            // close while rows are requested but not read yet
+            rs = stat.executeQuery("SELECT * FROM TEST");
+            rs.next();
+            rs.close();
+            stat.execute("DROP TABLE TEST");
+            conn.close();
+        } finally {
+            server.stop();
+        }
+    }
+
     private void testLargeSubquery() throws SQLException {
         deleteDb("bigResult");
         Connection conn = getConnection("bigResult");
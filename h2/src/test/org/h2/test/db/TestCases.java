@@ -35,6 +35,7 @@ public class TestCases extends TestBase {
     }
 
     public void test() throws Exception {
+        testCloneTable();
         testOrderByWithSubselect();
         testInsertDeleteRollback();
         testLargeRollback();
@@ -49,6 +50,7 @@ public class TestCases extends TestBase {
         if (config.memory || config.logMode == 0) {
             return;
         }
+        testOnlineCompact();
         testDeleteAndDropTableWithLobs(true);
         testDeleteAndDropTableWithLobs(false);
         testEmptyBtreeIndex();
@@ -76,6 +78,80 @@ public class TestCases extends TestBase {
         deleteDb("cases");
     }
 
+    private void testCloneTable() throws SQLException {
+        deleteDb("cases");
+        Connection conn = getConnection("cases");
+        Statement stat = conn.createStatement();
+        stat.execute("create table parent(id int primary key, name varchar)");
+        stat.execute("insert into parent select x, 'p' || x from system_range(1, 10)");
+        stat.execute("create table test(id identity, pid int references parent(id), " +
+                "name varchar default 'x', len int as length(name), check (pid >= 0))");
+        stat.execute("create index idx_name on test(name)");
+        stat.execute("insert into test(pid, name) select mod(x, 10) + 1, 'Hello ' || x from system_range(1, 1000)");
+        stat.execute("create table test2 clone of test");
+        ResultSet rs = stat.executeQuery("select count(*) from (select * from test except select * from test2)");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        rs = stat.executeQuery("select count(*), max(id), sum(len) from test2");
+        rs.next();
+        assertEquals(1000, rs.getInt(1));
+        assertEquals(1000, rs.getInt(2));
+        stat.execute("insert into test2(pid) values(1)");
+        rs = stat.executeQuery("select id, name, len from test2 where id > 1000");
+        rs.next();
+        assertEquals(1001, rs.getInt(1));
+        assertEquals("x", rs.getString(2));
+        assertEquals(1, rs.getInt(3));
+        stat.execute("delete from test2 where id < 500");
+        rs = stat.executeQuery("select count(*) from test");
+        rs.next();
+        assertEquals(1000, rs.getInt(1));
+        try {
+            stat.execute("insert into test2(pid) values(11)");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        try {
+            stat.execute("insert into test2(id, pid) values(1001, 1)");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        rs = stat.executeQuery("select count(*) from information_schema.indexes " +
+                "where table_name = 'TEST2' and index_name like 'IDX_NAME%'");
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+        try {
+            stat.execute("create table test2 clone of test");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        stat.execute("create table if not exists test2 clone of test");
+        stat.execute("drop table test");
+        stat.execute("create schema s2 clone of public");
+        rs = stat.executeQuery("select count(*) from s2.test2");
+        rs.next();
+        assertEquals(502, rs.getInt(1));
+        rs = stat.executeQuery("select pktable_schema from information_schema.cross_references " +
+                "where fktable_schema = 'S2'");
+        assertTrue(rs.next());
+        assertEquals("S2", rs.getString(1));
+        assertFalse(rs.next());
+        stat.execute("drop table test2");
+        conn.close();
+        if (!config.memory) {
+            conn = getConnection("cases");
+            stat = conn.createStatement();
+            rs = stat.executeQuery("select count(*) from s2.test2");
+            rs.next();
+            assertEquals(502, rs.getInt(1));
+            stat.execute("insert into s2.test2(pid) values(2)");
+            conn.close();
+        }
+    }
+
     private void testInsertDeleteRollback() throws SQLException {
         deleteDb("cases");
         Connection conn = getConnection("cases");
@@ -249,6 +325,53 @@ public class TestCases extends TestBase {
         conn.close();
     }
 
+    private void testOnlineCompact() throws Exception {
+        if (!config.pageStore) {
+            return;
+        }
+        deleteDb("cases");
+        Connection conn = getConnection("cases");
+        Statement stat = conn.createStatement();
+        stat.execute("create table a(id int primary key, data varchar)");
+        stat.execute("insert into a select x, space(500) from system_range(1, 2000)");
+        stat.execute("create table b(id int primary key, data varchar)");
+        stat.execute("create index idx_b on b(data)");
+        stat.execute("insert into b select x, 'b' || x || space(100) from system_range(1, 2000)");
+        stat.execute("drop table a");
+        stat.execute("checkpoint");
+        int pageCount = getSetting(stat, "info.PAGE_COUNT");
+        stat.execute("set compact_rate 100000");
+        for (int i = 0; i < 100 && getSetting(stat, "info.COMPACT_PAGES_TRUNCATED") == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(getSetting(stat, "info.COMPACT_PAGES_MOVED") > 0);
+        assertTrue(getSetting(stat, "info.COMPACT_PAGES_TRUNCATED") > 0);
+        assertSmaller(getSetting(stat, "info.PAGE_COUNT"), pageCount);
+        stat.execute("insert into b select x, 'b' || x || space(100) from system_range(2001, 2100)");
+        ResultSet rs = stat.executeQuery("select count(*), sum(length(data)) from b where data like 'b%'");
+        rs.next();
+        assertEquals(2100, rs.getInt(1));
+        conn.close();
+        conn = getConnection("cases");
+        stat = conn.createStatement();
+        rs = stat.executeQuery("select value from information_schema.settings where name = 'COMPACT_RATE'");
+        rs.next();
+        assertEquals("100000", rs.getString(1));
+        stat.execute("set compact_rate 0");
+        rs = stat.executeQuery("select count(*), min(id), max(id) from b where data like 'b%'");
+        rs.next();
+        assertEquals(2100, rs.getInt(1));
+        assertEquals(1, rs.getInt(2));
+        assertEquals(2100, rs.getInt(3));
+        conn.close();
+    }
+
+    private int getSetting(Statement stat, String name) throws SQLException {
+        ResultSet rs = stat.executeQuery("select value from information_schema.settings where name = '" + name + "'");
+        rs.next();
+        return Integer.parseInt(rs.getString(1));
+    }
+
     private void testDeleteGroup() throws SQLException {
         deleteDb("cases");
         Connection conn = getConnection("cases");
@@ -8,7 +8,9 @@ package org.h2.test.db;
 
 import java.io.File;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
+import java.io.Writer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -17,6 +19,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Random;
+import org.h2.constant.ErrorCode;
 import org.h2.store.fs.FileObject;
 import org.h2.store.fs.FileSystem;
 import org.h2.test.TestBase;
@@ -45,6 +48,8 @@ public class TestCsv extends TestBase {
     }
 
     public void test() throws Exception {
+        testReadParallel();
+        testLoadData();
         testColumnNames();
         testSpaceSeparated();
         testNull();
@@ -58,6 +63,168 @@ public class TestCsv extends TestBase {
         deleteDb("csv");
     }
 
+    private void testReadParallel() throws Exception {
+        deleteDb("csv");
+        String fileName = baseDir + "/testParallel.csv";
+        FileUtils.delete(fileName);
+        int len = getSize(20000, 100000);
+        StringBuilder buff = new StringBuilder();
+        buff.append("\n# header follows\nId,Name,x\n");
+        Random random = new Random(1);
+        for (int i = 0; i < len; i++) {
+            int type = random.nextInt(8);
+            buff.append(i).append(',');
+            switch (type) {
+            case 0:
+                buff.append("\"multi\nline,\r\n\"\"quoted\"\"\"");
+                break;
+            case 1:
+                buff.append("  \u00e4\u20ac ").append(i).append(' ');
+                break;
+            case 2:
+                buff.append("\"\"   ");
+                break;
+
+            default:
+                buff.append("Hello ").append(i);
+            }
+            buff.append(",").append(i % 3 == 0 ? "" : "x");
+            buff.append(i % 5 == 0 ? "\r\n" : "\n");
+            if (type == 3) {
+                buff.append("# comment, \"not quoted\n\n");
+            }
+        }
+        Writer w = new OutputStreamWriter(FileUtils.openFileOutputStream(fileName, false), "UTF-8");
+        w.write(buff.toString());
+        w.close();
+        ResultSet expected = Csv.getInstance().read(new StringReader(buff.toString()), null);
+        ResultSet rs = Csv.getInstance().read(fileName, null, "UTF-8");
+        assertEquals(3, rs.getMetaData().getColumnCount());
+        assertEquals("ID", rs.getMetaData().getColumnLabel(1));
+        assertEquals("NAME", rs.getMetaData().getColumnLabel(2));
+        int rowCount = 0;
+        while (expected.next()) {
+            assertTrue(rs.next());
+            for (int i = 1; i <= 3; i++) {
+                assertEquals(expected.getString(i), rs.getString(i));
+            }
+            rowCount++;
+        }
+        assertFalse(rs.next());
+        Connection conn = getConnection("csv");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar, x varchar) as " +
+                "select * from csvread('" + fileName + "', null, 'UTF-8')");
+        ResultSet rs2 = stat.executeQuery("select count(*), count(distinct id), count(x) from test");
+        rs2.next();
+        assertEquals(rowCount, rs2.getInt(1));
+        assertEquals(rowCount, rs2.getInt(2));
+        stat.execute("insert into test select id + " + len + ", name, x from csvread('" +
+                fileName + "', null, 'UTF-8')");
+        rs2 = stat.executeQuery("select count(*) from test");
+        rs2.next();
+        assertEquals(rowCount * 2, rs2.getInt(1));
+        // stop reading early
+        rs2 = stat.executeQuery("select * from csvread('" + fileName + "', null, 'UTF-8') limit 3");
+        assertTrue(rs2.next());
+        assertEquals(0, rs2.getInt(1));
+        assertFalse(isFileOpen(fileName));
+        conn.close();
+        FileUtils.delete(fileName);
+    }
+
+    /**
+     * Check whether this process has the file open. This is only supported
+     * on systems with a /proc file system; otherwise false is returned.
+     *
+     * @param fileName the file name
+     * @return true if the file is open
+     */
+    private boolean isFileOpen(String fileName) throws Exception {
+        File[] list = new File("/proc/self/fd").listFiles();
+        if (list == null) {
+            return false;
+        }
+        String path = new File(fileName).getCanonicalPath();
+        for (File f : list) {
+            try {
+                if (f.getCanonicalPath().equals(path)) {
+                    return true;
+                }
+            } catch (Exception e) {
+                // the file descriptor was closed in the meantime
+            }
+        }
+        return false;
+    }
+
+    private void testLoadData() throws Exception {
+        deleteDb("csv");
+        String fileName = baseDir + "/testLoad.tsv";
+        FileUtils.delete(fileName);
+        int len = getSize(20000, 100000);
+        StringBuilder buff = new StringBuilder();
+        for (int i = 0; i < len; i++) {
+            buff.append(i).append('\t').append(-i * 10000000000L).append('\t');
+            buff.append(i / 8.0).append('\t').append("Hello ").append(i);
+            buff.append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        buff.append("\t\t-0.15");
+        Writer w = new OutputStreamWriter(FileUtils.openFileOutputStream(fileName, false), "UTF-8");
+        w.write(buff.toString());
+        w.close();
+        Connection conn = getConnection("csv");
+        Statement stat = conn.createStatement();
+        for (int threads = 1; threads <= 3; threads += 2) {
+            stat.execute("create table test(id int, x bigint, d double, name varchar, v int default 7)");
+            assertEquals(len + 1, stat.executeUpdate("load data infile '" + fileName +
+                    "' into table test(id, x, d, name) fields terminated by '\\t' parallel " + threads));
+            ResultSet rs = stat.executeQuery("select * from test order by id nulls last");
+            for (int i = 0; i < len; i++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+                assertEquals(-i * 10000000000L, rs.getLong(2));
+                assertEquals(i / 8.0, rs.getDouble(3));
+                assertEquals("Hello " + i, rs.getString(4));
+                assertEquals(7, rs.getInt(5));
+            }
+            assertTrue(rs.next());
+            assertEquals(null, rs.getString(1));
+            assertEquals(-0.15, rs.getDouble(3));
+            assertFalse(rs.next());
+            stat.execute("drop table test");
+        }
+        stat.execute("create table test(id int, name varchar)");
+        try {
+            stat.execute("load data infile '" + fileName + "' into table test");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        // lines and fields are split before decoding
+        conn.prepareStatement("load data infile '" + fileName + "' into table test charset 'ISO-8859-1'");
+        try {
+            conn.prepareStatement("load data infile '" + fileName + "' into table test charset 'UTF-16'");
+            fail();
+        } catch (SQLException e) {
+            assertEquals(ErrorCode.INVALID_VALUE_2, e.getErrorCode());
+        }
+        try {
+            conn.prepareStatement("copy test from stdin with encoding 'UTF-16'");
+            fail();
+        } catch (SQLException e) {
+            assertEquals(ErrorCode.INVALID_VALUE_2, e.getErrorCode());
+        }
+        try {
+            conn.prepareStatement("load data infile '" + fileName + "' into table test charset 'unknown'");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        conn.close();
+        FileUtils.delete(fileName);
+    }
+
     private void testColumnNames() throws Exception {
         ResultSet rs;
         rs = Csv.getInstance().read(new StringReader("Id,First Name,2x,_x2\n1,2,3"), null);
@@ -7,6 +7,7 @@
 package org.h2.test.db;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import org.h2.constant.ErrorCode;
@@ -49,6 +50,7 @@ public class TestDeadlock extends TestBase {
         testThreePhilosophers();
         testNoDeadlock();
         testThreeSome();
+        testLockWait();
         deleteDb("deadlock");
     }
 
@@ -296,6 +298,47 @@ public class TestDeadlock extends TestBase {
         end();
     }
 
+    private void testLockWait() throws Exception {
+        if (config.mvcc) {
+            return;
+        }
+        initTest();
+        c1.createStatement().execute("CREATE TABLE TEST(ID INT PRIMARY KEY)");
+        c1.commit();
+        c1.createStatement().execute("INSERT INTO TEST VALUES(1)");
+        DoIt t2 = new DoIt() {
+            public void execute() throws SQLException {
+                c2.createStatement().execute("INSERT INTO TEST VALUES(2)");
+                c2.commit();
+            }
+        };
+        t2.start();
+        DoIt t3 = new DoIt() {
+            public void execute() throws SQLException {
+                c3.createStatement().execute("INSERT INTO TEST VALUES(3)");
+                c3.commit();
+            }
+        };
+        Thread.sleep(100);
+        t3.start();
+        Thread.sleep(100);
+        // both sessions get the lock one after the other
+        c1.commit();
+        t2.join();
+        t3.join();
+        if (lastException != null) {
+            throw lastException;
+        }
+        ResultSet rs = c1.createStatement().executeQuery(
+                "SELECT LOCK_WAIT_COUNT, LOCK_WAIT_TIME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'TEST'");
+        rs.next();
+        assertEquals(2, rs.getInt(1));
+        assertTrue(rs.getLong(2) >= 100);
+        c1.createStatement().execute("DROP TABLE TEST");
+        c1.commit();
+        end();
+    }
+
     private void checkDeadlock() throws SQLException {
         assertTrue(lastException != null);
         assertKnownException(lastException);
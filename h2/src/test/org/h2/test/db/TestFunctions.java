@@ -24,6 +24,7 @@ import java.util.Properties;
 import java.util.UUID;
 
 import org.h2.api.AggregateFunction;
+import org.h2.api.BatchAggregateFunction;
 import org.h2.test.TestBase;
 import org.h2.tools.SimpleResultSet;
 import org.h2.util.FileUtils;
@@ -248,6 +249,43 @@ public class TestFunctions extends TestBase implements AggregateFunction {
         conn.close();
     }
 
+    /**
+     * This aggregate calculates the sum of the squared differences of two
+     * values, in batches.
+     */
+    public static class SquaredError implements BatchAggregateFunction {
+
+        private double sum;
+
+        public void addBatch(double[][] values, int count) {
+            double[] a = values[0], b = values[1];
+            for (int i = 0; i < count; i++) {
+                double d = a[i] - b[i];
+                sum += d * d;
+            }
+        }
+
+        public void add(Object value) {
+            throw new AssertionError();
+        }
+
+        public Object getResult() {
+            return sum;
+        }
+
+        public int getType(int[] inputType) throws SQLException {
+            if (inputType.length != 2) {
+                throw new SQLException("2 parameters expected");
+            }
+            return Types.DOUBLE;
+        }
+
+        public void init(Connection conn) {
+            // nothing to do
+        }
+
+    }
+
     /**
      * This median implementation keeps all objects in memory.
      */
@@ -282,6 +320,24 @@ public class TestFunctions extends TestBase implements AggregateFunction {
         ResultSet rs = stat.executeQuery("SELECT MEDIAN(X) FROM SYSTEM_RANGE(1, 9)");
         rs.next();
         assertEquals("5", rs.getString(1));
+
+        stat.execute("CREATE AGGREGATE SQUARED_ERROR FOR \"" + SquaredError.class.getName() + "\"");
+        rs = stat.executeQuery("SELECT SQUARED_ERROR(X, X + MOD(X, 3)), SUM(MOD(X, 3) * MOD(X, 3)) " +
+                "FROM SYSTEM_RANGE(1, 5000)");
+        rs.next();
+        assertEquals(rs.getLong(2), rs.getLong(1));
+        rs = stat.executeQuery("SELECT MOD(X, 100) G, SQUARED_ERROR(X, X + MOD(X, 3)), " +
+                "SUM(MOD(X, 3) * MOD(X, 3)) FROM SYSTEM_RANGE(1, 5000) GROUP BY G");
+        while (rs.next()) {
+            assertEquals(rs.getLong(3), rs.getLong(2));
+        }
+        rs = stat.executeQuery("SELECT SQUARED_ERROR(X, NULLIF(X, 2) + 1) FROM SYSTEM_RANGE(1, 3)");
+        rs.next();
+        assertEquals(2, rs.getInt(1));
+        rs = stat.executeQuery("SELECT SQUARED_ERROR(X, X) FROM SYSTEM_RANGE(1, 3) WHERE X > 5");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        stat.execute("DROP AGGREGATE SQUARED_ERROR");
         conn.close();
 
         if (config.memory) {
@@ -13,6 +13,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Random;
 
+import org.h2.constant.SysProperties;
 import org.h2.result.SortOrder;
 import org.h2.test.TestBase;
 
@@ -40,6 +41,11 @@ public class TestIndex extends TestBase {
         testRandomized();
         testDescIndex();
         testHashIndex();
+        testPrimitiveTable();
+        testBitmapIndex();
+        testDeferIndexMaintenance();
+        testRebuildIndexesOnOpen(1);
+        testRebuildIndexesOnOpen(4);
 
         if (config.networked && config.big) {
             return;
@@ -137,6 +143,97 @@ public class TestIndex extends TestBase {
         stat.execute("drop table test");
     }
 
+    private void testPrimitiveTable() throws SQLException {
+        reconnect();
+        // all columns are numeric: the rows are kept in primitive arrays
+        stat.execute("create memory table testA(id int primary key, a bigint, b double) not persistent");
+        stat.execute("create memory table testB(id int primary key, a bigint, b double, name varchar) not persistent");
+        stat.execute("create index idx_a_a on testA(a)");
+        stat.execute("create index idx_b_a on testB(a)");
+        stat.execute("create index idx_a_b on testA(b desc, a)");
+        stat.execute("create index idx_b_b on testB(b desc, a)");
+        Random random = new Random(1);
+        int len = getSize(1000, 10000);
+        for (int i = 0; i < len; i++) {
+            int x = random.nextInt(100);
+            String a = random.nextInt(5) == 0 ? "null" : "" + random.nextInt(20);
+            String b = random.nextInt(5) == 0 ? "null" : "" + (random.nextInt(200) - 100) / 10.0;
+            String sql = "";
+            switch(random.nextInt(6)) {
+            case 0:
+            case 1:
+                sql = "merge into testA(id, a, b) key(id) values(" + x + ", " + a + ", " + b + ")";
+                break;
+            case 2:
+                sql = "delete from testA where id = " + x + " or a = " + a;
+                break;
+            case 3:
+                sql = "update testA set a = a + 1, b = " + b + " where b < " + b;
+                break;
+            case 4:
+                sql = "select count(*), sum(a), min(b), max(b), max(a) from testA where a between " + a + " and " + a + " + 5";
+                break;
+            case 5:
+                sql = "select id, a, b from testA where b > " + b + " order by b desc, a, id";
+                break;
+            default:
+            }
+            boolean result = stat.execute(sql);
+            if (result) {
+                String s1 = getResult(stat.getResultSet());
+                String s2 = getResult(stat.executeQuery(sql.replace('A', 'B')));
+                assertEquals(s1, s2);
+            } else {
+                int count1 = stat.getUpdateCount();
+                int count2 = stat.executeUpdate(sql.replace('A', 'B'));
+                assertEquals(count1, count2);
+            }
+        }
+        conn.setAutoCommit(false);
+        stat.execute("delete from testA where a > 10");
+        stat.execute("insert into testA select x + 100, x, x from system_range(1, 100)");
+        conn.rollback();
+        conn.setAutoCommit(true);
+        String s1 = getResult(stat.executeQuery("select id, a, b from testA order by id"));
+        String s2 = getResult(stat.executeQuery("select id, a, b from testB order by id"));
+        assertEquals(s1, s2);
+        stat.execute("drop table testA, testB");
+
+        // a deleted row gets its old key back when rolling back
+        stat.execute("create memory table test(id int primary key, a int) not persistent");
+        stat.execute("insert into test values(1, 10)");
+        conn.setAutoCommit(false);
+        stat.execute("insert into test values(2, 20)");
+        stat.execute("delete from test where id = 1");
+        stat.execute("delete from test where id = 2");
+        conn.rollback();
+        conn.setAutoCommit(true);
+        assertEquals("1 10 \n", getResult(stat.executeQuery("select * from test order by id")));
+        stat.execute("insert into test values(3, 30)");
+        conn.setAutoCommit(false);
+        stat.execute("delete from test where id = 1");
+        stat.execute("insert into test values(4, 40)");
+        stat.execute("update test set a = a + 1");
+        stat.execute("delete from test where id = 3");
+        conn.rollback();
+        conn.setAutoCommit(true);
+        assertEquals("1 10 \n3 30 \n", getResult(stat.executeQuery("select * from test order by id")));
+        assertEquals("3 30 \n", getResult(stat.executeQuery("select * from test where a = 30")));
+        stat.execute("drop table test");
+    }
+
+    private String getResult(ResultSet rs) throws SQLException {
+        StringBuilder buff = new StringBuilder();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                buff.append(rs.getString(i + 1)).append(' ');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
+
     private void testHashIndex() throws SQLException {
         reconnect();
         stat.execute("create table testA(id int primary key, name varchar)");
@@ -177,6 +274,175 @@ public class TestIndex extends TestBase {
         conn.close();
     }
 
+    private void testDeferIndexMaintenance() throws SQLException {
+        reconnect();
+        stat.execute("create table test(id int primary key, name varchar unique, v int)");
+        stat.execute("create index idx_test_v on test(v)");
+        stat.execute("set defer_index_maintenance true");
+        int len = getSize(1000, 10000);
+        stat.execute("insert into test select x, 'n' || mod(x * 7, " + len + "), " +
+                "mod(x * 13, 100) from system_range(1, " + len + ")");
+        ResultSet rs = stat.executeQuery("select count(*) from test where v = 3");
+        rs.next();
+        assertEquals(len / 100, rs.getInt(1));
+        // the unique constraint is checked at the end of the statement
+        try {
+            stat.execute("insert into test select x + " + len + ", 'n' || x, 0 " +
+                    "from system_range(" + (len - 10) + ", " + (len + 10) + ")");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        rs = stat.executeQuery("select count(*), count(distinct name) from test");
+        rs.next();
+        assertEquals(len, rs.getInt(1));
+        assertEquals(len, rs.getInt(2));
+        conn.setAutoCommit(false);
+        stat.execute("insert into test values(-1, 'x', -1)");
+        stat.execute("insert into test values(-2, 'y', -2)");
+        conn.rollback();
+        conn.setAutoCommit(true);
+        rs = stat.executeQuery("select min(v), count(*) from test where name < 'z'");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        assertEquals(len, rs.getInt(2));
+        stat.execute("set defer_index_maintenance false");
+        reconnect();
+        rs = stat.executeQuery("select count(*) from test where name = 'n1'");
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private void testBitmapIndex() throws SQLException {
+        reconnect();
+        stat.execute("create table testA(id int primary key, a int, b boolean, c varchar)");
+        stat.execute("create table testB(id int primary key, a int, b boolean, c varchar)");
+        stat.execute("create bitmap index idx_a_a on testA(a)");
+        stat.execute("create bitmap index idx_a_b on testA(b)");
+        stat.execute("create bitmap index idx_a_c on testA(c)");
+        stat.execute("insert into testA select x, mod(x, 7), mod(x, 3) = 0, 'c' || mod(x, 5) from system_range(1, 2000)");
+        stat.execute("insert into testB select * from testA");
+        ResultSet rs = stat.executeQuery("explain select * from testA where a = 1 or not b");
+        rs.next();
+        assertContains(rs.getString(1), "bitmap(PUBLIC.IDX_A_A, PUBLIC.IDX_A_B)");
+        rs = stat.executeQuery("explain select count(*) from testA where a in(1, 2) and c <> 'c1'");
+        rs.next();
+        assertContains(rs.getString(1), "/* bitmap count */");
+        Random random = new Random(1);
+        int len = getSize(1000, 10000);
+        for (int i = 0; i < len; i++) {
+            if (i == len / 2) {
+                // the index is re-built
+                reconnect();
+            }
+            int x = random.nextInt(3000);
+            String a = random.nextInt(8) == 0 ? "null" : "" + random.nextInt(8);
+            String b = random.nextInt(8) == 0 ? "null" : random.nextBoolean() ? "true" : "false";
+            String c = random.nextInt(8) == 0 ? "null" : "'c" + random.nextInt(6) + "'";
+            String sql = "";
+            switch(random.nextInt(8)) {
+            case 0:
+                sql = "merge into testA(id, a, b, c) key(id) values(" + x + ", " + a + ", " + b + ", " + c + ")";
+                break;
+            case 1:
+                sql = "delete from testA where id = " + x + " or (a = " + a + " and c = " + c + ")";
+                break;
+            case 2:
+                sql = "update testA set a = " + a + " where id between " + x + " and " + (x + 10);
+                break;
+            case 3:
+                sql = "select id from testA where a = " + a + " and (b or c = " + c + ") order by id";
+                break;
+            case 4:
+                sql = "select id from testA where not (a > " + a + " or b = " + b + ") order by id";
+                break;
+            case 5:
+                sql = "select count(*) from testA where a in(" + a + ", 3) and not c = " + c;
+                break;
+            case 6:
+                sql = "select count(*) from testA where (a is null or b is not null) and id > " + x;
+                break;
+            case 7:
+                sql = "select count(*) from testA where a between 2 and " + a + " or c = " + c;
+                break;
+            default:
+            }
+            boolean result = stat.execute(sql);
+            if (result) {
+                String s1 = getResult(stat.getResultSet());
+                String s2 = getResult(stat.executeQuery(sql.replace('A', 'B')));
+                assertEquals(s1, s2);
+            } else {
+                int count1 = stat.getUpdateCount();
+                int count2 = stat.executeUpdate(sql.replace('A', 'B'));
+                assertEquals(count1, count2);
+            }
+        }
+        conn.setAutoCommit(false);
+        stat.execute("delete from testA where a > 3");
+        stat.execute("insert into testA select x + 5000, 3, true, null from system_range(1, 100)");
+        conn.rollback();
+        conn.setAutoCommit(true);
+        String sql = "select count(*) from testA where a = 3 or b";
+        assertEquals(getResult(stat.executeQuery(sql)), getResult(stat.executeQuery(sql.replace('A', 'B'))));
+        stat.execute("drop table testA, testB");
+        conn.close();
+    }
+
+    private void testRebuildIndexesOnOpen(int threads) throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        reconnect();
+        int len = getSize(1000, 10000);
+        for (int i = 0; i < 5; i++) {
+            stat.execute("create memory table m" + i + "(id int primary key, a int, b varchar)");
+            stat.execute("create index idx_m" + i + "_a on m" + i + "(a)");
+            stat.execute("create hash index idx_m" + i + "_b on m" + i + "(b)");
+            stat.execute("insert into m" + i + " select x, mod(x, 10), 'b' || x " +
+                    "from system_range(1, " + (len + i) + ")");
+        }
+        stat.execute("create table c(id int primary key, a int)");
+        stat.execute("insert into c select x, mod(x, 3) from system_range(1, " + len + ")");
+        stat.execute("create bitmap index idx_c_a on c(a)");
+        int oldThreads = SysProperties.getIndexRebuildThreads();
+        try {
+            System.setProperty(SysProperties.H2_INDEX_REBUILD_THREADS, "" + threads);
+            reconnect();
+        } finally {
+            System.setProperty(SysProperties.H2_INDEX_REBUILD_THREADS, "" + oldThreads);
+        }
+        ResultSet rs;
+        for (int i = 0; i < 5; i++) {
+            rs = stat.executeQuery("select count(*) from m" + i + " where a = 3");
+            rs.next();
+            assertEquals((len + i + 7) / 10, rs.getInt(1));
+            rs = stat.executeQuery("select a from m" + i + " where b = 'b" + (len + i) + "'");
+            rs.next();
+            assertEquals((len + i) % 10, rs.getInt(1));
+            rs = stat.executeQuery("select count(*) from m" + i + " where id > " + len);
+            rs.next();
+            assertEquals(i, rs.getInt(1));
+        }
+        rs = stat.executeQuery("select count(*) from c where a = 0");
+        rs.next();
+        assertEquals(len / 3, rs.getInt(1));
+        // the primary key index of a memory table is filled as well
+        try {
+            stat.execute("insert into m0 values(1, 1, 'x')");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        for (int i = 0; i < 5; i++) {
+            stat.execute("drop table m" + i);
+        }
+        stat.execute("drop table c");
+        conn.close();
+    }
+
     private void reconnect() throws SQLException {
         if (conn != null) {
             conn.close();
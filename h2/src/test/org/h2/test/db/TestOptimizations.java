@@ -6,6 +6,7 @@
  */
 package org.h2.test.db;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -38,6 +39,9 @@ public class TestOptimizations extends TestBase {
     }
 
     public void test() throws Exception {
+        testLazyRowDecoding();
+        testParallelScan();
+        testInsertSelect();
         testInAndBetween();
         testNestedIn();
         testNestedInSelectAndLike();
@@ -61,6 +65,168 @@ public class TestOptimizations extends TestBase {
         deleteDb("optimizations");
     }
 
+    private void testLazyRowDecoding() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        ResultSet rs;
+        stat.execute("create table test(id int primary key, a varchar, b decimal(20, 2), " +
+                "c timestamp, d array, e uuid, f clob, g double, h varchar)");
+        stat.execute("insert into test select x, space(mod(x, 50)) || '\u00e4' || x, x * 0.25, " +
+                "timestamp '2009-01-01 10:00:00' + x, (x, 'x' || x), random_uuid(), " +
+                "'clob' || x, x * 1.5, case when mod(x, 3) = 0 then null else 'h' || x end " +
+                "from system_range(1, 1000)");
+        conn.close();
+        conn = getConnection("optimizations");
+        stat = conn.createStatement();
+        // read the columns in a different order than stored
+        rs = stat.executeQuery("select h, g, id, a from test where mod(id, 7) = 0 order by id");
+        for (int i = 7; i <= 1000; i += 7) {
+            assertTrue(rs.next());
+            assertEquals(i % 3 == 0 ? null : "h" + i, rs.getString(1));
+            assertEquals(i * 1.5, rs.getDouble(2));
+            assertEquals(i, rs.getInt(3));
+            assertTrue(rs.getString(4).endsWith("\u00e4" + i));
+        }
+        assertFalse(rs.next());
+        // change pages that contain partially decoded rows
+        stat.execute("update test set a = 'updated' where mod(id, 5) = 0");
+        stat.execute("delete from test where mod(id, 11) = 0");
+        stat.execute("insert into test(id, a, h) select x, 'new', 'h' || x from system_range(1001, 1100)");
+        rs = stat.executeQuery("select count(*), sum(g), sum(length(f)) from test where h is not null");
+        rs.next();
+        assertEquals(607 + 100, rs.getInt(1));
+        conn.close();
+        conn = getConnection("optimizations");
+        stat = conn.createStatement();
+        rs = stat.executeQuery("select id, a, b, d, f from test order by id");
+        int count = 0;
+        while (rs.next()) {
+            int id = rs.getInt(1);
+            assertTrue(id > 1000 || id % 11 != 0);
+            if (id > 1000) {
+                assertEquals("new", rs.getString(2));
+                assertEquals(null, rs.getString(5));
+            } else {
+                if (id % 5 == 0) {
+                    assertEquals("updated", rs.getString(2));
+                } else {
+                    assertTrue(rs.getString(2).endsWith("\u00e4" + id));
+                }
+                BigDecimal b = new BigDecimal(id).multiply(new BigDecimal("0.25"));
+                assertEquals(0, b.compareTo(rs.getBigDecimal(3)));
+                Object[] array = (Object[]) rs.getObject(4);
+                assertEquals("x" + id, (String) array[1]);
+                assertEquals("clob" + id, rs.getString(5));
+            }
+            count++;
+        }
+        assertEquals(910 + 100, count);
+        conn.close();
+    }
+
+    private void testParallelScan() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        ResultSet rs;
+        stat.execute("create table test(id int primary key, name varchar, value double)");
+        stat.execute("insert into test select x, 'n' || x, x / 4.0 from system_range(1, 5000)");
+        PreparedStatement prep = conn.prepareStatement(
+                "select id, upper(name), value * ? from test where mod(id, ?) = 0 and id > ?");
+        for (int m = 3; m < 6; m++) {
+            prep.setInt(1, 2);
+            prep.setInt(2, m);
+            prep.setInt(3, 100);
+            rs = prep.executeQuery();
+            int count = 0;
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                assertEquals(id - id % m, id);
+                assertTrue(id > 100);
+                assertEquals("N" + id, rs.getString(2));
+                assertEquals(id / 2.0, rs.getDouble(3));
+                count++;
+            }
+            assertEquals(5000 / m - 100 / m, count);
+        }
+        rs = stat.executeQuery("select id from test where name like 'n1%' order by value desc limit 3");
+        assertTrue(rs.next());
+        assertEquals(1999, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(1998, rs.getInt(1));
+        rs = stat.executeQuery("select sum(x) from (select id * 2 x from test where id <= 1000)");
+        rs.next();
+        assertEquals(1001000, rs.getInt(1));
+        try {
+            stat.executeQuery("select 1 / (id - 4000) from test");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        // functions that run statements must not be evaluated in parallel
+        int oldThreads = SysProperties.getSelectThreads();
+        try {
+            System.setProperty(SysProperties.H2_SELECT_THREADS, "4");
+            rs = stat.executeQuery("select id from test where casewhen(mod(id, 1000) = 0, " +
+                    "link_schema('S' || mod(id / 1000, 2), '', 'jdbc:h2:mem:', 'sa', '', 'PUBLIC'), null) is not null");
+            int count = 0;
+            while (rs.next()) {
+                assertEquals(0, rs.getInt(1) % 1000);
+                count++;
+            }
+            assertEquals(5, count);
+        } finally {
+            System.setProperty(SysProperties.H2_SELECT_THREADS, "" + oldThreads);
+        }
+        stat.execute("drop schema s0");
+        stat.execute("drop schema s1");
+        conn.close();
+    }
+
+    private void testInsertSelect() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        ResultSet rs;
+        stat.execute("create table test(id int, name varchar)");
+        stat.execute("insert into test select x, 'Hello' || x from system_range(1, 10000)");
+        // the query must not see the inserted rows
+        assertEquals(10000, stat.executeUpdate("insert into test select * from test"));
+        stat.execute("create view test_view as select * from test");
+        assertEquals(20000, stat.executeUpdate("insert into test select * from test_view"));
+        rs = stat.executeQuery("select count(*), count(distinct id) from test");
+        rs.next();
+        assertEquals(40000, rs.getInt(1));
+        assertEquals(10000, rs.getInt(2));
+        stat.execute("create table test2(id int primary key, name varchar)");
+        assertEquals(5, stat.executeUpdate("insert into test2 select id, name from test where id > 100 limit 5"));
+        // a subquery on the target table sees the state before the insert
+        assertEquals(10, stat.executeUpdate(
+                "insert into test2 select x, null from system_range(1, 10) where (select count(*) from test2) < 10"));
+        try {
+            stat.execute("insert into test2 select id, name from test where id > 100");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        rs = stat.executeQuery("select count(*) from test2");
+        rs.next();
+        assertEquals(15, rs.getInt(1));
+        stat.execute("create table test3 as select id, name from test where id <= 100 order by id desc");
+        rs = stat.executeQuery("select id from test3");
+        for (int i = 100; i > 0; i--) {
+            for (int j = 0; j < 4; j++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+            }
+        }
+        assertFalse(rs.next());
+        stat.execute("drop view test_view");
+        stat.execute("drop table test, test2, test3");
+        conn.close();
+    }
+
     private void testInAndBetween() throws SQLException {
         deleteDb("optimizations");
         Connection conn = getConnection("optimizations");
@@ -7,6 +7,7 @@
 package org.h2.test.db;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -30,6 +31,9 @@ public class TestRunscript extends TestBase implements Trigger {
 
     public void test() throws SQLException {
         testClobPrimaryKey();
+        testSnapshot(false);
+        testSnapshot(true);
+        testScriptBinary();
         test(false);
         test(true);
         deleteDb("runscript");
@@ -64,6 +68,89 @@ public class TestRunscript extends TestBase implements Trigger {
         deleteDb("runscriptRestore");
     }
 
+    private void testSnapshot(boolean compressed) throws SQLException {
+        String file = baseDir + "/snapshot.bin";
+        FileUtils.delete(file);
+        Connection conn1 = getConnection("jdbc:h2:mem:snapshot", getUser(), getPassword());
+        Statement stat1 = conn1.createStatement();
+        stat1.execute("create table parent(id identity, name varchar, data clob, bin blob)");
+        stat1.execute("insert into parent(name, data, bin) select 'p' || x, space(x * 100), " +
+                "secure_rand(x * 10) from system_range(1, 100)");
+        stat1.execute("create memory table child(id int primary key, parent_id int, " +
+                "v double, foreign key(parent_id) references parent(id))");
+        stat1.execute("insert into child select x, mod(x, 100) + 1, x / 7.0 " +
+                "from system_range(1, 20000)");
+        stat1.execute("create index idx_child_v on child(v)");
+        stat1.execute("create sequence seq start with 10");
+        String sql = "snapshot to '" + file + "'";
+        if (compressed) {
+            sql += " compression lzf cipher aes password 'test'";
+        }
+        stat1.execute(sql);
+        Connection conn2 = getConnection("jdbc:h2:mem:snapshotRestore", getUser(), getPassword());
+        Statement stat2 = conn2.createStatement();
+        sql = "runscript from '" + file + "'";
+        if (compressed) {
+            sql += " compression lzf cipher aes password 'test'";
+        }
+        stat2.execute(sql);
+        assertEqualDatabases(stat1, stat2);
+        conn2.close();
+        if (!compressed) {
+            conn2 = getConnection("jdbc:h2:mem:snapshotRestore;INIT_FROM_SNAPSHOT=" + file,
+                    getUser(), getPassword());
+            stat2 = conn2.createStatement();
+            assertEqualDatabases(stat1, stat2);
+            // the index is used and filled
+            ResultSet rs = stat2.executeQuery("select count(*) from child where v < 10");
+            rs.next();
+            assertEquals(69, rs.getInt(1));
+            // only used when the database is created
+            Connection conn3 = getConnection("jdbc:h2:mem:snapshotRestore;INIT_FROM_SNAPSHOT=" + file,
+                    getUser(), getPassword());
+            rs = conn3.createStatement().executeQuery("select count(*) from child");
+            rs.next();
+            assertEquals(20000, rs.getInt(1));
+            conn3.close();
+            conn2.close();
+        }
+        conn1.close();
+        FileUtils.delete(file);
+    }
+
+    private void testScriptBinary() throws SQLException {
+        deleteDb("runscript");
+        deleteDb("runscriptRestore");
+        String file = baseDir + "/backup.bin";
+        Connection conn1 = getConnection("runscript");
+        Statement stat1 = conn1.createStatement();
+        stat1.execute("create table test(id int primary key, name varchar, data blob)");
+        stat1.execute("insert into test select x, 'n' || mod(x, 10), " +
+                "secure_rand(mod(x, 50)) from system_range(1, 5000)");
+        stat1.execute("create index idx_test_name on test(name)");
+        stat1.execute("create table test2(id int, test_id int references test(id))");
+        stat1.execute("insert into test2 select x, x from system_range(1, 1000)");
+        stat1.execute("script binary to '" + file + "' compression deflate");
+        Connection conn2 = getConnection("runscriptRestore");
+        Statement stat2 = conn2.createStatement();
+        stat2.execute("runscript from '" + file + "' compression deflate");
+        assertEqualDatabases(stat1, stat2);
+        // the binary format is detected
+        stat2.execute("drop all objects");
+        stat2.execute("runscript from '" + file + "'");
+        assertEqualDatabases(stat1, stat2);
+        try {
+            stat1.execute("script binary");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        conn2.close();
+        conn1.close();
+        FileUtils.delete(file);
+        deleteDb("runscriptRestore");
+    }
+
     private void test(boolean password) throws SQLException {
         deleteDb("runscript");
         Connection conn1, conn2;
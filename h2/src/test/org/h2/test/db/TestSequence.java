@@ -10,6 +10,7 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashSet;
 
 import org.h2.test.TestBase;
 
@@ -27,12 +28,14 @@ public class TestSequence extends TestBase {
         TestBase.createCaller().init().test();
     }
 
-    public void test() throws SQLException {
+    public void test() throws Exception {
         testSchemaSearchPath();
         testAlterSequenceColumn();
         testAlterSequence();
         testCache();
         testTwo();
+        testMultiRowInsert();
+        testConcurrent();
         deleteDb("sequence");
     }
 
@@ -125,6 +128,88 @@ public class TestSequence extends TestBase {
         conn.close();
     }
 
+    private void testMultiRowInsert() throws SQLException {
+        deleteDb("sequence");
+        Connection conn = getConnection("sequence");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id identity, name varchar)");
+        stat.execute("insert into test(name) values('a'), ('b'), ('c')");
+        stat.execute("insert into test(name) select 'x' || x from system_range(1, 100)");
+        // explicit values update the sequence, so nothing is reserved
+        stat.execute("insert into test values(default, 'd'), (105, 'e'), (default, 'f')");
+        ResultSet rs = stat.executeQuery("select count(*), count(distinct id), max(id) from test");
+        rs.next();
+        assertEquals(106, rs.getInt(1));
+        assertEquals(106, rs.getInt(2));
+        assertEquals(106, rs.getInt(3));
+        rs = stat.executeQuery("call identity()");
+        rs.next();
+        assertEquals(106, rs.getInt(1));
+        stat.execute("insert into test(name) values('g')");
+        rs = stat.executeQuery("call identity()");
+        rs.next();
+        assertEquals(107, rs.getInt(1));
+        conn.close();
+        if (!config.memory) {
+            conn = getConnection("sequence");
+            stat = conn.createStatement();
+            stat.execute("insert into test(name) values('h'), ('i')");
+            rs = stat.executeQuery("select count(distinct id) from test");
+            rs.next();
+            assertEquals(109, rs.getInt(1));
+            conn.close();
+        }
+    }
+
+    private void testConcurrent() throws Exception {
+        deleteDb("sequence");
+        final String url = getURL("sequence;MULTI_THREADED=1", true);
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create sequence testSequence cache 10");
+        final long[][] values = new long[4][1000];
+        final SQLException[] error = new SQLException[1];
+        Thread[] threads = new Thread[values.length];
+        for (int i = 0; i < threads.length; i++) {
+            final long[] list = values[i];
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        Connection c = getConnection(url);
+                        Statement s = c.createStatement();
+                        for (int j = 0; j < list.length; j++) {
+                            list[j] = getNext(s);
+                        }
+                        c.close();
+                    } catch (SQLException e) {
+                        error[0] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (error[0] != null) {
+            throw error[0];
+        }
+        HashSet<Long> set = new HashSet<Long>();
+        for (long[] list : values) {
+            for (long v : list) {
+                assertTrue(set.add(v));
+            }
+        }
+        conn.close();
+        if (!config.memory) {
+            conn = getConnection(url);
+            stat = conn.createStatement();
+            // values are not used again after reopening
+            assertFalse(set.contains(getNext(stat)));
+            conn.close();
+        }
+    }
+
     private long getNext(Statement stat) throws SQLException {
         ResultSet rs = stat.executeQuery("call next value for testSequence");
         rs.next();
@@ -8,6 +8,7 @@ package org.h2.test.jdbc;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
@@ -21,6 +22,7 @@ import org.h2.test.TestBase;
 public class TestDatabaseEventListener extends TestBase implements DatabaseEventListener {
 
     private boolean calledOpened, calledClosingDatabase, calledScan, calledCreateIndex;
+    private int recoverMax;
 
     /**
      * Run just this test.
@@ -37,6 +39,7 @@ public class TestDatabaseEventListener extends TestBase implements DatabaseEvent
         testCalled();
         testCloseLog0(false);
         testCloseLog0(true);
+        testRecoverProgress();
         deleteDb("databaseEventListener");
     }
 
@@ -142,6 +145,50 @@ public class TestDatabaseEventListener extends TestBase implements DatabaseEvent
         }
     }
 
+    private void testRecoverProgress() throws SQLException {
+        if (config.memory || !config.pageStore) {
+            return;
+        }
+        deleteDb("databaseEventListener");
+        String url = getURL("databaseEventListener", true);
+        Properties p = new Properties();
+        p.setProperty("user", getUser());
+        p.setProperty("password", getPassword());
+        Connection conn = DriverManager.getConnection(url, p);
+        Statement stat = conn.createStatement();
+        stat.execute("set write_delay 0");
+        stat.execute("set max_log_size 1000");
+        stat.execute("create table test(id int primary key, name varchar)");
+        stat.execute("create index idx_name on test(name)");
+        stat.execute("checkpoint");
+        stat.execute("insert into test select x, 'n' || x from system_range(1, 20000)");
+        stat.execute("delete from test where mod(id, 3) = 0");
+        stat.execute("update test set name = 'x' where mod(id, 5) = 0");
+        stat.execute("truncate table test");
+        stat.execute("insert into test select x, 'y' || x from system_range(1, 10000)");
+        stat.execute("delete from test where id > 9000");
+        stat.execute("shutdown immediately");
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        TestDatabaseEventListener l = new TestDatabaseEventListener();
+        p.put("DATABASE_EVENT_LISTENER_OBJECT", l);
+        conn = org.h2.Driver.load().connect(url, p);
+        assertTrue(l.recoverMax > 20000);
+        stat = conn.createStatement();
+        ResultSet rs = stat.executeQuery("select count(*), sum(id), min(name) from test");
+        rs.next();
+        assertEquals(9000, rs.getInt(1));
+        assertEquals(9000 * 9001 / 2, rs.getInt(2));
+        assertEquals("y1", rs.getString(3));
+        rs = stat.executeQuery("select count(*) from test where name like 'y%'");
+        rs.next();
+        assertEquals(9000, rs.getInt(1));
+        conn.close();
+    }
+
     private void testCalled() throws SQLException {
         Properties p = new Properties();
         p.setProperty("user", "sa");
@@ -180,6 +227,10 @@ public class TestDatabaseEventListener extends TestBase implements DatabaseEvent
         if (state == DatabaseEventListener.STATE_SCAN_FILE) {
             calledScan = true;
         }
+        if (state == DatabaseEventListener.STATE_RECOVER && name.endsWith("records/s)")) {
+            assertTrue(x <= max);
+            recoverMax = max;
+        }
         if (state == DatabaseEventListener.STATE_CREATE_INDEX) {
             if (!name.startsWith("SYS:")) {
                 calledCreateIndex = true;
@@ -50,6 +50,7 @@ public class TestPreparedStatement extends TestBase {
         testTempView(conn);
         testInsertFunction(conn);
         testPrepareRecompile(conn);
+        testCachedStatement(conn);
         testMaxRowsChange(conn);
         testUnknownDataType(conn);
         testCancelReuse(conn);
@@ -75,6 +76,52 @@ public class TestPreparedStatement extends TestBase {
         deleteDb("preparedStatement");
     }
 
+    private void testCachedStatement(Connection conn) throws SQLException {
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE TEST(ID INT)");
+        stat.execute("INSERT INTO TEST VALUES(1), (2)");
+        PreparedStatement prep = conn.prepareStatement("SELECT * FROM TEST WHERE ID=?");
+        prep.setInt(1, 1);
+        ResultSet rs = prep.executeQuery();
+        assertTrue(rs.next());
+        prep.close();
+        // the cached statement is re-used, but the parameters are cleared
+        prep = conn.prepareStatement("SELECT * FROM TEST WHERE ID=?");
+        try {
+            prep.executeQuery();
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        prep.setInt(1, 2);
+        rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        prep.close();
+        // the result of a statement can still be read
+        // when the statement is re-used
+        Statement stat2 = conn.createStatement();
+        rs = stat.executeQuery("SELECT * FROM TEST ORDER BY ID");
+        ResultSet rs2 = stat2.executeQuery("SELECT * FROM TEST ORDER BY ID");
+        assertTrue(rs2.next());
+        assertTrue(rs2.next());
+        assertFalse(rs2.next());
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        stat2.close();
+        // statements are parsed again if the current schema is changed
+        stat.execute("CREATE SCHEMA S");
+        stat.execute("CREATE TABLE S.TEST(ID INT)");
+        stat.execute("SET SCHEMA S");
+        prep = conn.prepareStatement("SELECT * FROM TEST WHERE ID=?");
+        prep.setInt(1, 1);
+        assertFalse(prep.executeQuery().next());
+        prep.close();
+        stat.execute("SET SCHEMA PUBLIC");
+        stat.execute("DROP SCHEMA S");
+        stat.execute("DROP TABLE TEST");
+    }
+
     private void testLobTempFiles(Connection conn) throws SQLException {
         Statement stat = conn.createStatement();
         stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, DATA CLOB)");
@@ -8,6 +8,8 @@ package org.h2.test.jdbcx;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -36,6 +38,8 @@ public class TestConnectionPool extends TestBase {
         testKeepOpen();
         testConnect();
         testThreads();
+        testWaitTimeout();
+        testStatementCache();
         deleteDb("connectionPool");
     }
 
@@ -127,6 +131,68 @@ public class TestConnectionPool extends TestBase {
         man.dispose();
     }
 
+    private void testWaitTimeout() throws Exception {
+        final JdbcConnectionPool man = getConnectionPool(1);
+        man.setLoginTimeout(1);
+        Connection conn = man.getConnection();
+        assertEquals(1, man.getActiveConnections());
+        try {
+            man.getConnection();
+            fail();
+        } catch (SQLException e) {
+            assertEquals("08001", e.getSQLState());
+        }
+        assertEquals(1, man.getWaitCount());
+        assertTrue(man.getWaitTime() >= 900);
+        Thread t = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                    man.setMaxConnections(2);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        t.start();
+        // waits until the pool is enlarged
+        Connection conn2 = man.getConnection();
+        t.join();
+        assertEquals(2, man.getActiveConnections());
+        assertEquals(2, man.getPeakActiveConnections());
+        assertEquals(3, man.getConnectionRequests());
+        conn2.close();
+        conn.close();
+        assertEquals(0, man.getActiveConnections());
+        assertEquals(2, man.getIdleConnections());
+        man.dispose();
+    }
+
+    private void testStatementCache() throws Exception {
+        JdbcConnectionPool man = getConnectionPool(1);
+        Connection conn = man.getConnection();
+        PreparedStatement prep = conn.prepareStatement("SELECT ? FROM DUAL");
+        prep.setString(1, "x");
+        prep.executeQuery().close();
+        conn.close();
+        // the statement of the returned connection is re-used,
+        // but the parameters are cleared
+        conn = man.getConnection();
+        prep = conn.prepareStatement("SELECT ? FROM DUAL");
+        try {
+            prep.executeQuery();
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        prep.setString(1, "y");
+        ResultSet rs = prep.executeQuery();
+        rs.next();
+        assertEquals("y", rs.getString(1));
+        conn.close();
+        man.dispose();
+    }
+
     private JdbcConnectionPool getConnectionPool(int poolSize) {
         JdbcDataSource ds = new JdbcDataSource();
         ds.setURL(getURL("connectionPool", true));
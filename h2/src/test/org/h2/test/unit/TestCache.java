@@ -10,9 +10,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Random;
 
 import org.h2.message.Trace;
+import org.h2.store.PageCacheOffHeap;
 import org.h2.test.TestBase;
 import org.h2.util.Cache;
 import org.h2.util.CacheLRU;
@@ -38,6 +40,7 @@ public class TestCache extends TestBase implements CacheWriter {
     public void test() throws SQLException {
         // testCache(false);
         testCache(true);
+        testOffHeap();
         testCacheDb(false);
         testCacheDb(true);
     }
@@ -52,6 +55,49 @@ public class TestCache extends TestBase implements CacheWriter {
 
     }
 
+    private void testOffHeap() {
+        int pageSize = 128;
+        // room for 8 pages
+        PageCacheOffHeap c = new PageCacheOffHeap(pageSize, 1);
+        assertEquals(8, c.getMaxSize());
+        byte[] buff = new byte[pageSize];
+        for (int i = 1; i <= 8; i++) {
+            Arrays.fill(buff, (byte) i);
+            c.put(i, buff);
+        }
+        assertEquals(8, c.getSize());
+        assertTrue(c.read(3, buff));
+        assertEquals(3, buff[pageSize - 1]);
+        Arrays.fill(buff, (byte) 33);
+        c.update(3, buff);
+        // pages that are not cached are not added when written
+        c.update(20, buff);
+        assertFalse(c.read(20, buff));
+        assertTrue(c.read(3, buff));
+        assertEquals(33, buff[0]);
+        // evicts pages that were not read recently
+        for (int i = 9; i <= 12; i++) {
+            Arrays.fill(buff, (byte) i);
+            c.put(i, buff);
+            assertTrue(c.read(3, buff));
+        }
+        assertEquals(8, c.getSize());
+        assertTrue(c.read(3, buff));
+        assertEquals(33, buff[0]);
+        assertTrue(c.read(12, buff));
+        assertEquals(12, buff[0]);
+        c.remove(12);
+        assertFalse(c.read(12, buff));
+        c.truncate(10);
+        assertEquals(5, c.getSize());
+        for (int i = 10; i <= 12; i++) {
+            assertFalse(c.read(i, buff));
+        }
+        assertTrue(c.read(9, buff));
+        assertEquals(9, buff[0]);
+        assertFalse(c.read(1, buff));
+    }
+
     /**
      * A simple cache object
      */
@@ -118,6 +118,7 @@ public class TestDataPage extends TestBase implements DataHandler {
             testValue(ValueBytes.getNoCopy(new byte[i]));
         }
         testValue(ValueUuid.getNewRandom());
+        testValue(ValueString.get("a\u00e4\u20ac"));
         for (int i = 0; i < 100; i++) {
             testValue(ValueString.get(new String(new char[i])));
         }
@@ -152,6 +153,10 @@ public class TestDataPage extends TestBase implements DataHandler {
         Value v2 = data.readValue();
         assertEquals(v.getType(), v2.getType());
         assertTrue(v.compareEqual(v2));
+        int len = data.length();
+        data.reset();
+        data.skipValue();
+        assertEquals(len, data.length());
     }
 
 
@@ -44,6 +44,10 @@ public class TestIntIntHashMap extends TestBase {
         for (int i = 0; i < len; i++) {
             map.put(x[i], i);
         }
+        if (!random && map.size() != len) {
+            // the key 0 must only be counted once
+            throw new AssertionError("size " + map.size() + " should be " + len);
+        }
         for (int i = 0; i < len; i++) {
             if (map.get(x[i]) != i) {
                 throw new AssertionError("get " + x[i] + " = " + map.get(i) + " should be " + i);
@@ -57,6 +57,7 @@ public class TestPageStore extends TestBase implements DatabaseEventListener {
         testLargeIndex();
         testUniqueIndex();
         testCreateIndexLater();
+        testHashIndex();
         testFuzzOperations();
     }
 
@@ -495,6 +496,68 @@ public class TestPageStore extends TestBase implements DatabaseEventListener {
         conn.close();
     }
 
+    private void testHashIndex() throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        deleteDb("pageStore");
+        Connection conn = getConnection("pageStore");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, NAME VARCHAR, CODE DECIMAL(10, 2))");
+        stat.execute("CREATE HASH INDEX IDX_NAME ON TEST(NAME)");
+        stat.execute("CREATE UNIQUE HASH INDEX IDX_CODE ON TEST(CODE)");
+        stat.execute("INSERT INTO TEST SELECT X, 'N' || MOD(X, 1000), X FROM SYSTEM_RANGE(1, 20000)");
+        ResultSet rs = stat.executeQuery("EXPLAIN SELECT * FROM TEST WHERE NAME = 'N1'");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_NAME");
+        rs = stat.executeQuery("SELECT COUNT(*) FROM TEST WHERE NAME = 'N1'");
+        rs.next();
+        assertEquals(20, rs.getInt(1));
+        rs = stat.executeQuery("SELECT ID FROM TEST WHERE CODE = 123.0");
+        rs.next();
+        assertEquals(123, rs.getInt(1));
+        assertFalse(rs.next());
+        stat.execute("DELETE FROM TEST WHERE ID > 10000");
+        stat.execute("UPDATE TEST SET NAME = 'X' WHERE ID < 100");
+        stat.execute("CHECKPOINT");
+        stat.execute("SET WRITE_DELAY 0");
+        stat.execute("INSERT INTO TEST VALUES(10001, 'N1', 10001)");
+        stat.execute("SHUTDOWN IMMEDIATELY");
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+        conn = getConnection("pageStore");
+        stat = conn.createStatement();
+        rs = stat.executeQuery("SELECT COUNT(*) FROM TEST WHERE NAME = 'N1'");
+        rs.next();
+        assertEquals(10, rs.getInt(1));
+        rs = stat.executeQuery("SELECT COUNT(*) FROM TEST WHERE NAME = 'X'");
+        rs.next();
+        assertEquals(99, rs.getInt(1));
+        try {
+            stat.execute("INSERT INTO TEST VALUES(20001, 'A', 5)");
+            fail();
+        } catch (SQLException e) {
+            assertKnownException(e);
+        }
+        stat.execute("SHUTDOWN COMPACT");
+        conn = getConnection("pageStore");
+        stat = conn.createStatement();
+        rs = stat.executeQuery("SELECT COUNT(*) FROM TEST WHERE NAME = 'N999'");
+        rs.next();
+        assertEquals(10, rs.getInt(1));
+        stat.execute("TRUNCATE TABLE TEST");
+        stat.execute("INSERT INTO TEST VALUES(1, 'N1', 1)");
+        rs = stat.executeQuery("SELECT COUNT(*) FROM TEST WHERE NAME = 'N1'");
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+        stat.execute("DROP INDEX IDX_NAME");
+        stat.execute("DROP TABLE TEST");
+        conn.close();
+    }
+
     private void testFuzzOperations() throws SQLException {
         int best = Integer.MAX_VALUE;
         for (int i = 0; i < 10; i++) {
@@ -6,6 +6,12 @@
  */
 package org.h2.test.unit;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
@@ -32,11 +38,15 @@ public class TestPgServer extends TestBase {
         TestBase.createCaller().init().test();
     }
 
-    public void test() throws SQLException {
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    public void test() throws Exception {
         deleteDb("test");
         Server server = Server.createPgServer("-baseDir", baseDir, "-pgPort", "5535");
         server.start();
         try {
+            testExtendedProtocol();
             Class.forName("org.postgresql.Driver");
             testPgClient();
         } catch (ClassNotFoundException e) {
@@ -47,6 +57,246 @@ public class TestPgServer extends TestBase {
         deleteDb("test");
     }
 
+    private void testExtendedProtocol() throws IOException {
+        Socket socket = new Socket("localhost", 5535);
+        in = new DataInputStream(socket.getInputStream());
+        out = new DataOutputStream(socket.getOutputStream());
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        DataOutputStream m = new DataOutputStream(buff);
+        m.writeInt(196608);
+        writeString(m, "user");
+        writeString(m, "sa");
+        writeString(m, "database");
+        writeString(m, "test");
+        m.write(0);
+        out.writeInt(buff.size() + 4);
+        out.write(buff.toByteArray());
+        out.flush();
+        assertEquals('R', readMessage().readByte());
+        m = startMessage(buff);
+        writeString(m, "sa");
+        sendMessage('p', buff);
+        out.flush();
+        readUntilReady();
+
+        sendQuery("create table test(id int primary key, x double, data binary, name varchar)");
+        assertEquals('C', readMessage().readByte());
+        readUntilReady();
+
+        // pipelined: two inserts with binary parameters, a query with binary
+        // results, all before the first Sync
+        sendParse("ins", "insert into test(id, x, data) values(?, ?, ?)", 23, 701, 17);
+        for (int i = 1; i <= 2; i++) {
+            m = startMessage(buff);
+            writeString(m, "");
+            writeString(m, "ins");
+            m.writeShort(1);
+            m.writeShort(1);
+            m.writeShort(3);
+            m.writeInt(4);
+            m.writeInt(i);
+            m.writeInt(8);
+            m.writeDouble(i * 1.5);
+            if (i == 1) {
+                m.writeInt(2);
+                m.write(new byte[] { 1, 2 });
+            } else {
+                m.writeInt(-1);
+            }
+            m.writeShort(0);
+            sendMessage('B', buff);
+            sendExecute("");
+        }
+        sendParse("", "select id, x, data from test order by id");
+        sendBind("", "", 1);
+        sendExecute("");
+        sendMessage('S');
+        out.flush();
+        assertEquals('1', readType());
+        for (int i = 0; i < 2; i++) {
+            assertEquals('2', readType());
+            assertEquals('C', readType());
+        }
+        assertEquals('1', readType());
+        assertEquals('2', readType());
+        assertEquals('T', readType());
+        DataInputStream row = readMessage();
+        assertEquals('D', row.readByte());
+        assertEquals(3, row.readShort());
+        assertEquals(4, row.readInt());
+        assertEquals(1, row.readInt());
+        assertEquals(8, row.readInt());
+        assertEquals(1.5, row.readDouble());
+        assertEquals(2, row.readInt());
+        assertEquals(1, row.readByte());
+        assertEquals(2, row.readByte());
+        row = readMessage();
+        assertEquals('D', row.readByte());
+        row.readShort();
+        row.readInt();
+        assertEquals(2, row.readInt());
+        row.readInt();
+        assertEquals(3.0, row.readDouble());
+        assertEquals(-1, row.readInt());
+        assertEquals('C', readType());
+        assertEquals('Z', readType());
+
+        // after an error, the messages until Sync are ignored
+        sendParse("", "select * from missing");
+        sendBind("", "", 0);
+        sendExecute("");
+        sendMessage('S');
+        sendParse("", "select count(*) from test");
+        sendBind("", "", 0);
+        sendExecute("");
+        sendMessage('S');
+        out.flush();
+        assertEquals('E', readType());
+        assertEquals('Z', readType());
+        assertEquals('1', readType());
+        assertEquals('2', readType());
+        assertEquals('T', readType());
+        row = readMessage();
+        assertEquals('D', row.readByte());
+        row.readShort();
+        row.readInt();
+        assertEquals('2', (char) row.readByte());
+        assertEquals('C', readType());
+        assertEquals('Z', readType());
+
+        // COPY FROM STDIN
+        sendQuery("copy test(id, name) from stdin");
+        DataInputStream copy = readMessage();
+        assertEquals('G', copy.readByte());
+        assertEquals(0, copy.readByte());
+        assertEquals(2, copy.readShort());
+        m = startMessage(buff);
+        m.write("3\tHello\n4\t\\N\n".getBytes("UTF-8"));
+        sendMessage('d', buff);
+        m = startMessage(buff);
+        m.write("5\tA\\tB\n\\.\n".getBytes("UTF-8"));
+        sendMessage('d', buff);
+        sendMessage('c');
+        out.flush();
+        DataInputStream complete = readMessage();
+        assertEquals('C', complete.readByte());
+        assertEquals("COPY 3", readString(complete));
+        readUntilReady();
+        sendQuery("select id, name from test where id >= 3 order by id");
+        assertEquals('T', readType());
+        String[] expected = { "3", "Hello", "4", null, "5", "A\tB" };
+        for (int i = 0; i < expected.length; i += 2) {
+            row = readMessage();
+            assertEquals('D', row.readByte());
+            row.readShort();
+            assertEquals(expected[i], readValue(row));
+            assertEquals(expected[i + 1], readValue(row));
+        }
+        assertEquals('C', readType());
+        readUntilReady();
+
+        sendMessage('X');
+        out.flush();
+        socket.close();
+    }
+
+    private static void writeString(DataOutputStream m, String s) throws IOException {
+        m.write(s.getBytes("UTF-8"));
+        m.write(0);
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        for (int x; (x = data.read()) > 0;) {
+            buff.write(x);
+        }
+        return new String(buff.toByteArray(), "UTF-8");
+    }
+
+    private static String readValue(DataInputStream data) throws IOException {
+        int len = data.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] d = new byte[len];
+        data.readFully(d);
+        return new String(d, "UTF-8");
+    }
+
+    private static DataOutputStream startMessage(ByteArrayOutputStream buff) {
+        buff.reset();
+        return new DataOutputStream(buff);
+    }
+
+    private void sendMessage(char type, ByteArrayOutputStream buff) throws IOException {
+        out.write(type);
+        out.writeInt(buff.size() + 4);
+        out.write(buff.toByteArray());
+    }
+
+    private void sendMessage(char type) throws IOException {
+        sendMessage(type, new ByteArrayOutputStream());
+    }
+
+    private void sendQuery(String sql) throws IOException {
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        writeString(new DataOutputStream(buff), sql);
+        sendMessage('Q', buff);
+        out.flush();
+    }
+
+    private void sendParse(String name, String sql, int... types) throws IOException {
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        DataOutputStream m = new DataOutputStream(buff);
+        writeString(m, name);
+        writeString(m, sql);
+        m.writeShort(types.length);
+        for (int t : types) {
+            m.writeInt(t);
+        }
+        sendMessage('P', buff);
+    }
+
+    private void sendBind(String portal, String name, int resultFormat) throws IOException {
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        DataOutputStream m = new DataOutputStream(buff);
+        writeString(m, portal);
+        writeString(m, name);
+        m.writeShort(0);
+        m.writeShort(0);
+        m.writeShort(1);
+        m.writeShort(resultFormat);
+        sendMessage('B', buff);
+    }
+
+    private void sendExecute(String portal) throws IOException {
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        DataOutputStream m = new DataOutputStream(buff);
+        writeString(m, portal);
+        m.writeInt(0);
+        sendMessage('E', buff);
+    }
+
+    private DataInputStream readMessage() throws IOException {
+        int type = in.readByte();
+        byte[] data = new byte[in.readInt() - 4];
+        in.readFully(data);
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        buff.write(type);
+        buff.write(data);
+        return new DataInputStream(new ByteArrayInputStream(buff.toByteArray()));
+    }
+
+    private char readType() throws IOException {
+        return (char) readMessage().readByte();
+    }
+
+    private void readUntilReady() throws IOException {
+        while (readType() != 'Z') {
+            // ignore
+        }
+    }
+
     private void testPgClient() throws SQLException {
         Connection conn = DriverManager.getConnection("jdbc:postgresql://localhost:5535/test", "sa", "sa");
         Statement stat = conn.createStatement();